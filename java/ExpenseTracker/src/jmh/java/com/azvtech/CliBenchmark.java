@@ -0,0 +1,106 @@
+package com.azvtech;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end timings of ExpenseTracker command lines, each run in a fresh JVM against a
+ * synthetic store, so that JVM startup and the full load and save are included just as a
+ * user experiences them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CliBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int size;
+
+    @Param({"json", "binary"})
+    String format;
+
+    @Param({"--summary", "--month-summary 3", "--category-filter food", "--add 12.50 Lunch food"})
+    String command;
+
+    private Path directory;
+    private Path original;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("expense-cli-benchmark");
+        SyntheticLedger.writeStore(directory, size, 42, "binary".equals(format));
+        original = Files.createTempDirectory("expense-cli-original");
+        copy(directory, original);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        delete(directory);
+        delete(original);
+    }
+
+    @Benchmark
+    public int run() throws IOException, InterruptedException {
+        List<String> commandLine = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                ExpenseTracker.class.getName()));
+        commandLine.addAll(Arrays.asList(command.split(" ")));
+        Process process = new ProcessBuilder(commandLine)
+                .directory(directory.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.to(new File(directory.toFile(), "stdout.txt")))
+                .redirectErrorStream(true)
+                .start();
+        int exitCode = process.waitFor();
+        // Restore the store so that writing commands do not grow it between iterations.
+        clear(directory);
+        copy(original, directory);
+        return exitCode;
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.copy(file, to.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static void clear(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        clear(directory);
+        Files.delete(directory);
+    }
+}
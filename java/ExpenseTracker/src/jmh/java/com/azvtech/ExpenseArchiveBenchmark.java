@@ -0,0 +1,92 @@
+package com.azvtech;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries on a store whose months before its last year are archived, against the same
+ * store with every month kept in memory as the baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExpenseArchiveBenchmark {
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    @Param({"true", "false"})
+    boolean archived;
+
+    private Path directory;
+    private ExpenseStore store;
+    private LocalDate recent;
+    private LocalDate historical;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("archive-benchmark");
+        store = new ExpenseStore(directory);
+        LocalDate last = SyntheticLedger.START;
+        for (Expense expense : SyntheticLedger.lazily(size, 42)) {
+            store.add(expense);
+            last = expense.getDate();
+        }
+        recent = last.withDayOfMonth(1);
+        historical = SyntheticLedger.START.plusMonths(14);
+        store.save();
+        if (archived) {
+            store.archive(YearMonth.of(last.getYear(), 1));
+            store = new ExpenseStore(directory);
+            store.load();
+        }
+    }
+
+    /** A month of the current year, which never touches the archive. */
+    @Benchmark
+    public List<Expense> recentMonth() {
+        return store.range(recent, recent.plusMonths(1).minusDays(1), null);
+    }
+
+    /** A month of an archived year, which decompresses exactly one block. */
+    @Benchmark
+    public List<Expense> historicalMonth() {
+        return store.range(historical, historical.plusMonths(1).minusDays(1), null);
+    }
+
+    /** A rollup over every year, served from the block summaries. */
+    @Benchmark
+    public double historicalTotal() {
+        return store.total(Month.MARCH);
+    }
+
+    /** Loading the store, as every command line run does. */
+    @Benchmark
+    public ExpenseStore load() throws IOException {
+        ExpenseStore loaded = new ExpenseStore(directory);
+        loaded.load();
+        return loaded;
+    }
+}
@@ -0,0 +1,97 @@
+package com.azvtech;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading and saving a JSON ledger through Gson reflection, as ExpenseTracker
+ * originally did, against the streaming ExpenseTypeAdapter with shared dates.
+ *
+ * Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpenseJsonBenchmark {
+    private static final Type EXPENSE_LIST = new TypeToken<List<Expense>>() {}.getType();
+
+    @Param({"100000"})
+    int size;
+
+    private Gson reflective;
+    private Gson streaming;
+    private List<Expense> expenses;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        reflective = new GsonBuilder()
+                .registerTypeAdapter(LocalDate.class, new ParsingLocalDateAdapter())
+                .create();
+        streaming = new GsonBuilder()
+                .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .create();
+        expenses = SyntheticLedger.generate(size, 42);
+        json = reflective.toJson(expenses);
+    }
+
+    @Benchmark
+    public List<Expense> loadReflective() {
+        return reflective.fromJson(json, EXPENSE_LIST);
+    }
+
+    @Benchmark
+    public List<Expense> loadStreaming() {
+        return streaming.fromJson(json, EXPENSE_LIST);
+    }
+
+    @Benchmark
+    public String saveReflective() {
+        return reflective.toJson(expenses, EXPENSE_LIST);
+    }
+
+    @Benchmark
+    public String saveStreaming() {
+        return streaming.toJson(expenses, EXPENSE_LIST);
+    }
+
+    /**
+     * The original LocalDateAdapter, which allocates a new LocalDate for every value.
+     */
+    static final class ParsingLocalDateAdapter extends TypeAdapter<LocalDate> {
+        @Override
+        public void write(JsonWriter out, LocalDate date) throws IOException {
+            out.value(date.toString());
+        }
+
+        @Override
+        public LocalDate read(JsonReader in) throws IOException {
+            return LocalDate.parse(in.nextString());
+        }
+    }
+}
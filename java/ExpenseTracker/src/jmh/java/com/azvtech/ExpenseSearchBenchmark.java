@@ -0,0 +1,69 @@
+package com.azvtech;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Description search through the trigram index, against a scan of every expense as the
+ * baseline, on synthetic ledgers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExpenseSearchBenchmark {
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    /** "museum" matches about 1% of the synthetic expenses, "concert" about 4%. */
+    @Param({"museum", "concert"})
+    String query;
+
+    private ExpenseStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new ExpenseStore(Paths.get(""));
+        for (Expense expense : SyntheticLedger.lazily(size, 42)) {
+            store.add(expense);
+        }
+    }
+
+    @Benchmark
+    public List<Expense> search() {
+        return store.search(query, null, null, null);
+    }
+
+    @Benchmark
+    public List<Expense> searchInMonth() {
+        return store.search(query, LocalDate.of(2020, 3, 1), LocalDate.of(2020, 3, 31), ExpenseCategory.values()[3]);
+    }
+
+    @Benchmark
+    public List<Expense> scan() {
+        String lower = query.toLowerCase(Locale.ROOT);
+        return store.list().stream()
+                .filter(expense -> expense.getDescription().toLowerCase(Locale.ROOT).contains(lower))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,116 @@
+package com.azvtech;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Load test of the HTTP API: request latency against a resident {@link ExpenseServer}
+ * holding a synthetic ledger, measured from a client on the same machine.
+ *
+ * Runs in sample time mode, so JMH reports the p50, p90, p99 and p99.9 latency of every
+ * endpoint. Raise the number of concurrent clients with {@code -t}, for example
+ * {@code -t 8}; each client uses keep-alive connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// With Nagle's algorithm on, each response body waits for the client's delayed ACK; --serve
+// turns it off the same way.
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsun.net.httpserver.nodelay=true"})
+public class ExpenseServerBenchmark {
+
+    @Param({"100000"})
+    int size;
+
+    private Path directory;
+    private ExpenseServer server;
+    private String base;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("expense-server-benchmark");
+        SyntheticLedger.writeStore(directory, size, 42, true);
+        ExpenseStore store = new ExpenseStore(directory);
+        store.load();
+        server = new ExpenseServer(store, 0);
+        server.start();
+        base = "http://127.0.0.1:" + server.getPort();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.stop();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public long summary() throws IOException {
+        return request("GET", "/summary", null);
+    }
+
+    @Benchmark
+    public long monthSummary() throws IOException {
+        return request("GET", "/summary?month=3", null);
+    }
+
+    @Benchmark
+    public long listRange() throws IOException {
+        return request("GET", "/expenses?from=2020-03-01&to=2020-03-07&category=food", null);
+    }
+
+    /**
+     * Adds an expense, which also invalidates the cached summaries.
+     */
+    @Benchmark
+    public long add() throws IOException {
+        return request("POST", "/expenses", "{\"amount\":12.5,\"description\":\"Lunch\",\"category\":\"food\"}");
+    }
+
+    private long request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        long read = 0;
+        try (InputStream in = connection.getInputStream()) {
+            byte[] chunk = new byte[8192];
+            for (int n; (n = in.read(chunk)) > 0; ) {
+                read += n;
+            }
+        }
+        return read;
+    }
+}
@@ -0,0 +1,92 @@
+package com.azvtech;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent writes and summaries on an {@link ExpenseStore} holding a
+ * synthetic ledger.
+ *
+ * Each write adds an expense to a random month and removes it again, so the store keeps
+ * its size for the whole run. Scale the number of threads with {@code -t}, for example
+ * {@code -t 1}, {@code -t 2}, {@code -t 4}; the {@code mixed} group runs three writers
+ * against one reader taking summaries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExpenseStoreBenchmark {
+
+    @Param({"100000"})
+    int size;
+
+    private ExpenseStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new ExpenseStore(Paths.get(""));
+        for (Expense expense : SyntheticLedger.lazily(size, 42)) {
+            store.add(expense);
+        }
+    }
+
+    /**
+     * Per-thread source of expenses to write.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        private final SplittableRandom random = new SplittableRandom();
+
+        Expense next() {
+            LocalDate date = LocalDate.of(2020, 1, 1).plusDays(random.nextInt(365 * 4));
+            return new Expense(UUID.randomUUID(), random.nextInt(10000) / 100.0, "Benchmark", date, ExpenseCategory.FOOD);
+        }
+    }
+
+    @Benchmark
+    public Expense write(Writer writer) {
+        Expense expense = writer.next();
+        store.add(expense);
+        return store.remove(expense.getId());
+    }
+
+    @Benchmark
+    public double summary() {
+        return store.total();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Expense mixedWrite(Writer writer) {
+        return write(writer);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public double mixedSummary() {
+        return store.total();
+    }
+}
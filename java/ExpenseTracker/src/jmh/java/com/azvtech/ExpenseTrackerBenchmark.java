@@ -0,0 +1,110 @@
+package com.azvtech;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of the ExpenseTracker operations on synthetic ledgers of 10k to 10M expenses,
+ * stored either as JSON or as a binary snapshot.
+ *
+ * Console output of the operations is discarded. Run with {@code -prof gc} (the profile's
+ * default arguments) to also record allocation per operation, and restrict sizes with for
+ * example {@code -p size=10000,100000}; the 10M ledger needs a heap of several gigabytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ExpenseTrackerBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"json", "binary"})
+    String format;
+
+    private Path directory;
+    private Path csv;
+    private ExpenseTracker tracker;
+    private PrintStream standardOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("expense-benchmark");
+        csv = directory.resolve("expenses.csv");
+        SyntheticLedger.writeStore(directory, size, 42, "binary".equals(format));
+        tracker = new ExpenseTracker(directory);
+        tracker.loadExpenses();
+        tracker.categoryFilter = "food";
+
+        standardOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.setOut(standardOut);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public ExpenseTracker loadExpenses() throws IOException {
+        ExpenseTracker loaded = new ExpenseTracker(directory);
+        loaded.loadExpenses();
+        return loaded;
+    }
+
+    @Benchmark
+    public void saveExpenses() throws IOException {
+        tracker.saveExpenses();
+    }
+
+    @Benchmark
+    public void showMonthSummary() {
+        tracker.showMonthSummary(3);
+    }
+
+    @Benchmark
+    public void filterExpensesByCategory() {
+        tracker.filterExpensesByCategory();
+    }
+
+    @Benchmark
+    public void exportExpensesToCsv() {
+        tracker.exportExpensesToCsv(csv.toString());
+    }
+}
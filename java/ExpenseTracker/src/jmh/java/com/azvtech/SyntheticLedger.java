@@ -0,0 +1,132 @@
+package com.azvtech;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A deterministic generator of realistic expense ledgers for benchmarks.
+ *
+ * The same size and seed always produce the same expenses. Descriptions are drawn
+ * from a small vocabulary of recurring expenses with a skewed distribution, dates
+ * advance evenly across the generated period, and amounts depend on the category.
+ * Ledgers can be generated lazily, so that stores of 10M expenses can be written
+ * without holding them in memory.
+ */
+public final class SyntheticLedger {
+    /** The first day of every generated ledger. */
+    public static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    private static final String[][] DESCRIPTIONS = {
+            {"Coffee", "Lunch", "Groceries", "Dinner out", "Bakery", "Snacks", "Pizza delivery"},
+            {"Bus ticket", "Metro card", "Taxi", "Fuel", "Parking", "Train ticket", "Bike repair"},
+            {"Rent", "Electricity bill", "Water bill", "Internet", "Phone plan", "Gas bill"},
+            {"Cinema", "Streaming subscription", "Concert", "Books", "Video game", "Museum"},
+            {"Pharmacy", "Dentist", "Doctor visit", "Gym membership", "Vitamins"},
+            {"Gift", "Haircut", "Laundry", "Office supplies", "Donation", "Post office"},
+    };
+
+    private static final double[] MAX_AMOUNTS = {60, 45, 1200, 90, 250, 120};
+
+    /** The number of expenses generated per day, which fixes the span of the ledger. */
+    private static final int EXPENSES_PER_DAY = 40;
+
+    private SyntheticLedger() {
+    }
+
+    /**
+     * Generates a ledger of the given size.
+     *
+     * @param size The number of expenses to generate.
+     * @param seed The random seed; equal seeds generate equal ledgers.
+     * @return The generated expenses, in date order.
+     */
+    public static List<Expense> generate(int size, long seed) {
+        List<Expense> expenses = new ArrayList<>(size);
+        for (Expense expense : lazily(size, seed)) {
+            expenses.add(expense);
+        }
+        return expenses;
+    }
+
+    /**
+     * Returns a ledger of the given size that is generated while it is iterated.
+     * Every iteration yields the same expenses.
+     *
+     * @param size The number of expenses to generate.
+     * @param seed The random seed; equal seeds generate equal ledgers.
+     * @return The generated expenses, in date order.
+     */
+    public static Iterable<Expense> lazily(int size, long seed) {
+        return () -> new Iterator<Expense>() {
+            private final Random random = new Random(seed);
+            private int generated;
+
+            @Override
+            public boolean hasNext() {
+                return generated < size;
+            }
+
+            @Override
+            public Expense next() {
+                if (generated >= size) {
+                    throw new NoSuchElementException();
+                }
+                return expense(random, generated++);
+            }
+        };
+    }
+
+    /**
+     * Writes a generated ledger as an expense store that ExpenseTracker can load.
+     *
+     * @param directory The directory to write expenses.json or expenses.bin to.
+     * @param size      The number of expenses to generate.
+     * @param seed      The random seed.
+     * @param binary    Whether to write a binary snapshot instead of JSON.
+     * @throws IOException If the store cannot be written.
+     */
+    public static void writeStore(Path directory, int size, long seed, boolean binary) throws IOException {
+        Iterable<Expense> expenses = lazily(size, seed);
+        if (binary) {
+            ExpenseSnapshot.write(directory.resolve("expenses.bin"), expenses);
+            return;
+        }
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+                .create();
+        try (JsonWriter writer = gson.newJsonWriter(Files.newBufferedWriter(directory.resolve("expenses.json"), StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            for (Expense expense : expenses) {
+                gson.toJson(expense, Expense.class, writer);
+            }
+            writer.endArray();
+        }
+    }
+
+    private static Expense expense(Random random, int i) {
+        ExpenseCategory[] categories = ExpenseCategory.values();
+        ExpenseCategory category = categories[random.nextInt(categories.length)];
+        String[] vocabulary = DESCRIPTIONS[category.ordinal()];
+        // Squaring skews the choice towards the first, most common descriptions.
+        double skew = random.nextDouble();
+        String description = vocabulary[(int) (skew * skew * vocabulary.length)];
+        double amount = Math.round(random.nextDouble() * MAX_AMOUNTS[category.ordinal()] * 100) / 100.0 + 0.5;
+        LocalDate date = START.plusDays(i / EXPENSES_PER_DAY);
+        UUID id = new UUID(random.nextLong(), random.nextLong());
+        // A fresh String per record mirrors what a JSON parser hands back.
+        return new Expense(id, amount, new String(description.toCharArray()), date, category);
+    }
+}
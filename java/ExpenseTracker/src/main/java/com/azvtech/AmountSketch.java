@@ -0,0 +1,180 @@
+package com.azvtech;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch over expense amounts.
+ *
+ * Amounts are counted in logarithmically sized buckets, so that every quantile is
+ * answered within {@link #RELATIVE_ACCURACY} of the true value, in the style of
+ * DDSketch. Unlike sampling sketches such as KLL or t-digest, bucket counts can be
+ * decremented exactly, which lets the sketch follow deletes and updates as well as
+ * inserts. Two sketches are merged by adding their bucket counts.
+ */
+public class AmountSketch {
+    /** The maximum relative error of any quantile returned by the sketch. */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    /** Amounts smaller than this in magnitude are counted as zero. */
+    private static final double MIN_AMOUNT = 1e-6;
+
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount;
+    private long count;
+    private double sum;
+
+    /**
+     * Counts an amount.
+     *
+     * @param amount The amount to count.
+     */
+    public void add(double amount) {
+        update(amount, 1);
+    }
+
+    /**
+     * Removes a previously counted amount.
+     *
+     * @param amount The amount to remove.
+     * @throws IllegalArgumentException If no amount in the bucket of this one is counted,
+     *                                  which would leave a negative count.
+     */
+    public void remove(double amount) {
+        update(amount, -1);
+    }
+
+    /**
+     * Adds every amount counted by another sketch to this one.
+     *
+     * @param other The sketch to merge into this one.
+     */
+    public void merge(AmountSketch other) {
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+    }
+
+    /**
+     * Returns an approximation of the given quantile.
+     *
+     * @param quantile The quantile, between 0 and 1; for example 0.95 for the 95th percentile.
+     * @return The approximate amount at that quantile, or {@code NaN} if the sketch is empty.
+     */
+    public double quantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.round(Math.min(Math.max(quantile, 0), 1) * (count - 1));
+        long seen = 0;
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return -valueOf(negative.offset + i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return valueOf(positive.offset + i);
+            }
+        }
+        return valueOf(positive.offset + positive.counts.length - 1);
+    }
+
+    /**
+     * Returns an independent copy of this sketch.
+     */
+    public AmountSketch copy() {
+        AmountSketch copy = new AmountSketch();
+        copy.merge(this);
+        return copy;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double sum() {
+        return sum;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    private void update(double amount, int delta) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount)) {
+            return;
+        }
+        Buckets buckets = amount >= MIN_AMOUNT ? positive : amount <= -MIN_AMOUNT ? negative : null;
+        int index = buckets != null ? indexOf(Math.abs(amount)) : 0;
+        long counted = buckets != null ? buckets.count(index) : zeroCount;
+        if (counted + delta < 0) {
+            throw new IllegalArgumentException("Amount " + amount + " was not counted");
+        }
+        if (buckets != null) {
+            buckets.add(index, delta);
+        } else {
+            zeroCount += delta;
+        }
+        count += delta;
+        sum += delta * amount;
+    }
+
+    private static int indexOf(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    /**
+     * Returns the representative value of a bucket, which is within the relative
+     * accuracy of every amount counted in it.
+     */
+    private static double valueOf(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    /**
+     * A dense array of bucket counts starting at a bucket index offset.
+     */
+    private static final class Buckets {
+        int offset;
+        long[] counts = new long[0];
+
+        void add(int index, long delta) {
+            if (counts.length == 0) {
+                offset = index;
+                counts = new long[1];
+            } else if (index < offset) {
+                long[] grown = new long[counts.length + (offset - index)];
+                System.arraycopy(counts, 0, grown, offset - index, counts.length);
+                counts = grown;
+                offset = index;
+            } else if (index >= offset + counts.length) {
+                counts = Arrays.copyOf(counts, index - offset + 1);
+            }
+            counts[index - offset] += delta;
+        }
+
+        long count(int index) {
+            int at = index - offset;
+            return at >= 0 && at < counts.length ? counts[at] : 0;
+        }
+
+        void merge(Buckets other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.azvtech;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A reference-counted dictionary of expense descriptions.
+ *
+ * Recurring expenses repeat the same few descriptions many times over. Interning them
+ * here means every expense with the same description refers to a single String, and
+ * each distinct description gets a small integer id that the binary snapshot and CSV
+ * export reuse instead of re-encoding the text per record. An entry is dropped, and
+ * its id recycled, once the last expense referring to it is deleted or updated.
+ *
+ * The dictionary is thread-safe, so the partitions of an {@link ExpenseStore} share one.
+ * While it is {@link #pin() pinned}, entries are kept with their ids even when their last
+ * reference goes, so a snapshot can be written from copies of the expenses taken earlier.
+ */
+public class DescriptionDictionary {
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<Entry> byId = new ArrayList<>();
+    /** Ids of dropped entries, reused before new ids are handed out. */
+    private final List<Integer> freeIds = new ArrayList<>();
+    /** Entries that lost their last reference while pinned, dropped once unpinned. */
+    private final List<Entry> unreferenced = new ArrayList<>();
+    private int pins;
+
+    /**
+     * Adds a reference to a description.
+     *
+     * @param description The description to intern; may be null.
+     * @return The canonical instance of the description, or {@code null} if it was null.
+     */
+    public synchronized String intern(String description) {
+        if (description == null) {
+            return null;
+        }
+        Entry entry = entries.get(description);
+        if (entry == null) {
+            int id;
+            if (freeIds.isEmpty()) {
+                id = byId.size();
+                byId.add(null);
+            } else {
+                id = freeIds.remove(freeIds.size() - 1);
+            }
+            entry = new Entry(description, id);
+            entries.put(description, entry);
+            byId.set(id, entry);
+        }
+        entry.references++;
+        return entry.value;
+    }
+
+    /**
+     * Removes a reference to a description, dropping it once it is no longer referenced.
+     *
+     * @param description The description to release; may be null.
+     */
+    public synchronized void release(String description) {
+        if (description == null) {
+            return;
+        }
+        Entry entry = entries.get(description);
+        if (entry != null && --entry.references == 0) {
+            if (pins > 0) {
+                unreferenced.add(entry);
+            } else {
+                drop(entry);
+            }
+        }
+    }
+
+    /**
+     * Keeps every entry, and its id, until the matching {@link #unpin()}, even if its last
+     * reference is released in between.
+     */
+    public synchronized void pin() {
+        pins++;
+    }
+
+    /**
+     * Ends a {@link #pin()}, dropping the entries that are no longer referenced once no pin
+     * is left.
+     */
+    public synchronized void unpin() {
+        if (--pins == 0) {
+            for (Entry entry : unreferenced) {
+                if (entry.references == 0 && entries.get(entry.value) == entry) {
+                    drop(entry);
+                }
+            }
+            unreferenced.clear();
+        }
+    }
+
+    /**
+     * Returns the id of an interned description.
+     *
+     * @param description The description.
+     * @return The id of the description, or -1 if it is not interned.
+     */
+    public synchronized int idOf(String description) {
+        Entry entry = description == null ? null : entries.get(description);
+        return entry == null ? -1 : entry.id;
+    }
+
+    /**
+     * Returns the description with the given id.
+     *
+     * @param id The id of the description.
+     * @return The description, or {@code null} if no description currently has that id.
+     */
+    public synchronized String get(int id) {
+        Entry entry = id >= 0 && id < byId.size() ? byId.get(id) : null;
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Returns the description escaped as a CSV field, computing it once per entry.
+     *
+     * @param description The description.
+     * @return The CSV field, quoted if the description contains a comma, quote or line break.
+     */
+    public synchronized String csvField(String description) {
+        if (description == null) {
+            return "";
+        }
+        Entry entry = entries.get(description);
+        if (entry == null) {
+            return escapeCsv(description);
+        }
+        if (entry.csv == null) {
+            entry.csv = escapeCsv(description);
+        }
+        return entry.csv;
+    }
+
+    /**
+     * Returns the number of ids handed out, including recycled ones that are currently free.
+     */
+    public synchronized int idCapacity() {
+        return byId.size();
+    }
+
+    /**
+     * Returns the descriptions by id, with {@code null} for the ids that are currently free.
+     */
+    public synchronized String[] toArray() {
+        String[] descriptions = new String[byId.size()];
+        for (int id = 0; id < descriptions.length; id++) {
+            Entry entry = byId.get(id);
+            descriptions[id] = entry == null ? null : entry.value;
+        }
+        return descriptions;
+    }
+
+    /**
+     * Returns the number of distinct descriptions currently referenced.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        byId.clear();
+        freeIds.clear();
+        unreferenced.clear();
+    }
+
+    private void drop(Entry entry) {
+        entries.remove(entry.value);
+        byId.set(entry.id, null);
+        freeIds.add(entry.id);
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static final class Entry {
+        final String value;
+        final int id;
+        int references;
+        String csv;
+
+        Entry(String value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+    }
+}
@@ -18,6 +18,23 @@ public class Expense {
         this.category = category;
     }
 
+    /**
+     * Recreates a previously recorded expense, keeping its original id and date.
+     *
+     * @param id          The unique identifier of the expense.
+     * @param amount      The amount of the expense.
+     * @param description The description of the expense.
+     * @param date        The date the expense was recorded.
+     * @param category    The category of the expense.
+     */
+    public Expense(UUID id, double amount, String description, LocalDate date, ExpenseCategory category) {
+        this.id = id;
+        this.amount = amount;
+        this.description = description;
+        this.date = date;
+        this.category = category;
+    }
+
     public UUID getId() {
         return id;
     }
@@ -0,0 +1,356 @@
+package com.azvtech;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A cold tier of expenses, stored as compressed, immutable blocks of one month each.
+ *
+ * Every block is an {@link ExpenseSnapshot} compressed with {@link Deflater}, and comes with
+ * a small {@link Summary} of its totals, counts and amount sketches per category, and a
+ * fixed-size filter of the character sequences of its descriptions. The summaries of every block are kept in {@code index.json} and
+ * loaded at startup, so totals, counts and percentiles over archived months are answered
+ * without decompressing anything, and queries decompress only the blocks they may match.
+ *
+ * Blocks are never changed in place. Archiving more expenses into a month that already has
+ * a block writes a new block holding both, which then replaces the old one.
+ */
+public class ExpenseArchive {
+    /** The directory, inside the store directory, that holds the archive. */
+    public static final String DIRECTORY = "archive";
+
+    private static final String INDEX_FILE = "index.json";
+    private static final String BLOCK_SUFFIX = ".block";
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+    /** The size of the description filter of a block, in longs; 8192 bits. */
+    private static final int FILTER_WORDS = 128;
+    private static final int FILTER_HASHES = 3;
+
+    private final Path directory;
+    private final ConcurrentSkipListMap<YearMonth, Summary> summaries = new ConcurrentSkipListMap<>();
+    private final Gson gson = new Gson();
+
+    /**
+     * Creates a handle on the archive of a store directory; call {@link #load()} to read it.
+     *
+     * @param storeDirectory The directory holding the expense store files.
+     */
+    public ExpenseArchive(Path storeDirectory) {
+        this.directory = storeDirectory.resolve(DIRECTORY);
+    }
+
+    /**
+     * Loads the block summaries. If the index is missing or unreadable while blocks exist,
+     * the summaries are rebuilt by reading every block once and the index is rewritten.
+     *
+     * @throws IOException If a block cannot be read while rebuilding the index.
+     */
+    public void load() throws IOException {
+        summaries.clear();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Path index = directory.resolve(INDEX_FILE);
+        if (Files.exists(index)) {
+            try (Reader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+                List<Summary> loaded = gson.fromJson(reader, new TypeToken<List<Summary>>() {}.getType());
+                if (loaded != null) {
+                    for (Summary summary : loaded) {
+                        summaries.put(YearMonth.parse(summary.month), summary);
+                    }
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                summaries.clear();
+            }
+        }
+
+        try (DirectoryStream<Path> blocks = Files.newDirectoryStream(directory, "*" + BLOCK_SUFFIX)) {
+            for (Path block : blocks) {
+                String name = block.getFileName().toString();
+                YearMonth month = YearMonth.parse(name.substring(0, name.length() - BLOCK_SUFFIX.length()));
+                summaries.put(month, Summary.of(month, readBlock(block)));
+            }
+        }
+        if (!summaries.isEmpty()) {
+            writeIndex();
+        }
+    }
+
+    /**
+     * Adds expenses of one month to the archive, merging them with the month's block if
+     * there already is one. An expense whose id the block already has replaces it, so
+     * archiving the same expenses again does not count them twice.
+     *
+     * @param month    The month the expenses are dated in.
+     * @param expenses The expenses to archive.
+     * @throws IOException If an I/O error occurs while writing the block or the index.
+     */
+    public void append(YearMonth month, List<Expense> expenses) throws IOException {
+        if (expenses.isEmpty()) {
+            return;
+        }
+        Set<UUID> ids = new HashSet<>();
+        for (Expense expense : expenses) {
+            ids.add(expense.getId());
+        }
+        List<Expense> block = new ArrayList<>();
+        for (Expense archived : read(month)) {
+            if (!ids.contains(archived.getId())) {
+                block.add(archived);
+            }
+        }
+        block.addAll(expenses);
+
+        Files.createDirectories(directory);
+        Path path = blockOf(month);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (OutputStream out = new DeflaterOutputStream(Files.newOutputStream(temp), deflater, 64 * 1024)) {
+                ExpenseSnapshot.write(Channels.newChannel(out), block);
+            } finally {
+                deflater.end();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        summaries.put(month, Summary.of(month, block));
+        writeIndex();
+    }
+
+    /**
+     * Decompresses the block of a month.
+     *
+     * @param month The month.
+     * @return The archived expenses of that month, or an empty list if it has no block.
+     * @throws IOException If an I/O error occurs, or the block is corrupt.
+     */
+    public List<Expense> read(YearMonth month) throws IOException {
+        return summaries.containsKey(month) ? readBlock(blockOf(month)) : new ArrayList<>();
+    }
+
+    /**
+     * Returns the summaries of the archived months, in month order.
+     */
+    public NavigableMap<YearMonth, Summary> summaries() {
+        return summaries;
+    }
+
+    public boolean isEmpty() {
+        return summaries.isEmpty();
+    }
+
+    private Path blockOf(YearMonth month) {
+        return directory.resolve(month + BLOCK_SUFFIX);
+    }
+
+    private static List<Expense> readBlock(Path block) throws IOException {
+        // An Inflater passed in is not ended when the stream is closed.
+        Inflater inflater = new Inflater();
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(block), inflater, 64 * 1024)) {
+            return ExpenseSnapshot.read(Channels.newChannel(in), block);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        Path index = directory.resolve(INDEX_FILE);
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            gson.toJson(new ArrayList<>(summaries.values()), writer);
+        }
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * What is known about a block without decompressing it.
+     */
+    public static final class Summary {
+        /** The month, as yyyy-MM. */
+        String month;
+        /** The total amount and count per category, plus a last slot for expenses without a category. */
+        double[] totals = new double[CATEGORIES.length + 1];
+        long[] counts = new long[CATEGORIES.length + 1];
+        /** The amount sketch per category. */
+        AmountSketch[] sketches = new AmountSketch[CATEGORIES.length];
+        /**
+         * A Bloom filter of the one-, two- and three-character sequences of the lower-cased
+         * descriptions, used to skip blocks a search cannot match. Its size does not depend
+         * on how many descriptions the block has; {@code null} in indexes written before it.
+         */
+        long[] descriptionFilter = new long[FILTER_WORDS];
+        /** The parsed {@link #month}; not persisted. */
+        private transient YearMonth parsedMonth;
+
+        static Summary of(YearMonth month, Collection<Expense> expenses) {
+            Summary summary = new Summary();
+            summary.month = month.toString();
+            for (int i = 0; i < summary.sketches.length; i++) {
+                summary.sketches[i] = new AmountSketch();
+            }
+            for (Expense expense : expenses) {
+                int slot = expense.getCategory() == null ? CATEGORIES.length : expense.getCategory().ordinal();
+                summary.totals[slot] += expense.getAmount();
+                summary.counts[slot]++;
+                if (expense.getCategory() != null) {
+                    summary.sketches[slot].add(expense.getAmount());
+                }
+                if (expense.getDescription() != null) {
+                    String lower = expense.getDescription().toLowerCase(Locale.ROOT);
+                    for (int i = 0; i < lower.length(); i++) {
+                        for (int length = 1; length <= 3 && i + length <= lower.length(); length++) {
+                            summary.addToFilter(gram(lower, i, length));
+                        }
+                    }
+                }
+            }
+            return summary;
+        }
+
+        public YearMonth getMonth() {
+            if (parsedMonth == null) {
+                parsedMonth = YearMonth.parse(month);
+            }
+            return parsedMonth;
+        }
+
+        /**
+         * Returns the total amount of the block.
+         */
+        public double total() {
+            double total = 0;
+            for (double each : totals) {
+                total += each;
+            }
+            return total;
+        }
+
+        /**
+         * Returns the number of expenses in the block.
+         */
+        public long count() {
+            long count = 0;
+            for (long each : counts) {
+                count += each;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the number of expenses of a category in the block.
+         *
+         * @param category The category.
+         * @return The number of expenses.
+         */
+        public long count(ExpenseCategory category) {
+            return counts[category.ordinal()];
+        }
+
+        /**
+         * Returns the amount sketch of a category in the block.
+         *
+         * @param category The category.
+         * @return The sketch.
+         */
+        public AmountSketch sketch(ExpenseCategory category) {
+            return sketches[category.ordinal()];
+        }
+
+        /**
+         * Returns whether an expense of the block may have a description containing a text.
+         *
+         * @param lowerQuery The lower-cased text.
+         * @return {@code false} if no description of the block contains the text.
+         */
+        public boolean mayContain(String lowerQuery) {
+            if (descriptionFilter == null || lowerQuery.isEmpty()) {
+                return true;
+            }
+            if (lowerQuery.length() < 3) {
+                return filterHas(gram(lowerQuery, 0, lowerQuery.length()));
+            }
+            for (int i = 0; i + 3 <= lowerQuery.length(); i++) {
+                if (!filterHas(gram(lowerQuery, i, 3))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Packs a sequence of up to three characters into a long, tagged with its length.
+         */
+        private static long gram(String text, int from, int length) {
+            long gram = length;
+            for (int i = from; i < from + length; i++) {
+                gram = gram << 16 | text.charAt(i);
+            }
+            return gram;
+        }
+
+        private void addToFilter(long gram) {
+            long hash = mix(gram);
+            for (int i = 0; i < FILTER_HASHES; i++) {
+                int bit = (int) ((hash >>> 32) + i * hash) & (FILTER_WORDS * Long.SIZE - 1);
+                descriptionFilter[bit >>> 6] |= 1L << bit;
+            }
+        }
+
+        private boolean filterHas(long gram) {
+            long hash = mix(gram);
+            for (int i = 0; i < FILTER_HASHES; i++) {
+                int bit = (int) ((hash >>> 32) + i * hash) & (FILTER_WORDS * Long.SIZE - 1);
+                if ((descriptionFilter[bit >>> 6] & 1L << bit) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long mix(long value) {
+            value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+            value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            return value ^ (value >>> 33);
+        }
+
+        /**
+         * Returns whether the block is dated in the given calendar month of any year.
+         *
+         * @param calendarMonth The calendar month.
+         * @return {@code true} if the block's month is that calendar month.
+         */
+        public boolean isIn(Month calendarMonth) {
+            return getMonth().getMonth() == calendarMonth;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.azvtech;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Budgets per year-month, for the whole month and per category, and the alerts raised
+ * when spending crosses a share of them.
+ *
+ * The store reports the running totals of a month before and after every write through
+ * {@link #written(YearMonth, double[], double[])}, so a crossing of {@link #THRESHOLDS} is
+ * detected by the write that causes it, in constant time, and never by rescanning expenses.
+ * Months without a budget cost a single map lookup per write.
+ */
+public class ExpenseBudgets {
+    /** The shares of a budget, in percent, whose crossing raises an alert. */
+    public static final int[] THRESHOLDS = {50, 80, 100};
+
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+    /** The slot of the budget of the whole month, after one slot per category. */
+    private static final int WHOLE_MONTH = CATEGORIES.length;
+
+    /** The budgets of a month per category, plus the whole month; {@code NaN} where none is set. */
+    private final Map<YearMonth, double[]> budgets = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Gson gson = new Gson();
+
+    /**
+     * Sets a budget.
+     *
+     * @param month    The year-month.
+     * @param category The category, or {@code null} for the whole month.
+     * @param amount   The budget amount.
+     */
+    public void set(YearMonth month, ExpenseCategory category, double amount) {
+        budgets.compute(month, (key, slots) -> {
+            double[] updated = slots == null ? unset() : slots.clone();
+            updated[slotOf(category)] = amount;
+            return updated;
+        });
+    }
+
+    /**
+     * Returns a budget.
+     *
+     * @param month    The year-month.
+     * @param category The category, or {@code null} for the whole month.
+     * @return The budget amount, or {@code null} if none is set.
+     */
+    public Double get(YearMonth month, ExpenseCategory category) {
+        double[] slots = budgets.get(month);
+        return slots == null || Double.isNaN(slots[slotOf(category)]) ? null : slots[slotOf(category)];
+    }
+
+    /**
+     * Returns whether any budget is set for a month.
+     */
+    public boolean has(YearMonth month) {
+        return budgets.containsKey(month);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Raises an alert for every threshold of a budget of the month that a write made
+     * spending cross upwards.
+     *
+     * @param month  The year-month that was written to.
+     * @param before The totals per category before the write, plus a last slot for expenses without one.
+     * @param after  The totals in the same layout after the write.
+     */
+    void written(YearMonth month, double[] before, double[] after) {
+        double[] slots = budgets.get(month);
+        if (slots == null || listeners.isEmpty()) {
+            return;
+        }
+        for (ExpenseCategory category : CATEGORIES) {
+            int slot = category.ordinal();
+            check(month, category, slots[slot], before[slot], after[slot]);
+        }
+        check(month, null, slots[WHOLE_MONTH], sum(before), sum(after));
+    }
+
+    private void check(YearMonth month, ExpenseCategory category, double budget, double before, double after) {
+        if (Double.isNaN(budget) || after <= before) {
+            return;
+        }
+        int crossed = 0;
+        for (int threshold : THRESHOLDS) {
+            double limit = budget * threshold / 100;
+            if (before < limit && after >= limit) {
+                crossed = threshold;
+            }
+        }
+        if (crossed > 0) {
+            Alert alert = new Alert(month, category, budget, after, crossed);
+            for (Listener listener : listeners) {
+                listener.onThreshold(alert);
+            }
+        }
+    }
+
+    /**
+     * Loads the budgets saved by {@link #save(Path)}, replacing the current ones. Budgets
+     * saved per calendar month by earlier versions are taken as budgets of the current year.
+     *
+     * @param file The file to load from; nothing is loaded if it does not exist.
+     * @throws IOException If an I/O error occurs while reading the file, or it is corrupt;
+     *                     the current budgets are then left as they are.
+     */
+    public void load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        Map<YearMonth, double[]> parsed = new HashMap<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Double> loaded = gson.fromJson(reader, new TypeToken<Map<String, Double>>() {}.getType());
+            if (loaded != null) {
+                for (Map.Entry<String, Double> entry : loaded.entrySet()) {
+                    String key = entry.getKey();
+                    int separator = key.indexOf(':');
+                    String month = separator < 0 ? key : key.substring(0, separator);
+                    ExpenseCategory category = separator < 0 ? null : ExpenseCategory.valueOf(key.substring(separator + 1));
+                    YearMonth yearMonth = !month.isEmpty() && Character.isDigit(month.charAt(0))
+                            ? YearMonth.parse(month)
+                            : Year.now().atMonth(Month.valueOf(month));
+                    if (entry.getValue() == null) {
+                        throw new IllegalArgumentException("No budget for " + key);
+                    }
+                    parsed.computeIfAbsent(yearMonth, any -> unset())[slotOf(category)] = entry.getValue();
+                }
+            }
+        } catch (JsonParseException | DateTimeException | IllegalArgumentException e) {
+            throw new IOException("Corrupt budget file: " + file, e);
+        }
+        budgets.clear();
+        budgets.putAll(parsed);
+    }
+
+    /**
+     * Saves the budgets as a JSON object keyed by {@code yyyy-MM} for whole months and by
+     * {@code yyyy-MM:CATEGORY} for categories. The file is deleted if there are no budgets.
+     *
+     * @param file The file to save to.
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    public void save(Path file) throws IOException {
+        Map<String, Double> saved = new TreeMap<>();
+        for (Map.Entry<YearMonth, double[]> entry : budgets.entrySet()) {
+            double[] slots = entry.getValue();
+            for (int slot = 0; slot < slots.length; slot++) {
+                if (!Double.isNaN(slots[slot])) {
+                    saved.put(slot == WHOLE_MONTH ? entry.getKey().toString() : entry.getKey() + ":" + CATEGORIES[slot], slots[slot]);
+                }
+            }
+        }
+        if (saved.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            gson.toJson(saved, writer);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static double[] unset() {
+        double[] slots = new double[WHOLE_MONTH + 1];
+        Arrays.fill(slots, Double.NaN);
+        return slots;
+    }
+
+    private static int slotOf(ExpenseCategory category) {
+        return category == null ? WHOLE_MONTH : category.ordinal();
+    }
+
+    private static double sum(double[] totals) {
+        double sum = 0;
+        for (double each : totals) {
+            sum += each;
+        }
+        return sum;
+    }
+
+    /**
+     * Receives the alerts of {@link ExpenseBudgets}. Listeners are called on the writing
+     * thread, after the write is applied.
+     */
+    public interface Listener {
+        void onThreshold(Alert alert);
+    }
+
+    /**
+     * Spending of a month, or of a category in a month, that crossed a share of its budget.
+     */
+    public static final class Alert {
+        private final YearMonth month;
+        private final ExpenseCategory category;
+        private final double budget;
+        private final double spent;
+        private final int threshold;
+
+        Alert(YearMonth month, ExpenseCategory category, double budget, double spent, int threshold) {
+            this.month = month;
+            this.category = category;
+            this.budget = budget;
+            this.spent = spent;
+            this.threshold = threshold;
+        }
+
+        public YearMonth getMonth() {
+            return month;
+        }
+
+        /**
+         * Returns the category of the budget, or {@code null} for the budget of the whole month.
+         */
+        public ExpenseCategory getCategory() {
+            return category;
+        }
+
+        public double getBudget() {
+            return budget;
+        }
+
+        public double getSpent() {
+            return spent;
+        }
+
+        /**
+         * Returns the highest threshold crossed, in percent of the budget.
+         */
+        public int getThreshold() {
+            return threshold;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s%s spending reached %d%% of its budget: %.2f of %.2f",
+                    category != null ? category + " " : "", month, threshold, spent, budget);
+        }
+    }
+}
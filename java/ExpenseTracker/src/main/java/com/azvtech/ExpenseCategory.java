@@ -2,4 +2,33 @@ package com.azvtech;
 
 public enum ExpenseCategory {
     FOOD, TRANSPORT, UTILITIES, ENTERTAINMENT, HEALTHCARE, OTHER;
+
+    /**
+     * Decodes a category from its exact name.
+     *
+     * Unlike {@link #valueOf(String)}, an unknown name is reported by returning
+     * {@code null} rather than by throwing, which keeps bulk decoding free of
+     * exception handling.
+     *
+     * @param name The name of the category.
+     * @return The matching category, or {@code null} if there is none.
+     */
+    public static ExpenseCategory fromName(String name) {
+        switch (name) {
+            case "FOOD":
+                return FOOD;
+            case "TRANSPORT":
+                return TRANSPORT;
+            case "UTILITIES":
+                return UTILITIES;
+            case "ENTERTAINMENT":
+                return ENTERTAINMENT;
+            case "HEALTHCARE":
+                return HEALTHCARE;
+            case "OTHER":
+                return OTHER;
+            default:
+                return null;
+        }
+    }
 }
@@ -0,0 +1,233 @@
+package com.azvtech;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index of expenses sorted by date, kept per category.
+ *
+ * Each category owns an array of expenses sorted by epoch day, so a date range is
+ * answered with a binary search for its first day followed by a contiguous scan.
+ * Queries for a single category touch only that category's array, and queries across
+ * all categories merge the per-category ranges in date order. Expenses recorded on the
+ * same day keep the order they were added in.
+ *
+ * Adding an expense dated today, the common case, appends to the end of its array.
+ * Removing an expense leaves a tombstone that later scans skip, and the array is
+ * compacted once tombstones make up half of it. Expenses without a date are not indexed.
+ */
+public class ExpenseDateIndex {
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    /** One list per category, plus a last one for expenses without a category. */
+    private final DaySortedList[] lists = new DaySortedList[CATEGORIES.length + 1];
+
+    public ExpenseDateIndex() {
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = new DaySortedList();
+        }
+    }
+
+    /**
+     * Indexes an expense under its current date and category.
+     *
+     * @param expense The expense to index.
+     */
+    public void add(Expense expense) {
+        if (expense.getDate() != null) {
+            listOf(expense.getCategory()).add(dayOf(expense.getDate()), expense);
+        }
+    }
+
+    /**
+     * Removes an expense from the index. For updates, call this before changing the
+     * expense and {@link #add(Expense)} after.
+     *
+     * @param expense The expense to remove, with the date and category it was indexed under.
+     */
+    public void remove(Expense expense) {
+        if (expense.getDate() != null) {
+            listOf(expense.getCategory()).remove(dayOf(expense.getDate()), expense);
+        }
+    }
+
+    /**
+     * Returns the expenses dated within a range, in date order.
+     *
+     * @param from     The first day of the range, inclusive.
+     * @param to       The last day of the range, inclusive.
+     * @param category The category to return, or {@code null} for every category.
+     * @return The matching expenses.
+     */
+    public List<Expense> range(LocalDate from, LocalDate to, ExpenseCategory category) {
+        int fromDay = dayOf(from);
+        int toDay = dayOf(to);
+        List<Expense> result = new ArrayList<>();
+        if (category != null) {
+            listOf(category).collect(fromDay, toDay, result);
+            return result;
+        }
+
+        // Merge the per-category ranges by day, taking from the list with the earliest day.
+        int[] cursors = new int[lists.length];
+        for (int i = 0; i < lists.length; i++) {
+            cursors[i] = lists[i].next(lists[i].lowerBound(fromDay), toDay);
+        }
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < lists.length; i++) {
+                if (cursors[i] >= 0 && (best < 0 || lists[i].days[cursors[i]] < lists[best].days[cursors[best]])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                return result;
+            }
+            result.add(lists[best].items[cursors[best]]);
+            cursors[best] = lists[best].next(cursors[best] + 1, toDay);
+        }
+    }
+
+    public void clear() {
+        for (DaySortedList list : lists) {
+            list.clear();
+        }
+    }
+
+    /**
+     * Builds an index of every expense of a ledger.
+     *
+     * @param expenses The expenses to index.
+     * @return The index.
+     */
+    public static ExpenseDateIndex of(Iterable<Expense> expenses) {
+        ExpenseDateIndex index = new ExpenseDateIndex();
+        for (Expense expense : expenses) {
+            index.add(expense);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the epoch day of a date, clamped to the int range so that open-ended
+     * bounds such as {@link LocalDate#MIN} can be used.
+     */
+    private static int dayOf(LocalDate date) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+    }
+
+    private DaySortedList listOf(ExpenseCategory category) {
+        return lists[category == null ? CATEGORIES.length : category.ordinal()];
+    }
+
+    /**
+     * Parallel arrays of epoch days and expenses, sorted by day.
+     */
+    private static final class DaySortedList {
+        private static final int MIN_CAPACITY = 16;
+
+        int[] days = new int[MIN_CAPACITY];
+        Expense[] items = new Expense[MIN_CAPACITY];
+        int size;
+        int tombstones;
+
+        void add(int day, Expense expense) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                items = Arrays.copyOf(items, size * 2);
+            }
+            int position = size > 0 && days[size - 1] > day ? upperBound(day) : size;
+            if (position < size) {
+                System.arraycopy(days, position, days, position + 1, size - position);
+                System.arraycopy(items, position, items, position + 1, size - position);
+            }
+            days[position] = day;
+            items[position] = expense;
+            size++;
+        }
+
+        void remove(int day, Expense expense) {
+            for (int i = lowerBound(day); i < size && days[i] == day; i++) {
+                if (items[i] == expense) {
+                    items[i] = null;
+                    tombstones++;
+                    if (tombstones * 2 > size) {
+                        compact();
+                    }
+                    return;
+                }
+            }
+        }
+
+        void collect(int fromDay, int toDay, List<Expense> result) {
+            for (int i = next(lowerBound(fromDay), toDay); i >= 0; i = next(i + 1, toDay)) {
+                result.add(items[i]);
+            }
+        }
+
+        /**
+         * Returns the first live position at or after {@code from} whose day is at most
+         * {@code toDay}, or -1 if there is none.
+         */
+        int next(int from, int toDay) {
+            for (int i = from; i < size && days[i] <= toDay; i++) {
+                if (items[i] != null) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** Returns the first position whose day is not before the given day. */
+        int lowerBound(int day) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (days[middle] < day) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /** Returns the first position whose day is after the given day. */
+        int upperBound(int day) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (days[middle] <= day) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        void clear() {
+            Arrays.fill(items, 0, size, null);
+            size = 0;
+            tombstones = 0;
+        }
+
+        private void compact() {
+            int target = 0;
+            for (int i = 0; i < size; i++) {
+                if (items[i] != null) {
+                    days[target] = days[i];
+                    items[target] = items[i];
+                    target++;
+                }
+            }
+            Arrays.fill(items, target, size, null);
+            size = target;
+            tombstones = 0;
+        }
+    }
+}
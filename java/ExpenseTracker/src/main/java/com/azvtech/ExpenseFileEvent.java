@@ -0,0 +1,85 @@
+package com.azvtech;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for one load, save or CSV export of the expenses, from the
+ * command line or the server, with the number of expenses and, for exports, the file, if
+ * any, and the size of its content.
+ *
+ * The latency also goes to the {@link Metrics} under the name of the operation. While
+ * neither the recorder nor the metrics are on, the event is never committed and costs a
+ * few checks.
+ */
+@Name("com.azvtech.ExpenseFile")
+@Label("Expense File")
+@Category({"Roadmap.sh", "ExpenseTracker"})
+@Description("A load, save or CSV export of the expenses")
+@StackTrace(false)
+final class ExpenseFileEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("File")
+    @Description("The file written, for exports to a file rather than over HTTP")
+    String file;
+
+    @Label("Expenses")
+    int expenses;
+
+    @Label("Failed")
+    @Description("Whether the operation failed with an I/O error")
+    boolean failed;
+
+    @Label("Size")
+    @Description("The size of the content written, in bytes, for exports")
+    @DataAmount
+    long size;
+
+    private final transient long start = Metrics.start();
+    private transient boolean failedIo;
+
+    /**
+     * Starts timing an operation.
+     *
+     * @param operation The name of the operation, such as "loadExpenses".
+     * @param file      The file the operation writes, or {@code null} for none or a response.
+     */
+    ExpenseFileEvent(String operation, String file) {
+        this.operation = operation;
+        this.file = file;
+        begin();
+    }
+
+    /**
+     * Marks the operation as failed with an I/O error, and counts it under the name of the
+     * operation followed by ".errors". The event is still finished, like any other.
+     */
+    void fail() {
+        failedIo = true;
+        Metrics.count(operation + ".errors", 1);
+    }
+
+    /**
+     * Ends the operation and records it, whether it succeeded or not.
+     *
+     * @param expenses The number of expenses loaded, saved or exported.
+     * @param size     The size of the content written, in bytes, or 0.
+     */
+    void finish(int expenses, long size) {
+        Metrics.record(operation, start);
+        end();
+        if (shouldCommit()) {
+            this.expenses = expenses;
+            this.size = size;
+            this.failed = failedIo;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.azvtech;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash index from expense ids to slot positions.
+ *
+ * Ids are stored as the two raw longs of the UUID, so neither lookups nor inserts
+ * allocate a boxed key. Collisions are resolved with linear probing and removals
+ * use backward-shift deletion, which keeps probe sequences short without leaving
+ * deleted markers behind in the table.
+ */
+class ExpenseIdIndex {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    /** The slot stored for each bucket, plus one; zero marks an empty bucket. */
+    private int[] values;
+    private int size;
+    private int mask;
+
+    ExpenseIdIndex() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Returns the slot mapped to the given id.
+     *
+     * @param msb The most significant 64 bits of the id.
+     * @param lsb The least significant 64 bits of the id.
+     * @return The slot, or -1 if the id is not indexed.
+     */
+    int get(long msb, long lsb) {
+        int bucket = bucketOf(msb, lsb);
+        while (values[bucket] != 0) {
+            if (mostSigBits[bucket] == msb && leastSigBits[bucket] == lsb) {
+                return values[bucket] - 1;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Maps the given id to a slot, replacing any previous mapping.
+     *
+     * @param msb  The most significant 64 bits of the id.
+     * @param lsb  The least significant 64 bits of the id.
+     * @param slot The slot to associate with the id; must not be negative.
+     */
+    void put(long msb, long lsb, int slot) {
+        if ((size + 1) * 4L > values.length * 3L) {
+            rehash(values.length * 2);
+        }
+        int bucket = bucketOf(msb, lsb);
+        while (values[bucket] != 0) {
+            if (mostSigBits[bucket] == msb && leastSigBits[bucket] == lsb) {
+                values[bucket] = slot + 1;
+                return;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        mostSigBits[bucket] = msb;
+        leastSigBits[bucket] = lsb;
+        values[bucket] = slot + 1;
+        size++;
+    }
+
+    /**
+     * Removes the mapping for the given id.
+     *
+     * @param msb The most significant 64 bits of the id.
+     * @param lsb The least significant 64 bits of the id.
+     * @return The slot that was mapped to the id, or -1 if the id was not indexed.
+     */
+    int remove(long msb, long lsb) {
+        int bucket = bucketOf(msb, lsb);
+        while (values[bucket] != 0) {
+            if (mostSigBits[bucket] == msb && leastSigBits[bucket] == lsb) {
+                int slot = values[bucket] - 1;
+                shiftBack(bucket);
+                size--;
+                return slot;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * Closes the gap left at the given bucket by moving later entries of the same
+     * probe run backwards, so that every remaining entry stays reachable.
+     */
+    private void shiftBack(int gap) {
+        int bucket = gap;
+        while (true) {
+            bucket = (bucket + 1) & mask;
+            if (values[bucket] == 0) {
+                break;
+            }
+            int home = bucketOf(mostSigBits[bucket], leastSigBits[bucket]);
+            // Move the entry only if its home bucket does not lie cyclically in (gap, bucket].
+            if (((bucket - home) & mask) >= ((bucket - gap) & mask)) {
+                mostSigBits[gap] = mostSigBits[bucket];
+                leastSigBits[gap] = leastSigBits[bucket];
+                values[gap] = values[bucket];
+                gap = bucket;
+            }
+        }
+        values[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldMsb = mostSigBits;
+        long[] oldLsb = leastSigBits;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) {
+                put(oldMsb[i], oldLsb[i], oldValues[i] - 1);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostSigBits = new long[capacity];
+        leastSigBits = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private int bucketOf(long msb, long lsb) {
+        long h = (msb ^ Long.rotateLeft(lsb, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
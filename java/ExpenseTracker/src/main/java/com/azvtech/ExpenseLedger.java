@@ -0,0 +1,221 @@
+package com.azvtech;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An insertion-ordered collection of expenses with constant time lookup and removal by id.
+ *
+ * Expenses are kept in an array of slots and indexed by id through an {@link ExpenseIdIndex}.
+ * Removing an expense leaves a tombstone in its slot instead of shifting the remaining
+ * expenses, so iteration order stays stable. Once tombstones outnumber the live expenses,
+ * the slots are compacted in a single pass, which keeps removal amortized O(1).
+ *
+ * Descriptions of the expenses in the ledger are interned in a {@link DescriptionDictionary},
+ * so they must be changed through {@link #setDescription(Expense, String)} rather than on
+ * the expense itself. Several ledgers can share one dictionary.
+ */
+public class ExpenseLedger implements Iterable<Expense> {
+    private static final int MIN_CAPACITY = 16;
+
+    private Expense[] slots = new Expense[MIN_CAPACITY];
+    private final ExpenseIdIndex index = new ExpenseIdIndex();
+    private final DescriptionDictionary descriptions;
+    /** Whether the dictionary belongs to this ledger alone, so it can be cleared with it. */
+    private final boolean ownsDescriptions;
+    /** The number of used slots, live or tombstoned. */
+    private int end;
+    /** The number of live expenses. */
+    private int size;
+    private int modCount;
+
+    /**
+     * Creates an empty ledger with a dictionary of its own.
+     */
+    public ExpenseLedger() {
+        this(new DescriptionDictionary(), true);
+    }
+
+    /**
+     * Creates an empty ledger that interns its descriptions in a shared dictionary.
+     *
+     * @param descriptions The dictionary, which is not cleared with this ledger.
+     */
+    public ExpenseLedger(DescriptionDictionary descriptions) {
+        this(descriptions, false);
+    }
+
+    private ExpenseLedger(DescriptionDictionary descriptions, boolean ownsDescriptions) {
+        this.descriptions = descriptions;
+        this.ownsDescriptions = ownsDescriptions;
+    }
+
+    /**
+     * Appends an expense to the ledger, replacing its description with the interned instance.
+     *
+     * @param expense The expense to add.
+     * @return {@code true} if the expense was added, {@code false} if an expense with the same id is already present.
+     */
+    public boolean add(Expense expense) {
+        UUID id = expense.getId();
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        if (index.get(msb, lsb) >= 0) {
+            return false;
+        }
+        if (end == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+        }
+        expense.setDescription(descriptions.intern(expense.getDescription()));
+        slots[end] = expense;
+        index.put(msb, lsb, end);
+        end++;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Finds an expense by its unique identifier.
+     *
+     * @param id The unique identifier of the expense.
+     * @return The expense, or {@code null} if no expense has that id.
+     */
+    public Expense get(UUID id) {
+        int slot = index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return slot < 0 ? null : slots[slot];
+    }
+
+    /**
+     * Removes an expense by its unique identifier.
+     *
+     * @param id The unique identifier of the expense.
+     * @return The removed expense, or {@code null} if no expense has that id.
+     */
+    public Expense remove(UUID id) {
+        int slot = index.remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+        Expense removed = slots[slot];
+        slots[slot] = null;
+        descriptions.release(removed.getDescription());
+        size--;
+        modCount++;
+        if (end - size > size && end > MIN_CAPACITY) {
+            compact();
+        }
+        return removed;
+    }
+
+    /**
+     * Changes the description of an expense in the ledger, keeping the dictionary's
+     * reference counts in sync.
+     *
+     * @param expense     An expense contained in this ledger.
+     * @param description The new description.
+     */
+    public void setDescription(Expense expense, String description) {
+        String interned = descriptions.intern(description);
+        descriptions.release(expense.getDescription());
+        expense.setDescription(interned);
+    }
+
+    /**
+     * Returns the dictionary of the descriptions used by the expenses in this ledger.
+     */
+    public DescriptionDictionary descriptions() {
+        return descriptions;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (ownsDescriptions) {
+            descriptions.clear();
+        } else {
+            for (int i = 0; i < end; i++) {
+                if (slots[i] != null) {
+                    descriptions.release(slots[i].getDescription());
+                }
+            }
+        }
+        Arrays.fill(slots, 0, end, null);
+        index.clear();
+        end = 0;
+        size = 0;
+        modCount++;
+    }
+
+    public Stream<Expense> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public Iterator<Expense> iterator() {
+        return new Iterator<Expense>() {
+            private final int expectedModCount = modCount;
+            private int cursor = skipTombstones(0);
+
+            @Override
+            public boolean hasNext() {
+                return cursor < end;
+            }
+
+            @Override
+            public Expense next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (cursor >= end) {
+                    throw new NoSuchElementException();
+                }
+                Expense expense = slots[cursor];
+                cursor = skipTombstones(cursor + 1);
+                return expense;
+            }
+        };
+    }
+
+    private int skipTombstones(int from) {
+        while (from < end && slots[from] == null) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Moves the live expenses to the front of the slot array, preserving their order,
+     * and re-points the id index at their new slots.
+     */
+    private void compact() {
+        int target = 0;
+        for (int i = 0; i < end; i++) {
+            Expense expense = slots[i];
+            if (expense != null) {
+                if (target != i) {
+                    slots[target] = expense;
+                    UUID id = expense.getId();
+                    index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), target);
+                }
+                target++;
+            }
+        }
+        Arrays.fill(slots, target, end, null);
+        end = target;
+        if (slots.length > MIN_CAPACITY && end < slots.length / 4) {
+            slots = Arrays.copyOf(slots, Math.max(MIN_CAPACITY, slots.length / 2));
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.azvtech;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Named ledgers, each an {@link ExpenseStore} with its own directory under {@code ledgers/}.
+ *
+ * Cross-ledger reports and budget checks load and aggregate every ledger on its own thread
+ * and then merge the partial results, so they take about as long as the slowest ledger
+ * rather than the sum of all of them, up to {@link #DEFAULT_PARALLELISM} ledgers at a time.
+ */
+public class ExpenseLedgers {
+    /** The directory, inside the base directory, that holds one directory per ledger. */
+    public static final String DIRECTORY = "ledgers";
+
+    /** How many ledgers are processed at the same time by default. */
+    public static final int DEFAULT_PARALLELISM = 64;
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+
+    private final Path root;
+    private final int parallelism;
+
+    /**
+     * Creates a handle on the ledgers kept in a base directory.
+     *
+     * @param baseDirectory The directory holding the {@code ledgers/} directory.
+     */
+    public ExpenseLedgers(Path baseDirectory) {
+        this(baseDirectory, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Creates a handle on the ledgers kept in a base directory.
+     *
+     * @param baseDirectory The directory holding the {@code ledgers/} directory.
+     * @param parallelism   How many ledgers to process at the same time.
+     */
+    public ExpenseLedgers(Path baseDirectory, int parallelism) {
+        this.root = baseDirectory.resolve(DIRECTORY);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Returns the directory of a ledger, creating it if needed.
+     *
+     * @param name The name of the ledger: letters, digits, dots, dashes and underscores.
+     * @return The directory of the ledger.
+     * @throws IllegalArgumentException If the name is not a valid ledger name.
+     * @throws IOException              If the directory cannot be created.
+     */
+    public Path directoryOf(String name) throws IOException {
+        return Files.createDirectories(resolve(name));
+    }
+
+    /**
+     * Returns the names of the existing ledgers, in alphabetical order.
+     *
+     * @throws IOException If the ledgers directory cannot be read.
+     */
+    public List<String> names() throws IOException {
+        List<String> names = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return names;
+        }
+        try (DirectoryStream<Path> ledgers = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path ledger : ledgers) {
+                names.add(ledger.getFileName().toString());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Opens a ledger and loads its expenses and budgets. Nothing is created on disk, so a
+     * ledger that does not exist opens as an empty store; use {@link #directoryOf} to create one.
+     *
+     * @param name The name of the ledger.
+     * @return The loaded store of the ledger.
+     * @throws IllegalArgumentException If the name is not a valid ledger name.
+     * @throws IOException              If the ledger cannot be read.
+     */
+    public ExpenseStore open(String name) throws IOException {
+        ExpenseStore store = new ExpenseStore(resolve(name));
+        store.load();
+        return store;
+    }
+
+    /**
+     * Totals every ledger over a report period.
+     *
+     * @param period The report period.
+     * @return The merged report.
+     * @throws IOException If a ledger cannot be read.
+     */
+    public Report report(ReportPeriod period) throws IOException {
+        return report(period, null);
+    }
+
+    /**
+     * Totals every ledger over a report period and checks the budget of a month in each,
+     * loading every ledger once for both.
+     *
+     * @param period      The report period.
+     * @param budgetMonth The year-month whose budgets to check, or {@code null} for none.
+     * @return The merged report, with the budget status of every ledger that has a budget
+     *         for that month.
+     * @throws IOException If a ledger cannot be read.
+     */
+    public Report report(ReportPeriod period, YearMonth budgetMonth) throws IOException {
+        Report merged = new Report();
+        for (Report partial : forEachLedger(names(), (name, store) -> Report.of(name, store, period, budgetMonth))) {
+            merged.merge(partial);
+        }
+        return merged;
+    }
+
+    /**
+     * Checks the budget of a month in every ledger that has one.
+     *
+     * @param month The year-month to check.
+     * @return The status of every ledger with a budget for that month, by ledger name.
+     * @throws IOException If a ledger cannot be read.
+     */
+    public List<BudgetStatus> checkBudgets(YearMonth month) throws IOException {
+        List<BudgetStatus> statuses = forEachLedger(names(), (name, store) -> BudgetStatus.of(name, store, month));
+        statuses.removeIf(status -> status == null);
+        return statuses;
+    }
+
+    /**
+     * Returns the directory of a ledger without creating it.
+     */
+    private Path resolve(String name) {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid ledger name: " + name);
+        }
+        return root.resolve(name);
+    }
+
+    /**
+     * Loads ledgers and applies a function to each, on up to {@link #parallelism} threads
+     * at a time.
+     *
+     * @return The results, in the order of the names.
+     */
+    private <T> List<T> forEachLedger(List<String> names, BiFunction<String, ExpenseStore, T> function) throws IOException {
+        List<T> results = new ArrayList<>();
+        if (names.isEmpty()) {
+            return results;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, names.size()), runnable -> {
+            Thread thread = new Thread(runnable, "ledger-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (String name : names) {
+                futures.add(executor.submit(() -> function.apply(name, open(name))));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the ledgers", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException("Failed to read a ledger", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Totals of one or more ledgers over a report period, per category and per ledger.
+     */
+    public static final class Report {
+        private final double[] categoryTotals = new double[ExpenseCategory.values().length + 1];
+        private final Map<String, Double> ledgerTotals = new TreeMap<>();
+        private final List<BudgetStatus> budgetStatuses = new ArrayList<>();
+
+        static Report of(String ledger, ExpenseStore store, ReportPeriod period, YearMonth budgetMonth) {
+            Report report = new Report();
+            BudgetStatus status = budgetMonth == null ? null : BudgetStatus.of(ledger, store, budgetMonth);
+            if (status != null) {
+                report.budgetStatuses.add(status);
+            }
+            double ledgerTotal = 0;
+            for (YearMonth month = period.getFirst(); !month.isAfter(period.getLast()); month = month.plusMonths(1)) {
+                double monthTotal = store.total(month, null);
+                ledgerTotal += monthTotal;
+                double categorized = 0;
+                for (ExpenseCategory category : ExpenseCategory.values()) {
+                    double total = store.total(month, category);
+                    report.categoryTotals[category.ordinal()] += total;
+                    categorized += total;
+                }
+                report.categoryTotals[ExpenseCategory.values().length] += monthTotal - categorized;
+            }
+            report.ledgerTotals.put(ledger, ledgerTotal);
+            return report;
+        }
+
+        void merge(Report other) {
+            for (int i = 0; i < categoryTotals.length; i++) {
+                categoryTotals[i] += other.categoryTotals[i];
+            }
+            ledgerTotals.putAll(other.ledgerTotals);
+            budgetStatuses.addAll(other.budgetStatuses);
+        }
+
+        /**
+         * Returns the total of a category across the ledgers.
+         *
+         * @param category The category, or {@code null} for expenses without one.
+         * @return The total amount.
+         */
+        public double total(ExpenseCategory category) {
+            return categoryTotals[category == null ? ExpenseCategory.values().length : category.ordinal()];
+        }
+
+        /**
+         * Returns the total across every ledger and category.
+         */
+        public double total() {
+            double total = 0;
+            for (double each : categoryTotals) {
+                total += each;
+            }
+            return total;
+        }
+
+        /**
+         * Returns the total of each ledger, by ledger name.
+         */
+        public Map<String, Double> getLedgerTotals() {
+            return Collections.unmodifiableMap(ledgerTotals);
+        }
+
+        /**
+         * Returns the budget status of every ledger with a budget for the checked month, in
+         * the order of the ledger names; empty if no month was checked.
+         */
+        public List<BudgetStatus> getBudgetStatuses() {
+            return Collections.unmodifiableList(budgetStatuses);
+        }
+    }
+
+    /**
+     * The spending of a ledger in a month against its budget.
+     */
+    public static final class BudgetStatus {
+        private final String ledger;
+        private final YearMonth month;
+        private final double budget;
+        private final double spent;
+
+        BudgetStatus(String ledger, YearMonth month, double budget, double spent) {
+            this.ledger = ledger;
+            this.month = month;
+            this.budget = budget;
+            this.spent = spent;
+        }
+
+        /**
+         * Returns the status of a ledger's budget for a month, or {@code null} if it has none.
+         */
+        static BudgetStatus of(String ledger, ExpenseStore store, YearMonth month) {
+            Double budget = store.getBudget(month, null);
+            return budget == null ? null : new BudgetStatus(ledger, month, budget, store.total(month, null));
+        }
+
+        public String getLedger() {
+            return ledger;
+        }
+
+        public YearMonth getMonth() {
+            return month;
+        }
+
+        public double getBudget() {
+            return budget;
+        }
+
+        public double getSpent() {
+            return spent;
+        }
+
+        public boolean isExceeded() {
+            return spent > budget;
+        }
+    }
+}
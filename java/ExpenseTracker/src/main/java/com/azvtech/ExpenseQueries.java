@@ -0,0 +1,50 @@
+package com.azvtech;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Queries over collections of expenses that avoid sorting the whole collection.
+ */
+public final class ExpenseQueries {
+    private static final Comparator<Expense> BY_AMOUNT = Comparator.comparingDouble(Expense::getAmount);
+
+    private ExpenseQueries() {
+    }
+
+    /**
+     * Finds the largest expenses that match a filter.
+     *
+     * A min-heap bounded to {@code n} entries holds the largest expenses seen so far, so
+     * the query costs O(size log n) time and O(n) memory instead of sorting every expense.
+     *
+     * @param expenses The expenses to search.
+     * @param n        The number of expenses to return.
+     * @param filter   The condition an expense must meet to be considered.
+     * @return Up to {@code n} expenses, largest amount first.
+     */
+    public static List<Expense> largest(Iterable<Expense> expenses, int n, Predicate<Expense> filter) {
+        if (n <= 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Expense> heap = new PriorityQueue<>(n + 1, BY_AMOUNT);
+        for (Expense expense : expenses) {
+            if (!filter.test(expense)) {
+                continue;
+            }
+            if (heap.size() < n) {
+                heap.add(expense);
+            } else if (expense.getAmount() > heap.peek().getAmount()) {
+                heap.poll();
+                heap.add(expense);
+            }
+        }
+        List<Expense> largest = new ArrayList<>(heap);
+        largest.sort(BY_AMOUNT.reversed());
+        return largest;
+    }
+}
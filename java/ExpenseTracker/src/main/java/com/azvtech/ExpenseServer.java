@@ -0,0 +1,444 @@
+package com.azvtech;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * An HTTP API over an {@link ExpenseStore} that stays resident between requests.
+ *
+ * Endpoints, all answering JSON except the CSV export:
+ * <ul>
+ *   <li>{@code GET /expenses[?q=&category=&from=&to=]} lists expenses, or those whose description contains {@code q};</li>
+ *   <li>{@code GET /expenses/{id}} returns one expense;</li>
+ *   <li>{@code POST /expenses} adds an expense from {@code {"amount", "description", "category"}};</li>
+ *   <li>{@code PUT /expenses/{id}} updates an expense from the same fields;</li>
+ *   <li>{@code DELETE /expenses/{id}} deletes an expense;</li>
+ *   <li>{@code GET /summary[?month=1..12]} returns the count and total, overall or for a month;</li>
+ *   <li>{@code GET /export} exports every expense as CSV.</li>
+ * </ul>
+ *
+ * Requests are handled on virtual threads when the JVM supports them, and on a cached
+ * thread pool otherwise. Listings and exports are streamed a month at a time rather than
+ * built up in memory. Summary responses are cached until the next write, and writes are
+ * saved to disk in the background every {@link #FLUSH_INTERVAL_SECONDS} seconds and when
+ * the server stops.
+ */
+public class ExpenseServer {
+    /** How often pending writes are saved to disk. */
+    static final int FLUSH_INTERVAL_SECONDS = 5;
+
+    /** The address listened on by default; the API has no authentication. */
+    public static final String DEFAULT_HOST = "127.0.0.1";
+
+    private final ExpenseStore store;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService flusher;
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+            .create();
+
+    /** Incremented after every write; cached summaries of an older version are stale. */
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, CachedResponse> summaries = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * Creates a server for a store listening on the loopback interface only; call
+     * {@link #start()} to start accepting requests.
+     *
+     * @param store The store to serve, already loaded.
+     * @param port  The port to listen on, or 0 for any free port.
+     * @throws IOException If the server socket cannot be bound.
+     */
+    public ExpenseServer(ExpenseStore store, int port) throws IOException {
+        this(store, DEFAULT_HOST, port);
+    }
+
+    /**
+     * Creates a server for a store; call {@link #start()} to start accepting requests.
+     *
+     * Anyone who can reach the address can read and change every expense, so listening on
+     * anything but the loopback interface is for trusted networks only.
+     *
+     * @param store The store to serve, already loaded.
+     * @param host  The address to listen on, such as {@link #DEFAULT_HOST}, or "0.0.0.0" for every interface.
+     * @param port  The port to listen on, or 0 for any free port.
+     * @throws IOException If the server socket cannot be bound.
+     */
+    public ExpenseServer(ExpenseStore store, String host, int port) throws IOException {
+        this.store = store;
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.executor = newRequestExecutor();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expense-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/expenses", this::handleExpenses);
+        server.createContext("/summary", this::handleSummary);
+        server.createContext("/export", this::handleExport);
+    }
+
+    public void start() {
+        server.start();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops accepting requests, waits briefly for running ones and saves pending writes.
+     *
+     * @throws IOException If the pending writes cannot be saved.
+     */
+    public void stop() throws IOException {
+        server.stop(1);
+        executor.shutdown();
+        flusher.shutdown();
+        flush();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the address the server listens on.
+     */
+    public String getHost() {
+        return server.getAddress().getHostString();
+    }
+
+    /**
+     * Returns an executor that runs each request on its own virtual thread, falling back
+     * to a cached thread pool on JVMs without virtual threads.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void handleExpenses(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String id = path.length() > "/expenses/".length() ? path.substring("/expenses/".length()) : null;
+            String method = exchange.getRequestMethod();
+            if (id == null && "GET".equals(method)) {
+                listExpenses(exchange);
+            } else if (id == null && "POST".equals(method)) {
+                addExpense(exchange);
+            } else if (id != null && "GET".equals(method)) {
+                Expense expense = store.get(UUID.fromString(id));
+                sendExpense(exchange, expense == null ? 404 : 200, expense, id);
+            } else if (id != null && "PUT".equals(method)) {
+                updateExpense(exchange, UUID.fromString(id));
+            } else if (id != null && "DELETE".equals(method)) {
+                Expense deleted = store.remove(UUID.fromString(id));
+                if (deleted != null) {
+                    written();
+                }
+                sendExpense(exchange, deleted == null ? 404 : 200, deleted, id);
+            } else {
+                sendError(exchange, 405, "Method " + method + " not allowed on " + path);
+            }
+        } catch (IllegalArgumentException | DateTimeException | JsonParseException e) {
+            sendError(exchange, 400, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void listExpenses(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        ExpenseCategory category = null;
+        if (query.containsKey("category")) {
+            category = ExpenseCategory.fromName(query.get("category").toUpperCase());
+            if (category == null) {
+                throw new IllegalArgumentException("Invalid category: " + query.get("category"));
+            }
+        }
+
+        if (query.containsKey("q") || query.containsKey("from") || query.containsKey("to")) {
+            LocalDate from = query.containsKey("from") ? LocalDateAdapter.parse(query.get("from")) : null;
+            LocalDate to = query.containsKey("to") ? LocalDateAdapter.parse(query.get("to")) : null;
+            List<Expense> selected = query.containsKey("q")
+                    ? store.search(query.get("q"), from, to, category)
+                    : store.range(from != null ? from : LocalDate.MIN, to != null ? to : LocalDate.MAX, category);
+            try (JsonWriter writer = streamJson(exchange, 200)) {
+                writer.beginArray();
+                for (Expense expense : selected) {
+                    gson.toJson(expense, Expense.class, writer);
+                }
+                writer.endArray();
+            }
+            return;
+        }
+
+        ExpenseCategory filter = category;
+        Predicate<Expense> matches = filter == null ? expense -> true : expense -> expense.getCategory() == filter;
+        try (JsonWriter writer = streamJson(exchange, 200)) {
+            writer.beginArray();
+            store.forEach(matches, expense -> gson.toJson(expense, Expense.class, writer));
+            writer.endArray();
+        }
+    }
+
+    private void addExpense(HttpExchange exchange) throws IOException {
+        JsonObject body = readBody(exchange);
+        Expense expense = new Expense(amountOf(body), descriptionOf(body), categoryOf(body));
+        store.add(expense);
+        written();
+        sendExpense(exchange, 201, expense, null);
+    }
+
+    private void updateExpense(HttpExchange exchange, UUID id) throws IOException {
+        JsonObject body = readBody(exchange);
+        Expense updated = store.update(id, amountOf(body), descriptionOf(body), categoryOf(body));
+        if (updated != null) {
+            written();
+        }
+        sendExpense(exchange, updated == null ? 404 : 200, updated, id.toString());
+    }
+
+    private void handleSummary(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Method " + exchange.getRequestMethod() + " not allowed on /summary");
+                return;
+            }
+            String month = query(exchange).get("month");
+            Month specifiedMonth = month == null ? null : Month.of(Integer.parseInt(month));
+            String key = specifiedMonth == null ? "" : specifiedMonth.name();
+
+            long current = version.get();
+            CachedResponse cached = summaries.get(key);
+            if (cached == null || cached.version != current) {
+                JsonObject summary = new JsonObject();
+                if (specifiedMonth != null) {
+                    summary.addProperty("month", specifiedMonth.name());
+                    summary.addProperty("count", store.size(specifiedMonth));
+                    summary.addProperty("total", store.total(specifiedMonth));
+                } else {
+                    summary.addProperty("count", store.size());
+                    summary.addProperty("total", store.total());
+                }
+                cached = new CachedResponse(current, gson.toJson(summary).getBytes(StandardCharsets.UTF_8));
+                summaries.put(key, cached);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, cached.body.length);
+            exchange.getResponseBody().write(cached.body);
+        } catch (DateTimeException | NumberFormatException e) {
+            sendError(exchange, 400, "Invalid month, use 1-12");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleExport(HttpExchange exchange) throws IOException {
+        ExpenseFileEvent event = new ExpenseFileEvent("exportExpensesToCsv", null);
+        int[] exported = { 0 };
+        long[] size = { 0 };
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/csv");
+            exchange.sendResponseHeaders(200, 0);
+            DescriptionDictionary descriptions = store.descriptions();
+            OutputStream body = new FilterOutputStream(exchange.getResponseBody()) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    size[0]++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    size[0] += len;
+                }
+            };
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+                writer.write("ID,Amount,Description,Date\n");
+                store.forEach(expense -> true, expense -> {
+                    String id = expense.getId().toString();
+                    String amount = Double.toString(expense.getAmount());
+                    String description = descriptions.csvField(expense.getDescription());
+                    String date = String.valueOf(expense.getDate());
+                    writer.append(id)
+                            .append(',')
+                            .append(amount)
+                            .append(',')
+                            .append(description)
+                            .append(',')
+                            .append(date)
+                            .append('\n');
+                    exported[0]++;
+                });
+            }
+        } catch (IOException e) {
+            event.fail();
+            throw e;
+        } finally {
+            event.finish(exported[0], size[0]);
+            exchange.close();
+        }
+    }
+
+    /**
+     * Records a write: cached summaries become stale and the store needs saving.
+     */
+    private void written() {
+        version.incrementAndGet();
+        dirty.set(true);
+    }
+
+    private void flush() throws IOException {
+        if (dirty.getAndSet(false)) {
+            ExpenseFileEvent event = new ExpenseFileEvent("saveExpenses", null);
+            try {
+                store.save();
+            } catch (IOException e) {
+                event.fail();
+                dirty.set(true);
+                throw e;
+            } finally {
+                event.finish(store.size(), 0);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Error saving expenses: " + e.getMessage());
+        }
+    }
+
+    private JsonWriter streamJson(HttpExchange exchange, int status) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, 0);
+        return gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)));
+    }
+
+    private void sendExpense(HttpExchange exchange, int status, Expense expense, String id) throws IOException {
+        if (expense == null) {
+            sendError(exchange, status, "Expense with ID " + id + " not found.");
+            return;
+        }
+        send(exchange, status, gson.toJson(expense, Expense.class));
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JsonObject error = new JsonObject();
+        error.addProperty("error", message);
+        send(exchange, status, gson.toJson(error));
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static JsonObject readBody(HttpExchange exchange) throws IOException {
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            JsonElement body = JsonParser.parseReader(reader);
+            if (!body.isJsonObject()) {
+                throw new JsonParseException("Expected a JSON object");
+            }
+            return body.getAsJsonObject();
+        }
+    }
+
+    private static double amountOf(JsonObject body) {
+        JsonElement amount = body.get("amount");
+        if (amount == null || !amount.isJsonPrimitive()) {
+            throw new IllegalArgumentException("Missing amount");
+        }
+        return amount.getAsDouble();
+    }
+
+    private static String descriptionOf(JsonObject body) {
+        JsonElement description = body.get("description");
+        return description == null || description.isJsonNull() ? null : description.getAsString();
+    }
+
+    private static ExpenseCategory categoryOf(JsonObject body) {
+        JsonElement name = body.get("category");
+        ExpenseCategory category = name == null || name.isJsonNull() ? null : ExpenseCategory.fromName(name.getAsString().toUpperCase());
+        return category != null ? category : ExpenseCategory.OTHER;
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * A serialized summary, valid for as long as no write has happened since {@link #version}.
+     */
+    private static final class CachedResponse {
+        final long version;
+        final byte[] body;
+
+        CachedResponse(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+}
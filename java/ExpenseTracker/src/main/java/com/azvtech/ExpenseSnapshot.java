@@ -0,0 +1,453 @@
+package com.azvtech;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes expenses in a compact binary snapshot format.
+ *
+ * A snapshot is laid out as follows, with all variable-length integers encoded as
+ * unsigned LEB128 varints:
+ * <pre>
+ *   header      magic "EXPS", format version byte, record count, dictionary size
+ *   dictionary  one entry per description id: byte length followed by UTF-8 bytes
+ *   records     per expense:
+ *                 id           16 bytes, most significant long first
+ *                 flags        1 byte: category ordinal + 1 in the low nibble (0 = none),
+ *                              DATE_PRESENT and RAW_AMOUNT bits in the high nibble
+ *                 amount       zigzag varint of the amount in cents, or 8 raw bytes of the
+ *                              double when RAW_AMOUNT is set
+ *                 date         zigzag varint of the epoch day delta to the previous record
+ *                 description  dictionary index + 1 (0 = none)
+ *   trailer     CRC32 of every preceding byte, 4 bytes
+ * </pre>
+ *
+ * Files are read and written through {@link FileChannel}s with a fixed-size direct buffer,
+ * and writes go to a temporary file that replaces the snapshot only once it is complete.
+ */
+public class ExpenseSnapshot {
+    private static final byte[] MAGIC = {'E', 'X', 'P', 'S'};
+    private static final byte VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** The fewest bytes an expense takes: its id, flags and description index. */
+    private static final int MIN_EXPENSE_BYTES = 2 * Long.BYTES + 2;
+    /** The most elements a list is sized for before it is known to be worth it. */
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private static final int CATEGORY_MASK = 0x0F;
+    private static final int DATE_PRESENT = 0x10;
+    private static final int RAW_AMOUNT = 0x20;
+
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+    private static final long MIN_EPOCH_DAY = LocalDate.MIN.toEpochDay();
+    private static final long MAX_EPOCH_DAY = LocalDate.MAX.toEpochDay();
+
+    private ExpenseSnapshot() {
+    }
+
+    /**
+     * Writes the given expenses to a snapshot file, replacing it atomically.
+     *
+     * The dictionary their descriptions are interned in is written as is, so its ids become
+     * the snapshot's dictionary indexes without building a second dictionary. It must keep
+     * every one of those descriptions, under the same id, until this returns; a shared
+     * dictionary should be {@link DescriptionDictionary#pin() pinned} before the expenses
+     * are copied out of their ledgers.
+     *
+     * @param path         The snapshot file to write.
+     * @param expenses     The expenses to write, in the order they should be read back.
+     * @param descriptions The dictionary holding their descriptions.
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    public static void write(Path path, List<Expense> expenses, DescriptionDictionary descriptions) throws IOException {
+        write(path, expenses, expenses.size(), descriptions);
+    }
+
+    /**
+     * Writes the given expenses to a snapshot file, replacing it atomically.
+     *
+     * @param path     The snapshot file to write.
+     * @param expenses The expenses to write, in the order they should be read back.
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    public static void write(Path path, Iterable<Expense> expenses) throws IOException {
+        DescriptionDictionary dictionary = new DescriptionDictionary();
+        int count = 0;
+        for (Expense expense : expenses) {
+            dictionary.intern(expense.getDescription());
+            count++;
+        }
+        write(path, expenses, count, dictionary);
+    }
+
+    private static void write(Path path, Iterable<Expense> expenses, int count, DescriptionDictionary dictionary)
+            throws IOException {
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                write(channel, expenses, count, dictionary);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the given expenses in the snapshot format to a channel, which is left open.
+     *
+     * @param channel  The channel to write to.
+     * @param expenses The expenses to write, in the order they should be read back.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    static void write(WritableByteChannel channel, Iterable<Expense> expenses) throws IOException {
+        DescriptionDictionary dictionary = new DescriptionDictionary();
+        int count = 0;
+        for (Expense expense : expenses) {
+            dictionary.intern(expense.getDescription());
+            count++;
+        }
+        write(channel, expenses, count, dictionary);
+    }
+
+    private static void write(WritableByteChannel channel, Iterable<Expense> expenses, int count,
+                              DescriptionDictionary dictionary) throws IOException {
+        Output out = new Output(channel);
+        out.putBytes(MAGIC);
+        out.putByte(VERSION);
+        out.putVarint(count);
+        // Ids that are currently free are written as empty entries that no record refers to.
+        String[] descriptions = dictionary.toArray();
+        out.putVarint(descriptions.length);
+        for (String description : descriptions) {
+            byte[] bytes = description == null ? new byte[0] : description.getBytes(StandardCharsets.UTF_8);
+            out.putVarint(bytes.length);
+            out.putBytes(bytes);
+        }
+
+        long previousDay = 0;
+        for (Expense expense : expenses) {
+            UUID id = expense.getId();
+            out.putLong(id.getMostSignificantBits());
+            out.putLong(id.getLeastSignificantBits());
+
+            double amount = expense.getAmount();
+            long cents = Math.round(amount * 100);
+            boolean raw = Math.abs(cents) >= (1L << 52)
+                    || Double.doubleToLongBits(cents / 100.0) != Double.doubleToLongBits(amount);
+            ExpenseCategory category = expense.getCategory();
+            LocalDate date = expense.getDate();
+            int flags = category == null ? 0 : category.ordinal() + 1;
+            if (date != null) {
+                flags |= DATE_PRESENT;
+            }
+            if (raw) {
+                flags |= RAW_AMOUNT;
+            }
+            out.putByte((byte) flags);
+
+            if (raw) {
+                out.putLong(Double.doubleToRawLongBits(amount));
+            } else {
+                out.putVarint(zigzag(cents));
+            }
+            if (date != null) {
+                long day = date.toEpochDay();
+                out.putVarint(zigzag(day - previousDay));
+                previousDay = day;
+            }
+            String description = expense.getDescription();
+            out.putVarint(description == null ? 0 : dictionary.idOf(description) + 1);
+        }
+        out.finish();
+    }
+
+    /**
+     * Reads every expense from a snapshot file.
+     *
+     * @param path The snapshot file to read.
+     * @return The expenses, in the order they were written.
+     * @throws IOException If an I/O error occurs, or the file is not a valid snapshot.
+     */
+    public static List<Expense> read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel, path);
+        }
+    }
+
+    /**
+     * Reads every expense of a snapshot from a channel, which is left open.
+     *
+     * @param channel The channel to read from.
+     * @param path    The file the channel reads, for error messages.
+     * @return The expenses, in the order they were written.
+     * @throws IOException If an I/O error occurs, or the data is not a valid snapshot.
+     */
+    static List<Expense> read(ReadableByteChannel channel, Path path) throws IOException {
+        Input in = new Input(channel);
+        for (byte b : MAGIC) {
+            if (in.getByte() != b) {
+                throw new IOException("Not an expense snapshot: " + path);
+            }
+        }
+        byte version = in.getByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + " in " + path);
+        }
+        // Counts are checked against the bytes left before anything is sized by them, so a
+        // corrupt header cannot make the reader allocate far more than the file holds.
+        int count = in.getCount(MIN_EXPENSE_BYTES);
+        int descriptionCount = in.getCount(1);
+        List<String> descriptions = new ArrayList<>(Math.min(descriptionCount, INITIAL_CAPACITY));
+        for (int i = 0; i < descriptionCount; i++) {
+            descriptions.add(new String(in.getBytes(in.getCount(1)), StandardCharsets.UTF_8));
+        }
+
+        List<Expense> expenses = new ArrayList<>(Math.min(count, INITIAL_CAPACITY));
+        long previousDay = 0;
+        LocalDate previousDate = null;
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(in.getLong(), in.getLong());
+            int flags = in.getByte() & 0xFF;
+            double amount = (flags & RAW_AMOUNT) != 0
+                    ? Double.longBitsToDouble(in.getLong())
+                    : unzigzag(in.getVarint()) / 100.0;
+            LocalDate date = null;
+            if ((flags & DATE_PRESENT) != 0) {
+                long delta = unzigzag(in.getVarint());
+                if (delta != 0 || previousDate == null) {
+                    previousDay += delta;
+                    if (previousDay < MIN_EPOCH_DAY || previousDay > MAX_EPOCH_DAY) {
+                        throw new IOException("Corrupt expense snapshot: " + path);
+                    }
+                    previousDate = LocalDateAdapter.canonical(LocalDate.ofEpochDay(previousDay));
+                }
+                date = previousDate;
+            }
+            int descriptionIndex = (int) in.getVarint();
+            int categoryIndex = flags & CATEGORY_MASK;
+            if (descriptionIndex > descriptions.size() || categoryIndex > CATEGORIES.length) {
+                throw new IOException("Corrupt expense snapshot: " + path);
+            }
+            expenses.add(new Expense(id, amount,
+                    descriptionIndex == 0 ? null : descriptions.get(descriptionIndex - 1),
+                    date,
+                    categoryIndex == 0 ? null : CATEGORIES[categoryIndex - 1]));
+        }
+
+        long expected = in.checksum();
+        long actual = in.getInt() & 0xFFFFFFFFL;
+        if (expected != actual) {
+            throw new IOException("Checksum mismatch in expense snapshot: " + path);
+        }
+        return expenses;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A buffered writer over a channel that checksums everything it writes.
+     */
+    private static final class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putVarint(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Flushes the buffered bytes and appends the checksum trailer.
+         */
+        void finish() throws IOException {
+            drain();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * A buffered reader over a channel that checksums everything it consumes.
+     */
+    private static final class Input {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        /** Position in the buffer up to which consumed bytes have been checksummed. */
+        private int checksummed;
+
+        Input(ReadableByteChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        byte getByte() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        long getVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = getByte();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in expense snapshot");
+        }
+
+        /**
+         * Reads a count or length of items that take at least the given number of bytes each,
+         * and checks that what is left of the channel can hold them, where that is known.
+         */
+        int getCount(int bytesEach) throws IOException {
+            long count = getVarint();
+            if (count < 0 || count > Integer.MAX_VALUE || count > remaining() / bytesEach) {
+                throw new IOException("Corrupt expense snapshot: a count of " + count + " exceeds the data left");
+            }
+            return (int) count;
+        }
+
+        byte[] getBytes(int length) throws IOException {
+            byte[] bytes = new byte[Math.min(length, BUFFER_SIZE)];
+            int offset = 0;
+            while (offset < length) {
+                require(1);
+                if (offset == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return bytes;
+        }
+
+        /**
+         * Returns the number of bytes left to read, or {@link Long#MAX_VALUE} if the channel
+         * cannot tell.
+         */
+        long remaining() throws IOException {
+            if (!(channel instanceof SeekableByteChannel)) {
+                return Long.MAX_VALUE;
+            }
+            SeekableByteChannel seekable = (SeekableByteChannel) channel;
+            return buffer.remaining() + Math.max(0, seekable.size() - seekable.position());
+        }
+
+        /**
+         * Returns the checksum of every byte consumed so far.
+         */
+        long checksum() {
+            updateChecksum();
+            return crc.getValue();
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            updateChecksum();
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Truncated expense snapshot");
+                }
+            }
+            buffer.flip();
+            checksummed = 0;
+        }
+
+        private void updateChecksum() {
+            ByteBuffer consumed = buffer.duplicate();
+            consumed.limit(buffer.position()).position(checksummed);
+            crc.update(consumed);
+            checksummed = buffer.position();
+        }
+    }
+}
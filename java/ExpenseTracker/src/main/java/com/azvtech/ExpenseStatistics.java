@@ -0,0 +1,125 @@
+package com.azvtech;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The persisted amount sketches of a ledger, one per month and category.
+ *
+ * An {@link ExpenseStore} keeps an {@link AmountSketch} for every (year-month, category)
+ * pair up to date as expenses change, and saves them here next to the expense store,
+ * together with a fingerprint of the store file they describe. On the next load the
+ * sketches are taken over as they are, unless the fingerprint no longer matches, in
+ * which case the store rebuilds them from its expenses.
+ */
+public class ExpenseStatistics {
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    private final Map<YearMonth, AmountSketch[]> sketches = new HashMap<>();
+
+    /**
+     * Returns the sketch of a month and category.
+     *
+     * @param month    The month.
+     * @param category The category.
+     * @return The sketch, or {@code null} if there is none.
+     */
+    public AmountSketch get(YearMonth month, ExpenseCategory category) {
+        AmountSketch[] byCategory = sketches.get(month);
+        return byCategory == null ? null : byCategory[category.ordinal()];
+    }
+
+    /**
+     * Sets the sketch of a month and category.
+     *
+     * @param month    The month.
+     * @param category The category.
+     * @param sketch   The sketch of the amounts of that month and category.
+     */
+    public void put(YearMonth month, ExpenseCategory category, AmountSketch sketch) {
+        sketches.computeIfAbsent(month, m -> new AmountSketch[CATEGORIES.length])[category.ordinal()] = sketch;
+    }
+
+    /**
+     * Saves the statistics, tagged with the fingerprint of the store they describe.
+     *
+     * @param path        The file to save to.
+     * @param fingerprint The fingerprint of the expense store file.
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    public void save(Path path, String fingerprint) throws IOException {
+        Snapshot snapshot = new Snapshot();
+        snapshot.fingerprint = fingerprint;
+        for (Map.Entry<YearMonth, AmountSketch[]> entry : sketches.entrySet()) {
+            for (ExpenseCategory category : CATEGORIES) {
+                AmountSketch sketch = entry.getValue()[category.ordinal()];
+                if (sketch != null && !sketch.isEmpty()) {
+                    snapshot.sketches.put(entry.getKey() + ":" + category, sketch);
+                }
+            }
+        }
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            new Gson().toJson(snapshot, writer);
+        }
+    }
+
+    /**
+     * Loads previously saved statistics if they still describe the given store.
+     *
+     * @param path        The file to load from.
+     * @param fingerprint The current fingerprint of the expense store file.
+     * @return The statistics, or {@code null} if the file is missing, unreadable or stale.
+     */
+    public static ExpenseStatistics load(Path path, String fingerprint) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            Snapshot snapshot = new Gson().fromJson(reader, Snapshot.class);
+            if (snapshot == null || !fingerprint.equals(snapshot.fingerprint)) {
+                return null;
+            }
+            ExpenseStatistics statistics = new ExpenseStatistics();
+            for (Map.Entry<String, AmountSketch> entry : snapshot.sketches.entrySet()) {
+                String key = entry.getKey();
+                int separator = key.indexOf(':');
+                YearMonth month = YearMonth.parse(key.substring(0, separator));
+                ExpenseCategory category = ExpenseCategory.fromName(key.substring(separator + 1));
+                if (category != null) {
+                    statistics.put(month, category, entry.getValue());
+                }
+            }
+            return statistics;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a fingerprint of a store file that changes whenever the file is rewritten.
+     *
+     * @param store The expense store file.
+     * @return The fingerprint.
+     * @throws IOException If the file attributes cannot be read.
+     */
+    public static String fingerprint(Path store) throws IOException {
+        return store.getFileName() + ":" + Files.size(store) + ":" + Files.getLastModifiedTime(store).toMillis();
+    }
+
+    /**
+     * The persisted form of the statistics, keyed by "yyyy-MM:CATEGORY".
+     */
+    private static final class Snapshot {
+        String fingerprint;
+        Map<String, AmountSketch> sketches = new HashMap<>();
+    }
+}
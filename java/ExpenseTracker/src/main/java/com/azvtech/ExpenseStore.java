@@ -0,0 +1,1221 @@
+package com.azvtech;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread-safe store of expenses, persisted in a directory.
+ *
+ * Expenses are partitioned by the year-month of their date, and every partition is
+ * guarded by its own {@link StampedLock}, so writes to different months never contend.
+ * Each partition keeps its own ledger, date index, amount sketches and running totals; the
+ * ledgers share one {@link DescriptionDictionary}, which the snapshot and exports reuse.
+ * An id is routed to its partition through one of {@link #ID_STRIPES} striped id indexes;
+ * when both are needed, the id stripe is always locked before the partition.
+ *
+ * Totals and counts are read optimistically: a reader takes a stamp, reads the running
+ * totals of a partition and only falls back to a read lock if a writer got in between,
+ * so summaries never block behind inserts. Each partition is read consistently, but a
+ * summary across partitions is not a single atomic snapshot of the whole store.
+ *
+ * The store owns its expenses. They are copied on the way in and on the way out, so
+ * callers can never change an expense behind the store's back.
+ *
+ * Months can be moved out of the store into its {@link ExpenseArchive} with
+ * {@link #archive(YearMonth)}. Archived expenses still count in every total, listing and
+ * query, but they are read-only: {@link #get}, {@link #update} and {@link #remove} only see
+ * the expenses that were not archived. Totals, counts and sketches of archived months come
+ * from the block summaries, and queries only decompress the blocks they may match; a
+ * failure to read a block is reported as an {@link UncheckedIOException}.
+ */
+public class ExpenseStore {
+    /** The file where the expenses are stored in JSON format. */
+    public static final String EXPENSE_FILE = "expenses.json";
+
+    /**
+     * The file where the expenses are stored as a binary snapshot. When it exists it
+     * takes precedence over the JSON file. See {@link ExpenseSnapshot}.
+     */
+    public static final String SNAPSHOT_FILE = "expenses.bin";
+
+    /** The file where the amount sketches of {@link ExpenseStatistics} are persisted. */
+    public static final String STATISTICS_FILE = "expenses.stats.json";
+
+    /** The file where the {@link TrigramIndex} over the descriptions is persisted. */
+    public static final String SEARCH_FILE = "expenses.search";
+
+    /** The file where the budgets of {@link ExpenseBudgets} are persisted. */
+    public static final String BUDGET_FILE = "budgets.json";
+
+    /** The number of id index stripes; a power of two. */
+    static final int ID_STRIPES = 64;
+
+    private static final int STRIPE_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(ID_STRIPES);
+    /** How often a summary retries an optimistic read before taking the read lock. */
+    private static final int OPTIMISTIC_ATTEMPTS = 8;
+    /** The partition of expenses without a date. */
+    private static final YearMonth UNDATED = YearMonth.of(Year.MIN_VALUE, 1);
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    private final Path directory;
+    private final ConcurrentSkipListMap<YearMonth, Partition> partitions = new ConcurrentSkipListMap<>();
+    /** The partitions indexed by number, replaced under {@link #partitionLock} whenever one is created. */
+    private volatile Partition[] partitionsByNumber = new Partition[0];
+    private final Object partitionLock = new Object();
+    private final IdStripe[] stripes = new IdStripe[ID_STRIPES];
+    /** The descriptions of every expense in the partitions. */
+    private final DescriptionDictionary descriptions = new DescriptionDictionary();
+    private final ExpenseBudgets budgets = new ExpenseBudgets();
+    /** Serializes loads, saves and conversions. */
+    private final Object saveLock = new Object();
+    private volatile boolean binary;
+    /** The description search index, guarded by {@link #searchLock}. */
+    private TrigramIndex search = new TrigramIndex();
+    private final StampedLock searchLock = new StampedLock();
+    /**
+     * The writes that may change the search index, counted when they begin and when they are
+     * done, so a save can tell whether the live index matches the expenses it copied.
+     */
+    private final AtomicLong searchWritesBegun = new AtomicLong();
+    private final AtomicLong searchWritesDone = new AtomicLong();
+    private final ExpenseArchive archive;
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+            .create();
+
+    /**
+     * Creates an empty store that keeps its files in the given directory.
+     *
+     * @param directory The directory holding the expense store files.
+     */
+    public ExpenseStore(Path directory) {
+        this.directory = directory;
+        this.archive = new ExpenseArchive(directory);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new IdStripe();
+        }
+    }
+
+    /**
+     * Adds a copy of an expense to the store.
+     *
+     * @param expense The expense to add.
+     * @return {@code true} if the expense was added, {@code false} if an expense with the same id is already present.
+     */
+    public boolean add(Expense expense) {
+        return insert(copyOf(expense), true);
+    }
+
+    /**
+     * Finds an expense by its unique identifier.
+     *
+     * @param id The unique identifier of the expense.
+     * @return A copy of the expense, or {@code null} if no expense has that id.
+     */
+    public Expense get(UUID id) {
+        IdStripe stripe = stripeOf(id);
+        long stripeStamp = stripe.lock.readLock();
+        try {
+            int number = stripe.index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (number < 0) {
+                return null;
+            }
+            Partition partition = partitionsByNumber[number];
+            long stamp = partition.lock.readLock();
+            try {
+                return copyOf(partition.ledger.get(id));
+            } finally {
+                partition.lock.unlockRead(stamp);
+            }
+        } finally {
+            stripe.lock.unlockRead(stripeStamp);
+        }
+    }
+
+    /**
+     * Changes the amount, description and category of an expense. Its date, and so its
+     * partition, stays the same.
+     *
+     * @param id          The unique identifier of the expense.
+     * @param amount      The new amount.
+     * @param description The new description.
+     * @param category    The new category.
+     * @return A copy of the updated expense, or {@code null} if no expense has that id.
+     */
+    public Expense update(UUID id, double amount, String description, ExpenseCategory category) {
+        IdStripe stripe = stripeOf(id);
+        Partition partition;
+        Expense updated;
+        double[] before;
+        double[] after;
+        long stripeStamp = stripe.lock.writeLock();
+        try {
+            int number = stripe.index.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (number < 0) {
+                return null;
+            }
+            partition = partitionsByNumber[number];
+            searchWritesBegun.incrementAndGet();
+            long stamp = partition.lock.writeLock();
+            String previousDescription;
+            try {
+                before = budgetTotals(partition);
+                Expense expense = partition.ledger.get(id);
+                previousDescription = expense.getDescription();
+                partition.unaccount(expense);
+                expense.setAmount(amount);
+                partition.ledger.setDescription(expense, description);
+                expense.setCategory(category);
+                partition.account(expense, true);
+                updated = copyOf(expense);
+                after = before == null ? null : budgetTotals(partition);
+            } finally {
+                partition.lock.unlockWrite(stamp);
+            }
+            if (!Objects.equals(previousDescription, updated.getDescription())) {
+                reindex(previousDescription, updated.getDescription(), id);
+            }
+            searchWritesDone.incrementAndGet();
+        } finally {
+            stripe.lock.unlockWrite(stripeStamp);
+        }
+        if (after != null) {
+            budgets.written(partition.month, before, after);
+        }
+        return updated;
+    }
+
+    /**
+     * Removes an expense by its unique identifier.
+     *
+     * @param id The unique identifier of the expense.
+     * @return The removed expense, or {@code null} if no expense has that id.
+     */
+    public Expense remove(UUID id) {
+        IdStripe stripe = stripeOf(id);
+        long stripeStamp = stripe.lock.writeLock();
+        try {
+            int number = stripe.index.remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (number < 0) {
+                return null;
+            }
+            Partition partition = partitionsByNumber[number];
+            searchWritesBegun.incrementAndGet();
+            long stamp = partition.lock.writeLock();
+            Expense removed;
+            try {
+                removed = partition.ledger.remove(id);
+                partition.unaccount(removed);
+            } finally {
+                partition.lock.unlockWrite(stamp);
+            }
+            reindex(removed.getDescription(), null, id);
+            searchWritesDone.incrementAndGet();
+            return removed;
+        } finally {
+            stripe.lock.unlockWrite(stripeStamp);
+        }
+    }
+
+    /**
+     * Returns the number of expenses in the store.
+     */
+    public int size() {
+        long size = 0;
+        for (Partition partition : partitions.values()) {
+            size += countOptimistically(partition, Partition::size);
+        }
+        for (ExpenseArchive.Summary block : archive.summaries().values()) {
+            size += block.count();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of expenses dated in a month of any year.
+     *
+     * @param month The month.
+     * @return The number of expenses.
+     */
+    public int size(Month month) {
+        long size = 0;
+        for (Partition partition : partitions.values()) {
+            if (partition.month != UNDATED && partition.month.getMonth() == month) {
+                size += countOptimistically(partition, Partition::size);
+            }
+        }
+        for (ExpenseArchive.Summary block : archive.summaries().values()) {
+            if (block.isIn(month)) {
+                size += block.count();
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the total amount of every expense in the store.
+     */
+    public double total() {
+        double total = 0;
+        for (Partition partition : partitions.values()) {
+            total += readOptimistically(partition, Partition::total);
+        }
+        for (ExpenseArchive.Summary block : archive.summaries().values()) {
+            total += block.total();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total amount of the expenses dated in a month of any year.
+     *
+     * @param month The month.
+     * @return The total amount.
+     */
+    public double total(Month month) {
+        double total = 0;
+        for (Partition partition : partitions.values()) {
+            if (partition.month != UNDATED && partition.month.getMonth() == month) {
+                total += readOptimistically(partition, Partition::total);
+            }
+        }
+        for (ExpenseArchive.Summary block : archive.summaries().values()) {
+            if (block.isIn(month)) {
+                total += block.total();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total amount of the expenses of a category dated in a year-month.
+     *
+     * @param month    The year-month.
+     * @param category The category, or {@code null} for every category.
+     * @return The total amount.
+     */
+    public double total(YearMonth month, ExpenseCategory category) {
+        double total = 0;
+        Partition partition = partitions.get(month);
+        if (partition != null) {
+            total += category == null
+                    ? readOptimistically(partition, Partition::total)
+                    : readOptimistically(partition, p -> p.totals[category.ordinal()]);
+        }
+        ExpenseArchive.Summary block = archive.summaries().get(month);
+        if (block != null) {
+            total += category == null ? block.total() : block.totals[category.ordinal()];
+        }
+        return total;
+    }
+
+    /**
+     * Returns every expense, ordered by month and, within a month, in the order they were added.
+     */
+    public List<Expense> list() {
+        return collect(partitions, archive.summaries(), block -> true, expense -> true);
+    }
+
+    /**
+     * Passes copies of the matching expenses to a visitor, in the order of {@link #list()}.
+     *
+     * The expenses are copied one month at a time under that month's read lock, and are
+     * handed over after the lock is released, so a slow visitor such as a network client
+     * never holds up writers, and at most one month is held in memory at a time. Archived
+     * months are decompressed one block at a time in the same way.
+     *
+     * @param filter  The expenses to visit.
+     * @param visitor The visitor.
+     * @throws IOException If the visitor throws it; the remaining expenses are not visited.
+     */
+    public void forEach(Predicate<Expense> filter, Visitor visitor) throws IOException {
+        visit(partitions, archive.summaries(), block -> true, filter, visitor);
+    }
+
+    /**
+     * Returns the expenses dated in a month of any year.
+     *
+     * @param month The month.
+     * @return The matching expenses.
+     */
+    public List<Expense> list(Month month) {
+        NavigableMap<YearMonth, Partition> matching = new ConcurrentSkipListMap<>();
+        for (Partition partition : partitions.values()) {
+            if (partition.month != UNDATED && partition.month.getMonth() == month) {
+                matching.put(partition.month, partition);
+            }
+        }
+        return collect(matching, archive.summaries(), block -> block.isIn(month), expense -> true);
+    }
+
+    /**
+     * Returns the expenses of a category.
+     *
+     * @param category The category.
+     * @return The matching expenses.
+     */
+    public List<Expense> list(ExpenseCategory category) {
+        return collect(partitions, archive.summaries(), block -> block.count(category) > 0,
+                expense -> expense.getCategory() == category);
+    }
+
+    /**
+     * Returns the expenses dated within a range, in date order.
+     *
+     * @param from     The first day of the range, inclusive.
+     * @param to       The last day of the range, inclusive.
+     * @param category The category to return, or {@code null} for every category.
+     * @return The matching expenses.
+     */
+    public List<Expense> range(LocalDate from, LocalDate to, ExpenseCategory category) {
+        List<Expense> result = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return result;
+        }
+        NavigableMap<YearMonth, ExpenseArchive.Summary> cold = archive.summaries().subMap(YearMonth.from(from), true, YearMonth.from(to), true);
+        for (ExpenseArchive.Summary block : cold.values()) {
+            if (category == null || block.count(category) > 0) {
+                archived(block, from, to, category, expense -> true, result);
+            }
+        }
+        int archived = result.size();
+        for (Partition partition : partitionsBetween(from, to).values()) {
+            long stamp = partition.lock.readLock();
+            try {
+                for (Expense expense : partition.dateIndex.range(from, to, category)) {
+                    result.add(copyOf(expense));
+                }
+            } finally {
+                partition.lock.unlockRead(stamp);
+            }
+        }
+        if (archived > 0 && archived < result.size()) {
+            // Months can get new expenses after they were archived.
+            result.sort(Comparator.comparing(Expense::getDate));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the expenses whose description contains a text, ignoring case, optionally
+     * narrowed to a category and a date range.
+     *
+     * Candidates come from the trigram index over the descriptions, so the cost follows
+     * the number of matches rather than the size of the store. When a date range holds
+     * fewer expenses than there are matches, the range is scanned through the date
+     * index instead. Archived months are only decompressed if the summary of their block
+     * holds a matching description.
+     *
+     * @param query    The text to look for.
+     * @param from     The first day of the range, inclusive, or {@code null} for no lower bound.
+     * @param to       The last day of the range, inclusive, or {@code null} for no upper bound.
+     * @param category The category to return, or {@code null} for every category.
+     * @return The matching expenses in date order, followed by matching expenses without a date.
+     */
+    public List<Expense> search(String query, LocalDate from, LocalDate to, ExpenseCategory category) {
+        List<UUID> ids;
+        long stamp = searchLock.readLock();
+        try {
+            ids = search.search(query);
+        } finally {
+            searchLock.unlockRead(stamp);
+        }
+
+        String lower = query.toLowerCase(Locale.ROOT);
+        Predicate<Expense> matches = expense -> expense.getDescription() != null
+                && expense.getDescription().toLowerCase(Locale.ROOT).contains(lower);
+        boolean dated = from != null || to != null;
+        LocalDate first = from != null ? from : LocalDate.MIN;
+        LocalDate last = to != null ? to : LocalDate.MAX;
+        List<Expense> result = new ArrayList<>();
+        for (ExpenseArchive.Summary block : archive.summaries().subMap(YearMonth.from(first), true, YearMonth.from(last), true).values()) {
+            if ((category == null || block.count(category) > 0) && block.mayContain(lower)) {
+                archived(block, first, last, category, matches, result);
+            }
+        }
+
+        if (dated) {
+            long inRange = 0;
+            NavigableMap<YearMonth, Partition> hot = partitionsBetween(first, last);
+            for (Partition partition : hot.values()) {
+                inRange += countOptimistically(partition, Partition::size);
+            }
+            if (inRange < ids.size()) {
+                for (Partition partition : hot.values()) {
+                    stamp = partition.lock.readLock();
+                    try {
+                        for (Expense expense : partition.dateIndex.range(first, last, category)) {
+                            if (matches.test(expense)) {
+                                result.add(copyOf(expense));
+                            }
+                        }
+                    } finally {
+                        partition.lock.unlockRead(stamp);
+                    }
+                }
+                result.sort(Comparator.comparing(Expense::getDate));
+                return result;
+            }
+        }
+
+        for (UUID id : ids) {
+            Expense expense = get(id);
+            if (expense == null
+                    || (category != null && expense.getCategory() != category)
+                    || (dated && expense.getDate() == null)
+                    || (from != null && expense.getDate().isBefore(from))
+                    || (to != null && expense.getDate().isAfter(to))) {
+                continue;
+            }
+            result.add(expense);
+        }
+        result.sort(Comparator.comparing(Expense::getDate, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    /**
+     * Returns the largest expenses of a report period, largest first.
+     *
+     * @param period The report period.
+     * @param n      The maximum number of expenses to return.
+     * @return The largest expenses.
+     */
+    public List<Expense> largest(ReportPeriod period, int n) {
+        return ExpenseQueries.largest(range(period.getStart(), period.getEnd(), null), n, expense -> true);
+    }
+
+    /**
+     * Returns the merged amount sketch of a category over a report period.
+     *
+     * @param period   The report period.
+     * @param category The category, or {@code null} for every category.
+     * @return A sketch of the amounts of the matching expenses.
+     */
+    public AmountSketch sketch(ReportPeriod period, ExpenseCategory category) {
+        AmountSketch merged = new AmountSketch();
+        for (Partition partition : partitions.subMap(period.getFirst(), true, period.getLast(), true).values()) {
+            long stamp = partition.lock.readLock();
+            try {
+                for (ExpenseCategory each : CATEGORIES) {
+                    if (category == null || category == each) {
+                        merged.merge(partition.sketches[each.ordinal()]);
+                    }
+                }
+            } finally {
+                partition.lock.unlockRead(stamp);
+            }
+        }
+        for (ExpenseArchive.Summary block : archive.summaries().subMap(period.getFirst(), true, period.getLast(), true).values()) {
+            for (ExpenseCategory each : CATEGORIES) {
+                if (category == null || category == each) {
+                    merged.merge(block.sketch(each));
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Sets a budget.
+     *
+     * @param month    The year-month.
+     * @param category The category, or {@code null} for the whole month.
+     * @param amount   The budget amount.
+     */
+    public void setBudget(YearMonth month, ExpenseCategory category, double amount) {
+        budgets.set(month, category, amount);
+    }
+
+    /**
+     * Returns a budget.
+     *
+     * @param month    The year-month.
+     * @param category The category, or {@code null} for the whole month.
+     * @return The budget amount, or {@code null} if none is set.
+     */
+    public Double getBudget(YearMonth month, ExpenseCategory category) {
+        return budgets.get(month, category);
+    }
+
+    /**
+     * Returns the share of a budget spent so far, from the running totals, so in constant
+     * time whatever the size of the store.
+     *
+     * @param month    The year-month.
+     * @param category The category, or {@code null} for the whole month.
+     * @return The spent amount divided by the budget, or {@code null} if no budget is set.
+     */
+    public Double budgetUsage(YearMonth month, ExpenseCategory category) {
+        Double budget = budgets.get(month, category);
+        return budget == null ? null : total(month, category) / budget;
+    }
+
+    /**
+     * Registers a listener for spending that crosses {@link ExpenseBudgets#THRESHOLDS} of a
+     * budget. It is called on the writing thread once the write is applied.
+     *
+     * @param listener The listener.
+     */
+    public void addBudgetListener(ExpenseBudgets.Listener listener) {
+        budgets.addListener(listener);
+    }
+
+    public void removeBudgetListener(ExpenseBudgets.Listener listener) {
+        budgets.removeListener(listener);
+    }
+
+    /**
+     * Moves the expenses dated before a month into the archive, one compressed block per
+     * month, saving the store after each month.
+     *
+     * Each month is written to its archive block before it is removed from the store and the
+     * store is saved, so a failure in between leaves the expenses in both places rather than
+     * in neither. Such expenses are dropped from the store when it is next loaded, and are
+     * not archived twice if the archive is run again. Archiving is meant for months that are
+     * no longer written to; a write to a month while it is being archived may be lost.
+     * Expenses without a date are never archived.
+     *
+     * @param before The first month to keep in the store.
+     * @return The number of expenses archived.
+     * @throws IOException If an I/O error occurs while writing the archive or the store.
+     */
+    public int archive(YearMonth before) throws IOException {
+        synchronized (saveLock) {
+            int archived = 0;
+            for (Partition partition : partitions.headMap(before, false).values()) {
+                if (partition.month == UNDATED) {
+                    continue;
+                }
+                List<Expense> expenses = new ArrayList<>();
+                partition.collect(expense -> true, expenses);
+                if (expenses.isEmpty()) {
+                    continue;
+                }
+                archive.append(partition.month, expenses);
+                for (Expense expense : expenses) {
+                    remove(expense.getId());
+                }
+                save();
+                archived += expenses.size();
+            }
+            return archived;
+        }
+    }
+
+    /**
+     * Returns the dictionary of the descriptions of the expenses in the store, for exports
+     * to escape each distinct description once; see {@link DescriptionDictionary#csvField}.
+     */
+    DescriptionDictionary descriptions() {
+        return descriptions;
+    }
+
+    /**
+     * Returns whether the store is persisted as a binary snapshot rather than as JSON.
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Loads the expenses from the binary snapshot if one exists, or otherwise from the
+     * JSON file, replacing the contents of the store. If neither file exists the store
+     * is left as it is.
+     *
+     * The persisted amount statistics are taken over if they were saved for this version
+     * of the store file, and rebuilt from the loaded expenses otherwise; so is the description
+     * search index. The budgets and the summaries of the archive blocks are loaded too;
+     * a block is only decompressed when the store still holds expenses of its month, to drop
+     * those the block already has. Loading is meant to happen before the store is shared;
+     * writes running concurrently with a load may be lost.
+     *
+     * @throws IOException If an I/O error occurs while reading a file.
+     */
+    public void load() throws IOException {
+        synchronized (saveLock) {
+            archive.load();
+            budgets.load(directory.resolve(BUDGET_FILE));
+            List<Expense> loaded;
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            Path json = directory.resolve(EXPENSE_FILE);
+            if (Files.exists(snapshot)) {
+                binary = true;
+                loaded = ExpenseSnapshot.read(snapshot);
+            } else if (Files.exists(json)) {
+                try (Reader reader = Files.newBufferedReader(json, StandardCharsets.UTF_8)) {
+                    Type expenseListType = new TypeToken<List<Expense>>() {}.getType();
+                    loaded = gson.fromJson(reader, expenseListType);
+                }
+                if (loaded == null) {
+                    return;
+                }
+            } else {
+                return;
+            }
+
+            int count = loaded.size();
+            loaded = withoutArchived(loaded);
+            clear();
+            for (Expense expense : loaded) {
+                insert(expense, false);
+            }
+            // What was persisted for the file also covers any expenses dropped as archived.
+            boolean current = loaded.size() == count;
+            String fingerprint = ExpenseStatistics.fingerprint(storeFile());
+            TrigramIndex persisted = current ? TrigramIndex.load(directory.resolve(SEARCH_FILE), fingerprint) : null;
+            long searchStamp = searchLock.writeLock();
+            try {
+                search = persisted != null ? persisted : TrigramIndex.of(loaded);
+            } finally {
+                searchLock.unlockWrite(searchStamp);
+            }
+            ExpenseStatistics statistics = current ? ExpenseStatistics.load(directory.resolve(STATISTICS_FILE), fingerprint) : null;
+            for (Partition partition : partitions.values()) {
+                long stamp = partition.lock.writeLock();
+                try {
+                    partition.restoreSketches(statistics);
+                } finally {
+                    partition.lock.unlockWrite(stamp);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the expenses that are not in an archive block already. An archive run that
+     * failed after writing the block of a month but before saving the store leaves the
+     * expenses of that month in both.
+     */
+    private List<Expense> withoutArchived(List<Expense> expenses) throws IOException {
+        Set<YearMonth> months = new HashSet<>();
+        for (Expense expense : expenses) {
+            if (expense.getDate() != null && archive.summaries().containsKey(YearMonth.from(expense.getDate()))) {
+                months.add(YearMonth.from(expense.getDate()));
+            }
+        }
+        if (months.isEmpty()) {
+            return expenses;
+        }
+        Set<UUID> archived = new HashSet<>();
+        for (YearMonth month : months) {
+            for (Expense expense : archive.read(month)) {
+                archived.add(expense.getId());
+            }
+        }
+        List<Expense> kept = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            if (!archived.contains(expense.getId())) {
+                kept.add(expense);
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Saves the expenses in the current store format, followed by their amount statistics,
+     * description search index and the budgets.
+     *
+     * Each partition is copied under its read lock and written out after the lock is
+     * released, so writers are only held up for the time it takes to copy one month. The
+     * live search index is saved as it is if no write that changes it ran while the months
+     * were copied, and is rebuilt from the copied expenses otherwise.
+     *
+     * @throws IOException If an I/O error occurs while writing a file.
+     */
+    public void save() throws IOException {
+        synchronized (saveLock) {
+            // Done before begun: if they are equal, no write was under way when the copy began.
+            long searchWritesDoneBefore = searchWritesDone.get();
+            long searchWritesBegunBefore = searchWritesBegun.get();
+            ExpenseStatistics statistics = new ExpenseStatistics();
+            List<Expense> snapshot = new ArrayList<>();
+            // Keeps the ids of the copied descriptions valid until the snapshot is written.
+            descriptions.pin();
+            try {
+                for (Partition partition : partitions.values()) {
+                    long stamp = partition.lock.readLock();
+                    try {
+                        partition.copy(expense -> true, snapshot);
+                        if (partition.month != UNDATED) {
+                            for (ExpenseCategory category : CATEGORIES) {
+                                statistics.put(partition.month, category, partition.sketches[category.ordinal()].copy());
+                            }
+                        }
+                    } finally {
+                        partition.lock.unlockRead(stamp);
+                    }
+                }
+
+                if (binary) {
+                    ExpenseSnapshot.write(directory.resolve(SNAPSHOT_FILE), snapshot, descriptions);
+                } else {
+                    Writer file = Files.newBufferedWriter(directory.resolve(EXPENSE_FILE), StandardCharsets.UTF_8);
+                    try (JsonWriter writer = gson.newJsonWriter(file)) {
+                        writer.beginArray();
+                        for (Expense expense : snapshot) {
+                            gson.toJson(expense, Expense.class, writer);
+                        }
+                        writer.endArray();
+                    }
+                }
+            } finally {
+                descriptions.unpin();
+            }
+            String fingerprint = ExpenseStatistics.fingerprint(storeFile());
+            statistics.save(directory.resolve(STATISTICS_FILE), fingerprint);
+            // A write that begins after this check cannot reach the index before the read
+            // lock is released, so the serialized index matches the copied expenses.
+            byte[] searchIndex = null;
+            long searchStamp = searchLock.readLock();
+            try {
+                if (searchWritesDoneBefore == searchWritesBegunBefore && searchWritesBegun.get() == searchWritesBegunBefore) {
+                    searchIndex = search.serialize(fingerprint);
+                }
+            } finally {
+                searchLock.unlockRead(searchStamp);
+            }
+            if (searchIndex != null) {
+                TrigramIndex.write(directory.resolve(SEARCH_FILE), searchIndex);
+            } else {
+                TrigramIndex.of(snapshot).save(directory.resolve(SEARCH_FILE), fingerprint);
+            }
+            budgets.save(directory.resolve(BUDGET_FILE));
+        }
+    }
+
+    /**
+     * Converts the store to the given format. The expenses are written in the new format
+     * first, and the file holding the old format is deleted only after that write succeeded.
+     *
+     * @param toBinary {@code true} to convert to the binary snapshot, {@code false} to convert to JSON.
+     * @throws IOException If an I/O error occurs while writing or deleting a file.
+     */
+    public void convert(boolean toBinary) throws IOException {
+        synchronized (saveLock) {
+            binary = toBinary;
+            save();
+            Files.deleteIfExists(directory.resolve(toBinary ? EXPENSE_FILE : SNAPSHOT_FILE));
+        }
+    }
+
+    /**
+     * Returns the file the expenses are persisted to in the current store format.
+     */
+    private Path storeFile() {
+        return directory.resolve(binary ? SNAPSHOT_FILE : EXPENSE_FILE);
+    }
+
+    /**
+     * Removes every expense, keeping the partitions themselves so that their numbers stay valid.
+     */
+    private void clear() {
+        for (IdStripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.index.clear();
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+        for (Partition partition : partitions.values()) {
+            long stamp = partition.lock.writeLock();
+            try {
+                partition.clear();
+            } finally {
+                partition.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Inserts an expense the store takes ownership of.
+     *
+     * @param expense The expense.
+     * @param indexed Whether to count the amount in the partition's sketch, index the
+     *                description and check the budgets right away; bulk loads restore or
+     *                rebuild the first two once at the end instead, and raise no alerts.
+     */
+    private boolean insert(Expense expense, boolean indexed) {
+        UUID id = expense.getId();
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        IdStripe stripe = stripeOf(id);
+        Partition partition;
+        double[] before = null;
+        double[] after = null;
+        long stripeStamp = stripe.lock.writeLock();
+        try {
+            if (stripe.index.get(msb, lsb) >= 0) {
+                return false;
+            }
+            partition = partitionOf(expense.getDate());
+            searchWritesBegun.incrementAndGet();
+            long stamp = partition.lock.writeLock();
+            try {
+                if (indexed) {
+                    before = budgetTotals(partition);
+                }
+                partition.ledger.add(expense);
+                partition.account(expense, indexed);
+                after = before == null ? null : budgetTotals(partition);
+            } finally {
+                partition.lock.unlockWrite(stamp);
+            }
+            stripe.index.put(msb, lsb, partition.number);
+            if (indexed) {
+                reindex(null, expense.getDescription(), id);
+            }
+            searchWritesDone.incrementAndGet();
+        } finally {
+            stripe.lock.unlockWrite(stripeStamp);
+        }
+        if (after != null) {
+            budgets.written(partition.month, before, after);
+        }
+        return true;
+    }
+
+    /**
+     * Returns a copy of the running totals of a partition's month, including its archive
+     * block, if the month has a budget; called under the partition's write lock.
+     */
+    private double[] budgetTotals(Partition partition) {
+        if (!budgets.has(partition.month)) {
+            return null;
+        }
+        double[] totals = partition.totals.clone();
+        ExpenseArchive.Summary block = archive.summaries().get(partition.month);
+        if (block != null) {
+            for (int slot = 0; slot < totals.length; slot++) {
+                totals[slot] += block.totals[slot];
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Moves an expense from one description to another in the search index; either may be
+     * {@code null} for an expense that is being added or removed.
+     */
+    private void reindex(String previousDescription, String description, UUID id) {
+        long stamp = searchLock.writeLock();
+        try {
+            search.remove(previousDescription, id);
+            search.add(description, id);
+        } finally {
+            searchLock.unlockWrite(stamp);
+        }
+    }
+
+    private IdStripe stripeOf(UUID id) {
+        return stripes[(int) ((id.getMostSignificantBits() ^ id.getLeastSignificantBits()) >>> STRIPE_SHIFT)];
+    }
+
+    private Partition partitionOf(LocalDate date) {
+        YearMonth month = date == null ? UNDATED : YearMonth.from(date);
+        Partition partition = partitions.get(month);
+        if (partition != null) {
+            return partition;
+        }
+        synchronized (partitionLock) {
+            partition = partitions.get(month);
+            if (partition == null) {
+                Partition[] byNumber = Arrays.copyOf(partitionsByNumber, partitionsByNumber.length + 1);
+                partition = new Partition(byNumber.length - 1, month, descriptions);
+                byNumber[partition.number] = partition;
+                partitionsByNumber = byNumber;
+                partitions.put(month, partition);
+            }
+            return partition;
+        }
+    }
+
+    private NavigableMap<YearMonth, Partition> partitionsBetween(LocalDate from, LocalDate to) {
+        YearMonth first = YearMonth.from(from);
+        boolean inclusive = first.isAfter(UNDATED);
+        return partitions.subMap(inclusive ? first : UNDATED, inclusive, YearMonth.from(to), true);
+    }
+
+    private List<Expense> collect(NavigableMap<YearMonth, Partition> hot, NavigableMap<YearMonth, ExpenseArchive.Summary> cold,
+                                  Predicate<ExpenseArchive.Summary> blocks, Predicate<Expense> filter) {
+        List<Expense> result = new ArrayList<>();
+        try {
+            visit(hot, cold, blocks, filter, result::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    /**
+     * Visits the matching expenses month by month, the archived expenses of a month first,
+     * decompressing only the archive blocks accepted by {@code blocks}.
+     */
+    private void visit(NavigableMap<YearMonth, Partition> hot, NavigableMap<YearMonth, ExpenseArchive.Summary> cold,
+                       Predicate<ExpenseArchive.Summary> blocks, Predicate<Expense> filter, Visitor visitor) throws IOException {
+        List<Expense> batch = new ArrayList<>();
+        for (YearMonth month : monthsOf(hot, cold)) {
+            batch.clear();
+            ExpenseArchive.Summary block = cold.get(month);
+            if (block != null && blocks.test(block)) {
+                for (Expense expense : archive.read(month)) {
+                    if (filter.test(expense)) {
+                        batch.add(expense);
+                    }
+                }
+            }
+            Partition partition = hot.get(month);
+            if (partition != null) {
+                partition.collect(filter, batch);
+            }
+            for (Expense expense : batch) {
+                visitor.visit(expense);
+            }
+        }
+    }
+
+    private static TreeSet<YearMonth> monthsOf(NavigableMap<YearMonth, Partition> hot, NavigableMap<YearMonth, ExpenseArchive.Summary> cold) {
+        TreeSet<YearMonth> months = new TreeSet<>(hot.keySet());
+        months.addAll(cold.keySet());
+        return months;
+    }
+
+    /**
+     * Decompresses an archive block and appends its matching expenses dated within a range,
+     * in date order.
+     */
+    private void archived(ExpenseArchive.Summary block, LocalDate from, LocalDate to, ExpenseCategory category,
+                          Predicate<Expense> filter, List<Expense> result) {
+        List<Expense> expenses;
+        try {
+            expenses = archive.read(block.getMonth());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int first = result.size();
+        for (Expense expense : expenses) {
+            if ((category == null || expense.getCategory() == category)
+                    && !expense.getDate().isBefore(from) && !expense.getDate().isAfter(to)
+                    && filter.test(expense)) {
+                result.add(expense);
+            }
+        }
+        result.subList(first, result.size()).sort(Comparator.comparing(Expense::getDate));
+    }
+
+    /**
+     * Reads a value of a partition under an optimistic stamp, retrying a few times and
+     * falling back to a read lock if writers keep invalidating it.
+     */
+    private static double readOptimistically(Partition partition, ToDoubleFunction<Partition> reader) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = partition.lock.tryOptimisticRead();
+            if (stamp != 0) {
+                double value = reader.applyAsDouble(partition);
+                if (partition.lock.validate(stamp)) {
+                    return value;
+                }
+            }
+        }
+        long stamp = partition.lock.readLock();
+        try {
+            return reader.applyAsDouble(partition);
+        } finally {
+            partition.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reads a count of a partition like {@link #readOptimistically}.
+     */
+    private static long countOptimistically(Partition partition, ToLongFunction<Partition> reader) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = partition.lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long value = reader.applyAsLong(partition);
+                if (partition.lock.validate(stamp)) {
+                    return value;
+                }
+            }
+        }
+        long stamp = partition.lock.readLock();
+        try {
+            return reader.applyAsLong(partition);
+        } finally {
+            partition.lock.unlockRead(stamp);
+        }
+    }
+
+    private static Expense copyOf(Expense expense) {
+        return expense == null ? null : new Expense(expense.getId(), expense.getAmount(),
+                expense.getDescription(), expense.getDate(), expense.getCategory());
+    }
+
+    /**
+     * Receives the expenses of {@link #forEach(Predicate, Visitor)}.
+     */
+    public interface Visitor {
+        void visit(Expense expense) throws IOException;
+    }
+
+    /**
+     * An id index stripe, mapping ids to partition numbers.
+     */
+    private static final class IdStripe {
+        final StampedLock lock = new StampedLock();
+        final ExpenseIdIndex index = new ExpenseIdIndex();
+    }
+
+    /**
+     * The expenses of one year-month and everything derived from them, guarded by {@link #lock}.
+     */
+    private static final class Partition {
+        final int number;
+        final YearMonth month;
+        final StampedLock lock = new StampedLock();
+        final ExpenseLedger ledger;
+        final ExpenseDateIndex dateIndex = new ExpenseDateIndex();
+        final AmountSketch[] sketches = new AmountSketch[CATEGORIES.length];
+        /** The running total and count per category, plus a last slot for expenses without a category. */
+        final double[] totals = new double[CATEGORIES.length + 1];
+        final long[] counts = new long[CATEGORIES.length + 1];
+
+        Partition(int number, YearMonth month, DescriptionDictionary descriptions) {
+            this.number = number;
+            this.month = month;
+            this.ledger = new ExpenseLedger(descriptions);
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i] = new AmountSketch();
+            }
+        }
+
+        void account(Expense expense, boolean sketched) {
+            int slot = slotOf(expense.getCategory());
+            totals[slot] += expense.getAmount();
+            counts[slot]++;
+            dateIndex.add(expense);
+            if (sketched && expense.getCategory() != null) {
+                sketches[slot].add(expense.getAmount());
+            }
+        }
+
+        void unaccount(Expense expense) {
+            int slot = slotOf(expense.getCategory());
+            totals[slot] -= expense.getAmount();
+            counts[slot]--;
+            dateIndex.remove(expense);
+            if (expense.getCategory() != null) {
+                sketches[slot].remove(expense.getAmount());
+            }
+        }
+
+        /**
+         * Takes over the persisted sketches of this month, or rebuilds them from the ledger
+         * if there are none.
+         */
+        void restoreSketches(ExpenseStatistics statistics) {
+            for (ExpenseCategory category : CATEGORIES) {
+                AmountSketch persisted = statistics == null ? null : statistics.get(month, category);
+                sketches[category.ordinal()] = persisted != null ? persisted : new AmountSketch();
+            }
+            if (statistics == null) {
+                for (Expense expense : ledger) {
+                    if (expense.getCategory() != null) {
+                        sketches[expense.getCategory().ordinal()].add(expense.getAmount());
+                    }
+                }
+            }
+        }
+
+        /** Appends copies of the matching expenses under the read lock. */
+        void collect(Predicate<Expense> filter, List<Expense> result) {
+            long stamp = lock.readLock();
+            try {
+                copy(filter, result);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Appends copies of the matching expenses; called with the lock already held, since
+         * a {@link StampedLock} is not reentrant and a second read lock can queue behind a
+         * waiting writer.
+         */
+        void copy(Predicate<Expense> filter, List<Expense> result) {
+            for (Expense expense : ledger) {
+                if (filter.test(expense)) {
+                    result.add(copyOf(expense));
+                }
+            }
+        }
+
+        double total() {
+            double total = 0;
+            for (double each : totals) {
+                total += each;
+            }
+            return total;
+        }
+
+        long size() {
+            long size = 0;
+            for (long each : counts) {
+                size += each;
+            }
+            return size;
+        }
+
+        void clear() {
+            ledger.clear();
+            dateIndex.clear();
+            Arrays.fill(totals, 0);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i] = new AmountSketch();
+            }
+        }
+
+        private static int slotOf(ExpenseCategory category) {
+            return category == null ? CATEGORIES.length : category.ordinal();
+        }
+    }
+}
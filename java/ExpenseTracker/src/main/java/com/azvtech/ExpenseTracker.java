@@ -3,21 +3,21 @@ package com.azvtech;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
-import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.Month;
+import java.time.YearMonth;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
- * The ExpenseTracker class manages a list of expenses, allowing users to add, update,
- * delete, and display expenses. The class also provides functionality to save and load
- * expenses from a JSON file and display summaries of expenses.
+ * The ExpenseTracker class is the command-line interface of an {@link ExpenseStore}, allowing
+ * users to add, update, delete, and display expenses. The class also provides functionality
+ * to save and load expenses from a JSON file and display summaries of expenses.
  */
 public class ExpenseTracker
 {
@@ -110,26 +110,23 @@ public class ExpenseTracker
     String categoryFilter;
 
     /**
-     * Command-line parameter for setting a budget for a specific month.
+     * Command-line parameter for setting a budget for a month, or for a category in a month.
      *
-     * This variable is used to specify the budget for a given month through the command-line interface.
-     * The user is expected to provide two arguments: the month (as an integer) and the budget amount.
+     * The user is expected to provide two arguments: the month and the budget amount. The
+     * month is a year-month (yyyy-MM), or a month of the current year by name or number, and
+     * may be followed by ":category" to budget a single category.
      *
-     * Example command: --set-budget 5 1000
+     * Example commands:
+     * - --set-budget 2025-05 1000
+     * - --set-budget 2025-05:food 300
+     * - --set-budget 5 1000
      *
      * Arity: 2
      *
-     * Format:
-     * - month (int): The month for which the budget is being set (1 for January, 12 for December).
-     * - amount (String): The budget amount in the specified month.
-     *
-     * Used for:
-     * - Managing monthly budgets in an expense tracking application.
-     *
-     * Error Handling:
-     * - The application should handle cases where the input is not in the correct format or the values provided are invalid.
+     * Budgets are saved with the expenses. Adding or updating an expense that takes the
+     * spending of a budget past 50%, 80% or 100% of it prints an alert.
      */
-    @Parameter(names = {"--set-budget", "-b"}, description = "Set a budget for a specific month. Usage: --set-budget month amount", arity = 2)
+    @Parameter(names = {"--set-budget", "-b"}, description = "Set a budget for a specific month. Usage: --set-budget yyyy-MM[:category] amount", arity = 2)
     List<String> setBudget = new ArrayList<>();
 
     /**
@@ -154,6 +151,145 @@ public class ExpenseTracker
     @Parameter(names = {"--export-csv", "-e"}, description = "Export expenses to a CSV file. Usage: --export-csv filename", arity = 1)
     List<String> exportCsv = new ArrayList<>();
 
+    /**
+     * The first day of a date-range listing, in ISO format (yyyy-MM-dd).
+     *
+     * Used together with --to, and optionally --category-filter, to list the expenses
+     * dated within a range. Either bound may be omitted to leave that end open.
+     *
+     * Command-Line Usage:
+     * - `--from 2025-01-10 --to 2025-02-03`
+     * - `--from 2025-01-10 --to 2025-02-03 --category-filter food`
+     */
+    @Parameter(names = {"--from"}, description = "List expenses dated on or after this day. Usage: --from yyyy-MM-dd")
+    String fromDate;
+
+    /**
+     * The last day of a date-range listing, in ISO format (yyyy-MM-dd). See {@link #fromDate}.
+     */
+    @Parameter(names = {"--to"}, description = "List expenses dated on or before this day. Usage: --to yyyy-MM-dd")
+    String toDate;
+
+    /**
+     * Lists the expenses whose description contains the given text, ignoring case.
+     *
+     * Can be combined with --category-filter and with --from and --to. Matches are found
+     * through a trigram index over the descriptions, persisted as {@code expenses.search}.
+     *
+     * Command-Line Usage:
+     * - `--search uber`
+     * - `--search uber --category-filter transport --from 2025-01-01`
+     */
+    @Parameter(names = {"--search"}, description = "List expenses whose description contains a text. Usage: --search text")
+    String searchText;
+
+    /**
+     * Shows the N largest expenses of the report period.
+     *
+     * Command-Line Usage:
+     * - `--top 10`
+     * - `--top 10 --period 2024-Q1`
+     */
+    @Parameter(names = {"--top"}, description = "Show the N largest expenses of the report period. Usage: --top N")
+    Integer topExpenses = null;
+
+    /**
+     * Shows the 50th, 95th and 99th percentile of expense amounts per category for the
+     * report period, answered from the persisted amount sketches without a scan.
+     */
+    @Parameter(names = {"--percentiles"}, description = "Show p50/p95/p99 expense amounts per category for the report period")
+    boolean showPercentiles = false;
+
+    /**
+     * The report period used by --top and --percentiles: a month (yyyy-MM), a quarter
+     * (yyyy-Qn) or a year (yyyy). Defaults to the current quarter.
+     */
+    @Parameter(names = {"--period"}, description = "Report period for --top and --percentiles. Usage: --period yyyy-MM|yyyy-Qn|yyyy")
+    String period;
+
+    /**
+     * Converts the expense store to the given on-disk format.
+     *
+     * Accepted values are "binary", which replaces {@code expenses.json} with the compact
+     * {@code expenses.bin} snapshot, and "json", which converts a snapshot back to JSON.
+     * Once a snapshot exists it is picked automatically on every later run.
+     *
+     * Command-Line Usage:
+     * - `--convert binary`
+     * - `--convert json`
+     */
+    @Parameter(names = {"--convert"}, description = "Convert the expense store to another format. Usage: --convert binary|json")
+    String convertFormat;
+
+    /**
+     * Moves the expenses dated more than the given number of months before the current month
+     * into the compressed archive under {@code archive/}.
+     *
+     * Archived expenses still show up in summaries, listings, searches and exports, but can
+     * no longer be updated or deleted. Totals over archived months are answered from small
+     * per-block summaries, and queries only decompress the months they touch.
+     *
+     * Command-Line Usage:
+     * - `--archive-older-than 12`
+     */
+    @Parameter(names = {"--archive-older-than"}, description = "Archive expenses older than N months. Usage: --archive-older-than N")
+    Integer archiveMonths = null;
+
+    /**
+     * The named ledger to work on instead of the expenses in the current directory.
+     *
+     * Every ledger keeps its expenses, budgets, indexes and archive in its own directory
+     * under {@code ledgers/}, and every other option applies to the selected ledger.
+     *
+     * Command-Line Usage:
+     * - `--ledger marketing --add 12.50 "Lunch" food`
+     */
+    @Parameter(names = {"--ledger"}, description = "Work on a named ledger. Usage: --ledger name")
+    String ledger;
+
+    /**
+     * Shows the totals of every ledger for the report period, and checks the budget of the
+     * current month in every ledger that has one. Ledgers are processed in parallel.
+     *
+     * Command-Line Usage:
+     * - `--ledgers-report`
+     * - `--ledgers-report --period 2025`
+     */
+    @Parameter(names = {"--ledgers-report"}, description = "Show totals and budget checks across all ledgers for the report period")
+    boolean ledgersReport = false;
+
+    /**
+     * Serves the expense API over HTTP on the given port instead of running a single command.
+     *
+     * The expenses are loaded once and stay resident; see {@link ExpenseServer} for the
+     * endpoints. Writes are saved in the background and when the process is stopped.
+     *
+     * Command-Line Usage:
+     * - `--serve 8080`
+     */
+    @Parameter(names = {"--serve"}, description = "Serve the expense API over HTTP. Usage: --serve port")
+    Integer servePort = null;
+
+    /**
+     * The address --serve listens on. It is the loopback interface unless given, as the API
+     * has no authentication; "0.0.0.0" serves every interface.
+     *
+     * Command-Line Usage:
+     * - `--serve 8080 --host 0.0.0.0`
+     */
+    @Parameter(names = {"--host"}, description = "The address to serve on. Usage: --host address")
+    String serveHost = ExpenseServer.DEFAULT_HOST;
+
+    /**
+     * Prints the count and p50/p90/p99/max latency of every load, save and CSV export to
+     * standard error when the process exits. See {@link Metrics}.
+     *
+     * Command-Line Usage:
+     * - `--metrics --summary`
+     */
+    @Parameter(names = {"--metrics"}, description = "Print latency percentiles and counts of the file operations on exit")
+    boolean metrics = false;
+
     /**
      * This boolean flag indicates whether help information should be displayed.
      * It can be triggered via the command line arguments "--help" or "-h".
@@ -162,38 +298,37 @@ public class ExpenseTracker
     private boolean help;
 
     /**
-     * The constant file path where the expense data is stored in JSON format.
+     * The store that holds all the expenses recorded in the ExpenseTracker application.
      *
-     * This variable points to the location of the file used to persist and load
-     * the expenses for the ExpenseTracker application.
+     * The store is used by various methods in the ExpenseTracker class to manage
+     * expenses such as adding, updating, deleting, listing, and summarizing them,
+     * and to persist them in the store directory. It is thread-safe, so the same
+     * class can be embedded in multi-threaded services. See {@link ExpenseStore}.
+     * It is replaced by the store of a named ledger when --ledger is given.
      */
-    private static final String EXPENSE_FILE = "expenses.json";
+    private ExpenseStore store;
+
     /**
-     * A list that holds all the expenses recorded in the ExpenseTracker application.
-     *
-     * This list is used by various methods in the ExpenseTracker class to manage
-     * expenses such as adding, updating, deleting, listing, and summarizing them.
-     * The list is instantiated as an ArrayList and is final, meaning it cannot be reassigned.
+     * The ledgers kept next to the default store. See {@link ExpenseLedgers}.
      */
-    private final List<Expense> expenses = new ArrayList<>();
+    private final ExpenseLedgers ledgers;
 
     /**
-     * An instance of the Gson class, configured with a custom adapter for serializing
-     * and deserializing LocalDate objects.
-     *
-     * This Gson instance is used for converting Expense objects to and from JSON format
-     * within the ExpenseTracker application. The LocalDateAdapter ensures that LocalDate
-     * fields are properly handled during the conversion process.
+     * Creates a tracker that keeps its files in the current working directory.
      */
-    private final Gson gson = new GsonBuilder()
-            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-            .create();
+    public ExpenseTracker() {
+        this(Paths.get(""));
+    }
 
     /**
-     * A mapping of monthly budgets where each key represents a month and the
-     * corresponding value represents the budget allocated for that month.
+     * Creates a tracker that keeps its files in the given directory.
+     *
+     * @param storeDirectory The directory holding the expense store files.
      */
-    private Map<Month, Double> monthlyBudgets = new HashMap<>();
+    ExpenseTracker(Path storeDirectory) {
+        this.store = new ExpenseStore(storeDirectory);
+        this.ledgers = new ExpenseLedgers(storeDirectory);
+    }
 
     /**
      * Entry point for the ExpenseTracker application.
@@ -218,7 +353,22 @@ public class ExpenseTracker
                 return;
             }
 
+            if (tracker.metrics) {
+                Metrics.enable();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> Metrics.dump(System.err)));
+            }
+
+            if (tracker.ledger != null) {
+                tracker.useLedger(tracker.ledger);
+            }
+
             tracker.loadExpenses();
+            tracker.store.addBudgetListener(alert -> System.out.println("Budget alert: " + alert));
+
+            if (tracker.servePort != null) {
+                tracker.serve(tracker.serveHost, tracker.servePort);
+                return;
+            }
 
             if (!tracker.addExpense.isEmpty()) {
                 tracker.addNewExpense();
@@ -244,16 +394,29 @@ public class ExpenseTracker
                 tracker.showMonthSummary(tracker.monthSummary);
             }
 
-            if (tracker.categoryFilter != null)
+            if (tracker.topExpenses != null) {
+                tracker.showTopExpenses(tracker.topExpenses);
+            }
+
+            if (tracker.showPercentiles) {
+                tracker.showPercentiles();
+            }
+
+            if (tracker.ledgersReport) {
+                tracker.showLedgersReport();
+            }
+
+            if (tracker.searchText != null) {
+                tracker.searchExpenses();
+            } else if (tracker.fromDate != null || tracker.toDate != null) {
+                tracker.listExpensesInRange();
+            } else if (tracker.categoryFilter != null)
             {
                 tracker.filterExpensesByCategory();
             }
 
             if (!tracker.setBudget.isEmpty()) {
-                Month month = Month.valueOf(tracker.setBudget.get(0).toUpperCase());
-                double amount = Double.parseDouble(tracker.setBudget.get(1));
-                tracker.setMonthlyBudget(month, amount);
-                System.out.println("Budget set for " + month + ": $" + amount);
+                tracker.setBudget(tracker.setBudget.get(0), Double.parseDouble(tracker.setBudget.get(1)));
             }
 
             if (!tracker.exportCsv.isEmpty()) {
@@ -261,30 +424,69 @@ public class ExpenseTracker
                 tracker.exportExpensesToCsv(filename);
             }
 
-            // Example of checking the budget for a particular month (e.g., the current month)
-            tracker.checkBudget(LocalDate.now().getMonth());
+            tracker.checkBudget(YearMonth.now());
 
-            tracker.saveExpenses();
+            if (tracker.archiveMonths != null) {
+                tracker.archiveExpenses(tracker.archiveMonths);
+            }
+
+            if (tracker.convertFormat != null) {
+                tracker.convertStore(tracker.convertFormat);
+            } else {
+                tracker.saveExpenses();
+            }
 
         } catch (ParameterException e) {
             System.err.println(e.getMessage());
             commander.usage();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
         } catch (IOException e) {
             System.out.println("Error reading or writing to file: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            System.out.println("Error reading the expense archive: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Starts serving the expense store over HTTP, and saves pending writes when the
+     * process is stopped. The server keeps the process running after this returns.
+     *
+     * Unless set on the command line, sun.net.httpserver.nodelay is turned on first: the
+     * JDK server writes response headers and body separately, and with Nagle's algorithm
+     * the body then waits for the client's delayed ACK, adding ~40 ms to every response.
+     * The JDK reads the property once, so it is set before the first server is created.
+     *
+     * @param host The address to listen on.
+     * @param port The port to listen on.
+     * @throws IOException If the server socket cannot be bound.
+     */
+    private void serve(String host, int port) throws IOException {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
         }
+        ExpenseServer server = new ExpenseServer(store, host, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop();
+            } catch (IOException e) {
+                System.err.println("Error saving expenses: " + e.getMessage());
+            }
+        }));
+        server.start();
+        System.out.println("Serving " + store.size() + " expenses on http://" + server.getHost() + ":" + server.getPort());
     }
 
     /**
-     * Adds a new expense to the expense list.
+     * Adds a new expense to the expense store.
      *
      * This method retrieves the first element from the addExpense list as the amount,
      * the second element as the description, and the third element as the category.
      * It parses and validates the amount, checks for a valid category, and creates a new
-     * Expense object which is then added to the expenses list.
+     * Expense object which is then added to the store.
      *
      * Assumptions:
      * - The addExpense list contains at least three elements.
-     * - The expenses list contains Expense objects.
      * - The valid categories are defined in the ExpenseCategory enum.
      *
      * Error Handling:
@@ -306,7 +508,7 @@ public class ExpenseTracker
                 category = ExpenseCategory.OTHER;
             }
             Expense expense = new Expense(amount, description, category);
-            expenses.add(expense);
+            store.add(expense);
             System.out.println("Added " + expense);
         } catch (NumberFormatException e) {
             System.err.println("Invalid amount format for expense: " + addExpense.get(0));
@@ -314,14 +516,13 @@ public class ExpenseTracker
     }
 
     /**
-     * Updates an existing expense in the expenses list.
+     * Updates an existing expense in the expense store.
      *
      * This method fetches the expense details from the `updateExpense` field, parses the values,
      * and updates the corresponding expense if found.
      *
      * Assumptions:
      * - The `updateExpense` list contains at least four elements.
-     * - The `expenses` list contains `Expense` objects.
      * - Valid categories are defined in the `ExpenseCategory` enum.
      *
      * Error Handling:
@@ -334,16 +535,12 @@ public class ExpenseTracker
             double amount = Double.parseDouble(updateExpense.get(1));
             String description = updateExpense.get(2);
             ExpenseCategory category = ExpenseCategory.valueOf(updateExpense.get(3).toUpperCase());
-            Expense expenseToUpdate = findExpenseById(id);
-            if (expenseToUpdate == null) {
+            Expense updated = store.update(id, amount, description, category);
+            if (updated == null) {
                 System.err.println("Expense with ID " + id + " not found.");
                 return;
             }
-
-            expenseToUpdate.setAmount(amount);
-            expenseToUpdate.setDescription(description);
-            expenseToUpdate.setCategory(category);
-            System.out.println("Updated  " + expenseToUpdate);
+            System.out.println("Updated  " + updated);
         } catch (NumberFormatException e) {
             System.err.println("Invalid format: \n " +
                     "id=" + updateExpense.get(0) + " \n" +
@@ -354,16 +551,15 @@ public class ExpenseTracker
     }
 
     /**
-     * Deletes an expense from the list of expenses.
+     * Deletes an expense from the expense store.
      *
      * This method retrieves the expense ID from the `deleteExpense` list, converts it to a UUID,
-     * and attempts to find the corresponding expense. If the expense is found, it removes it from the list.
+     * and removes the corresponding expense from the store if it is found.
      * The method handles various error scenarios, including an empty `deleteExpense` list, an invalid UUID format,
      * and other exceptions that might occur during the process.
      *
      * Assumptions:
      * - The `deleteExpense` list contains at least one element, which is the ID of the expense to be deleted.
-     * - The `expenses` list contains `Expense` objects.
      *
      * Error Handling:
      * - Prints an error message if the `deleteExpense` list is empty.
@@ -379,12 +575,11 @@ public class ExpenseTracker
 
         try {
             UUID id = UUID.fromString(deleteExpense.get(0));
-            Expense expenseToRemove = findExpenseById(id);
+            Expense expenseToRemove = store.remove(id);
             if (expenseToRemove == null) {
                 System.err.println("Expense with ID " + id + " not found.");
                 return;
             }
-            expenses.remove(expenseToRemove);
             System.out.println("Deleted " + expenseToRemove);
         } catch (IllegalArgumentException e) {
             System.err.println("Invalid format for id: " + deleteExpense.get(0));
@@ -393,83 +588,62 @@ public class ExpenseTracker
         }
     }
 
-    /**
-     * Finds an expense in the list of expenses by its unique identifier.
-     *
-     * @param id The unique identifier (UUID) of the expense to find.
-     * @return The Expense object if found; otherwise, returns null.
-     */
-    private Expense findExpenseById(UUID id) {
-        for (Expense expense : expenses) {
-            if (expense.getId().equals(id)) {
-                return expense;
-            }
-        }
-        return null;
-    }
-
     /**
      * Lists all recorded expenses.
      *
      * This method checks if there are any expenses recorded. If no expenses are found,
      * it prints a message indicating that no expenses have been recorded. Otherwise,
-     * it iterates through the list of expenses and prints each expense.
+     * it prints each expense month by month, oldest month first and expenses without a
+     * date before any month, and within a month in the order the expenses were added.
      *
      * Error Handling:
-     * - Prints "No recorded expenses." if the expenses list is empty.
+     * - Prints "No recorded expenses." if the store is empty.
      */
     private void listAllExpenses() {
-        if (expenses.isEmpty()) {
+        List<Expense> all = store.list();
+        if (all.isEmpty()) {
             System.out.println("No recorded expenses.");
         } else {
             System.out.println("All Recorded Expenses:");
-            for (Expense expense : expenses) {
+            for (Expense expense : all) {
                 System.out.println(expense);
             }
         }
     }
 
     /**
-     * Displays a summary of all recorded expenses in the expenses list.
+     * Displays the total amount of all recorded expenses.
      *
-     * The method checks if there are any expenses recorded. If no expenses are found,
-     * it prints a message indicating that no expenses have been recorded.
-     * Otherwise, it iterates through the list of expenses, prints each expense, and
-     * calculates the total amount of all expenses. Finally, it prints the total amount.
+     * The total is read from the running totals the store keeps per month, without
+     * scanning the expenses.
      *
      * Error Handling:
-     * - Prints "No expenses recorded." if the expenses list is empty.
+     * - Prints "No expenses recorded." if the store is empty.
      */
     private void showExpenseSummary() {
-        if (expenses.isEmpty()) {
+        if (store.isEmpty()) {
             System.out.println("No expenses recorded.");
             return;
         }
 
-        double total = 0;
         System.out.println("Expense Summary:");
-        for (Expense expense : expenses) {
-            total += expense.getAmount();
-        }
-        System.out.println("Total: " + total);
+        System.out.println("Total: " + store.total());
     }
 
     /**
      * Displays a summary of expenses for the specified month.
      *
-     * The method filters the list of recorded expenses to find those that belong to the
-     * specified month and then prints each expense along with the total amount spent
+     * The method takes the recorded expenses that belong to the specified month from
+     * the store and then prints each expense along with the total amount spent
      * for that month.
      *
      * @param month The month for which the summary is to be displayed. The month is
      *              represented as an integer where 1 corresponds to January and 12
      *              corresponds to December.
      */
-    private void showMonthSummary(int month) {
+    void showMonthSummary(int month) {
         Month specifiedMonth = Month.of(month);
-        List<Expense> monthlyExpenses = expenses.stream()
-                .filter(expense -> expense.getDate().getMonth() == specifiedMonth)
-                .collect(Collectors.toList());
+        List<Expense> monthlyExpenses = store.list(specifiedMonth);
 
         if (monthlyExpenses.isEmpty()) {
             System.out.println("No recorded expenses for month: " + specifiedMonth);
@@ -484,17 +658,162 @@ public class ExpenseTracker
     }
 
     /**
-     * Filters the list of expenses based on the specified category and prints the filtered expenses.
+     * Returns the period selected with --period, or the current quarter by default.
+     */
+    private ReportPeriod reportPeriod() {
+        return period != null ? ReportPeriod.parse(period) : ReportPeriod.quarterOf(LocalDate.now());
+    }
+
+    /**
+     * Displays the largest expenses of the report period, largest first.
+     *
+     * The expenses of the period are taken from the date index and the largest ones are
+     * selected with a bounded heap, rather than by sorting every expense.
+     *
+     * @param count The number of expenses to display.
+     */
+    private void showTopExpenses(int count) {
+        ReportPeriod reportPeriod;
+        try {
+            reportPeriod = reportPeriod();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        List<Expense> largest = store.largest(reportPeriod, count);
+        if (largest.isEmpty()) {
+            System.out.println("No recorded expenses for " + reportPeriod);
+            return;
+        }
+        System.out.printf("Top %d expenses for %s:%n", largest.size(), reportPeriod);
+        largest.forEach(System.out::println);
+    }
+
+    /**
+     * Displays the 50th, 95th and 99th percentile of expense amounts for each category,
+     * and for all categories together, over the report period.
+     *
+     * Percentiles come from the merged amount sketches of the months in the period and
+     * are accurate to within {@link AmountSketch#RELATIVE_ACCURACY} of the true amount.
+     */
+    private void showPercentiles() {
+        ReportPeriod reportPeriod;
+        try {
+            reportPeriod = reportPeriod();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        AmountSketch all = store.sketch(reportPeriod, null);
+        if (all.isEmpty()) {
+            System.out.println("No recorded expenses for " + reportPeriod);
+            return;
+        }
+        System.out.printf("Expense percentiles for %s:%n", reportPeriod);
+        for (ExpenseCategory category : ExpenseCategory.values()) {
+            AmountSketch sketch = store.sketch(reportPeriod, category);
+            if (!sketch.isEmpty()) {
+                printPercentiles(category.toString(), sketch);
+            }
+        }
+        printPercentiles("ALL", all);
+    }
+
+    private static void printPercentiles(String label, AmountSketch sketch) {
+        System.out.printf("%-14s count %-8d p50 %.2f  p95 %.2f  p99 %.2f%n", label, sketch.count(),
+                sketch.quantile(0.50), sketch.quantile(0.95), sketch.quantile(0.99));
+    }
+
+    /**
+     * Lists the expenses dated between --from and --to, inclusive, in date order.
+     *
+     * The range is answered from the date index with a binary search and a contiguous
+     * scan. When --category-filter is also given, only that category's part of the index
+     * is searched.
+     *
+     * Error Handling:
+     * - Prints an error message if a date or the category is not valid.
+     */
+    private void listExpensesInRange() {
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = fromDate != null ? LocalDateAdapter.parse(fromDate) : LocalDate.MIN;
+            to = toDate != null ? LocalDateAdapter.parse(toDate) : LocalDate.MAX;
+        } catch (DateTimeException e) {
+            System.err.println("Invalid date specified. Use yyyy-MM-dd.");
+            return;
+        }
+
+        ExpenseCategory category = null;
+        if (categoryFilter != null) {
+            category = ExpenseCategory.fromName(categoryFilter.toUpperCase());
+            if (category == null) {
+                System.err.println("Invalid category specified. No expenses filtered.");
+                return;
+            }
+        }
+
+        List<Expense> inRange = store.range(from, to, category);
+        String range = (fromDate != null ? fromDate : "the beginning") + " to " + (toDate != null ? toDate : "the end");
+        if (inRange.isEmpty()) {
+            System.out.println("No recorded expenses from " + range);
+            return;
+        }
+        System.out.println("Expenses from " + range + (category != null ? " in category '" + category + "'" : "") + ":");
+        inRange.forEach(System.out::println);
+    }
+
+    /**
+     * Lists the expenses whose description contains --search, ignoring case, in date order.
+     *
+     * When --category-filter, --from or --to are also given, only the matching expenses
+     * of that category and date range are listed.
+     *
+     * Error Handling:
+     * - Prints an error message if a date or the category is not valid.
+     */
+    private void searchExpenses() {
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = fromDate != null ? LocalDateAdapter.parse(fromDate) : null;
+            to = toDate != null ? LocalDateAdapter.parse(toDate) : null;
+        } catch (DateTimeException e) {
+            System.err.println("Invalid date specified. Use yyyy-MM-dd.");
+            return;
+        }
+
+        ExpenseCategory category = null;
+        if (categoryFilter != null) {
+            category = ExpenseCategory.fromName(categoryFilter.toUpperCase());
+            if (category == null) {
+                System.err.println("Invalid category specified. No expenses filtered.");
+                return;
+            }
+        }
+
+        List<Expense> matches = store.search(searchText, from, to, category);
+        if (matches.isEmpty()) {
+            System.out.println("No recorded expenses matching '" + searchText + "'");
+            return;
+        }
+        System.out.println("Expenses matching '" + searchText + "'" + (category != null ? " in category '" + category + "'" : "") + ":");
+        matches.forEach(System.out::println);
+    }
+
+    /**
+     * Filters the expenses based on the specified category and prints the filtered expenses.
      *
      * This method attempts to parse the specified category filter from the `categoryFilter` field.
-     * If the category is valid, it filters the expenses list to include only those expenses
-     * that match the specified category. The filtered expenses are then printed to the console.
+     * If the category is valid, it takes only the expenses that match the specified category
+     * from the store. The filtered expenses are then printed to the console.
      *
      * Error Handling:
      * - If the category specified in `categoryFilter` is invalid, an error message is
      *   printed to the standard error stream, and no expenses are filtered.
      */
-    private void filterExpensesByCategory()
+    void filterExpensesByCategory()
     {
         ExpenseCategory category;
         try {
@@ -504,97 +823,199 @@ public class ExpenseTracker
             return;
         }
 
-        List<Expense> filteredExpenses = expenses.stream()
-                .filter(expense -> expense.getCategory() == category)
-                .collect(Collectors.toList());
+        List<Expense> filteredExpenses = store.list(category);
         System.out.println("Filtered expenses by category '" + category + "':");
         filteredExpenses.forEach(System.out::println);
     }
 
     /**
-     * Sets the monthly budget for a specified month.
+     * Sets the budget of a month, or of a category in a month.
      *
-     * This method updates the budget for the given month with the specified amount.
+     * @param target The month as yyyy-MM, or a month of the current year by name or number,
+     *               optionally followed by ":category".
+     * @param amount The budget amount.
+     */
+    private void setBudget(String target, double amount) {
+        int separator = target.indexOf(':');
+        String monthText = separator < 0 ? target : target.substring(0, separator);
+        ExpenseCategory category = null;
+        if (separator >= 0) {
+            category = ExpenseCategory.fromName(target.substring(separator + 1).toUpperCase());
+            if (category == null) {
+                System.err.println("Invalid category: " + target.substring(separator + 1));
+                return;
+            }
+        }
+        YearMonth month;
+        try {
+            if (monthText.contains("-")) {
+                month = YearMonth.parse(monthText);
+            } else if (monthText.chars().allMatch(Character::isDigit)) {
+                month = YearMonth.now().withMonth(Integer.parseInt(monthText));
+            } else {
+                month = YearMonth.now().withMonth(Month.valueOf(monthText.toUpperCase()).getValue());
+            }
+        } catch (DateTimeException | IllegalArgumentException e) {
+            System.err.println("Invalid month: " + monthText + ". Use yyyy-MM, a month name or a number from 1 to 12.");
+            return;
+        }
+        store.setBudget(month, category, amount);
+        System.out.println("Budget set for " + (category != null ? category + " in " : "") + month + ": $" + amount);
+    }
+
+    /**
+     * Checks whether the spending of a month, or of a category in it, exceeds its budget.
      *
-     * @param month  The month for which the budget is to be set.
-     * @param amount The budget amount to be set for the specified month.
+     * The spending comes from the store's running totals, so the check takes the same
+     * time whatever the number of expenses. A warning is printed for every exceeded budget.
+     *
+     * @param month The month for which the budget check is performed.
      */
-    private void setMonthlyBudget(Month month, double amount) {
-        monthlyBudgets.put(month, amount);
+    private void checkBudget(YearMonth month) {
+        Double usage = store.budgetUsage(month, null);
+        if (usage != null && usage > 1) {
+            System.out.println("Warning: You have exceeded your budget for " + month);
+        }
+        for (ExpenseCategory category : ExpenseCategory.values()) {
+            usage = store.budgetUsage(month, category);
+            if (usage != null && usage > 1) {
+                System.out.println("Warning: You have exceeded your " + category + " budget for " + month);
+            }
+        }
     }
 
     /**
-     * Computes the total expenses for a specified month.
+     * Loads the expenses from the binary snapshot if one exists, or otherwise from a JSON
+     * file. If neither file exists, the method simply returns without performing any
+     * actions.
+     *
+     * The persisted amount statistics are loaded alongside, and rebuilt from the loaded
+     * expenses if they are missing or were saved for a different version of the store.
      *
-     * @param month The month for which the expenses are to be calculated.
-     * @return The total amount of expenses for the given month.
+     * @throws IOException If an I/O error occurs while reading the file.
      */
-    private double getMonthlyExpenses(Month month) {
-        return expenses.stream()
-                .filter(expense -> expense.getDate().getMonth() == month)
-                .mapToDouble(Expense::getAmount)
-                .sum();
+    void loadExpenses() throws IOException {
+        ExpenseFileEvent event = new ExpenseFileEvent("loadExpenses", null);
+        try {
+            store.load();
+        } catch (IOException e) {
+            event.fail();
+            throw e;
+        } finally {
+            event.finish(store.size(), 0);
+        }
     }
 
     /**
-     * Checks if the expenses for the given month exceed the set budget.
+     * Saves the expenses to the binary snapshot if the store is in binary format, or
+     * otherwise to a JSON file, followed by their amount statistics.
      *
-     * This method calculates the total expenses for the specified month and
-     * compares it with the pre-defined budget for that month. If the expenses
-     * exceed the budget, a warning message is printed.
+     * The file is overwritten if it already exists. If the file does not exist,
+     * it will be created.
      *
-     * @param month The month for which the budget check is performed.
+     * @throws IOException If an I/O error occurs while writing to the file.
      */
-    private void checkBudget(Month month) {
-        double expenses = getMonthlyExpenses(month);
-        if (monthlyBudgets.containsKey(month) && expenses > monthlyBudgets.get(month)) {
-            System.out.println("Warning: You have exceeded your budget for " + month);
+    void saveExpenses() throws IOException {
+        ExpenseFileEvent event = new ExpenseFileEvent("saveExpenses", null);
+        try {
+            store.save();
+        } catch (IOException e) {
+            event.fail();
+            throw e;
+        } finally {
+            event.finish(store.size(), 0);
         }
     }
 
     /**
-     * Loads expenses from a JSON file. If the expense file does not exist,
-     * the method simply returns without performing any actions. If the file
-     * exists, it reads the JSON content and converts it into a list of Expense
-     * objects, which are then added to the existing list of expenses.
+     * Switches the tracker to the store of a named ledger.
      *
-     * @throws IOException If an I/O error occurs while reading the file.
+     * @param name The name of the ledger.
+     * @throws IOException If the ledger directory cannot be created.
+     */
+    void useLedger(String name) throws IOException {
+        store = new ExpenseStore(ledgers.directoryOf(name));
+    }
+
+    /**
+     * Shows the totals of every ledger and category for the report period, followed by the
+     * budget check of the current month in every ledger.
+     *
+     * @throws IOException If a ledger cannot be read.
      */
-    private void loadExpenses() throws IOException {
-        File file = new File(EXPENSE_FILE);
-        if (!file.exists()) {
-            return;  // If no file exists, just return
+    private void showLedgersReport() throws IOException {
+        ReportPeriod reportPeriod;
+        try {
+            reportPeriod = reportPeriod();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        YearMonth month = YearMonth.now();
+        ExpenseLedgers.Report report = ledgers.report(reportPeriod, month);
+        if (report.getLedgerTotals().isEmpty()) {
+            System.out.println("No ledgers found.");
+            return;
+        }
+        System.out.println("Ledgers report for " + reportPeriod + ":");
+        report.getLedgerTotals().forEach((name, total) -> System.out.printf("  %-20s %12.2f%n", name, total));
+        System.out.println("By category:");
+        for (ExpenseCategory category : ExpenseCategory.values()) {
+            if (report.total(category) != 0) {
+                System.out.printf("  %-20s %12.2f%n", category, report.total(category));
+            }
         }
+        System.out.printf("Total: %.2f%n", report.total());
 
-        try (Reader reader = new FileReader(file)) {
-            Type expenseListType = new TypeToken<List<Expense>>() {}.getType();
-            List<Expense> loadedExpenses = gson.fromJson(reader, expenseListType);
-            if (loadedExpenses != null) {
-                expenses.clear();
-                expenses.addAll(loadedExpenses);
+        for (ExpenseLedgers.BudgetStatus status : report.getBudgetStatuses()) {
+            if (status.isExceeded()) {
+                System.out.printf("Warning: ledger %s has exceeded its budget for %s (%.2f of %.2f)%n",
+                        status.getLedger(), month, status.getSpent(), status.getBudget());
             }
-        } catch (IOException e) {
-            System.out.println("Error loading expenses: " + e.getMessage());
         }
     }
 
     /**
-     * Saves the current list of expenses to a JSON file.
+     * Archives the expenses dated before the month that lies the given number of months
+     * before the current one.
      *
-     * This method uses the Gson library to serialize the list of expenses into JSON format
-     * and writes it to a file specified by the EXPENSE_FILE field.
+     * @param months How many months before the current one to keep in the store.
+     * @throws IOException If an I/O error occurs while writing the archive or the store.
+     */
+    private void archiveExpenses(int months) throws IOException {
+        if (months < 0) {
+            System.err.println("Invalid number of months: " + months);
+            return;
+        }
+        YearMonth before = YearMonth.now().minusMonths(months);
+        int archived = store.archive(before);
+        System.out.println("Archived " + archived + " expenses dated before " + before + ".");
+    }
+
+    /**
+     * Converts the expense store to the given format.
      *
-     * The file is overwritten if it already exists. If the file does not exist,
-     * it will be created. The method handles all lower-level I/O operations using
-     * a FileWriter wrapped in a try-with-resources statement to ensure the file
-     * is properly closed after writing.
+     * The expenses are written in the new format first, and the file holding the old
+     * format is deleted only after that write succeeded. If the format is not valid,
+     * the expenses are saved in their current format.
      *
-     * @throws IOException If an I/O error occurs while writing to the file.
+     * @param format The target format, either "binary" or "json".
+     * @throws IOException If an I/O error occurs while writing or deleting a file.
      */
-    private void saveExpenses() throws IOException {
-        try (Writer writer = new FileWriter(EXPENSE_FILE)) {
-            gson.toJson(expenses, writer);
+    private void convertStore(String format) throws IOException {
+        switch (format.toLowerCase()) {
+            case "binary":
+                store.convert(true);
+                break;
+            case "json":
+                store.convert(false);
+                break;
+            default:
+                System.err.println("Invalid format specified: " + format + ". Use binary or json.");
+                store.save();
+                return;
         }
+        System.out.println("Converted " + store.size() + " expenses to " + format.toLowerCase() + " format.");
     }
 
     /**
@@ -602,30 +1023,43 @@ public class ExpenseTracker
      *
      * This method writes the expenses to a specified file in CSV format.
      * Each record in the file represents an expense with its ID, amount, description, and date
-     * separated by commas.
+     * separated by commas. A description with a comma, quote or line break is quoted, with its
+     * quotes doubled, so that it stays one field; earlier versions wrote every description as
+     * is. Descriptions are escaped once per distinct description through the description
+     * dictionary of the store.
      *
      * @param filename The name of the file to which the expenses should be exported.
      */
-    private void exportExpensesToCsv(String filename) {
+    void exportExpensesToCsv(String filename) {
+        ExpenseFileEvent event = new ExpenseFileEvent("exportExpensesToCsv", filename);
         try (PrintWriter writer = new PrintWriter(new File(filename))) {
+            DescriptionDictionary descriptions = store.descriptions();
             StringBuilder sb = new StringBuilder();
             sb.append("ID,Amount,Description,Date\n");
 
-            for (Expense expense : expenses) {
+            for (Expense expense : store.list()) {
                 sb.append(expense.getId())
                         .append(',')
                         .append(expense.getAmount())
                         .append(',')
-                        .append(expense.getDescription())
+                        .append(descriptions.csvField(expense.getDescription()))
                         .append(',')
                         .append(expense.getDate())
                         .append('\n');
             }
 
-            writer.write(sb.toString());
+            String csv = sb.toString();
+            writer.write(csv);
+            // PrintWriter keeps write errors to itself.
+            if (writer.checkError()) {
+                event.fail();
+            }
+            event.finish(store.size(), csv.getBytes(Charset.defaultCharset()).length);
             System.out.println("Expenses have been successfully exported to " + filename);
 
         } catch (FileNotFoundException e) {
+            event.fail();
+            event.finish(0, 0);
             System.err.println("Error: Unable to write to the file " + filename);
         }
     }
@@ -0,0 +1,89 @@
+package com.azvtech;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * A hand-written streaming TypeAdapter for Expense objects.
+ *
+ * This adapter produces and accepts the same JSON as Gson's reflective adapter,
+ * with the fields id, amount, description, date and category, but reads and writes
+ * them directly instead of going through reflection. Dates are resolved through the
+ * shared cache of {@link LocalDateAdapter} and categories through
+ * {@link ExpenseCategory#fromName(String)}.
+ */
+public class ExpenseTypeAdapter extends TypeAdapter<Expense> {
+
+    @Override
+    public void write(JsonWriter out, Expense expense) throws IOException {
+        if (expense == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (expense.getId() != null) {
+            out.name("id").value(expense.getId().toString());
+        }
+        out.name("amount").value(expense.getAmount());
+        if (expense.getDescription() != null) {
+            out.name("description").value(expense.getDescription());
+        }
+        if (expense.getDate() != null) {
+            out.name("date").value(expense.getDate().toString());
+        }
+        if (expense.getCategory() != null) {
+            out.name("category").value(expense.getCategory().name());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Expense read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        UUID id = null;
+        double amount = 0;
+        String description = null;
+        LocalDate date = null;
+        ExpenseCategory category = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = UUID.fromString(in.nextString());
+                    break;
+                case "amount":
+                    amount = in.nextDouble();
+                    break;
+                case "description":
+                    description = in.nextString();
+                    break;
+                case "date":
+                    date = LocalDateAdapter.parse(in.nextString());
+                    break;
+                case "category":
+                    category = ExpenseCategory.fromName(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Expense(id, amount, description, date, category);
+    }
+}
@@ -2,6 +2,7 @@ package com.azvtech;
 
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
@@ -14,17 +15,115 @@ import java.time.format.DateTimeFormatter;
  * This class provides the functionality to convert LocalDate objects to their
  * JSON representation and back. It uses the ISO_LOCAL_DATE format for date
  * representation.
+ *
+ * Dates are decoded straight from the characters of the ISO string and resolved
+ * through a shared cache, so every expense recorded on the same day refers to the
+ * same LocalDate instance.
  */
 public class LocalDateAdapter extends TypeAdapter<LocalDate> {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
 
+    /** The first year held by the date cache; earlier dates are not cached. */
+    private static final int FIRST_CACHED_YEAR = 1900;
+    /** The number of years held by the date cache. */
+    private static final int CACHED_YEARS = 300;
+
+    /**
+     * The canonical LocalDate instances, allocated one year at a time and indexed by
+     * (month - 1) * 31 + (day - 1). Publication races are benign because LocalDate is
+     * immutable, so at worst two equal instances are created.
+     */
+    private static final LocalDate[][] cache = new LocalDate[CACHED_YEARS][];
+
     @Override
     public void write(JsonWriter jsonWriter, LocalDate localDate) throws IOException {
+        if (localDate == null) {
+            jsonWriter.nullValue();
+            return;
+        }
         jsonWriter.value(localDate.format(formatter));
     }
 
     @Override
     public LocalDate read(JsonReader jsonReader) throws IOException {
-        return LocalDate.parse(jsonReader.nextString(), formatter);
+        if (jsonReader.peek() == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        return parse(jsonReader.nextString());
+    }
+
+    /**
+     * Parses an ISO local date into its canonical shared instance.
+     *
+     * Strings in the plain yyyy-MM-dd form are decoded digit by digit; anything else
+     * falls back to {@link LocalDate#parse(CharSequence, DateTimeFormatter)}.
+     *
+     * @param text The ISO local date to parse.
+     * @return The canonical LocalDate for the given text.
+     */
+    public static LocalDate parse(CharSequence text) {
+        if (text.length() == 10 && text.charAt(4) == '-' && text.charAt(7) == '-') {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 7);
+            int day = digits(text, 8, 10);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+                return of(year, month, day);
+            }
+        }
+        return canonical(LocalDate.parse(text, formatter));
+    }
+
+    /**
+     * Returns the canonical shared instance for the given date.
+     *
+     * @param year  The year.
+     * @param month The month of the year, from 1 to 12.
+     * @param day   The day of the month, from 1 to 31.
+     * @return The canonical LocalDate.
+     * @throws java.time.DateTimeException If the fields do not form a valid date.
+     */
+    public static LocalDate of(int year, int month, int day) {
+        int yearIndex = year - FIRST_CACHED_YEAR;
+        if (yearIndex < 0 || yearIndex >= CACHED_YEARS) {
+            return LocalDate.of(year, month, day);
+        }
+        LocalDate[] days = cache[yearIndex];
+        if (days == null) {
+            days = new LocalDate[12 * 31];
+            cache[yearIndex] = days;
+        }
+        int dayIndex = (month - 1) * 31 + (day - 1);
+        LocalDate date = days[dayIndex];
+        if (date == null) {
+            date = LocalDate.of(year, month, day);
+            days[dayIndex] = date;
+        }
+        return date;
+    }
+
+    /**
+     * Returns the canonical shared instance equal to the given date.
+     *
+     * @param date The date to canonicalize.
+     * @return The canonical LocalDate, or {@code null} if the date is null.
+     */
+    public static LocalDate canonical(LocalDate date) {
+        return date == null ? null : of(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    /**
+     * Decodes the decimal digits in [from, to), or returns -1 if any character is not a digit.
+     */
+    private static int digits(CharSequence text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
     }
 }
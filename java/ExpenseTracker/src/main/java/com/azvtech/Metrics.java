@@ -0,0 +1,127 @@
+package com.azvtech;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and counters of the file operations of the tracker, printed on exit
+ * with --metrics.
+ *
+ * Nothing is measured until {@link #enable} is called; until then {@link #start} returns 0
+ * without reading the clock and {@link #record} returns right away, so the calls left in
+ * the hot paths cost a check of one volatile flag. Latencies are kept in milliseconds in an
+ * {@link AmountSketch}, so every percentile is within 1% of the exact value. The same
+ * operations are recorded as {@link ExpenseFileEvent}s for JDK Flight Recorder.
+ */
+public final class Metrics {
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static volatile boolean enabled;
+
+    private Metrics() {
+    }
+
+    /**
+     * Starts measuring.
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the time to pass to {@link #record} once the measured operation is done, or 0
+     * when nothing is measured.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the latency of an operation started at a time returned by {@link #start}.
+     *
+     * @param name  The name of the operation.
+     * @param start The time the operation started.
+     */
+    public static void record(String name, long start) {
+        if (start != 0 && enabled) {
+            timers.computeIfAbsent(name, key -> new Timer()).record((System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param name   The name of the counter.
+     * @param amount The amount to add.
+     */
+    public static void count(String name, long amount) {
+        if (enabled) {
+            counters.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+        }
+    }
+
+    /**
+     * Returns the latencies recorded under a name, or {@code null} if there are none.
+     */
+    static Timer timer(String name) {
+        return timers.get(name);
+    }
+
+    /**
+     * Prints the count and percentiles of every operation, then every counter, by name.
+     *
+     * @param out The stream to print to.
+     */
+    public static void dump(PrintStream out) {
+        out.println("metrics:");
+        new TreeMap<>(timers).forEach((name, timer) -> timer.print(name, out));
+        new TreeMap<>(counters).forEach((name, counter) -> out.printf("  %-24s %14d%n", name, counter.sum()));
+    }
+
+    /**
+     * Stops measuring and forgets everything recorded so far.
+     */
+    static void reset() {
+        enabled = false;
+        timers.clear();
+        counters.clear();
+    }
+
+    /**
+     * The latencies of one operation. The sketch is not thread-safe, so it is only touched
+     * under the lock of the timer.
+     */
+    static final class Timer {
+        private final AmountSketch sketch = new AmountSketch();
+        private double max;
+
+        synchronized void record(double millis) {
+            sketch.add(millis);
+            max = Math.max(max, millis);
+        }
+
+        synchronized long count() {
+            return sketch.count();
+        }
+
+        synchronized void print(String name, PrintStream out) {
+            out.printf("  %-24s count %8d  p50 %9.3f ms  p90 %9.3f ms  p99 %9.3f ms  max %9.3f ms%n",
+                    name, sketch.count(), quantile(0.50), quantile(0.90), quantile(0.99), max);
+        }
+
+        /**
+         * Returns the estimate of a quantile, at most the largest latency, which the 1% error of
+         * the sketch could otherwise exceed.
+         */
+        private double quantile(double q) {
+            return Math.min(sketch.quantile(q), max);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.azvtech;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A contiguous range of whole months that reports are computed over.
+ *
+ * Periods are written as a single month ({@code 2024-03}), a quarter ({@code 2024-Q1})
+ * or a whole year ({@code 2024}).
+ */
+public final class ReportPeriod {
+    private final YearMonth first;
+    private final YearMonth last;
+    private final String label;
+
+    private ReportPeriod(YearMonth first, YearMonth last, String label) {
+        this.first = first;
+        this.last = last;
+        this.label = label;
+    }
+
+    /**
+     * Parses a period written as yyyy-MM, yyyy-Qn or yyyy.
+     *
+     * @param text The period to parse.
+     * @return The parsed period.
+     * @throws IllegalArgumentException If the text is not a valid period.
+     */
+    public static ReportPeriod parse(String text) {
+        String value = text.trim().toUpperCase();
+        try {
+            if (value.matches("\\d{4}-Q[1-4]")) {
+                int year = Integer.parseInt(value.substring(0, 4));
+                int quarter = value.charAt(6) - '0';
+                return quarter(year, quarter);
+            }
+            if (value.matches("\\d{4}")) {
+                int year = Integer.parseInt(value);
+                return new ReportPeriod(YearMonth.of(year, 1), YearMonth.of(year, 12), value);
+            }
+            YearMonth month = YearMonth.parse(value);
+            return new ReportPeriod(month, month, value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid period: " + text + ". Use yyyy-MM, yyyy-Qn or yyyy.");
+        }
+    }
+
+    /**
+     * Returns the quarter containing the given date.
+     *
+     * @param date The date.
+     * @return The quarter the date falls in.
+     */
+    public static ReportPeriod quarterOf(LocalDate date) {
+        return quarter(date.getYear(), (date.getMonthValue() - 1) / 3 + 1);
+    }
+
+    private static ReportPeriod quarter(int year, int quarter) {
+        YearMonth first = YearMonth.of(year, (quarter - 1) * 3 + 1);
+        return new ReportPeriod(first, first.plusMonths(2), year + "-Q" + quarter);
+    }
+
+    public YearMonth getFirst() {
+        return first;
+    }
+
+    public YearMonth getLast() {
+        return last;
+    }
+
+    public LocalDate getStart() {
+        return first.atDay(1);
+    }
+
+    public LocalDate getEnd() {
+        return last.atEndOfMonth();
+    }
+
+    /**
+     * Checks whether a date falls within this period.
+     *
+     * @param date The date to check; may be null.
+     * @return {@code true} if the date is within the period.
+     */
+    public boolean contains(LocalDate date) {
+        return date != null && !date.isBefore(getStart()) && !date.isAfter(getEnd());
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
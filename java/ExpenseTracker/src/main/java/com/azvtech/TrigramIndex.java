@@ -0,0 +1,399 @@
+package com.azvtech;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A trigram index for case-insensitive substring search over expense descriptions.
+ *
+ * The index works on distinct descriptions rather than on expenses: every distinct
+ * description gets an entry holding the ids of the expenses that use it, and each of the
+ * three-character sequences of its lower-cased text points to the entries containing it.
+ * A query picks the shortest posting list among its own trigrams and checks only those
+ * entries for the full substring, so its cost follows the number of candidate
+ * descriptions and matching expenses rather than the size of the ledger. Queries shorter
+ * than three characters check every distinct description.
+ *
+ * Entries and posting lists are maintained as expenses are added, removed or have their
+ * description changed, and entries are dropped once no expense uses them.
+ */
+public class TrigramIndex {
+    private static final int MAGIC = 0x45585447; // "EXTG"
+    private static final byte VERSION = 2;
+    /** Descriptions longer than this in the saved file are taken for corruption. */
+    private static final int MAX_DESCRIPTION_BYTES = 64 * 1024 * 1024;
+    /** Entries with more expenses than this get a hash index, on the first removal, to find them. */
+    private static final int LINEAR_SCAN_LIMIT = 16;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<Entry> byId = new ArrayList<>();
+    /** Ids of dropped entries, reused before new ids are handed out. */
+    private final List<Integer> freeIds = new ArrayList<>();
+    private final Map<Long, Posting> postings = new HashMap<>();
+    private int size;
+
+    /**
+     * Indexes an expense under its description.
+     *
+     * @param description The description; expenses without one are not indexed.
+     * @param id          The id of the expense.
+     */
+    public void add(String description, UUID id) {
+        if (description == null) {
+            return;
+        }
+        Entry entry = entries.get(description);
+        if (entry == null) {
+            entry = newEntry(description);
+        }
+        entry.add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        size++;
+    }
+
+    /**
+     * Removes an expense from the index.
+     *
+     * @param description The description the expense was indexed under.
+     * @param id          The id of the expense.
+     */
+    public void remove(String description, UUID id) {
+        Entry entry = description == null ? null : entries.get(description);
+        if (entry == null || !entry.remove(id.getMostSignificantBits(), id.getLeastSignificantBits())) {
+            return;
+        }
+        size--;
+        if (entry.count == 0) {
+            entries.remove(description);
+            byId.set(entry.id, null);
+            freeIds.add(entry.id);
+            for (long trigram : trigramsOf(entry.lower)) {
+                Posting posting = postings.get(trigram);
+                posting.remove(entry.id);
+                if (posting.size == 0) {
+                    postings.remove(trigram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the expenses whose description contains a text, ignoring case.
+     *
+     * @param query The text to look for.
+     * @return The ids of the matching expenses, grouped by description.
+     */
+    public List<UUID> search(String query) {
+        String lower = query.toLowerCase(Locale.ROOT);
+        List<UUID> result = new ArrayList<>();
+        if (lower.length() < 3) {
+            for (Entry entry : entries.values()) {
+                entry.collectIfContains(lower, result);
+            }
+            return result;
+        }
+
+        Posting shortest = null;
+        for (long trigram : trigramsOf(lower)) {
+            Posting posting = postings.get(trigram);
+            if (posting == null) {
+                return result;
+            }
+            if (shortest == null || posting.size < shortest.size) {
+                shortest = posting;
+            }
+        }
+        for (int i = 0; i < shortest.size; i++) {
+            byId.get(shortest.ids[i]).collectIfContains(lower, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of indexed expenses.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of distinct descriptions indexed.
+     */
+    public int descriptions() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+        byId.clear();
+        freeIds.clear();
+        postings.clear();
+        size = 0;
+    }
+
+    /**
+     * Builds an index of the descriptions of some expenses.
+     *
+     * @param expenses The expenses to index.
+     * @return The index.
+     */
+    public static TrigramIndex of(Iterable<Expense> expenses) {
+        TrigramIndex index = new TrigramIndex();
+        for (Expense expense : expenses) {
+            index.add(expense.getDescription(), expense.getId());
+        }
+        return index;
+    }
+
+    /**
+     * Saves the index, tagged with the fingerprint of the store it describes. Only the
+     * entries are written; posting lists are rebuilt from the distinct descriptions on load.
+     *
+     * @param path        The file to save to.
+     * @param fingerprint The fingerprint of the expense store file.
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    public void save(Path path, String fingerprint) throws IOException {
+        write(path, serialize(fingerprint));
+    }
+
+    /**
+     * Returns the content of the file {@link #save} writes, so the index can be captured
+     * under a lock and written to disk after the lock is released.
+     *
+     * @param fingerprint The fingerprint of the expense store file.
+     * @return The serialized index.
+     */
+    public byte[] serialize(String fingerprint) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                // Length-prefixed rather than writeUTF, which is limited to 64 KB.
+                byte[] value = entry.value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(value.length);
+                out.write(value);
+                out.writeInt(entry.count);
+                for (int i = 0; i < entry.count * 2; i++) {
+                    out.writeLong(entry.ids[i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes an index serialized by {@link #serialize} to a file, replacing it atomically.
+     *
+     * @param path  The file to write.
+     * @param index The serialized index.
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    public static void write(Path path, byte[] index) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temporary, index);
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a previously saved index if it still describes the given store.
+     *
+     * @param path        The file to load from.
+     * @param fingerprint The current fingerprint of the expense store file.
+     * @return The index, or {@code null} if the file is missing, unreadable or stale.
+     */
+    public static TrigramIndex load(Path path, String fingerprint) {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION || !fingerprint.equals(in.readUTF())) {
+                return null;
+            }
+            TrigramIndex index = new TrigramIndex();
+            byte[] buffer = new byte[0];
+            for (int remaining = in.readInt(); remaining > 0; remaining--) {
+                int length = in.readInt();
+                if (length < 0 || length > MAX_DESCRIPTION_BYTES) {
+                    return null;
+                }
+                byte[] value = new byte[length];
+                in.readFully(value);
+                Entry entry = index.newEntry(new String(value, StandardCharsets.UTF_8));
+                int count = in.readInt();
+                if (buffer.length < count * 16) {
+                    buffer = new byte[count * 16];
+                }
+                in.readFully(buffer, 0, count * 16);
+                entry.addAll(ByteBuffer.wrap(buffer, 0, count * 16).asLongBuffer(), count);
+                index.size += count;
+            }
+            return index;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Entry newEntry(String description) {
+        int id;
+        if (freeIds.isEmpty()) {
+            id = byId.size();
+            byId.add(null);
+        } else {
+            id = freeIds.remove(freeIds.size() - 1);
+        }
+        Entry entry = new Entry(description, id);
+        entries.put(description, entry);
+        byId.set(id, entry);
+        for (long trigram : trigramsOf(entry.lower)) {
+            postings.computeIfAbsent(trigram, t -> new Posting()).add(id);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the distinct trigrams of a lower-cased text, each packed into a long.
+     */
+    private static Set<Long> trigramsOf(String lower) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            trigrams.add(((long) lower.charAt(i) << 32) | ((long) lower.charAt(i + 1) << 16) | lower.charAt(i + 2));
+        }
+        return trigrams;
+    }
+
+    /**
+     * A distinct description and the ids of the expenses using it, as interleaved
+     * most and least significant bits.
+     */
+    private static final class Entry {
+        final String value;
+        final String lower;
+        final int id;
+        long[] ids = new long[2];
+        int count;
+        /** Positions of the ids, created once there are too many to scan. */
+        ExpenseIdIndex positions;
+
+        Entry(String value, int id) {
+            this.value = value;
+            this.lower = value.toLowerCase(Locale.ROOT);
+            this.id = id;
+        }
+
+        void add(long msb, long lsb) {
+            if (count * 2 == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[count * 2] = msb;
+            ids[count * 2 + 1] = lsb;
+            if (positions != null) {
+                positions.put(msb, lsb, count);
+            }
+            count++;
+        }
+
+        /**
+         * Appends ids read in bulk, as interleaved most and least significant bits.
+         */
+        void addAll(LongBuffer source, int added) {
+            if ((count + added) * 2 > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(ids.length * 2, (count + added) * 2));
+            }
+            source.get(ids, count * 2, added * 2);
+            if (positions != null) {
+                for (int i = count; i < count + added; i++) {
+                    positions.put(ids[i * 2], ids[i * 2 + 1], i);
+                }
+            }
+            count += added;
+        }
+
+        boolean remove(long msb, long lsb) {
+            if (positions == null && count > LINEAR_SCAN_LIMIT) {
+                // Built lazily, so that loads and entries that are only ever added to never pay for it.
+                positions = new ExpenseIdIndex();
+                for (int i = 0; i < count; i++) {
+                    positions.put(ids[i * 2], ids[i * 2 + 1], i);
+                }
+            }
+            int position = positions != null ? positions.remove(msb, lsb) : find(msb, lsb);
+            if (position < 0) {
+                return false;
+            }
+            count--;
+            if (position != count) {
+                ids[position * 2] = ids[count * 2];
+                ids[position * 2 + 1] = ids[count * 2 + 1];
+                if (positions != null) {
+                    positions.put(ids[position * 2], ids[position * 2 + 1], position);
+                }
+            }
+            return true;
+        }
+
+        void collectIfContains(String lowerQuery, List<UUID> result) {
+            if (lower.contains(lowerQuery)) {
+                for (int i = 0; i < count; i++) {
+                    result.add(new UUID(ids[i * 2], ids[i * 2 + 1]));
+                }
+            }
+        }
+
+        private int find(long msb, long lsb) {
+            for (int i = 0; i < count; i++) {
+                if (ids[i * 2] == msb && ids[i * 2 + 1] == lsb) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * An unordered list of entry ids.
+     */
+    private static final class Posting {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
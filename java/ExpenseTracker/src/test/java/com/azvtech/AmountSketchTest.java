@@ -0,0 +1,95 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for AmountSketch.
+ */
+public class AmountSketchTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public AmountSketchTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( AmountSketchTest.class );
+    }
+
+    /**
+     * Quantiles of a merged sketch stay within the relative accuracy of the exact values,
+     * and removing amounts restores the earlier quantiles.
+     */
+    public void testQuantilesMergeAndRemove()
+    {
+        Random random = new Random(7);
+        double[] amounts = new double[20000];
+        AmountSketch first = new AmountSketch();
+        AmountSketch second = new AmountSketch();
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = Math.round(Math.exp(random.nextGaussian() * 1.5 + 3) * 100) / 100.0;
+            (i % 2 == 0 ? first : second).add(amounts[i]);
+        }
+        AmountSketch merged = new AmountSketch();
+        merged.merge(first);
+        merged.merge(second);
+
+        double[] sorted = amounts.clone();
+        Arrays.sort(sorted);
+        for (double q : new double[] {0.0, 0.5, 0.95, 0.99, 1.0}) {
+            double exact = sorted[(int) Math.round(q * (sorted.length - 1))];
+            assertEquals( exact, merged.quantile(q), exact * AmountSketch.RELATIVE_ACCURACY );
+        }
+        assertEquals( amounts.length, merged.count() );
+
+        double p95 = merged.quantile(0.95);
+        merged.add(1_000_000);
+        merged.add(-25);
+        merged.remove(1_000_000);
+        merged.remove(-25);
+        assertEquals( p95, merged.quantile(0.95), 0.0 );
+        assertEquals( amounts.length, merged.count() );
+    }
+
+    /**
+     * An empty sketch has no quantiles.
+     */
+    public void testEmpty()
+    {
+        assertTrue( Double.isNaN(new AmountSketch().quantile(0.5)) );
+    }
+
+    /**
+     * Removing an amount that was never counted is an error, and leaves the sketch as it was.
+     */
+    public void testRemoveUncountedAmount()
+    {
+        AmountSketch sketch = new AmountSketch();
+        sketch.add(12.5);
+        for (double amount : new double[] {40, -12.5, 0}) {
+            try {
+                sketch.remove(amount);
+                fail( "Removed " + amount );
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+        assertEquals( 1, sketch.count() );
+        assertEquals( 12.5, sketch.quantile(0.5), 12.5 * AmountSketch.RELATIVE_ACCURACY );
+    }
+}
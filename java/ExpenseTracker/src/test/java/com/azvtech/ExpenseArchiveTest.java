@@ -0,0 +1,233 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Unit tests for archiving old months of an ExpenseStore into the ExpenseArchive.
+ */
+public class ExpenseArchiveTest
+    extends TestCase
+{
+    private final TempDirectories temp = new TempDirectories();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ExpenseArchiveTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ExpenseArchiveTest.class );
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        temp.deleteAll();
+    }
+
+    /**
+     * An archived store answers totals, listings, ranges, searches and sketches exactly like
+     * the same store before archiving, also after it is loaded again, and its archived
+     * expenses can no longer be changed.
+     */
+    public void testArchivedStoreAnswersLikeTheOriginal() throws Exception
+    {
+        Path directory = temp.create("archive");
+        ExpenseStore store = new ExpenseStore(directory);
+        ExpenseStore reference = new ExpenseStore(temp.create("reference"));
+        String[] descriptions = {"Uber to airport", "Lunch", "Coffee", "Museum ticket"};
+        Random random = new Random(5);
+        List<Expense> old = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            LocalDate date = LocalDate.of(2023, 1, 1).plusDays(random.nextInt(3 * 365));
+            Expense expense = new Expense(UUID.randomUUID(), random.nextInt(10000) / 100.0,
+                    descriptions[random.nextInt(descriptions.length)], date,
+                    ExpenseCategory.values()[random.nextInt(ExpenseCategory.values().length)]);
+            store.add(expense);
+            reference.add(expense);
+            if (date.getYear() < 2025) {
+                old.add(expense);
+            }
+        }
+        store.save();
+
+        assertEquals( old.size(), store.archive(YearMonth.of(2025, 1)) );
+        assertNull( store.get(old.get(0).getId()) );
+        assertNull( store.remove(old.get(0).getId()) );
+
+        ExpenseStore loaded = new ExpenseStore(directory);
+        loaded.load();
+        for (ExpenseStore archived : new ExpenseStore[] {store, loaded}) {
+            assertEquals( reference.size(), archived.size() );
+            assertEquals( reference.total(), archived.total(), 1e-6 );
+            assertEquals( reference.total(Month.MARCH), archived.total(Month.MARCH), 1e-6 );
+            assertEquals( reference.size(Month.MARCH), archived.size(Month.MARCH) );
+            assertEquals( ids(reference.range(LocalDate.of(2023, 11, 5), LocalDate.of(2025, 2, 3), ExpenseCategory.FOOD)),
+                    ids(archived.range(LocalDate.of(2023, 11, 5), LocalDate.of(2025, 2, 3), ExpenseCategory.FOOD)) );
+            assertEquals( ids(reference.search("uber", null, null, null)), ids(archived.search("uber", null, null, null)) );
+            assertEquals( ids(reference.search("muse", LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 30), null)),
+                    ids(archived.search("muse", LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 30), null)) );
+            assertEquals( reference.list(ExpenseCategory.FOOD).size(), archived.list(ExpenseCategory.FOOD).size() );
+            assertEquals( reference.list().size(), archived.list().size() );
+            ReportPeriod year = ReportPeriod.parse("2024");
+            assertEquals( reference.sketch(year, null).count(), archived.sketch(year, null).count() );
+        }
+    }
+
+    /**
+     * Current-year queries never read an archive block, and the block summaries are rebuilt
+     * from the blocks when the archive index is lost.
+     */
+    public void testCurrentQueriesSkipArchiveBlocks() throws Exception
+    {
+        Path directory = temp.create("archive");
+        ExpenseStore store = new ExpenseStore(directory);
+        store.add(new Expense(UUID.randomUUID(), 10, "Rent", LocalDate.of(2024, 3, 1), ExpenseCategory.OTHER));
+        store.add(new Expense(UUID.randomUUID(), 20, "Lunch", LocalDate.of(2025, 3, 1), ExpenseCategory.FOOD));
+        store.archive(YearMonth.of(2025, 1));
+
+        Files.delete(directory.resolve(ExpenseArchive.DIRECTORY).resolve("index.json"));
+        ExpenseStore loaded = new ExpenseStore(directory);
+        loaded.load();
+        assertEquals( 30.0, loaded.total(), 1e-9 );
+
+        Files.write(directory.resolve(ExpenseArchive.DIRECTORY).resolve("2024-03.block"), new byte[] {1, 2, 3});
+        assertEquals( 1, loaded.range(LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31), null).size() );
+        assertEquals( 1, loaded.list(ExpenseCategory.FOOD).size() );
+        assertEquals( 1, loaded.search("lunch", null, null, null).size() );
+        assertEquals( 30.0, loaded.total(), 1e-9 );
+        try {
+            loaded.range(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31), null);
+            fail( "a corrupt block should be reported" );
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * An archive run that fails after some months leaves every expense counted once, both
+     * when the store is loaded again and when the archive is run again.
+     */
+    public void testInterruptedArchiveCountsEveryExpenseOnce() throws Exception
+    {
+        Path directory = temp.create("archive");
+        ExpenseStore store = new ExpenseStore(directory);
+        for (int month = 1; month <= 3; month++) {
+            for (int day = 1; day <= 5; day++) {
+                store.add(new Expense(UUID.randomUUID(), month * 10 + day, "Lunch", LocalDate.of(2024, month, day), ExpenseCategory.FOOD));
+            }
+        }
+        store.save();
+        double total = store.total();
+        // A directory where the February block goes makes writing that block fail.
+        Path obstacle = Files.createDirectories(directory.resolve(ExpenseArchive.DIRECTORY).resolve("2024-02.block"));
+        Files.write(obstacle.resolve("file"), new byte[] {0});
+        try {
+            store.archive(YearMonth.of(2024, 4));
+            fail( "writing the February block should fail" );
+        } catch (IOException e) {
+            // expected
+        }
+
+        ExpenseStore loaded = new ExpenseStore(directory);
+        loaded.load();
+        assertEquals( 15, loaded.size() );
+        assertEquals( total, loaded.total(), 1e-9 );
+        assertEquals( 15, loaded.list().size() );
+
+        // Expenses archived but still in the store, as if the store had not been saved.
+        ExpenseArchive archive = new ExpenseArchive(directory);
+        archive.load();
+        List<Expense> january = archive.read(YearMonth.of(2024, 1));
+        for (Expense expense : january) {
+            loaded.add(expense);
+        }
+        loaded.save();
+        loaded = new ExpenseStore(directory);
+        loaded.load();
+        assertEquals( 15, loaded.size() );
+        assertEquals( total, loaded.total(), 1e-9 );
+        for (Expense expense : january) {
+            loaded.add(expense);
+        }
+
+        Files.delete(obstacle.resolve("file"));
+        Files.delete(obstacle);
+        assertEquals( 15, loaded.archive(YearMonth.of(2024, 4)) );
+        archive.load();
+        assertEquals( 5, archive.summaries().get(YearMonth.of(2024, 1)).count() );
+        loaded = new ExpenseStore(directory);
+        loaded.load();
+        assertEquals( 15, loaded.size() );
+        assertEquals( total, loaded.total(), 1e-9 );
+    }
+
+    /**
+     * The description filter of a block has the same size however many descriptions the
+     * block has, never rules out a block holding a match, and rules out most blocks that
+     * hold none.
+     */
+    public void testDescriptionFilter()
+    {
+        List<Expense> few = new ArrayList<>();
+        List<Expense> many = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Expense expense = new Expense(UUID.randomUUID(), 1, "Taxi " + i, LocalDate.of(2024, 1, 1), ExpenseCategory.TRANSPORT);
+            many.add(expense);
+            if (i < 10) {
+                few.add(expense);
+            }
+        }
+        ExpenseArchive.Summary small = ExpenseArchive.Summary.of(YearMonth.of(2024, 1), few);
+        ExpenseArchive.Summary large = ExpenseArchive.Summary.of(YearMonth.of(2024, 1), many);
+        assertEquals( small.descriptionFilter.length, large.descriptionFilter.length );
+
+        for (String query : new String[] {"t", "ta", "taxi", "xi 7", "taxi 999", " 5"}) {
+            assertTrue( query, large.mayContain(query) );
+        }
+        assertTrue( small.mayContain("taxi 9") );
+        assertFalse( small.mayContain("museum") );
+        assertFalse( small.mayContain("taxi 42") );
+        assertFalse( small.mayContain("q") );
+    }
+
+    /**
+     * Returns the ids of expenses listed in date order; expenses of the same day may come in any order.
+     */
+    private static Set<UUID> ids(List<Expense> expenses)
+    {
+        Set<UUID> ids = new HashSet<>();
+        for (int i = 0; i < expenses.size(); i++) {
+            if (i > 0) {
+                assertFalse( expenses.get(i).getDate().isBefore(expenses.get(i - 1).getDate()) );
+            }
+            ids.add(expenses.get(i).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,122 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Unit tests for budgets and their threshold alerts.
+ */
+public class ExpenseBudgetsTest
+    extends TestCase
+{
+    private final TempDirectories temp = new TempDirectories();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ExpenseBudgetsTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ExpenseBudgetsTest.class );
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        temp.deleteAll();
+    }
+
+    /**
+     * Each threshold raises one alert, from the write that crosses it, for the budget of the
+     * category and of the whole month; loading the store raises none.
+     */
+    public void testAlertsOnCrossingWrites() throws Exception
+    {
+        Path directory = temp.create("budgets");
+        YearMonth march = YearMonth.of(2025, 3);
+        ExpenseStore store = new ExpenseStore(directory);
+        store.setBudget(march, null, 200);
+        store.setBudget(march, ExpenseCategory.FOOD, 100);
+        List<String> alerts = new ArrayList<>();
+        store.addBudgetListener(alert -> alerts.add(alert.getCategory() + "@" + alert.getThreshold()));
+
+        store.add(new Expense(UUID.randomUUID(), 40, "Lunch", LocalDate.of(2025, 3, 1), ExpenseCategory.FOOD));
+        assertTrue( alerts.isEmpty() );
+        Expense dinner = new Expense(UUID.randomUUID(), 20, "Dinner", LocalDate.of(2025, 3, 2), ExpenseCategory.FOOD);
+        store.add(dinner);
+        assertEquals( "[FOOD@50]", alerts.toString() );
+        store.update(dinner.getId(), 70, "Dinner", ExpenseCategory.FOOD);
+        assertEquals( "[FOOD@50, FOOD@100, null@50]", alerts.toString() );
+        store.add(new Expense(UUID.randomUUID(), 5, "Lunch", LocalDate.of(2025, 4, 1), ExpenseCategory.FOOD));
+        store.add(new Expense(UUID.randomUUID(), 60, "Train", LocalDate.of(2025, 3, 3), ExpenseCategory.TRANSPORT));
+        assertEquals( "[FOOD@50, FOOD@100, null@50, null@80]", alerts.toString() );
+        assertEquals( 1.1, store.budgetUsage(march, ExpenseCategory.FOOD), 1e-9 );
+        assertEquals( 0.85, store.budgetUsage(march, null), 1e-9 );
+        assertNull( store.budgetUsage(march, ExpenseCategory.OTHER) );
+        store.save();
+
+        ExpenseStore loaded = new ExpenseStore(directory);
+        List<String> reloaded = new ArrayList<>();
+        loaded.addBudgetListener(alert -> reloaded.add(alert.toString()));
+        loaded.load();
+        assertTrue( reloaded.isEmpty() );
+        assertEquals( 100.0, loaded.getBudget(march, ExpenseCategory.FOOD) );
+        assertEquals( 0.85, loaded.budgetUsage(march, null), 1e-9 );
+    }
+
+    /**
+     * Budgets saved per calendar month are loaded as budgets of the current year.
+     */
+    public void testLoadsCalendarMonthBudgets() throws Exception
+    {
+        Path file = temp.create("budgets").resolve(ExpenseStore.BUDGET_FILE);
+        Files.write(file, "{\"MARCH\": 120.0, \"2024-05:FOOD\": 30.0}".getBytes(StandardCharsets.UTF_8));
+        ExpenseBudgets budgets = new ExpenseBudgets();
+        budgets.load(file);
+        assertEquals( 120.0, budgets.get(Year.now().atMonth(3), null) );
+        assertEquals( 30.0, budgets.get(YearMonth.of(2024, 5), ExpenseCategory.FOOD) );
+        assertNull( budgets.get(YearMonth.of(2024, 5), null) );
+    }
+
+    /**
+     * A budget file with a key that is not a month or a category is reported as corrupt, and
+     * the budgets already loaded are kept.
+     */
+    public void testRejectsCorruptBudgetFile() throws Exception
+    {
+        Path file = temp.create("budgets").resolve(ExpenseStore.BUDGET_FILE);
+        ExpenseBudgets budgets = new ExpenseBudgets();
+        budgets.set(YearMonth.of(2024, 5), null, 100.0);
+        for (String json : new String[] { "{\"2024-13\": 1.0}", "{\"2024-05:RENT\": 1.0}", "{\"\": 1.0}", "[1.0]" }) {
+            Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+            try {
+                budgets.load(file);
+                fail( json );
+            } catch (IOException e) {
+                assertTrue( e.getMessage(), e.getMessage().startsWith("Corrupt budget file") );
+            }
+        }
+        assertEquals( 100.0, budgets.get(YearMonth.of(2024, 5), null) );
+    }
+}
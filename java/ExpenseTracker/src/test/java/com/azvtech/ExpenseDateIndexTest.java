@@ -0,0 +1,84 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Unit tests for ExpenseDateIndex.
+ */
+public class ExpenseDateIndexTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ExpenseDateIndexTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ExpenseDateIndexTest.class );
+    }
+
+    /**
+     * After random adds, category changes and removals, range queries with and without a
+     * category return the same expenses as a full scan, in date order.
+     */
+    public void testRangeMatchesScan()
+    {
+        Random random = new Random(3);
+        ExpenseCategory[] categories = ExpenseCategory.values();
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        ExpenseDateIndex index = new ExpenseDateIndex();
+        List<Expense> live = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            int action = random.nextInt(10);
+            if (action < 6 || live.isEmpty()) {
+                Expense expense = new Expense(UUID.randomUUID(), i, "Expense " + i,
+                        start.plusDays(random.nextInt(365)), categories[random.nextInt(categories.length)]);
+                index.add(expense);
+                live.add(expense);
+            } else if (action < 8) {
+                Expense expense = live.get(random.nextInt(live.size()));
+                index.remove(expense);
+                expense.setCategory(categories[random.nextInt(categories.length)]);
+                index.add(expense);
+            } else {
+                index.remove(live.remove(random.nextInt(live.size())));
+            }
+        }
+
+        LocalDate from = start.plusDays(40);
+        LocalDate to = start.plusDays(200);
+        List<Expense> expected = live.stream()
+                .filter(e -> !e.getDate().isBefore(from) && !e.getDate().isAfter(to))
+                .sorted(Comparator.comparing(Expense::getDate))
+                .collect(Collectors.toList());
+        List<Expense> actual = index.range(from, to, null);
+        assertEquals( expected.size(), actual.size() );
+        assertEquals( expected.stream().map(Expense::getDate).collect(Collectors.toList()),
+                actual.stream().map(Expense::getDate).collect(Collectors.toList()) );
+        assertTrue( actual.containsAll(expected) );
+
+        List<Expense> food = index.range(from, to, ExpenseCategory.FOOD);
+        assertEquals( expected.stream().filter(e -> e.getCategory() == ExpenseCategory.FOOD).count(), food.size() );
+        assertEquals( live.size(), index.range(LocalDate.MIN, LocalDate.MAX, null).size() );
+    }
+}
@@ -0,0 +1,140 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for ExpenseLedger and its id index.
+ */
+public class ExpenseLedgerTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ExpenseLedgerTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ExpenseLedgerTest.class );
+    }
+
+    /**
+     * Expenses are found by id after being added, and not after being removed.
+     */
+    public void testAddGetRemove()
+    {
+        ExpenseLedger ledger = new ExpenseLedger();
+        Expense coffee = new Expense(3.5, "Coffee", ExpenseCategory.FOOD);
+        Expense bus = new Expense(2.0, "Bus ticket", ExpenseCategory.TRANSPORT);
+
+        assertTrue( ledger.add(coffee) );
+        assertTrue( ledger.add(bus) );
+        assertFalse( ledger.add(coffee) );
+        assertEquals( 2, ledger.size() );
+        assertSame( bus, ledger.get(bus.getId()) );
+
+        assertSame( coffee, ledger.remove(coffee.getId()) );
+        assertNull( ledger.get(coffee.getId()) );
+        assertNull( ledger.remove(coffee.getId()) );
+        assertEquals( 1, ledger.size() );
+    }
+
+    /**
+     * Equal descriptions share one instance, and dictionary entries are dropped once
+     * deletes and updates leave them unreferenced.
+     */
+    public void testDescriptionsAreSharedAndReleased()
+    {
+        ExpenseLedger ledger = new ExpenseLedger();
+        Expense first = new Expense(3.5, new String("Coffee"), ExpenseCategory.FOOD);
+        Expense second = new Expense(3.0, new String("Coffee"), ExpenseCategory.FOOD);
+        ledger.add(first);
+        ledger.add(second);
+
+        DescriptionDictionary descriptions = ledger.descriptions();
+        assertSame( first.getDescription(), second.getDescription() );
+        assertEquals( 1, descriptions.size() );
+
+        ledger.setDescription(first, "Espresso");
+        assertEquals( 2, descriptions.size() );
+        ledger.remove(second.getId());
+        assertEquals( 1, descriptions.size() );
+        assertEquals( -1, descriptions.idOf("Coffee") );
+        assertEquals( "Espresso", descriptions.get(descriptions.idOf("Espresso")) );
+    }
+
+    /**
+     * Ledgers sharing a dictionary intern into it together, clearing one only releases its
+     * own descriptions, and a pinned dictionary keeps released entries and their ids until
+     * it is unpinned.
+     */
+    public void testSharedDictionaryAndPinning()
+    {
+        DescriptionDictionary descriptions = new DescriptionDictionary();
+        ExpenseLedger january = new ExpenseLedger(descriptions);
+        ExpenseLedger february = new ExpenseLedger(descriptions);
+        Expense coffee = new Expense(3.5, new String("Coffee"), ExpenseCategory.FOOD);
+        Expense lunch = new Expense(12, "Lunch", ExpenseCategory.FOOD);
+        january.add(coffee);
+        january.add(lunch);
+        february.add(new Expense(3.0, new String("Coffee"), ExpenseCategory.FOOD));
+        assertEquals( 2, descriptions.size() );
+
+        february.clear();
+        assertEquals( 2, descriptions.size() );
+
+        int id = descriptions.idOf("Lunch");
+        descriptions.pin();
+        january.remove(lunch.getId());
+        january.add(new Expense(9, "Dinner", ExpenseCategory.FOOD));
+        assertEquals( id, descriptions.idOf("Lunch") );
+        assertFalse( id == descriptions.idOf("Dinner") );
+        descriptions.unpin();
+        assertEquals( -1, descriptions.idOf("Lunch") );
+        assertEquals( "Coffee", descriptions.get(descriptions.idOf("Coffee")) );
+    }
+
+    /**
+     * Random removals keep the remaining expenses in insertion order and reachable by id,
+     * across tombstone compaction and the backward-shift deletions of the id index.
+     */
+    public void testRemovalKeepsInsertionOrder()
+    {
+        ExpenseLedger ledger = new ExpenseLedger();
+        List<Expense> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Expense expense = new Expense(i, "Expense " + i, ExpenseCategory.OTHER);
+            ledger.add(expense);
+            expected.add(expense);
+        }
+
+        Random random = new Random(42);
+        while (expected.size() > 10) {
+            Expense victim = expected.remove(random.nextInt(expected.size()));
+            assertSame( victim, ledger.remove(victim.getId()) );
+        }
+
+        List<Expense> actual = new ArrayList<>();
+        for (Expense expense : ledger) {
+            actual.add(expense);
+        }
+        assertEquals( expected, actual );
+        for (Expense expense : expected) {
+            assertSame( expense, ledger.get(expense.getId()) );
+        }
+    }
+}
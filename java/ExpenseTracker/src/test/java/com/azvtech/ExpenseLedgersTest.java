@@ -0,0 +1,99 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Unit tests for named ledgers and the reports across them.
+ */
+public class ExpenseLedgersTest
+    extends TestCase
+{
+    private final TempDirectories temp = new TempDirectories();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ExpenseLedgersTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ExpenseLedgersTest.class );
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        temp.deleteAll();
+    }
+
+    /**
+     * Each ledger keeps its own expenses and budgets across a save and load, and the
+     * parallel report and budget check merge the ledgers' partial results.
+     */
+    public void testReportAndBudgetsAcrossLedgers() throws Exception
+    {
+        Path base = temp.create("ledgers");
+        ExpenseLedgers ledgers = new ExpenseLedgers(base, 2);
+        String[] names = {"sales", "marketing", "it"};
+        for (int i = 0; i < names.length; i++) {
+            ExpenseStore store = new ExpenseStore(ledgers.directoryOf(names[i]));
+            for (int day = 1; day <= 10; day++) {
+                store.add(new Expense(UUID.randomUUID(), 10 * (i + 1), "Lunch", LocalDate.of(2025, 3, day), ExpenseCategory.FOOD));
+            }
+            store.add(new Expense(UUID.randomUUID(), 5, "Bus", LocalDate.of(2025, 4, 1), ExpenseCategory.TRANSPORT));
+            store.setBudget(YearMonth.of(2025, 3), null, 150);
+            store.save();
+        }
+
+        assertEquals( Arrays.asList("it", "marketing", "sales"), ledgers.names() );
+        assertEquals( 150.0, ledgers.open("sales").getBudget(YearMonth.of(2025, 3), null) );
+
+        ExpenseLedgers.Report report = ledgers.report(ReportPeriod.parse("2025-Q1"));
+        assertEquals( 600.0, report.total(), 1e-9 );
+        assertEquals( 600.0, report.total(ExpenseCategory.FOOD), 1e-9 );
+        assertEquals( 0.0, report.total(ExpenseCategory.TRANSPORT), 1e-9 );
+        assertEquals( 200.0, report.getLedgerTotals().get("marketing"), 1e-9 );
+        assertEquals( 615.0, ledgers.report(ReportPeriod.parse("2025")).total(), 1e-9 );
+
+        List<ExpenseLedgers.BudgetStatus> statuses = ledgers.checkBudgets(YearMonth.of(2025, 3));
+        assertEquals( 3, statuses.size() );
+        for (ExpenseLedgers.BudgetStatus status : statuses) {
+            assertEquals( !status.getLedger().equals("sales"), status.isExceeded() );
+        }
+        List<ExpenseLedgers.BudgetStatus> reported = ledgers.report(ReportPeriod.parse("2025-Q1"), YearMonth.of(2025, 3)).getBudgetStatuses();
+        assertEquals( 3, reported.size() );
+        for (int i = 0; i < reported.size(); i++) {
+            assertEquals( statuses.get(i).getLedger(), reported.get(i).getLedger() );
+            assertEquals( statuses.get(i).getSpent(), reported.get(i).getSpent(), 1e-9 );
+        }
+        assertTrue( report.getBudgetStatuses().isEmpty() );
+
+        assertEquals( 0, ledgers.open("missing").size() );
+        assertFalse( Files.exists(base.resolve(ExpenseLedgers.DIRECTORY).resolve("missing")) );
+
+        try {
+            ledgers.directoryOf("../escape");
+            fail( "ledger names must not leave the ledgers directory" );
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
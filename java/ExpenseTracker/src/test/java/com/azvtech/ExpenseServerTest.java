@@ -0,0 +1,94 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Unit tests for the ExpenseServer HTTP API.
+ */
+public class ExpenseServerTest
+    extends TestCase
+{
+    private final TempDirectories temp = new TempDirectories();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ExpenseServerTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ExpenseServerTest.class );
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        temp.deleteAll();
+    }
+
+    /**
+     * Writes through the API invalidate the cached summary, and are saved when the server stops.
+     */
+    public void testWritesInvalidateSummaryAndAreSaved() throws Exception
+    {
+        Path directory = temp.create("server");
+        ExpenseServer server = new ExpenseServer(new ExpenseStore(directory), 0);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getPort();
+        try {
+            assertEquals( "{\"count\":0,\"total\":0.0}", request("GET", base + "/summary", null) );
+            String added = request("POST", base + "/expenses", "{\"amount\":12.5,\"description\":\"Lunch\",\"category\":\"food\"}");
+            assertTrue( added.contains("\"category\":\"FOOD\"") );
+            assertEquals( "{\"count\":1,\"total\":12.5}", request("GET", base + "/summary", null) );
+
+            String id = added.substring(added.indexOf("\"id\":\"") + 6, added.indexOf("\",\""));
+            request("DELETE", base + "/expenses/" + id, null);
+            assertEquals( "[]", request("GET", base + "/expenses?category=food", null) );
+            assertEquals( "{\"count\":0,\"total\":0.0}", request("GET", base + "/summary", null) );
+        } finally {
+            server.stop();
+        }
+        assertTrue( Files.exists(directory.resolve(ExpenseStore.EXPENSE_FILE)) );
+    }
+
+    private static String request(String method, String url, String body) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        assertTrue( connection.getResponseCode() < 300 );
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[4096];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                response.write(buffer, 0, read);
+            }
+        }
+        return new String(response.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Unit tests for the binary ExpenseSnapshot format.
+ */
+public class ExpenseSnapshotTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ExpenseSnapshotTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ExpenseSnapshotTest.class );
+    }
+
+    /**
+     * Every field survives a write and read, including raw amounts and missing values.
+     */
+    public void testRoundTrip() throws IOException
+    {
+        List<Expense> expenses = new ArrayList<>();
+        expenses.add(new Expense(UUID.randomUUID(), 12.5, "Lunch", LocalDate.of(2024, 3, 1), ExpenseCategory.FOOD));
+        expenses.add(new Expense(UUID.randomUUID(), 0.1, "Lunch", LocalDate.of(2023, 12, 31), ExpenseCategory.OTHER));
+        expenses.add(new Expense(UUID.randomUUID(), Math.PI, "Café ☕", LocalDate.of(2025, 1, 1), null));
+        expenses.add(new Expense(UUID.randomUUID(), -42, null, null, ExpenseCategory.HEALTHCARE));
+
+        Path file = Files.createTempFile("expenses", ".bin");
+        try {
+            ExpenseSnapshot.write(file, expenses);
+            List<Expense> read = ExpenseSnapshot.read(file);
+
+            assertEquals( expenses.size(), read.size() );
+            for (int i = 0; i < expenses.size(); i++) {
+                Expense expected = expenses.get(i);
+                Expense actual = read.get(i);
+                assertEquals( expected.getId(), actual.getId() );
+                assertEquals( expected.getAmount(), actual.getAmount(), 0.0 );
+                assertEquals( expected.getDescription(), actual.getDescription() );
+                assertEquals( expected.getDate(), actual.getDate() );
+                assertEquals( expected.getCategory(), actual.getCategory() );
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A flipped byte is reported instead of silently producing wrong expenses.
+     */
+    public void testCorruptionIsDetected() throws IOException
+    {
+        List<Expense> expenses = new ArrayList<>();
+        expenses.add(new Expense(UUID.randomUUID(), 9.99, "Book", LocalDate.of(2024, 5, 20), ExpenseCategory.ENTERTAINMENT));
+
+        Path file = Files.createTempFile("expenses", ".bin");
+        try {
+            ExpenseSnapshot.write(file, expenses);
+            byte[] bytes = Files.readAllBytes(file);
+            bytes[bytes.length - 8] ^= 0x01;
+            Files.write(file, bytes);
+
+            ExpenseSnapshot.read(file);
+            fail( "Expected a corrupt snapshot to be rejected" );
+        } catch (IOException expected) {
+            // expected
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A count in the header larger than the file could hold is rejected before anything is
+     * allocated for it.
+     */
+    public void testOversizedCountIsRejected() throws IOException
+    {
+        List<Expense> expenses = new ArrayList<>();
+        expenses.add(new Expense(UUID.randomUUID(), 9.99, "Book", LocalDate.of(2024, 5, 20), ExpenseCategory.ENTERTAINMENT));
+
+        Path file = Files.createTempFile("expenses", ".bin");
+        try {
+            ExpenseSnapshot.write(file, expenses);
+            byte[] bytes = Files.readAllBytes(file);
+            // The magic and version take five bytes, then comes the count of one expense.
+            assertEquals( 1, bytes[5] );
+            ByteArrayOutputStream patched = new ByteArrayOutputStream();
+            patched.write(bytes, 0, 5);
+            patched.write(new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+            patched.write(bytes, 6, bytes.length - 6);
+            Files.write(file, patched.toByteArray());
+
+            ExpenseSnapshot.read(file);
+            fail( "Expected an oversized count to be rejected" );
+        } catch (IOException expected) {
+            assertTrue( expected.getMessage(), expected.getMessage().startsWith("Corrupt expense snapshot") );
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for the thread-safe ExpenseStore.
+ */
+public class ExpenseStoreTest
+    extends TestCase
+{
+    private final TempDirectories temp = new TempDirectories();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ExpenseStoreTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ExpenseStoreTest.class );
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        temp.deleteAll();
+    }
+
+    /**
+     * Concurrent writers adding, updating and deleting across months, while readers keep
+     * taking summaries, leave the store with exactly the expenses each writer kept.
+     */
+    public void testConcurrentWritesAndSummaries() throws Exception
+    {
+        ExpenseStore store = new ExpenseStore(temp.create("store"));
+        int writers = 4;
+        int perWriter = 5000;
+        ConcurrentLinkedQueue<Expense> kept = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            long seed = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < perWriter; i++) {
+                        LocalDate date = LocalDate.of(2024, 1, 1).plusDays(random.nextInt(366));
+                        Expense expense = new Expense(UUID.randomUUID(), random.nextInt(10000) / 100.0,
+                                "Expense " + i, date, ExpenseCategory.values()[random.nextInt(ExpenseCategory.values().length)]);
+                        assertTrue( store.add(expense) );
+                        int action = random.nextInt(4);
+                        if (action == 0) {
+                            assertNotNull( store.remove(expense.getId()) );
+                        } else {
+                            if (action == 1) {
+                                expense.setAmount(expense.getAmount() + 1);
+                                assertNotNull( store.update(expense.getId(), expense.getAmount(), "Updated", expense.getCategory()) );
+                            }
+                            kept.add(expense);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (int r = 0; r < 2; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    while (writing.get()) {
+                        int size = store.size();
+                        double total = store.total();
+                        assertTrue( size >= 0 && size <= writers * perWriter );
+                        assertFalse( Double.isNaN(total) );
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads.subList(0, writers)) {
+            thread.join();
+        }
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue( failures.toString(), failures.isEmpty() );
+
+        double expectedTotal = 0;
+        double expectedMarch = 0;
+        for (Expense expense : kept) {
+            expectedTotal += expense.getAmount();
+            if (expense.getDate().getMonth() == Month.MARCH) {
+                expectedMarch += expense.getAmount();
+            }
+            assertEquals( expense.getAmount(), store.get(expense.getId()).getAmount(), 0.0 );
+        }
+        assertEquals( kept.size(), store.size() );
+        assertEquals( kept.size(), store.list().size() );
+        assertEquals( expectedTotal, store.total(), 1e-6 );
+        assertEquals( expectedMarch, store.total(Month.MARCH), 1e-6 );
+        assertEquals( kept.size(), store.range(LocalDate.MIN, LocalDate.MAX, null).size() );
+    }
+
+    /**
+     * Saves running while writers keep adding to, and readers keep listing, the same months
+     * neither block forever nor lose any expense.
+     */
+    public void testSaveWhileWriting() throws Exception
+    {
+        Path directory = temp.create("store");
+        ExpenseStore store = new ExpenseStore(directory);
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 3; w++) {
+            long seed = w;
+            writers.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int i = 0; i < 20_000; i++) {
+                        LocalDate date = LocalDate.of(2024, 1 + random.nextInt(2), 1 + random.nextInt(28));
+                        Expense expense = new Expense(UUID.randomUUID(), random.nextInt(10000) / 100.0,
+                                "Expense " + random.nextInt(50), date, ExpenseCategory.FOOD);
+                        assertTrue( store.add(expense) );
+                        if (random.nextInt(3) == 0) {
+                            assertNotNull( store.update(expense.getId(), 1, "Updated", ExpenseCategory.OTHER) );
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            }));
+        }
+        Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                store.list(Month.JANUARY);
+            }
+        });
+        Thread saver = new Thread(() -> {
+            try {
+                while (writing.get()) {
+                    store.save();
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        saver.setDaemon(true);
+        for (Thread thread : writers) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        saver.start();
+        long deadline = System.currentTimeMillis() + 60_000;
+        for (Thread thread : writers) {
+            thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        writing.set(false);
+        saver.join(Math.max(1, deadline - System.currentTimeMillis()));
+        assertFalse( "save and writers blocked each other", saver.isAlive() );
+        assertTrue( failures.toString(), failures.isEmpty() );
+
+        store.save();
+        ExpenseStore loaded = new ExpenseStore(directory);
+        loaded.load();
+        assertEquals( 60_000, loaded.size() );
+        assertEquals( store.total(), loaded.total(), 1e-6 );
+    }
+
+    /**
+     * Expenses, and the sketches derived from them, survive a save and load; callers
+     * cannot change a stored expense through the instances they pass in or get back.
+     */
+    public void testSaveLoadAndCopies() throws Exception
+    {
+        Path directory = temp.create("store");
+        ExpenseStore store = new ExpenseStore(directory);
+        Expense coffee = new Expense(UUID.randomUUID(), 3.5, "Coffee", LocalDate.of(2024, 2, 3), ExpenseCategory.FOOD);
+        Expense undated = new Expense(UUID.randomUUID(), 10, "Undated", null, ExpenseCategory.OTHER);
+        store.add(coffee);
+        store.add(undated);
+        coffee.setAmount(1000);
+        store.get(coffee.getId()).setAmount(1000);
+        assertEquals( 13.5, store.total(), 0.0 );
+
+        store.convert(true);
+        ExpenseStore loaded = new ExpenseStore(directory);
+        loaded.load();
+        assertTrue( loaded.isBinary() );
+        assertEquals( 2, loaded.size() );
+        assertEquals( 3.5, loaded.sketch(ReportPeriod.parse("2024"), ExpenseCategory.FOOD).quantile(0.5), 0.05 );
+        assertEquals( 1, loaded.range(LocalDate.MIN, LocalDate.MAX, null).size() );
+        assertEquals( "Undated", loaded.get(undated.getId()).getDescription() );
+    }
+
+    /**
+     * A description used in several months is interned once for the whole store, and the
+     * binary snapshot written from that dictionary reads back every description.
+     */
+    public void testDescriptionsAreInternedStoreWide() throws Exception
+    {
+        Path directory = temp.create("store");
+        ExpenseStore store = new ExpenseStore(directory);
+        List<Expense> expenses = new ArrayList<>();
+        for (int month = 1; month <= 12; month++) {
+            Expense expense = new Expense(UUID.randomUUID(), month, new String("Rent"),
+                    LocalDate.of(2024, month, 1), ExpenseCategory.OTHER);
+            store.add(expense);
+            expenses.add(expense);
+        }
+        store.add(new Expense(UUID.randomUUID(), 5, "Coffee, large", LocalDate.of(2024, 3, 2), ExpenseCategory.FOOD));
+        assertEquals( 2, store.descriptions().size() );
+        assertSame( store.get(expenses.get(0).getId()).getDescription(), store.get(expenses.get(11).getId()).getDescription() );
+
+        store.remove(expenses.get(0).getId());
+        store.convert(true);
+        ExpenseStore loaded = new ExpenseStore(directory);
+        loaded.load();
+        assertEquals( 12, loaded.size() );
+        assertEquals( 2, loaded.descriptions().size() );
+        assertEquals( "Rent", loaded.get(expenses.get(5).getId()).getDescription() );
+        assertEquals( 1, loaded.search("large", null, null, null).size() );
+    }
+
+    /**
+     * Listings come month by month, oldest first and undated expenses before any month, and
+     * within a month in the order the expenses were added; the order survives a save and
+     * load, archiving a month and removing an expense.
+     */
+    public void testListingOrder() throws Exception
+    {
+        Path directory = temp.create("store");
+        ExpenseStore store = new ExpenseStore(directory);
+        Expense march = new Expense(UUID.randomUUID(), 1, "March", LocalDate.of(2024, 3, 20), ExpenseCategory.FOOD);
+        Expense januaryLate = new Expense(UUID.randomUUID(), 2, "January, late", LocalDate.of(2024, 1, 30), ExpenseCategory.FOOD);
+        Expense undated = new Expense(UUID.randomUUID(), 3, "Undated", null, ExpenseCategory.OTHER);
+        Expense januaryEarly = new Expense(UUID.randomUUID(), 4, "January, early", LocalDate.of(2024, 1, 2), ExpenseCategory.FOOD);
+        Expense marchEarly = new Expense(UUID.randomUUID(), 5, "March, early", LocalDate.of(2024, 3, 1), ExpenseCategory.FOOD);
+        Expense february = new Expense(UUID.randomUUID(), 6, "February", LocalDate.of(2024, 2, 10), ExpenseCategory.FOOD);
+        for (Expense expense : new Expense[] {march, januaryLate, undated, januaryEarly, marchEarly, february}) {
+            store.add(expense);
+        }
+        List<UUID> expected = ids(undated, januaryLate, januaryEarly, february, march, marchEarly);
+        assertEquals( expected, ids(store.list()) );
+
+        store.save();
+        ExpenseStore loaded = new ExpenseStore(directory);
+        loaded.load();
+        assertEquals( expected, ids(loaded.list()) );
+
+        loaded.archive(YearMonth.of(2024, 2));
+        assertEquals( expected, ids(loaded.list()) );
+        loaded.remove(february.getId());
+        assertEquals( ids(undated, januaryLate, januaryEarly, march, marchEarly), ids(loaded.list()) );
+    }
+
+    private static List<UUID> ids(Expense... expenses)
+    {
+        return ids(Arrays.asList(expenses));
+    }
+
+    private static List<UUID> ids(List<Expense> expenses)
+    {
+        List<UUID> ids = new ArrayList<>();
+        for (Expense expense : expenses) {
+            ids.add(expense.getId());
+        }
+        return ids;
+    }
+}
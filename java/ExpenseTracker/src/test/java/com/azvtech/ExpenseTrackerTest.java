@@ -4,12 +4,21 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
 /**
  * Unit test for simple ExpenseTracker.
  */
 public class ExpenseTrackerTest
     extends TestCase
 {
+    private final TempDirectories temp = new TempDirectories();
+
     /**
      * Create the test case
      *
@@ -28,6 +37,12 @@ public class ExpenseTrackerTest
         return new TestSuite( ExpenseTrackerTest.class );
     }
 
+    @Override
+    protected void tearDown() throws Exception
+    {
+        temp.deleteAll();
+    }
+
     /**
      * Rigourous Test :-)
      */
@@ -35,4 +50,31 @@ public class ExpenseTrackerTest
     {
         assertTrue( true );
     }
+
+    /**
+     * Descriptions with a comma, quote or line break are quoted in the CSV export, with quotes
+     * doubled, so every expense stays one record of four fields; others are written as is.
+     */
+    public void testExportQuotesDescriptions() throws Exception
+    {
+        Path directory = temp.create("export");
+        ExpenseStore store = new ExpenseStore(directory);
+        store.add(new Expense(UUID.randomUUID(), 12.5, "Lunch", LocalDate.of(2024, 5, 1), ExpenseCategory.FOOD));
+        store.add(new Expense(UUID.randomUUID(), 30.0, "Books, pens", LocalDate.of(2024, 5, 2), ExpenseCategory.OTHER));
+        store.add(new Expense(UUID.randomUUID(), 8.0, "The \"good\" coffee", LocalDate.of(2024, 5, 3), ExpenseCategory.FOOD));
+        store.save();
+
+        ExpenseTracker tracker = new ExpenseTracker(directory);
+        tracker.loadExpenses();
+        Path csv = directory.resolve("expenses.csv");
+        tracker.exportExpensesToCsv(csv.toString());
+
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        assertEquals( "ID,Amount,Description,Date", lines.get(0) );
+        assertEquals( 4, lines.size() );
+        String exported = String.join("\n", lines);
+        assertTrue( exported, exported.contains(",12.5,Lunch,2024-05-01") );
+        assertTrue( exported, exported.contains(",30.0,\"Books, pens\",2024-05-02") );
+        assertTrue( exported, exported.contains(",8.0,\"The \"\"good\"\" coffee\",2024-05-03") );
+    }
 }
@@ -0,0 +1,83 @@
+package com.azvtech;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.lang.reflect.Type;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Unit tests for the streaming ExpenseTypeAdapter and the shared LocalDate cache.
+ */
+public class ExpenseTypeAdapterTest
+    extends TestCase
+{
+    private static final Type EXPENSE_LIST = new TypeToken<List<Expense>>() {}.getType();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ExpenseTypeAdapterTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ExpenseTypeAdapterTest.class );
+    }
+
+    /**
+     * The streaming adapter writes the same JSON as Gson reflection, and reads it back
+     * with expenses of the same day sharing one LocalDate instance.
+     */
+    public void testMatchesReflectiveJson()
+    {
+        Gson reflective = new GsonBuilder()
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .create();
+        Gson streaming = new GsonBuilder()
+                .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .create();
+        List<Expense> expenses = Arrays.asList(
+                new Expense(UUID.randomUUID(), 4.2, "Coffee", LocalDate.of(2024, 2, 29), ExpenseCategory.FOOD),
+                new Expense(UUID.randomUUID(), 1200, "Rent \"March\"", LocalDate.of(2024, 2, 29), ExpenseCategory.UTILITIES),
+                new Expense(UUID.randomUUID(), 7, null, LocalDate.of(1850, 1, 1), null));
+
+        String json = reflective.toJson(expenses, EXPENSE_LIST);
+        assertEquals( json, streaming.toJson(expenses, EXPENSE_LIST) );
+
+        List<Expense> read = streaming.fromJson(json, EXPENSE_LIST);
+        assertEquals( expenses.size(), read.size() );
+        for (int i = 0; i < expenses.size(); i++) {
+            assertEquals( expenses.get(i).toString(), read.get(i).toString() );
+        }
+        assertSame( read.get(0).getDate(), read.get(1).getDate() );
+    }
+
+    /**
+     * Unknown categories decode to null, as they do with Gson's enum adapter.
+     */
+    public void testUnknownCategory()
+    {
+        Gson streaming = new GsonBuilder()
+                .registerTypeAdapter(Expense.class, new ExpenseTypeAdapter())
+                .create();
+        Expense expense = streaming.fromJson("{\"amount\":1.0,\"category\":\"TRAVEL\",\"extra\":[1,2]}", Expense.class);
+        assertNull( expense.getCategory() );
+        assertEquals( 1.0, expense.getAmount(), 0.0 );
+    }
+}
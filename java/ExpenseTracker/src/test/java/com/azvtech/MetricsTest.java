@@ -0,0 +1,137 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Unit tests for the latency metrics of the file operations of the ExpenseTracker.
+ */
+public class MetricsTest
+    extends TestCase
+{
+    private final TempDirectories temp = new TempDirectories();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public MetricsTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( MetricsTest.class );
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        Metrics.reset();
+        temp.deleteAll();
+    }
+
+    /**
+     * Loads, saves and exports are timed once metrics are on, and not at all before, failed
+     * ones included, and every timed operation is printed with its count and percentiles.
+     */
+    public void testRecordsFileOperations() throws Exception
+    {
+        Path directory = temp.create("metrics");
+        ExpenseTracker tracker = new ExpenseTracker(directory);
+        tracker.loadExpenses();
+        assertNull( Metrics.timer("loadExpenses") );
+
+        Metrics.enable();
+        tracker.loadExpenses();
+        for (int i = 0; i < 3; i++) {
+            tracker.saveExpenses();
+        }
+        tracker.exportExpensesToCsv(directory.resolve("expenses.csv").toString());
+        tracker.exportExpensesToCsv(directory.resolve("missing").resolve("expenses.csv").toString());
+
+        assertEquals( 1, Metrics.timer("loadExpenses").count() );
+        assertEquals( 3, Metrics.timer("saveExpenses").count() );
+        assertEquals( 2, Metrics.timer("exportExpensesToCsv").count() );
+
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        Metrics.dump(new PrintStream(dump, true, "UTF-8"));
+        String printed = new String(dump.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue( printed, printed.matches("(?s).*saveExpenses +count +3 +p50 .*") );
+        assertTrue( printed, printed.matches("(?s).*exportExpensesToCsv\\.errors +1\\b.*") );
+    }
+
+    /**
+     * The saves and exports of the server are timed like those of the command line.
+     */
+    public void testRecordsServerFileOperations() throws Exception
+    {
+        Metrics.enable();
+        ExpenseServer server = new ExpenseServer(new ExpenseStore(temp.create("metrics")), 0);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getPort();
+        try {
+            HttpURLConnection post = (HttpURLConnection) new URL(base + "/expenses").openConnection();
+            post.setRequestMethod("POST");
+            post.setDoOutput(true);
+            try (OutputStream out = post.getOutputStream()) {
+                out.write("{\"amount\":12.5,\"description\":\"Lunch\"}".getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals( 201, post.getResponseCode() );
+            ByteArrayOutputStream export = new ByteArrayOutputStream();
+            try (InputStream in = new URL(base + "/export").openStream()) {
+                byte[] buffer = new byte[4096];
+                for (int read; (read = in.read(buffer)) > 0; ) {
+                    export.write(buffer, 0, read);
+                }
+            }
+            String csv = new String(export.toByteArray(), StandardCharsets.UTF_8);
+            assertTrue( csv, csv.contains(",12.5,Lunch,") );
+        } finally {
+            server.stop();
+        }
+
+        assertEquals( 1, Metrics.timer("saveExpenses").count() );
+        assertEquals( 1, Metrics.timer("exportExpensesToCsv").count() );
+    }
+
+    /**
+     * Latencies are recorded whatever the thread, and nothing is lost to concurrent updates
+     * of the sketch behind a timer.
+     */
+    public void testConcurrentRecords() throws Exception
+    {
+        Metrics.enable();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    Metrics.record("work", Metrics.start());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals( 40_000, Metrics.timer("work").count() );
+    }
+}
@@ -0,0 +1,47 @@
+package com.azvtech;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The temporary directories of a test, deleted with everything in them once it is done.
+ */
+final class TempDirectories {
+    private final List<Path> directories = new ArrayList<>();
+
+    /**
+     * Creates an empty temporary directory, to be deleted by {@link #deleteAll()}.
+     *
+     * @param prefix The prefix of its name.
+     * @return The directory.
+     * @throws IOException If the directory cannot be created.
+     */
+    Path create(String prefix) throws IOException {
+        Path directory = Files.createTempDirectory(prefix);
+        directories.add(directory);
+        return directory;
+    }
+
+    /**
+     * Deletes every directory created so far, deepest files first.
+     *
+     * @throws IOException If a directory cannot be walked or a file cannot be deleted.
+     */
+    void deleteAll() throws IOException {
+        for (Path directory : directories) {
+            if (Files.exists(directory)) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+        directories.clear();
+    }
+}
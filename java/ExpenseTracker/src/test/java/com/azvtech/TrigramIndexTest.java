@@ -0,0 +1,124 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Unit tests for the TrigramIndex over expense descriptions.
+ */
+public class TrigramIndexTest
+    extends TestCase
+{
+    private final TempDirectories temp = new TempDirectories();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TrigramIndexTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TrigramIndexTest.class );
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        temp.deleteAll();
+    }
+
+    /**
+     * Searches return exactly the expenses a case-insensitive substring scan would, across
+     * random additions, removals and a save and load.
+     */
+    public void testMatchesSubstringScan() throws Exception
+    {
+        String[] descriptions = {"Uber to airport", "UBER EATS", "Lunch", "Coffee at Starbucks", "Bus", "Gym", "Übersetzung"};
+        TrigramIndex index = new TrigramIndex();
+        List<Expense> live = new ArrayList<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 3000; i++) {
+            if (!live.isEmpty() && random.nextInt(3) == 0) {
+                Expense removed = live.remove(random.nextInt(live.size()));
+                index.remove(removed.getDescription(), removed.getId());
+            } else {
+                Expense expense = new Expense(1, descriptions[random.nextInt(descriptions.length)], ExpenseCategory.OTHER);
+                index.add(expense.getDescription(), expense.getId());
+                live.add(expense);
+            }
+        }
+        assertEquals( live.size(), index.size() );
+
+        Path file = temp.create("search").resolve("expenses.search");
+        index.save(file, "fingerprint");
+        assertNull( TrigramIndex.load(file, "stale") );
+        TrigramIndex loaded = TrigramIndex.load(file, "fingerprint");
+
+        for (String query : new String[] {"uber", "Ber", "at", "coffee at", "gym", "über", "taxi", ""}) {
+            Set<UUID> expected = new HashSet<>();
+            for (Expense expense : live) {
+                if (expense.getDescription().toLowerCase(Locale.ROOT).contains(query.toLowerCase(Locale.ROOT))) {
+                    expected.add(expense.getId());
+                }
+            }
+            assertEquals( query, expected, new HashSet<>(index.search(query)) );
+            assertEquals( query, expected, new HashSet<>(loaded.search(query)) );
+        }
+    }
+
+    /**
+     * An entry is dropped once its last expense is removed.
+     */
+    public void testUnusedDescriptionsAreDropped()
+    {
+        TrigramIndex index = new TrigramIndex();
+        UUID id = UUID.randomUUID();
+        index.add("Taxi", id);
+        assertEquals( 1, index.search("tax").size() );
+        index.remove("Taxi", id);
+        assertEquals( 0, index.descriptions() );
+        assertTrue( index.search("tax").isEmpty() );
+    }
+
+    /**
+     * A description longer than 64 KB is saved and read back like any other, and a store
+     * holding one still saves.
+     */
+    public void testSavesLongDescriptions() throws Exception
+    {
+        StringBuilder text = new StringBuilder("Receipt ");
+        while (text.length() < 70_000) {
+            text.append("line item é ");
+        }
+        String description = text.toString();
+        Path directory = temp.create("search");
+        ExpenseStore store = new ExpenseStore(directory);
+        Expense expense = new Expense(UUID.randomUUID(), 1, description, null, ExpenseCategory.OTHER);
+        store.add(expense);
+        store.save();
+
+        TrigramIndex loaded = TrigramIndex.load(directory.resolve(ExpenseStore.SEARCH_FILE),
+                ExpenseStatistics.fingerprint(directory.resolve(ExpenseStore.EXPENSE_FILE)));
+        assertNotNull( loaded );
+        assertEquals( 1, loaded.search("receipt").size() );
+        assertEquals( expense.getId(), loaded.search("item é line").get(0) );
+    }
+}
@@ -0,0 +1,107 @@
+package com.azvtech;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding and summarizing pages of events recorded in the shape of the events API, against
+ * reading every page into a Jackson tree as the baseline.
+ *
+ * The fixture holds 30 events of the usual types, about 2 KB each; pages repeat them up to
+ * the 100 events the API returns per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GitHubEventBenchmark {
+
+    /** The number of users in a batch, with three full pages of events each. */
+    @Param({"100", "1000"})
+    int users;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private byte[] page;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String fixture;
+        try (InputStream in = GitHubEventBenchmark.class.getResourceAsStream("/events-page.json")) {
+            fixture = new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        }
+        String events = fixture.substring(1, fixture.length() - 1).trim();
+        StringBuilder page = new StringBuilder("[");
+        int count = 0;
+        while (count + 30 <= GitHubActivityFetcher.PAGE_SIZE) {
+            page.append(count > 0 ? "," : "").append(events);
+            count += 30;
+        }
+        // Top up with the fixture's first events to make a full page.
+        int topUp = GitHubActivityFetcher.PAGE_SIZE - count;
+        for (JsonNode event : MAPPER.readTree(fixture)) {
+            if (topUp-- == 0) {
+                break;
+            }
+            page.append(',').append(MAPPER.writeValueAsString(event));
+        }
+        this.page = page.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int decode(Blackhole blackhole) throws IOException {
+        return GitHubEvent.readAll(new ByteArrayInputStream(page), blackhole::consume);
+    }
+
+    @Benchmark
+    public int tree(Blackhole blackhole) throws IOException {
+        int count = 0;
+        for (JsonNode event : MAPPER.readTree(page)) {
+            blackhole.consume(event.path("type").asText());
+            blackhole.consume(event.path("repo").path("name").asText());
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public ActivitySummary summarize() throws IOException {
+        ActivitySummary summary = new ActivitySummary();
+        GitHubEvent.readAll(new ByteArrayInputStream(page), summary::add);
+        return summary;
+    }
+
+    @Benchmark
+    public ActivitySummary summarizeBatch() throws IOException {
+        ActivitySummary total = new ActivitySummary();
+        for (int user = 0; user < users; user++) {
+            ActivitySummary summary = new ActivitySummary();
+            for (int i = 0; i < 3; i++) {
+                GitHubEvent.readAll(new ByteArrayInputStream(page), summary::add);
+            }
+            total.merge(summary);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,183 @@
+package com.azvtech;
+
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Drives the batch fetch path against a {@link GitHubApiStub}, or any API given with
+ * {@code --api-url}, and reports throughput and latency percentiles per round.
+ *
+ * Request latency is timed from sending a request to the arrival of its headers, for
+ * every attempt, so queueing in the scheduler is not counted; user latency is the whole
+ * fetch of one user, every page included. The first rounds warm up the JIT and the
+ * connections and are reported apart. With {@code --cache}, rounds after the first are
+ * revalidated with conditional requests.
+ *
+ *   GitHubLoadHarness [--users N] [--concurrency N] [--rounds N] [--warmup N] [--events N]
+ *                     [--latency ms] [--jitter ms] [--rate-limit N] [--cache] [--api-url url]
+ */
+public class GitHubLoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        int users = 1000;
+        int concurrency = GitHubActivityFetcher.DEFAULT_CONCURRENCY;
+        int rounds = 3;
+        int warmup = 1;
+        int events = GitHubApiStub.DEFAULT_EVENTS;
+        long latency = 50;
+        long jitter = 20;
+        int rateLimit = 0;
+        boolean cache = false;
+        String apiUrl = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--users":
+                    users = Integer.parseInt(args[++i]);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--events":
+                    events = Integer.parseInt(args[++i]);
+                    break;
+                case "--latency":
+                    latency = Long.parseLong(args[++i]);
+                    break;
+                case "--jitter":
+                    jitter = Long.parseLong(args[++i]);
+                    break;
+                case "--rate-limit":
+                    rateLimit = Integer.parseInt(args[++i]);
+                    break;
+                case "--cache":
+                    cache = true;
+                    break;
+                case "--api-url":
+                    apiUrl = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        GitHubApiStub stub = null;
+        if (apiUrl == null) {
+            stub = new GitHubApiStub().withEvents(events)
+                    .withLatency(Duration.ofMillis(latency), Duration.ofMillis(jitter))
+                    .withRateLimit(rateLimit, Duration.ofSeconds(1))
+                    .start(0);
+            apiUrl = stub.getEventsUrl();
+        }
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            usernames.add("user" + i);
+        }
+        TimedScheduler scheduler = new TimedScheduler(concurrency * 2);
+        ResponseCache responseCache = cache
+                ? new ResponseCache(Files.createTempDirectory("load-cache"), Duration.ZERO, Long.MAX_VALUE)
+                : null;
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher(GitHubActivityFetcher.eventsUrl(apiUrl), responseCache, scheduler);
+
+        System.out.printf("%d users, concurrency %d, %s%n", users, concurrency,
+                stub != null ? "stub with " + events + " events per user, " + latency + " +/- " + jitter + " ms latency" : apiUrl);
+        for (int round = 1; round <= warmup + rounds; round++) {
+            scheduler.latencies.clear();
+            long[] userLatencies = new long[users];
+            AtomicInteger completed = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            long sentBefore = scheduler.stats().getSent();
+            long start = System.nanoTime();
+            fetcher.fetchAll(usernames, concurrency, false, ActivitySummary.collector(), result -> {
+                if (result.getError() != null) {
+                    failed.incrementAndGet();
+                }
+                userLatencies[completed.getAndIncrement()] = result.getElapsedNanos();
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long sent = scheduler.stats().getSent() - sentBefore;
+            long[] requestLatencies = scheduler.latencies.toArray();
+            System.out.printf("%s %d: %.0f requests/s, %.0f users/s, %d failed; request latency %s; user latency %s%n",
+                    round <= warmup ? "warmup" : "round", round <= warmup ? round : round - warmup,
+                    sent / seconds, users / seconds, failed.get(), percentiles(requestLatencies), percentiles(userLatencies));
+        }
+        System.out.println(scheduler.stats());
+        if (stub != null) {
+            System.out.println(stub);
+            stub.close();
+        }
+        if (responseCache != null) {
+            System.out.println(responseCache.stats());
+        }
+    }
+
+    private static String percentiles(long[] nanos) {
+        if (nanos.length == 0) {
+            return "n/a";
+        }
+        Arrays.sort(nanos);
+        return String.format("p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms",
+                percentile(nanos, 0.50), percentile(nanos, 0.95), percentile(nanos, 0.99), nanos[nanos.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    /**
+     * A scheduler that records how long every attempt took to get its headers.
+     */
+    private static final class TimedScheduler extends RequestScheduler {
+
+        final LongList latencies = new LongList();
+
+        TimedScheduler(int maxConcurrency) {
+            super(maxConcurrency, 0, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF);
+        }
+
+        @Override
+        public CompletableFuture<HttpResponse<InputStream>> submit(long rank, Supplier<CompletableFuture<HttpResponse<InputStream>>> send) {
+            return super.submit(rank, () -> {
+                long start = System.nanoTime();
+                return send.get().whenComplete((response, error) -> latencies.add(System.nanoTime() - start));
+            });
+        }
+    }
+
+    /**
+     * A growable array of longs that many threads add to.
+     */
+    private static final class LongList {
+
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        synchronized long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+
+        synchronized void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.azvtech;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the activity of GitHub users over HTTP to local tools, so that tools asking for
+ * the same users share one upstream fetch.
+ *
+ * The events of a user are fetched through a {@link GitHubActivityFetcher}, every page of
+ * them, and kept as the API returned them, joined into one array, in a {@link TinyLfuCache}
+ * bounded in bytes, so users asked for often stay cached while one-off lookups pass
+ * through. Requests for a user whose fetch is already under way wait for that fetch
+ * instead of starting another. Endpoints:
+ *
+ *   GET /users/{username}/events   the events, as a JSON array of the events of the API
+ *   GET /users/{username}/summary  the summary of the events, one line per activity
+ *   GET /stats                     hit ratio and upstream calls saved, as JSON
+ *
+ * Responses say whether they were a cache {@code HIT}, a {@code MISS} that was fetched, or
+ * {@code COALESCED} into another fetch in the {@code X-Cache} header.
+ */
+public class ActivityProxy implements Closeable
+{
+    /** The default port to serve on. */
+    public static final int DEFAULT_PORT = 8088;
+
+    /** The default bound on the size of the cached events. */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /** About how large the events of one user are as the API returns them; sizes the sketch. */
+    private static final int TYPICAL_BYTES = 512 * 1024;
+
+    private final GitHubActivityFetcher fetcher;
+    private final TinyLfuCache<String, byte[]> cache;
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService executor = GitHubActivityFetcher.newRequestExecutor();
+    private HttpServer server;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong upstream = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Creates a proxy.
+     *
+     * @param fetcher  Fetches the events of users upstream.
+     * @param maxBytes The bound on the size of the cached events.
+     * @param ttl      How long the events of a user are served before they are fetched again.
+     */
+    public ActivityProxy(GitHubActivityFetcher fetcher, long maxBytes, Duration ttl)
+    {
+        this.fetcher = fetcher;
+        this.cache = new TinyLfuCache<>(maxBytes, (int) Math.min(Integer.MAX_VALUE, maxBytes / TYPICAL_BYTES), ttl);
+    }
+
+    /**
+     * Starts serving on the loopback interface.
+     *
+     * @param port The port, or 0 for any free one.
+     * @return This proxy.
+     * @throws IOException If the port cannot be bound.
+     */
+    public ActivityProxy start(int port) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/users/", this::handleUser);
+        server.createContext("/stats", this::handleStats);
+        server.start();
+        return this;
+    }
+
+    /**
+     * Returns the root URL of the proxy. Its events endpoint is laid out like the API's, so
+     * {@link GitHubActivityFetcher#eventsUrl} accepts it.
+     */
+    public String getUrl()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the events of a user as a JSON array, from the cache, from a fetch already
+     * under way, or from a new fetch.
+     *
+     * @return The events, and how they were found.
+     * @throws IOException          If the fetch fails.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    Lookup events(String username) throws IOException, InterruptedException
+    {
+        requests.incrementAndGet();
+        byte[] cached = cache.get(username);
+        if (cached != null) {
+            return new Lookup(cached, "HIT");
+        }
+        boolean[] started = { false };
+        CompletableFuture<byte[]> fetch = inFlight.computeIfAbsent(username, name -> {
+            started[0] = true;
+            upstream.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> fetch(name), executor);
+        });
+        if (!started[0]) {
+            coalesced.incrementAndGet();
+        }
+        try {
+            return new Lookup(fetch.get(), started[0] ? "MISS" : "COALESCED");
+        } catch (ExecutionException e) {
+            failures.incrementAndGet();
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Fetches every page of the events of a user and caches them. The fetch stops being
+     * in flight only once its result is cached, so no request falls between the two.
+     */
+    private byte[] fetch(String username)
+    {
+        try {
+            List<byte[]> pages = new ArrayList<>();
+            fetcher.fetchPages(username, pages::add);
+            byte[] bytes = join(pages);
+            cache.put(username, bytes, bytes.length);
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted", e));
+        } finally {
+            inFlight.remove(username);
+        }
+    }
+
+    /**
+     * Joins pages of events into one array, copying the events of each page as they are.
+     *
+     * @param pages Pages that are each a JSON array.
+     */
+    static byte[] join(List<byte[]> pages)
+    {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        json.write('[');
+        boolean first = true;
+        for (byte[] page : pages) {
+            int from = 0;
+            while (from < page.length && page[from] != '[') {
+                from++;
+            }
+            int to = page.length - 1;
+            while (to > from && page[to] != ']') {
+                to--;
+            }
+            from = skipWhitespace(page, from + 1, to);
+            if (from == to) {
+                continue;
+            }
+            if (!first) {
+                json.write(',');
+            }
+            json.write(page, from, to - from);
+            first = false;
+        }
+        json.write(']');
+        return json.toByteArray();
+    }
+
+    private static int skipWhitespace(byte[] page, int from, int to)
+    {
+        while (from < to && (page[from] == ' ' || page[from] == '\n' || page[from] == '\r' || page[from] == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Returns the counts of the proxy and its cache so far.
+     */
+    public Stats stats()
+    {
+        return new Stats(requests.get(), cache.getHits(), coalesced.get(), upstream.get(), failures.get(),
+                cache.size(), cache.weight(), cache.getEvictions(), cache.getRejections());
+    }
+
+    @Override
+    public void close()
+    {
+        if (server != null) {
+            server.stop(0);
+        }
+        executor.shutdown();
+    }
+
+    private void handleUser(HttpExchange exchange) throws IOException
+    {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            if (path.length != 4 || !(path[3].equals("events") || path[3].equals("summary"))) {
+                respond(exchange, 404, "application/json", "{\"message\":\"Not Found\"}");
+                return;
+            }
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "application/json", "{\"message\":\"Method Not Allowed\"}");
+                return;
+            }
+            Lookup lookup;
+            try {
+                lookup = events(path[2]);
+            } catch (IOException e) {
+                respond(exchange, 502, "application/json", "{\"message\":" + quote(e.getMessage()) + "}");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, "application/json", "{\"message\":\"Interrupted\"}");
+                return;
+            }
+            exchange.getResponseHeaders().set("X-Cache", lookup.source);
+            if (path[3].equals("events")) {
+                send(exchange, 200, "application/json; charset=utf-8", lookup.events);
+            } else {
+                ActivitySummary summary = new ActivitySummary();
+                GitHubEvent.readAll(new ByteArrayInputStream(lookup.events), summary::add);
+                respond(exchange, 200, "text/plain; charset=utf-8", summary.toString());
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException
+    {
+        try {
+            respond(exchange, 200, "application/json", stats().toJson());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException
+    {
+        send(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException
+    {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String quote(String text)
+    {
+        return "\"" + String.valueOf(text).replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * The events of a user, and whether they came from the cache, a new fetch or one
+     * already under way.
+     */
+    static final class Lookup
+    {
+        final byte[] events;
+        final String source;
+
+        Lookup(byte[] events, String source)
+        {
+            this.events = events;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Counts of a proxy: how many requests were answered from the cache or coalesced into
+     * another fetch, and so how many upstream calls were saved.
+     */
+    public static final class Stats
+    {
+        private final long requests;
+        private final long hits;
+        private final long coalesced;
+        private final long upstream;
+        private final long failures;
+        private final int entries;
+        private final long bytes;
+        private final long evictions;
+        private final long rejections;
+
+        Stats(long requests, long hits, long coalesced, long upstream, long failures,
+              int entries, long bytes, long evictions, long rejections)
+        {
+            this.requests = requests;
+            this.hits = hits;
+            this.coalesced = coalesced;
+            this.upstream = upstream;
+            this.failures = failures;
+            this.entries = entries;
+            this.bytes = bytes;
+            this.evictions = evictions;
+            this.rejections = rejections;
+        }
+
+        public long getRequests()
+        {
+            return requests;
+        }
+
+        public long getHits()
+        {
+            return hits;
+        }
+
+        /**
+         * Returns the number of requests that waited for a fetch another request started.
+         */
+        public long getCoalesced()
+        {
+            return coalesced;
+        }
+
+        /**
+         * Returns the number of fetches sent upstream.
+         */
+        public long getUpstream()
+        {
+            return upstream;
+        }
+
+        public long getFailures()
+        {
+            return failures;
+        }
+
+        /**
+         * Returns the fraction of requests answered from the cache.
+         */
+        public double hitRatio()
+        {
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        /**
+         * Returns the fraction of requests that did not cause an upstream fetch.
+         */
+        public double upstreamSaved()
+        {
+            return requests == 0 ? 0 : 1 - (double) upstream / requests;
+        }
+
+        String toJson()
+        {
+            return String.format(Locale.ROOT, "{\"requests\":%d,\"hits\":%d,\"coalesced\":%d,\"upstream\":%d,\"failures\":%d,"
+                    + "\"hitRatio\":%.4f,\"upstreamSaved\":%.4f,\"entries\":%d,\"bytes\":%d,\"evictions\":%d,\"rejections\":%d}",
+                    requests, hits, coalesced, upstream, failures, hitRatio(), upstreamSaved(), entries, bytes, evictions, rejections);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("proxy: %d requests, %d hits (%.0f%%), %d coalesced, %d upstream (%.0f%% saved), %d failed;"
+                    + " cache: %d entries, %d bytes, %d evicted, %d rejected",
+                    requests, hits, 100 * hitRatio(), coalesced, upstream, 100 * upstreamSaved(), failures,
+                    entries, bytes, evictions, rejections);
+        }
+    }
+}
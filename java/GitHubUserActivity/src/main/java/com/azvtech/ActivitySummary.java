@@ -0,0 +1,203 @@
+package com.azvtech;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collector;
+
+/**
+ * Human-readable summary of GitHub activity, such as "Pushed 5 commits to owner/repo".
+ *
+ * Events are counted as they arrive into one small array of counters per repository and
+ * then dropped, so a summary takes memory in proportion to the number of repositories,
+ * however many events went into it. Repositories are listed in the order they were first
+ * seen, which for the events API is most recent activity first.
+ */
+public class ActivitySummary
+{
+    /**
+     * What is counted per repository, with how it is described.
+     */
+    private enum Counter
+    {
+        COMMITS("Pushed %s to %s", "commit", "commits"),
+        REPOSITORIES_CREATED("Created repository %2$s", null, null),
+        BRANCHES_CREATED("Created %s in %s", "branch", "branches"),
+        TAGS_CREATED("Created %s in %s", "tag", "tags"),
+        BRANCHES_DELETED("Deleted %s in %s", "branch", "branches"),
+        TAGS_DELETED("Deleted %s in %s", "tag", "tags"),
+        ISSUES_OPENED("Opened %s in %s", "new issue", "new issues"),
+        ISSUES_CLOSED("Closed %s in %s", "issue", "issues"),
+        ISSUES_UPDATED("Updated %s in %s", "issue", "issues"),
+        PULL_REQUESTS_OPENED("Opened %s in %s", "pull request", "pull requests"),
+        PULL_REQUESTS_CLOSED("Closed %s in %s", "pull request", "pull requests"),
+        PULL_REQUESTS_UPDATED("Updated %s in %s", "pull request", "pull requests"),
+        REVIEWS("Reviewed %s in %s", "pull request", "pull requests"),
+        COMMENTS("Left %s in %s", "comment", "comments"),
+        STARS("Starred %2$s", null, null),
+        FORKS("Forked %2$s", null, null),
+        RELEASES("Published %s in %s", "release", "releases"),
+        PUBLICIZED("Made %2$s public", null, null),
+        MEMBERS("Added %s to %s", "collaborator", "collaborators"),
+        WIKI("Updated the wiki of %2$s", null, null),
+        OTHER("%s in %s", "other event", "other events");
+
+        private final String format;
+        private final String singular;
+        private final String plural;
+
+        Counter(String format, String singular, String plural)
+        {
+            this.format = format;
+            this.singular = singular;
+            this.plural = plural;
+        }
+
+        String describe(int count, String repo)
+        {
+            return String.format(format, count + " " + (count == 1 ? singular : plural), repo);
+        }
+    }
+
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private final Map<String, int[]> counters = new LinkedHashMap<>();
+    private long events;
+
+    /**
+     * Returns a collector that summarizes events one at a time.
+     */
+    public static Collector<GitHubEvent, ?, ActivitySummary> collector()
+    {
+        return Collector.of(ActivitySummary::new, ActivitySummary::add, ActivitySummary::merge);
+    }
+
+    /**
+     * Describes a single event, such as "Pushed 2 commits to owner/repo".
+     */
+    public static String describe(GitHubEvent event)
+    {
+        String repo = event.getRepo() != null ? event.getRepo() : "an unknown repository";
+        Counter counter = counterOf(event);
+        return counter.describe(counter == Counter.COMMITS ? event.getCommits() : 1, repo);
+    }
+
+    /**
+     * Counts an event.
+     */
+    public void add(GitHubEvent event)
+    {
+        String repo = event.getRepo() != null ? event.getRepo() : "an unknown repository";
+        int[] counts = counters.computeIfAbsent(repo, name -> new int[COUNTERS.length]);
+        Counter counter = counterOf(event);
+        counts[counter.ordinal()] += counter == Counter.COMMITS ? event.getCommits() : 1;
+        events++;
+    }
+
+    /**
+     * Adds the counts of another summary to this one.
+     *
+     * @return This summary.
+     */
+    public ActivitySummary merge(ActivitySummary other)
+    {
+        for (Map.Entry<String, int[]> entry : other.counters.entrySet()) {
+            int[] counts = counters.computeIfAbsent(entry.getKey(), name -> new int[COUNTERS.length]);
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += entry.getValue()[i];
+            }
+        }
+        events += other.events;
+        return this;
+    }
+
+    /**
+     * Returns the number of events summarized.
+     */
+    public long getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * Returns the number of repositories the events were in.
+     */
+    public int getRepositories()
+    {
+        return counters.size();
+    }
+
+    /**
+     * Returns one line per repository and kind of activity.
+     */
+    public List<String> lines()
+    {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, int[]> entry : counters.entrySet()) {
+            for (Counter counter : COUNTERS) {
+                int count = entry.getValue()[counter.ordinal()];
+                if (count > 0) {
+                    lines.add(counter.describe(count, entry.getKey()));
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static Counter counterOf(GitHubEvent event)
+    {
+        String action = event.getAction();
+        switch (event.getType()) {
+            case PUSH:
+                return Counter.COMMITS;
+            case CREATE:
+                if ("repository".equals(event.getRefType())) {
+                    return Counter.REPOSITORIES_CREATED;
+                }
+                return "tag".equals(event.getRefType()) ? Counter.TAGS_CREATED : Counter.BRANCHES_CREATED;
+            case DELETE:
+                return "tag".equals(event.getRefType()) ? Counter.TAGS_DELETED : Counter.BRANCHES_DELETED;
+            case ISSUES:
+                if ("opened".equals(action)) {
+                    return Counter.ISSUES_OPENED;
+                }
+                return "closed".equals(action) ? Counter.ISSUES_CLOSED : Counter.ISSUES_UPDATED;
+            case PULL_REQUEST:
+                if ("opened".equals(action)) {
+                    return Counter.PULL_REQUESTS_OPENED;
+                }
+                return "closed".equals(action) ? Counter.PULL_REQUESTS_CLOSED : Counter.PULL_REQUESTS_UPDATED;
+            case PULL_REQUEST_REVIEW:
+                return Counter.REVIEWS;
+            case ISSUE_COMMENT:
+            case PULL_REQUEST_REVIEW_COMMENT:
+            case COMMIT_COMMENT:
+                return Counter.COMMENTS;
+            case WATCH:
+                return Counter.STARS;
+            case FORK:
+                return Counter.FORKS;
+            case RELEASE:
+                return Counter.RELEASES;
+            case PUBLIC:
+                return Counter.PUBLICIZED;
+            case MEMBER:
+                return Counter.MEMBERS;
+            case GOLLUM:
+                return Counter.WIKI;
+            default:
+                return Counter.OTHER;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder summary = new StringBuilder();
+        for (String line : lines()) {
+            summary.append("- ").append(line).append(System.lineSeparator());
+        }
+        return summary.toString();
+    }
+}
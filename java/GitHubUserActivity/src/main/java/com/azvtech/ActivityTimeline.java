@@ -0,0 +1,122 @@
+package com.azvtech;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Merges the activity of many GitHub users into one timeline, newest first.
+ *
+ * The API returns the events of each user newest first, so each user is read as a sorted
+ * {@link GitHubActivityFetcher.Feed} and the feeds are merged on a heap keyed by the time
+ * of their current event. The newest of those is newer than anything not yet read, so it
+ * is passed on right away, and only the feed it came from moves on. Memory is bounded by
+ * about one page per user, whatever the number of pages, and once the limit is reached no
+ * further page is requested.
+ *
+ * The first pages are requested at most a given number at a time, in the order of the
+ * users; later pages as the merge gets close to them.
+ */
+public class ActivityTimeline
+{
+    /** Newest first by time, then by id, which the API hands out in increasing order. */
+    static final Comparator<GitHubEvent> NEWEST_FIRST = Comparator
+            .comparing(GitHubEvent::getCreatedAt, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparingLong(GitHubEvent::getId)
+            .reversed();
+
+    private final GitHubActivityFetcher fetcher;
+    private final List<String> usernames;
+    private final int concurrency;
+    private int pages;
+
+    /**
+     * Creates a timeline.
+     *
+     * @param fetcher     Reads the events of the users.
+     * @param usernames   The users; those earlier in the list are requested first.
+     * @param concurrency The maximum number of first pages requested at once.
+     */
+    public ActivityTimeline(GitHubActivityFetcher fetcher, List<String> usernames, int concurrency)
+    {
+        this.fetcher = fetcher;
+        this.usernames = usernames;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Passes on the events of all users, newest first, up to a limit. A user whose events
+     * cannot be read is reported and left out from there on.
+     *
+     * @param limit    The most events to pass on, or a negative number for all of them.
+     * @param consumer Receives the username and each event, in timeline order.
+     * @param errors   Receives the users whose events could not be read, and why.
+     * @return The number of events passed on.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public long merge(long limit, BiConsumer<String, GitHubEvent> consumer, BiConsumer<String, IOException> errors)
+            throws InterruptedException
+    {
+        PriorityQueue<GitHubActivityFetcher.Feed> heap = new PriorityQueue<>(Math.max(1, usernames.size()),
+                Comparator.comparing(GitHubActivityFetcher.Feed::head, NEWEST_FIRST));
+        Deque<GitHubActivityFetcher.Feed> opening = new ArrayDeque<>();
+        List<GitHubActivityFetcher.Feed> all = new ArrayList<>(usernames.size());
+        long passed = 0;
+        try {
+            for (int i = 0; i < usernames.size(); i++) {
+                if (opening.size() == concurrency) {
+                    advance(opening.poll(), heap, errors);
+                }
+                GitHubActivityFetcher.Feed feed = fetcher.feed(usernames.get(i), i);
+                opening.add(feed);
+                all.add(feed);
+            }
+            while (!opening.isEmpty()) {
+                advance(opening.poll(), heap, errors);
+            }
+            while (!heap.isEmpty() && (limit < 0 || passed < limit)) {
+                GitHubActivityFetcher.Feed feed = heap.poll();
+                consumer.accept(feed.getUsername(), feed.head());
+                passed++;
+                if (limit < 0 || passed < limit) {
+                    advance(feed, heap, errors);
+                }
+            }
+        } finally {
+            for (GitHubActivityFetcher.Feed feed : all) {
+                pages += feed.getPages();
+                feed.close();
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Returns the number of pages read by the merges so far.
+     */
+    public int getPages()
+    {
+        return pages;
+    }
+
+    /**
+     * Moves a feed on to its next event and puts it back on the heap, unless it is
+     * exhausted or failed.
+     */
+    private static void advance(GitHubActivityFetcher.Feed feed, PriorityQueue<GitHubActivityFetcher.Feed> heap,
+                                BiConsumer<String, IOException> errors) throws InterruptedException
+    {
+        try {
+            if (feed.advance()) {
+                heap.add(feed);
+            }
+        } catch (IOException e) {
+            errors.accept(feed.getUsername(), e);
+        }
+    }
+}
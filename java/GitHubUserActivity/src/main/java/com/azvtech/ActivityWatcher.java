@@ -0,0 +1,342 @@
+package com.azvtech;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Watches the activity of GitHub users, passing on only the events that are new.
+ *
+ * Every user is polled with {@link GitHubActivityFetcher#poll}, no more often than the API
+ * asks with {@code X-Poll-Interval}, and conditionally on the entity tag of the last poll,
+ * so a user without new activity costs a 304 with an empty body. What each user has seen
+ * is kept as the ids of their newest events, at most {@link #RECENT_IDS} of them: an event
+ * is new if its id is larger than the smallest of those and not among them, so an event
+ * that shows up late is still passed on, once. The state of all users is checkpointed to
+ * a file, so a restart carries on where it stopped instead of passing everything on again.
+ *
+ * The first poll of a user without a checkpoint only records what is there; events are
+ * passed on from the second poll on.
+ */
+public class ActivityWatcher implements Closeable
+{
+    /** The default checkpoint file, under the user's home directory. */
+    public static final Path DEFAULT_CHECKPOINT = Paths.get(System.getProperty("user.home"), ".github-user-activity", "watch.checkpoint");
+
+    /** How many event ids are remembered per user. */
+    public static final int RECENT_IDS = 16;
+
+    private static final int MAGIC = 0x47485743; // "GHWC"
+    private static final byte VERSION = 1;
+
+    private final GitHubActivityFetcher fetcher;
+    private final Path checkpoint;
+    private final Duration minInterval;
+    private final Semaphore permits;
+    private final ExecutorService executor = GitHubActivityFetcher.newRequestExecutor();
+    private final List<User> users = new ArrayList<>();
+    private volatile boolean dirty;
+
+    /**
+     * Creates a watcher, restoring what was seen from the checkpoint if there is one.
+     *
+     * @param fetcher     Polls the users.
+     * @param usernames   The users to watch; those earlier in the list are polled first.
+     * @param concurrency The maximum number of users polled at once.
+     * @param minInterval The shortest time between two polls of a user, whatever the API asks.
+     * @param checkpoint  Where what was seen is kept, or {@code null} not to keep it.
+     * @throws IOException If the checkpoint exists but cannot be read.
+     */
+    public ActivityWatcher(GitHubActivityFetcher fetcher, List<String> usernames, int concurrency,
+                           Duration minInterval, Path checkpoint) throws IOException
+    {
+        this.fetcher = fetcher;
+        this.checkpoint = checkpoint;
+        this.minInterval = minInterval;
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        Map<String, User> restored = checkpoint != null ? read(checkpoint) : new HashMap<>();
+        long now = System.nanoTime();
+        for (String username : usernames) {
+            User user = restored.remove(username);
+            if (user == null) {
+                user = new User(username);
+            }
+            user.nextPollAt = now;
+            users.add(user);
+        }
+        dirty = !restored.isEmpty();
+    }
+
+    /**
+     * Polls the users until the thread is interrupted, checkpointing after every round in
+     * which something changed.
+     *
+     * @param events Receives the new events of every user, oldest first, one at a time.
+     * @param errors Receives the polls that failed; the user is polled again later.
+     * @throws IOException          If the checkpoint cannot be written.
+     * @throws InterruptedException If the thread is interrupted, after a last checkpoint.
+     */
+    public void watch(BiConsumer<String, GitHubEvent> events, BiConsumer<String, IOException> errors)
+            throws IOException, InterruptedException
+    {
+        try {
+            while (true) {
+                pollDue(events, errors);
+                checkpoint();
+                long wait = Long.MAX_VALUE;
+                long now = System.nanoTime();
+                for (User user : users) {
+                    wait = Math.min(wait, user.nextPollAt - now);
+                }
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait == Long.MAX_VALUE ? TimeUnit.SECONDS.toNanos(1) : wait);
+                }
+            }
+        } finally {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Polls every user whose next poll is due, and waits for all of them.
+     *
+     * @param events Receives the new events of every user, oldest first, one at a time.
+     * @param errors Receives the polls that failed; the user is polled again later.
+     * @return The number of new events passed on.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public int pollDue(BiConsumer<String, GitHubEvent> events, BiConsumer<String, IOException> errors)
+            throws InterruptedException
+    {
+        Object consumerLock = new Object();
+        AtomicInteger passedOn = new AtomicInteger();
+        List<CompletableFuture<Void>> polls = new ArrayList<>();
+        long now = System.nanoTime();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (user.nextPollAt - now > 0) {
+                continue;
+            }
+            long rank = i;
+            permits.acquire();
+            polls.add(CompletableFuture.runAsync(() -> {
+                try {
+                    List<GitHubEvent> fresh = poll(user, rank);
+                    synchronized (consumerLock) {
+                        for (int j = fresh.size() - 1; j >= 0; j--) {
+                            events.accept(user.name, fresh.get(j));
+                        }
+                    }
+                    passedOn.addAndGet(fresh.size());
+                } catch (IOException e) {
+                    user.nextPollAt = System.nanoTime() + Math.max(GitHubActivityFetcher.DEFAULT_POLL_INTERVAL.toNanos(), minInterval.toNanos());
+                    synchronized (consumerLock) {
+                        errors.accept(user.name, e);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    permits.release();
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(polls.toArray(new CompletableFuture<?>[0])).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return passedOn.get();
+    }
+
+    /**
+     * Polls one user and records what it saw.
+     *
+     * @return The new events, newest first.
+     */
+    private List<GitHubEvent> poll(User user, long rank) throws IOException, InterruptedException
+    {
+        boolean primed = user.primed;
+        List<GitHubEvent> fresh = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        GitHubActivityFetcher.Poll poll = fetcher.poll(user.name, user.etag, rank, event -> {
+            if (!user.isNew(event.getId()) || !ids.add(event.getId())) {
+                return false;
+            }
+            fresh.add(event);
+            // Priming only records the first page.
+            return primed;
+        });
+        user.nextPollAt = System.nanoTime() + Math.max(poll.getInterval().toNanos(), minInterval.toNanos());
+        if (!poll.isModified()) {
+            return fresh;
+        }
+        for (GitHubEvent event : fresh) {
+            user.record(event.getId());
+        }
+        user.etag = poll.getEtag();
+        user.primed = true;
+        dirty = true;
+        if (!primed) {
+            fresh.clear();
+        }
+        return fresh;
+    }
+
+    /**
+     * Writes what every user has seen to the checkpoint, if anything changed since the last
+     * time. The file is replaced atomically, so a crash leaves the previous checkpoint.
+     *
+     * @throws IOException If the checkpoint cannot be written.
+     */
+    public synchronized void checkpoint() throws IOException
+    {
+        if (checkpoint == null || !dirty) {
+            return;
+        }
+        dirty = false;
+        Path directory = checkpoint.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, checkpoint.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(users.size());
+                for (User user : users) {
+                    out.writeUTF(user.name);
+                    out.writeBoolean(user.primed);
+                    out.writeUTF(user.etag != null ? user.etag : "");
+                    out.writeByte(user.size);
+                    for (int i = 0; i < user.size; i++) {
+                        out.writeLong(user.ids[i]);
+                    }
+                }
+            }
+            Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Stops polling and writes a last checkpoint.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        executor.shutdown();
+        checkpoint();
+    }
+
+    private static Map<String, User> read(Path checkpoint) throws IOException
+    {
+        Map<String, User> users = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(checkpoint)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not a watch checkpoint: " + checkpoint);
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                User user = new User(in.readUTF());
+                user.primed = in.readBoolean();
+                String etag = in.readUTF();
+                user.etag = etag.isEmpty() ? null : etag;
+                for (int size = in.readByte(); size > 0; size--) {
+                    user.record(in.readLong());
+                }
+                users.put(user.name, user);
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing was checkpointed yet.
+        }
+        return users;
+    }
+
+    /**
+     * What has been seen of one user: the ids of their newest events, in ascending order.
+     */
+    private static final class User
+    {
+        final String name;
+        final long[] ids = new long[RECENT_IDS];
+        int size;
+        String etag;
+        boolean primed;
+        volatile long nextPollAt;
+
+        User(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * An event is new unless it was seen, or is older than everything remembered once
+         * the ids are full. Events without an id cannot be told apart, and are never new.
+         */
+        boolean isNew(long id)
+        {
+            if (id <= 0 || (size == ids.length && id <= ids[0])) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Remembers an id, forgetting the smallest one when full.
+         */
+        void record(long id)
+        {
+            if (!isNew(id)) {
+                return;
+            }
+            int at;
+            if (size < ids.length) {
+                at = size++;
+            } else {
+                at = 0;
+            }
+            // Shift the insertion point into place, keeping the ids sorted.
+            while (at > 0 && ids[at - 1] > id) {
+                ids[at] = ids[at - 1];
+                at--;
+            }
+            while (at < size - 1 && ids[at + 1] < id) {
+                ids[at] = ids[at + 1];
+                at++;
+            }
+            ids[at] = id;
+        }
+    }
+}
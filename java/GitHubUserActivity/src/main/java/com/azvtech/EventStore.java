@@ -0,0 +1,576 @@
+package com.azvtech;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * A persistent store of events, so history outlives the short window of the events API.
+ *
+ * Events are appended to segment files, rolled over at a fixed size, and indexed in memory
+ * by user and creation time. An event whose id is already stored for its user is skipped
+ * on the way in, so fetching the same page again adds nothing. A query for a user and a
+ * time range finds its events by binary search in the index of that user, filters them
+ * by type there, and reads only the records it passes on, whatever the number of segments.
+ *
+ * The index is written to its own file on {@link #close}, with the names of the types its
+ * codes stand for, so it still reads right once types are added. Segments written after it,
+ * such as after a crash, are read again on open, and events indexed in segments that are
+ * gone are dropped. {@link #compact} rewrites the store with the
+ * events of each user together in time order, so a query reads one contiguous range.
+ * All methods are thread-safe, but a directory is meant to be open in one store at a time.
+ */
+public class EventStore implements Closeable
+{
+    /** The default store directory, under the user's home directory. */
+    public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".github-user-activity", "events");
+
+    /** The default size at which a new segment is started. */
+    public static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+
+    private static final int MAGIC = 0x47484553; // "GHES"
+    private static final byte VERSION = 2;
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final String INDEX_FILE = "index";
+    private static final GitHubEvent.Type[] TYPES = GitHubEvent.Type.values();
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final Map<String, UserIndex> users = new HashMap<>();
+    /** The segments that hold live events, by number. */
+    private final TreeMap<Integer, RandomAccessFile> segments = new TreeMap<>();
+    private int current;
+    private long currentSize;
+    private DataOutputStream out;
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    private long events;
+
+    /**
+     * Opens a store, creating its directory if needed, and loads its index.
+     *
+     * @param directory    The directory of the segments and the index.
+     * @param segmentBytes The size at which a new segment is started.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public EventStore(Path directory, long segmentBytes) throws IOException
+    {
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes;
+
+        TreeSet<Integer> numbers = new TreeSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours.
+                }
+            }
+        }
+        Map<Integer, Long> indexed = readIndex();
+        int first = indexed.isEmpty() ? 0 : indexed.keySet().iterator().next();
+        for (int number : numbers) {
+            if (number < first) {
+                // Left over from a compaction that was indexed but not cleaned up.
+                Files.deleteIfExists(segmentFile(number));
+                continue;
+            }
+            segments.put(number, new RandomAccessFile(segmentFile(number).toFile(), "r"));
+            long from = indexed.getOrDefault(number, 0L);
+            scan(number, from);
+        }
+        users.values().removeIf(index -> index.retain(segments.keySet()) == 0);
+        for (UserIndex index : users.values()) {
+            events += index.size;
+        }
+        current = segments.isEmpty() ? 1 : segments.lastKey();
+        openForAppend(current);
+    }
+
+    /**
+     * Adds an event under its actor, unless it is already stored. Events without an id,
+     * actor or creation time cannot be indexed and are skipped.
+     *
+     * @return {@code true} if the event was added.
+     * @throws IOException If the event cannot be written.
+     */
+    public synchronized boolean add(GitHubEvent event) throws IOException
+    {
+        long time = epochSecond(event.getCreatedAt());
+        if (event.getId() <= 0 || event.getActor() == null || time < 0) {
+            return false;
+        }
+        UserIndex index = users.computeIfAbsent(event.getActor(), name -> new UserIndex());
+        if (index.contains(time, event.getId())) {
+            return false;
+        }
+        record.reset();
+        write(new DataOutputStream(record), event, time);
+        if (currentSize > 0 && currentSize + 4 + record.size() > segmentBytes) {
+            openForAppend(current + 1);
+        }
+        index.insert(time, event.getId(), event.getType(), position(current, currentSize));
+        out.writeInt(record.size());
+        record.writeTo(out);
+        currentSize += 4 + record.size();
+        events++;
+        return true;
+    }
+
+    /**
+     * Passes on the stored events of a user created in a time range, oldest first.
+     *
+     * @param user     The login of the user.
+     * @param from     The earliest creation time, inclusive, or {@code null} for no bound.
+     * @param to       The latest creation time, exclusive, or {@code null} for no bound.
+     * @param type     The only type of event wanted, or {@code null} for all of them.
+     * @param consumer Receives the events.
+     * @return The number of events passed on.
+     * @throws IOException If a segment cannot be read.
+     */
+    public synchronized int query(String user, Instant from, Instant to, GitHubEvent.Type type, Consumer<GitHubEvent> consumer)
+            throws IOException
+    {
+        UserIndex index = users.get(user);
+        if (index == null) {
+            return 0;
+        }
+        out.flush();
+        int start = index.firstAtOrAfter(from != null ? from.getEpochSecond() : Long.MIN_VALUE);
+        int end = index.firstAtOrAfter(to != null ? to.getEpochSecond() : Long.MAX_VALUE);
+        int passedOn = 0;
+        for (int i = start; i < end; i++) {
+            if (type == null || index.types[i] == type.ordinal()) {
+                consumer.accept(readAt(index.positions[i]));
+                passedOn++;
+            }
+        }
+        return passedOn;
+    }
+
+    /**
+     * Rewrites the store with the events of every user together and in time order, in as
+     * few segments as fit them. The old segments are deleted once the index of the new
+     * ones is written, so the store stays whole if this is interrupted.
+     *
+     * @throws IOException If the store cannot be rewritten.
+     */
+    public synchronized void compact() throws IOException
+    {
+        out.flush();
+        int first = current + 1;
+        Map<String, UserIndex> compacted = new HashMap<>();
+        List<String> names = new ArrayList<>(users.keySet());
+        names.sort(null);
+        Map<Integer, RandomAccessFile> old = new TreeMap<>(segments);
+        openForAppend(first);
+        for (String name : names) {
+            UserIndex from = users.get(name);
+            UserIndex to = new UserIndex();
+            compacted.put(name, to);
+            for (int i = 0; i < from.size; i++) {
+                byte[] bytes = readRecord(old, from.positions[i]);
+                if (currentSize > 0 && currentSize + 4 + bytes.length > segmentBytes) {
+                    openForAppend(current + 1);
+                }
+                to.insert(from.times[i], from.ids[i], TYPES[from.types[i]], position(current, currentSize));
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                currentSize += 4 + bytes.length;
+            }
+        }
+        out.flush();
+        for (int number : old.keySet()) {
+            segments.remove(number).close();
+        }
+        users.clear();
+        users.putAll(compacted);
+        writeIndex();
+        for (int number : old.keySet()) {
+            Files.deleteIfExists(segmentFile(number));
+        }
+    }
+
+    /**
+     * Writes buffered events to their segment.
+     */
+    public synchronized void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    /**
+     * Returns the number of stored events.
+     */
+    public synchronized long size()
+    {
+        return events;
+    }
+
+    /**
+     * Returns the number of segment files.
+     */
+    public synchronized int segments()
+    {
+        return segments.size();
+    }
+
+    /**
+     * Writes the index and closes the segments.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        out.close();
+        writeIndex();
+        for (RandomAccessFile segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("store: %d events of %d users in %d segments", events, users.size(), segments.size());
+    }
+
+    private void openForAppend(int number) throws IOException
+    {
+        if (out != null && number != current) {
+            out.close();
+        }
+        current = number;
+        Path file = segmentFile(number);
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        currentSize = Files.size(file);
+        if (!segments.containsKey(number)) {
+            segments.put(number, new RandomAccessFile(file.toFile(), "r"));
+        }
+    }
+
+    /**
+     * Indexes the records of a segment from an offset on. A record cut short by a crash
+     * ends the segment, and is cut off so appends start after the last whole record.
+     */
+    private void scan(int number, long from) throws IOException
+    {
+        Path file = segmentFile(number);
+        long offset = from;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(from))))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                try {
+                    in.readFully(bytes);
+                } catch (EOFException e) {
+                    break;
+                }
+                GitHubEvent event = read(bytes);
+                long time = epochSecond(event.getCreatedAt());
+                UserIndex index = users.computeIfAbsent(event.getActor(), name -> new UserIndex());
+                if (!index.contains(time, event.getId())) {
+                    index.insert(time, event.getId(), event.getType(), position(number, offset));
+                }
+                offset += 4 + length;
+            }
+        }
+        if (offset < Files.size(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(offset);
+            }
+        }
+    }
+
+    private GitHubEvent readAt(long position) throws IOException
+    {
+        return read(readRecord(segments, position));
+    }
+
+    private static byte[] readRecord(Map<Integer, RandomAccessFile> segments, long position) throws IOException
+    {
+        RandomAccessFile segment = segments.get((int) (position >>> 32));
+        if (segment == null) {
+            throw new IOException("Missing segment " + (position >>> 32));
+        }
+        segment.seek(position & 0xffffffffL);
+        byte[] bytes = new byte[segment.readInt()];
+        segment.readFully(bytes);
+        return bytes;
+    }
+
+    private static void write(DataOutputStream out, GitHubEvent event, long time) throws IOException
+    {
+        out.writeLong(event.getId());
+        out.writeUTF(event.getType().name());
+        out.writeUTF(event.getActor());
+        out.writeUTF(orEmpty(event.getRepo()));
+        out.writeLong(time);
+        out.writeUTF(orEmpty(event.getAction()));
+        out.writeUTF(orEmpty(event.getRefType()));
+        out.writeInt(event.getCommits());
+    }
+
+    private static GitHubEvent read(byte[] bytes) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        long id = in.readLong();
+        GitHubEvent.Type type;
+        try {
+            type = GitHubEvent.Type.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            type = GitHubEvent.Type.OTHER;
+        }
+        String actor = in.readUTF();
+        String repo = orNull(in.readUTF());
+        String createdAt = Instant.ofEpochSecond(in.readLong()).toString();
+        return new GitHubEvent(id, type, actor, repo, createdAt, orNull(in.readUTF()), orNull(in.readUTF()), in.readInt());
+    }
+
+    /**
+     * Reads the index, and returns how far it covers every segment, first segment first.
+     */
+    private Map<Integer, Long> readIndex() throws IOException
+    {
+        Map<Integer, Long> covered = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(INDEX_FILE))))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Not an event store index");
+            }
+            byte[] types = new byte[in.readUnsignedByte()];
+            for (int code = 0; code < types.length; code++) {
+                try {
+                    types[code] = (byte) GitHubEvent.Type.valueOf(in.readUTF()).ordinal();
+                } catch (IllegalArgumentException e) {
+                    types[code] = (byte) GitHubEvent.Type.OTHER.ordinal();
+                }
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                covered.put(in.readInt(), in.readLong());
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                String name = in.readUTF();
+                UserIndex index = new UserIndex();
+                int size = in.readInt();
+                index.grow(size);
+                for (int i = 0; i < size; i++) {
+                    index.times[i] = in.readLong();
+                    index.ids[i] = in.readLong();
+                    int code = in.readUnsignedByte();
+                    if (code >= types.length) {
+                        throw new IOException("Unknown event type code " + code);
+                    }
+                    index.types[i] = types[code];
+                    index.positions[i] = in.readLong();
+                }
+                index.size = size;
+                users.put(name, index);
+            }
+        } catch (NoSuchFileException e) {
+            // A new store, or one whose index is lost; the segments are read instead.
+        } catch (IOException e) {
+            users.clear();
+            covered.clear();
+        }
+        return covered;
+    }
+
+    /**
+     * Writes the index next to the segments, replacing the previous one atomically.
+     */
+    private void writeIndex() throws IOException
+    {
+        Path file = directory.resolve(INDEX_FILE);
+        Path temporary = Files.createTempFile(directory, INDEX_FILE, ".tmp");
+        try {
+            try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                index.writeInt(MAGIC);
+                index.writeByte(VERSION);
+                index.writeByte(TYPES.length);
+                for (GitHubEvent.Type type : TYPES) {
+                    index.writeUTF(type.name());
+                }
+                index.writeInt(segments.size());
+                for (Map.Entry<Integer, RandomAccessFile> segment : segments.entrySet()) {
+                    index.writeInt(segment.getKey());
+                    index.writeLong(segment.getKey() == current ? currentSize : segment.getValue().length());
+                }
+                index.writeInt(users.size());
+                for (Map.Entry<String, UserIndex> user : users.entrySet()) {
+                    UserIndex each = user.getValue();
+                    index.writeUTF(user.getKey());
+                    index.writeInt(each.size);
+                    for (int i = 0; i < each.size; i++) {
+                        index.writeLong(each.times[i]);
+                        index.writeLong(each.ids[i]);
+                        index.writeByte(each.types[i]);
+                        index.writeLong(each.positions[i]);
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path segmentFile(int number)
+    {
+        return directory.resolve(String.format("%08d%s", number, SEGMENT_SUFFIX));
+    }
+
+    private static long position(int segment, long offset)
+    {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static long epochSecond(String createdAt)
+    {
+        if (createdAt == null) {
+            return -1;
+        }
+        try {
+            return Instant.parse(createdAt).getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static String orEmpty(String value)
+    {
+        return value != null ? value : "";
+    }
+
+    private static String orNull(String value)
+    {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * The events of one user, sorted by creation time and id: their type and where each is
+     * stored, in parallel arrays, so a user takes 25 bytes per event.
+     */
+    private static final class UserIndex
+    {
+        long[] times = new long[0];
+        long[] ids = new long[0];
+        byte[] types = new byte[0];
+        long[] positions = new long[0];
+        int size;
+
+        boolean contains(long time, long id)
+        {
+            int at = search(time, id);
+            return at < size && times[at] == time && ids[at] == id;
+        }
+
+        /**
+         * Inserts an event in order. Pages arrive newest first, and mostly newer than what
+         * is stored, so few entries move.
+         */
+        void insert(long time, long id, GitHubEvent.Type type, long position)
+        {
+            int at = search(time, id);
+            grow(size + 1);
+            System.arraycopy(times, at, times, at + 1, size - at);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(types, at, types, at + 1, size - at);
+            System.arraycopy(positions, at, positions, at + 1, size - at);
+            times[at] = time;
+            ids[at] = id;
+            types[at] = (byte) type.ordinal();
+            positions[at] = position;
+            size++;
+        }
+
+        /**
+         * Keeps only the entries stored in the given segments, in order, and returns how
+         * many are left.
+         */
+        int retain(Set<Integer> segments)
+        {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (segments.contains((int) (positions[i] >>> 32))) {
+                    times[kept] = times[i];
+                    ids[kept] = ids[i];
+                    types[kept] = types[i];
+                    positions[kept] = positions[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+
+        /**
+         * Returns the first entry created at or after a time.
+         */
+        int firstAtOrAfter(long time)
+        {
+            return search(time, Long.MIN_VALUE);
+        }
+
+        void grow(int capacity)
+        {
+            if (capacity > times.length) {
+                int length = Math.max(capacity, times.length + (times.length >> 1) + 8);
+                times = Arrays.copyOf(times, length);
+                ids = Arrays.copyOf(ids, length);
+                types = Arrays.copyOf(types, length);
+                positions = Arrays.copyOf(positions, length);
+            }
+        }
+
+        /**
+         * Returns the first entry not before the given time and id.
+         */
+        private int search(long time, long id)
+        {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < time || (times[middle] == time && ids[middle] < id)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,864 @@
+package com.azvtech;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Fetches the activity of GitHub users through one shared {@link HttpClient}.
+ *
+ * The client asks for HTTP/2, so requests to the same host are multiplexed over one
+ * connection where the server supports it, and connections are reused otherwise. Batches
+ * run every request on its own thread, virtual where the runtime has them, with at most
+ * a fixed number of requests in flight. With a {@link ResponseCache}, responses are reused
+ * while fresh and revalidated with conditional requests afterwards.
+ *
+ * All pages of events are fetched by following the {@code Link} headers. The next page is
+ * requested as soon as the headers of the current one arrive, so it is on its way while
+ * the current one is parsed. Bodies are requested gzip-compressed, decompressed as they
+ * are read and decoded one {@link GitHubEvent} at a time.
+ *
+ * For watching users, {@link #poll} asks only whether anything changed since the last
+ * time, and reads no further back than the events already seen. For merging users into
+ * one timeline, {@link #feed} reads their events a page at a time, only as far as asked.
+ *
+ * Every request is recorded as a {@link GitHubFetchEvent}, and in the {@link Metrics} when
+ * they are on.
+ */
+public class GitHubActivityFetcher
+{
+    /** The events endpoint of the GitHub API, with a placeholder for the username. */
+    public static final String GITHUB_API_URL = "https://api.github.com/users/%s/events";
+
+    /**
+     * The environment variable that points the command line at another API, such as the
+     * local {@code GitHubApiStub} of the tests.
+     */
+    public static final String API_URL_VARIABLE = "GITHUB_API_URL";
+
+    /** The default number of users fetched at once in a batch. */
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    /** The number of events asked for per page; the most the API allows. */
+    public static final int PAGE_SIZE = 100;
+
+    /** How long to wait between polls when the API does not say. */
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(60);
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+    private final String apiUrl;
+    private final ResponseCache cache;
+    private final RequestScheduler scheduler;
+
+    /**
+     * Creates a fetcher for the GitHub API.
+     */
+    public GitHubActivityFetcher()
+    {
+        this(GITHUB_API_URL);
+    }
+
+    /**
+     * Creates a fetcher for an API that serves events like GitHub's, such as a local stub.
+     *
+     * @param apiUrl The events URL, with {@code %s} where the username goes.
+     */
+    public GitHubActivityFetcher(String apiUrl)
+    {
+        this(apiUrl, null);
+    }
+
+    /**
+     * Creates a fetcher that keeps the responses in a cache.
+     *
+     * @param apiUrl The events URL, with {@code %s} where the username goes.
+     * @param cache  The response cache, or {@code null} to always download.
+     */
+    public GitHubActivityFetcher(String apiUrl, ResponseCache cache)
+    {
+        this(apiUrl, cache, new RequestScheduler());
+    }
+
+    /**
+     * Creates a fetcher that sends its requests through a scheduler.
+     *
+     * @param apiUrl    The events URL, with {@code %s} where the username goes.
+     * @param cache     The response cache, or {@code null} to always download.
+     * @param scheduler Paces, orders and retries the requests.
+     */
+    public GitHubActivityFetcher(String apiUrl, ResponseCache cache, RequestScheduler scheduler)
+    {
+        this.apiUrl = apiUrl;
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Fetches all recent events of a user, page by page.
+     *
+     * @param username The GitHub username.
+     * @param consumer Receives the events in the order the API returns them, newest first.
+     * @return The number of events.
+     * @throws IOException          If a request fails, the API does not answer with 200, or
+     *                              a page is not an array of events.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public int fetchEvents(String username, Consumer<GitHubEvent> consumer) throws IOException, InterruptedException
+    {
+        return fetchEvents(username, 0, consumer);
+    }
+
+    /**
+     * Fetches all recent events of a user, with the requests queued at a rank of the
+     * scheduler.
+     */
+    private int fetchEvents(String username, long rank, Consumer<GitHubEvent> consumer) throws IOException, InterruptedException
+    {
+        return fetchPages(username, rank, page -> page.parse(consumer));
+    }
+
+    /**
+     * Fetches all recent events of a user as the pages the API returns, for passing on
+     * unchanged.
+     *
+     * @param username The GitHub username.
+     * @param consumer Receives the body of every page, decompressed, in order; each is
+     *                 checked to be an array of events first.
+     * @return The number of events.
+     * @throws IOException          If a request fails, the API does not answer with 200, or
+     *                              a page is not an array of events.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public int fetchPages(String username, Consumer<byte[]> consumer) throws IOException, InterruptedException
+    {
+        return fetchPages(username, 0, page -> page.read(consumer));
+    }
+
+    /**
+     * Requests the pages of the events of a user one after another, each as soon as the
+     * previous one has arrived, and reads each with a reader.
+     */
+    private int fetchPages(String username, long rank, PageReader reader) throws IOException, InterruptedException
+    {
+        CompletableFuture<Page> next = requestPage(firstPageUrl(username), rank);
+        int events = 0;
+        while (next != null) {
+            Page page = await(next);
+            next = page.next != null ? requestPage(page.next, rank) : null;
+            try {
+                events += reader.read(page);
+            } catch (IOException | RuntimeException e) {
+                if (next != null) {
+                    next.thenAccept(Page::discard);
+                }
+                throw e;
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Polls the events of a user for what is new since the last poll.
+     *
+     * The first page is requested conditionally on the entity tag of the last poll; when
+     * nothing changed, the API answers 304 without a body. Otherwise events are read,
+     * newest first, until the consumer rejects one as already seen, following further
+     * pages only while every event was new.
+     *
+     * @param username The GitHub username.
+     * @param etag     The entity tag returned by the last poll, or {@code null}.
+     * @param rank     Where the requests go in the queue of the scheduler; lower goes first.
+     * @param consumer Receives the events newest first, and tells whether each was new.
+     * @return Whether anything changed, with the entity tag and interval for the next poll.
+     * @throws IOException          If a request fails or the API does not answer with 200
+     *                              or 304.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public Poll poll(String username, String etag, long rank, Predicate<GitHubEvent> consumer)
+            throws IOException, InterruptedException
+    {
+        String url = firstPageUrl(username);
+        Duration interval = null;
+        String firstEtag = null;
+        boolean allNew = true;
+        while (url != null && allNew) {
+            HttpRequest.Builder request = newRequest(url);
+            if (firstEtag == null && etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            HttpRequest built = request.build();
+            GitHubFetchEvent fetch = new GitHubFetchEvent(url);
+            HttpResponse<InputStream> response;
+            try {
+                response = await(scheduler.submit(rank, () -> client.sendAsync(built, HttpResponse.BodyHandlers.ofInputStream())));
+            } catch (IOException | RuntimeException e) {
+                fetch.finish(0, 0);
+                throw e;
+            }
+            if (interval == null) {
+                interval = pollInterval(response);
+            }
+            if (response.statusCode() == 304 && firstEtag == null) {
+                response.body().close();
+                fetch.finish(304, 0);
+                return new Poll(false, etag, interval);
+            }
+            if (response.statusCode() != 200) {
+                response.body().close();
+                fetch.finish(response.statusCode(), 0);
+                throw new IOException("Failed to fetch data: " + response.statusCode());
+            }
+            Page page = new Page(url, response, fetch);
+            if (firstEtag == null) {
+                firstEtag = page.etag != null ? page.etag : "";
+            }
+            boolean[] pageAllNew = { true };
+            try (InputStream body = page.decoded()) {
+                GitHubEvent.readAll(body, event -> pageAllNew[0] &= consumer.test(event));
+            } finally {
+                page.finish();
+            }
+            allNew = pageAllNew[0];
+            url = page.next;
+        }
+        return new Poll(true, firstEtag.isEmpty() ? null : firstEtag, interval);
+    }
+
+    /**
+     * Opens the events of a user as a feed read a page at a time, newest first. The first
+     * page is requested right away; later pages only once the feed gets close to them.
+     *
+     * @param username The GitHub username.
+     * @param rank     Where the requests go in the queue of the scheduler; lower goes first.
+     */
+    public Feed feed(String username, long rank)
+    {
+        return new Feed(username, rank, requestPage(firstPageUrl(username), rank));
+    }
+
+    /**
+     * Fetches the events of many users concurrently, collecting those of each user.
+     *
+     * A user holds its slot until its result has been passed on, so at most
+     * {@code concurrency} results are in flight or waiting to be passed on at any time,
+     * however long the list of usernames. The requests of users earlier in the list go
+     * ahead of those of later users in the queue of the scheduler.
+     *
+     * @param usernames   The GitHub usernames, most important first.
+     * @param concurrency The maximum number of users fetched at once.
+     * @param inputOrder  {@code true} to pass on results in the order of the usernames,
+     *                    {@code false} to pass each on as soon as it completes.
+     * @param collector   Collects the events of one user, as they are parsed.
+     * @param consumer    Receives every result, one at a time.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public <A, T> void fetchAll(List<String> usernames, int concurrency, boolean inputOrder,
+                                Collector<GitHubEvent, A, T> collector, Consumer<Result<T>> consumer)
+            throws InterruptedException
+    {
+        Semaphore permits = new Semaphore(Math.max(1, concurrency));
+        Object consumerLock = new Object();
+        Deque<CompletableFuture<Result<T>>> pending = new ArrayDeque<>();
+        ExecutorService executor = newRequestExecutor();
+        try {
+            for (int i = 0; i < usernames.size(); i++) {
+                String username = usernames.get(i);
+                long rank = i;
+                if (inputOrder) {
+                    // Slots are only freed by passing results on, which happens on this thread.
+                    while (!permits.tryAcquire()) {
+                        consumer.accept(pending.poll().get());
+                        permits.release();
+                    }
+                } else {
+                    permits.acquire();
+                    while (!pending.isEmpty() && pending.peek().isDone()) {
+                        pending.poll().get();
+                    }
+                }
+                CompletableFuture<Result<T>> result = CompletableFuture.supplyAsync(() -> fetchResult(username, rank, collector), executor);
+                if (!inputOrder) {
+                    // A failed user is not passed on; its error is thrown from get() below.
+                    result = result.whenComplete((each, error) -> {
+                        try {
+                            if (error == null) {
+                                synchronized (consumerLock) {
+                                    consumer.accept(each);
+                                }
+                            }
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+                pending.add(result);
+            }
+            while (!pending.isEmpty()) {
+                Result<T> each = pending.poll().get();
+                if (inputOrder) {
+                    consumer.accept(each);
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private <A, T> Result<T> fetchResult(String username, long rank, Collector<GitHubEvent, A, T> collector)
+    {
+        long start = System.nanoTime();
+        A container = collector.supplier().get();
+        try {
+            fetchEvents(username, rank, event -> collector.accumulator().accept(container, event));
+            return new Result<>(username, collector.finisher().apply(container), null, System.nanoTime() - start);
+        } catch (IOException e) {
+            return new Result<>(username, null, e, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result<>(username, null, new IOException("Interrupted", e), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Requests a page, or takes it from the cache. The returned future completes as soon as
+     * the headers are in; the body is read by {@link Page#parse}.
+     */
+    private CompletableFuture<Page> requestPage(String url, long rank)
+    {
+        ResponseCache.Response cached = cache != null ? cache.get(url) : null;
+        if (cached != null && cached.isFresh()) {
+            cache.hit();
+            Metrics.count("fetch.fresh", 1);
+            return CompletableFuture.completedFuture(new Page(url, cached));
+        }
+
+        HttpRequest.Builder request = newRequest(url);
+        if (cached != null && cached.getEtag() != null) {
+            request.header("If-None-Match", cached.getEtag());
+        }
+        if (cached != null && cached.getLastModified() != null) {
+            request.header("If-Modified-Since", cached.getLastModified());
+        }
+
+        HttpRequest built = request.build();
+        GitHubFetchEvent fetch = new GitHubFetchEvent(url);
+        return scheduler.submit(rank, () -> client.sendAsync(built, HttpResponse.BodyHandlers.ofInputStream())).handle((response, error) -> {
+            if (error != null) {
+                fetch.finish(0, 0);
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            }
+            try {
+                if (response.statusCode() == 304 && cached != null) {
+                    response.body().close();
+                    fetch.finish(304, 0);
+                    cache.revalidated(cached);
+                    return new Page(url, cached);
+                }
+                if (response.statusCode() != 200) {
+                    response.body().close();
+                    fetch.finish(response.statusCode(), 0);
+                    throw new IOException("Failed to fetch data: " + response.statusCode());
+                }
+                return new Page(url, response, fetch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the events URL of an API, given either the events URL itself, with {@code %s}
+     * where the username goes, or the root of an API laid out like GitHub's, such as
+     * {@code http://localhost:8080}.
+     */
+    public static String eventsUrl(String api)
+    {
+        if (api.contains("%s")) {
+            return api;
+        }
+        return (api.endsWith("/") ? api.substring(0, api.length() - 1) : api) + "/users/%s/events";
+    }
+
+    private String firstPageUrl(String username)
+    {
+        String url = String.format(apiUrl, username);
+        return url + (url.contains("?") ? "&" : "?") + "per_page=" + PAGE_SIZE;
+    }
+
+    private static HttpRequest.Builder newRequest(String url)
+    {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/vnd.github.v3+json")
+                .header("Accept-Encoding", "gzip");
+    }
+
+    /**
+     * Returns the interval the API asks pollers to wait, from the {@code X-Poll-Interval}
+     * header, or the default if it gives none.
+     */
+    private static Duration pollInterval(HttpResponse<?> response)
+    {
+        try {
+            return response.headers().firstValue("X-Poll-Interval")
+                    .map(seconds -> Duration.ofSeconds(Long.parseLong(seconds.trim())))
+                    .orElse(DEFAULT_POLL_INTERVAL);
+        } catch (NumberFormatException e) {
+            return DEFAULT_POLL_INTERVAL;
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException
+    {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Returns the URL of the next page in a {@code Link} header, or {@code null} if there
+     * is none.
+     */
+    static String nextLink(String header)
+    {
+        if (header == null) {
+            return null;
+        }
+        for (String link : header.split(",")) {
+            int end = link.indexOf('>');
+            if (end > 0 && link.substring(end + 1).replace(" ", "").contains("rel=\"next\"")) {
+                return link.substring(link.indexOf('<') + 1, end);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an executor that runs each request on a new virtual thread on runtimes that
+     * support them, and on a cached pool of daemon threads otherwise.
+     */
+    static ExecutorService newRequestExecutor()
+    {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "github-fetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * One page of events whose headers have arrived, with the body still to be read.
+     */
+    private final class Page
+    {
+        final String url;
+        final String next;
+        private final InputStream body;
+        private final boolean gzip;
+        private final String etag;
+        private final String lastModified;
+        private final boolean fromCache;
+        private final GitHubFetchEvent fetch;
+        private final CountingInputStream counted;
+
+        Page(String url, ResponseCache.Response cached)
+        {
+            this.url = url;
+            this.next = cached.getNext();
+            this.body = new ByteArrayInputStream(cached.getBody());
+            this.gzip = false;
+            this.etag = cached.getEtag();
+            this.lastModified = cached.getLastModified();
+            this.fromCache = true;
+            this.fetch = null;
+            this.counted = null;
+        }
+
+        /**
+         * Wraps a response, whose request is finished in the fetch event once the body has
+         * been read.
+         */
+        Page(String url, HttpResponse<InputStream> response, GitHubFetchEvent fetch)
+        {
+            this.url = url;
+            this.next = nextLink(response.headers().firstValue("Link").orElse(null));
+            this.fetch = fetch;
+            this.counted = fetch.isMeasured() ? new CountingInputStream(response.body()) : null;
+            this.body = counted != null ? counted : response.body();
+            this.gzip = response.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+            this.etag = response.headers().firstValue("ETag").orElse(null);
+            this.lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            this.fromCache = false;
+        }
+
+        /**
+         * Parses the events of the page as they are read. With a cache, the decompressed
+         * page is kept aside as well and cached once it has been read whole.
+         */
+        int parse(Consumer<GitHubEvent> consumer) throws IOException
+        {
+            ByteArrayOutputStream copy = cache != null && !fromCache ? new ByteArrayOutputStream() : null;
+            int events;
+            try {
+                events = GitHubEvent.readAll(copy != null ? new CopyingInputStream(decoded(), copy) : decoded(), consumer);
+            } finally {
+                finish();
+            }
+            if (copy != null) {
+                cache.put(url, etag, lastModified, next, copy.toByteArray());
+            }
+            return events;
+        }
+
+        /**
+         * Reads the page whole and passes it on once it has been checked to be an array of
+         * events. With a cache, the page is cached as well.
+         */
+        int read(Consumer<byte[]> consumer) throws IOException
+        {
+            byte[] bytes;
+            try (InputStream in = decoded()) {
+                bytes = in.readAllBytes();
+            } finally {
+                finish();
+            }
+            int events = GitHubEvent.readAll(new ByteArrayInputStream(bytes), event -> { });
+            if (cache != null && !fromCache) {
+                cache.put(url, etag, lastModified, next, bytes);
+            }
+            consumer.accept(bytes);
+            return events;
+        }
+
+        /**
+         * Records the request of the page, once its body has been read.
+         */
+        void finish()
+        {
+            if (fetch != null) {
+                fetch.finish(200, counted != null ? counted.count : 0);
+            }
+        }
+
+        void discard()
+        {
+            try {
+                body.close();
+            } catch (IOException e) {
+                // Nothing more will be read from it.
+            }
+        }
+
+        private InputStream decoded() throws IOException
+        {
+            return gzip ? new GZIPInputStream(body) : body;
+        }
+    }
+
+    /**
+     * Reads the events of a page, one way or another.
+     */
+    private interface PageReader
+    {
+        int read(Page page) throws IOException;
+    }
+
+    /**
+     * Counts the bytes read from a stream.
+     */
+    private static final class CountingInputStream extends FilterInputStream
+    {
+        long count;
+
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Copies what is read from a stream into a buffer.
+     */
+    private static final class CopyingInputStream extends FilterInputStream
+    {
+        private final ByteArrayOutputStream copy;
+
+        CopyingInputStream(InputStream in, ByteArrayOutputStream copy)
+        {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+            if (b >= 0) {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                copy.write(buffer, offset, read);
+            }
+            return read;
+        }
+    }
+
+    /**
+     * The events of one user, read a page at a time. Only the page being read is held, and
+     * the request for the next one goes out once the last quarter of it is reached, so
+     * reading a feed rarely waits for a page and stopping early leaves the remaining pages
+     * unfetched.
+     */
+    public final class Feed
+    {
+        private final String username;
+        private final long rank;
+        private CompletableFuture<Page> pending;
+        private List<GitHubEvent> events = new ArrayList<>();
+        private int index = -1;
+        private String next;
+        private int pages;
+
+        Feed(String username, long rank, CompletableFuture<Page> first)
+        {
+            this.username = username;
+            this.rank = rank;
+            this.pending = first;
+        }
+
+        public String getUsername()
+        {
+            return username;
+        }
+
+        /**
+         * Returns the current event, or {@code null} before the first {@link #advance} or
+         * once the feed is exhausted.
+         */
+        public GitHubEvent head()
+        {
+            return index >= 0 && index < events.size() ? events.get(index) : null;
+        }
+
+        /**
+         * Moves on to the next event, waiting for its page if it has not arrived yet.
+         *
+         * @return {@code false} if there are no more events.
+         * @throws IOException          If a page cannot be fetched or parsed; the feed is then
+         *                              exhausted.
+         * @throws InterruptedException If the thread is interrupted while waiting.
+         */
+        public boolean advance() throws IOException, InterruptedException
+        {
+            index++;
+            while (index >= events.size() && pending != null) {
+                Page page;
+                try {
+                    page = await(pending);
+                } finally {
+                    pending = null;
+                }
+                List<GitHubEvent> parsed = new ArrayList<>(PAGE_SIZE);
+                page.parse(parsed::add);
+                events = parsed;
+                index = 0;
+                next = page.next;
+                pages++;
+            }
+            if (index >= events.size()) {
+                events = new ArrayList<>();
+                return false;
+            }
+            if (pending == null && next != null && index >= events.size() - Math.max(1, events.size() / 4)) {
+                pending = requestPage(next, rank);
+                next = null;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the number of pages read so far.
+         */
+        public int getPages()
+        {
+            return pages;
+        }
+
+        /**
+         * Stops reading the feed, dropping a page that is on its way.
+         */
+        public void close()
+        {
+            if (pending != null) {
+                pending.thenAccept(Page::discard);
+                pending = null;
+            }
+            events = new ArrayList<>();
+            next = null;
+        }
+    }
+
+    /**
+     * The outcome of polling the events of one user.
+     */
+    public static final class Poll
+    {
+        private final boolean modified;
+        private final String etag;
+        private final Duration interval;
+
+        Poll(boolean modified, String etag, Duration interval)
+        {
+            this.modified = modified;
+            this.etag = etag;
+            this.interval = interval;
+        }
+
+        /**
+         * Returns {@code false} if the API answered that nothing changed since the last poll.
+         */
+        public boolean isModified()
+        {
+            return modified;
+        }
+
+        /**
+         * Returns the entity tag to send with the next poll, or {@code null}.
+         */
+        public String getEtag()
+        {
+            return etag;
+        }
+
+        /**
+         * Returns how long the API asks to wait before the next poll.
+         */
+        public Duration getInterval()
+        {
+            return interval;
+        }
+    }
+
+    /**
+     * The outcome of fetching the events of one user.
+     *
+     * @param <T> The type the events were collected into.
+     */
+    public static final class Result<T>
+    {
+        private final String username;
+        private final T events;
+        private final IOException error;
+        private final long elapsedNanos;
+
+        Result(String username, T events, IOException error, long elapsedNanos)
+        {
+            this.username = username;
+            this.events = events;
+            this.error = error;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public String getUsername()
+        {
+            return username;
+        }
+
+        /**
+         * Returns the collected events, or {@code null} if the fetch failed.
+         */
+        public T getEvents()
+        {
+            return events;
+        }
+
+        /**
+         * Returns why the fetch failed, or {@code null} if it succeeded.
+         */
+        public IOException getError()
+        {
+            return error;
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.azvtech;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An event from the GitHub events API, with only the fields activity summaries need.
+ *
+ * Events are decoded straight from a {@link JsonParser} positioned on the event object,
+ * skipping everything else, so no tree of the event is ever built.
+ */
+public class GitHubEvent
+{
+    /**
+     * The event types of the API. Types not listed here are read as {@link #OTHER}.
+     */
+    public enum Type
+    {
+        PUSH("PushEvent"),
+        CREATE("CreateEvent"),
+        DELETE("DeleteEvent"),
+        ISSUES("IssuesEvent"),
+        ISSUE_COMMENT("IssueCommentEvent"),
+        PULL_REQUEST("PullRequestEvent"),
+        PULL_REQUEST_REVIEW("PullRequestReviewEvent"),
+        PULL_REQUEST_REVIEW_COMMENT("PullRequestReviewCommentEvent"),
+        COMMIT_COMMENT("CommitCommentEvent"),
+        WATCH("WatchEvent"),
+        FORK("ForkEvent"),
+        RELEASE("ReleaseEvent"),
+        PUBLIC("PublicEvent"),
+        MEMBER("MemberEvent"),
+        GOLLUM("GollumEvent"),
+        OTHER(null);
+
+        private static final Map<String, Type> BY_API_NAME = new HashMap<>();
+
+        static {
+            for (Type type : values()) {
+                BY_API_NAME.put(type.apiName, type);
+            }
+        }
+
+        private final String apiName;
+
+        Type(String apiName)
+        {
+            this.apiName = apiName;
+        }
+
+        /**
+         * Returns the name of the type in the API, such as {@code PushEvent}, or
+         * {@code null} for {@link #OTHER}.
+         */
+        public String getApiName()
+        {
+            return apiName;
+        }
+
+        /**
+         * Returns the type of an API type name, or {@link #OTHER} for types not listed.
+         */
+        public static Type fromApiName(String apiName)
+        {
+            return BY_API_NAME.getOrDefault(apiName, OTHER);
+        }
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final long id;
+    private final Type type;
+    private final String actor;
+    private final String repo;
+    private final String createdAt;
+    private final String action;
+    private final String refType;
+    private final int commits;
+
+    public GitHubEvent(long id, Type type, String actor, String repo, String createdAt, String action, String refType, int commits)
+    {
+        this.id = id;
+        this.type = type;
+        this.actor = actor;
+        this.repo = repo;
+        this.createdAt = createdAt;
+        this.action = action;
+        this.refType = refType;
+        this.commits = commits;
+    }
+
+    /**
+     * Reads a page of events, one event at a time.
+     *
+     * @param in       The JSON array of events; closed once read.
+     * @param consumer Receives the events in the order of the array.
+     * @return The number of events.
+     * @throws IOException If the page cannot be read or is not an array of events.
+     */
+    public static int readAll(InputStream in, Consumer<GitHubEvent> consumer) throws IOException
+    {
+        int events = 0;
+        try (JsonParser parser = JSON.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected an array of events");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(read(parser));
+                events++;
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IOException("Expected an array of events");
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Writes events as a JSON array in the shape of the API, with only the fields that
+     * {@link #readAll} reads back.
+     *
+     * @param events The events.
+     * @param out    Receives the array; left open.
+     * @throws IOException If the array cannot be written.
+     */
+    public static void writeAll(Iterable<GitHubEvent> events, OutputStream out) throws IOException
+    {
+        try (JsonGenerator generator = JSON.createGenerator(out)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            generator.writeStartArray();
+            for (GitHubEvent event : events) {
+                generator.writeStartObject();
+                if (event.id > 0) {
+                    generator.writeStringField("id", String.valueOf(event.id));
+                }
+                if (event.type.apiName != null) {
+                    generator.writeStringField("type", event.type.apiName);
+                }
+                if (event.actor != null) {
+                    generator.writeObjectFieldStart("actor");
+                    generator.writeStringField("login", event.actor);
+                    generator.writeEndObject();
+                }
+                if (event.repo != null) {
+                    generator.writeObjectFieldStart("repo");
+                    generator.writeStringField("name", event.repo);
+                    generator.writeEndObject();
+                }
+                generator.writeObjectFieldStart("payload");
+                if (event.action != null) {
+                    generator.writeStringField("action", event.action);
+                }
+                if (event.refType != null) {
+                    generator.writeStringField("ref_type", event.refType);
+                }
+                if (event.type == Type.PUSH) {
+                    generator.writeNumberField("size", event.commits);
+                }
+                generator.writeEndObject();
+                if (event.createdAt != null) {
+                    generator.writeStringField("created_at", event.createdAt);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Reads an event.
+     *
+     * @param parser A parser on the {@code START_OBJECT} of the event; left on its
+     *               {@code END_OBJECT}.
+     * @return The event.
+     * @throws IOException If the event cannot be read.
+     */
+    public static GitHubEvent read(JsonParser parser) throws IOException
+    {
+        long id = 0;
+        Type type = Type.OTHER;
+        String actor = null;
+        String repo = null;
+        String createdAt = null;
+        String action = null;
+        String refType = null;
+        int size = -1;
+        int commits = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = readId(parser, value);
+                    break;
+                case "type":
+                    type = Type.fromApiName(parser.getText());
+                    break;
+                case "actor":
+                    actor = readString(parser, value, "login");
+                    break;
+                case "repo":
+                    repo = readString(parser, value, "name");
+                    break;
+                case "created_at":
+                    createdAt = parser.getText();
+                    break;
+                case "payload":
+                    if (value != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        break;
+                    }
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String payloadField = parser.currentName();
+                        JsonToken payloadValue = parser.nextToken();
+                        if (payloadField.equals("action") && payloadValue == JsonToken.VALUE_STRING) {
+                            action = parser.getText();
+                        } else if (payloadField.equals("ref_type") && payloadValue == JsonToken.VALUE_STRING) {
+                            refType = parser.getText();
+                        } else if (payloadField.equals("size") && payloadValue == JsonToken.VALUE_NUMBER_INT) {
+                            size = parser.getIntValue();
+                        } else if (payloadField.equals("commits") && payloadValue == JsonToken.START_ARRAY) {
+                            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                                parser.skipChildren();
+                                commits++;
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        // "size" counts every commit of the push; "commits" lists at most 20 of them.
+        return new GitHubEvent(id, type, actor, repo, createdAt, action, refType, size >= 0 ? size : commits);
+    }
+
+    /**
+     * Reads an event id, which the API sends as a string of digits.
+     */
+    private static long readId(JsonParser parser, JsonToken value) throws IOException
+    {
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        try {
+            return Long.parseLong(parser.getText());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads one string field of a nested object, or the value itself if it is a string.
+     */
+    private static String readString(JsonParser parser, JsonToken value, String name) throws IOException
+    {
+        if (value == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String result = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals(name)) {
+                result = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the id of the event, or 0 if it has none. Ids grow with time, so newer events
+     * have larger ids.
+     */
+    public long getId()
+    {
+        return id;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public String getActor()
+    {
+        return actor;
+    }
+
+    public String getRepo()
+    {
+        return repo;
+    }
+
+    /**
+     * Returns when the event happened, as the ISO-8601 timestamp of the API.
+     */
+    public String getCreatedAt()
+    {
+        return createdAt;
+    }
+
+    /**
+     * Returns the action of issue, pull request, release and member events, such as
+     * {@code opened} or {@code closed}, or {@code null}.
+     */
+    public String getAction()
+    {
+        return action;
+    }
+
+    /**
+     * Returns what a create or delete event created or deleted: {@code repository},
+     * {@code branch} or {@code tag}, or {@code null}.
+     */
+    public String getRefType()
+    {
+        return refType;
+    }
+
+    /**
+     * Returns the number of commits of a push event, and 0 for other events.
+     */
+    public int getCommits()
+    {
+        return commits;
+    }
+
+    @Override
+    public String toString()
+    {
+        return type + " by " + actor + " in " + repo + " at " + createdAt;
+    }
+}
@@ -0,0 +1,71 @@
+package com.azvtech;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event for one request to the events API, from when it was queued with
+ * the scheduler until its body was read, with the status and the bytes received.
+ *
+ * The latency goes to the {@code fetch} histogram of {@link Metrics} as well, and the status
+ * and bytes to its counters. When neither the recorder nor the metrics are on, creating and
+ * finishing the event costs a few checks.
+ */
+@Name("com.azvtech.GitHubFetch")
+@Label("GitHub Fetch")
+@Category({ "Roadmap.sh", "GitHubUserActivity" })
+@Description("A request for a page of events, until its body was read")
+@StackTrace(false)
+final class GitHubFetchEvent extends Event
+{
+    @Label("URL")
+    String url;
+
+    @Label("Status")
+    @Description("The HTTP status, or 0 if no response arrived")
+    int status;
+
+    @Label("Bytes")
+    @Description("The bytes of the body as received, before decompression")
+    @DataAmount
+    long bytes;
+
+    private final transient long start = Metrics.start();
+
+    GitHubFetchEvent(String url)
+    {
+        this.url = url;
+        begin();
+    }
+
+    /**
+     * Returns whether the bytes of the body need counting.
+     */
+    boolean isMeasured()
+    {
+        return start != 0 || isEnabled();
+    }
+
+    /**
+     * Ends the request and records it.
+     */
+    void finish(int status, long bytes)
+    {
+        if (start != 0) {
+            Metrics.record("fetch", start);
+            Metrics.count("fetch.status." + status, 1);
+            Metrics.count("fetch.bytes", bytes);
+        }
+        end();
+        if (shouldCommit()) {
+            this.status = status;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
@@ -1,49 +1,488 @@
 package com.azvtech;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collector;
 
 /**
- * Hello world!
+ * Command line interface that fetches the recent activity of GitHub users.
  *
+ * Without usernames it asks for a single one. Given usernames, or a file of them, it
+ * fetches them all as a batch through one shared {@link GitHubActivityFetcher}. Responses
+ * are kept in a {@link ResponseCache} unless {@code --no-cache} is given. The events of
+ * every page are summarized per repository as they are parsed, and the summary printed.
+ *
+ * Requests go through a {@link RequestScheduler}, which paces them against the rate limit and
+ * retries throttled ones. Lines of the file may give a priority after the username; users
+ * with higher priorities are fetched first.
+ *
+ * Requests go to the GitHub API unless {@code --api-url} or the {@code GITHUB_API_URL}
+ * environment variable points elsewhere, such as at the local {@code GitHubApiStub} of the tests.
+ *
+ * With {@code --timeline} it merges the events of the users into one timeline, newest first,
+ * through an {@link ActivityTimeline}, reading no more pages than {@code --limit} needs.
+ *
+ * With {@code --watch} it keeps polling the users through an {@link ActivityWatcher} and
+ * prints each new event as it shows up, until interrupted.
+ *
+ * With {@code --store}, fetched events are also added to an {@link EventStore}, whose
+ * history {@code --history} queries offline, by user, type and time range.
+ *
+ * With {@code --serve} it runs an {@link ActivityProxy} instead, which serves the activity
+ * of users to local tools over HTTP from an in-memory cache, until interrupted.
+ *
+ * With {@code --metrics}, the latency percentiles of the requests, their statuses and the
+ * bytes received are printed from the {@link Metrics} on exit:
+ *
+ *   GitHubUserActivity [--concurrency N] [--rate requests/s] [--order input|completion] [--file usernames.txt]
+ *                      [--no-cache] [--cache-dir dir] [--cache-ttl seconds] [--cache-size MB] [--cache-stats]
+ *                      [--watch] [--checkpoint file] [--interval seconds] [--timeline [--limit N]] [--api-url url]
+ *                      [--store] [--store-dir dir] [--compact] [--history username [--type PushEvent] [--from date] [--to date]]
+ *                      [--serve [--port N] [--proxy-cache MB]] [--metrics]
+ *                      [username ...]
  */
 public class GitHubUserActivity
 {
-    private static final String GITHUB_API_URL = "https://api.github.com/users/%s/events";
+    private static final String USAGE =
+            "Usage: GitHubUserActivity [--concurrency N] [--rate requests/s] [--order input|completion] [--file usernames.txt]"
+            + " [--no-cache] [--cache-dir dir] [--cache-ttl seconds] [--cache-size MB] [--cache-stats]"
+            + " [--watch] [--checkpoint file] [--interval seconds] [--timeline [--limit N]] [--api-url url]"
+            + " [--store] [--store-dir dir] [--compact] [--history username [--type PushEvent] [--from date] [--to date]]"
+            + " [--serve [--port N] [--proxy-cache MB]] [--metrics]"
+            + " [username ...]";
 
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
-        System.out.print("Enter GitHub username: ");
-        String username = scanner.nextLine();
+        List<String> usernames = new ArrayList<>();
+        Map<String, Integer> priorities = new HashMap<>();
+        int concurrency = GitHubActivityFetcher.DEFAULT_CONCURRENCY;
+        double rate = 0;
+        boolean inputOrder = false;
+        boolean useCache = true;
+        boolean cacheStats = false;
+        Path cacheDirectory = ResponseCache.DEFAULT_DIRECTORY;
+        Duration cacheTtl = ResponseCache.DEFAULT_TTL;
+        long cacheSize = ResponseCache.DEFAULT_MAX_BYTES;
+        boolean watch = false;
+        Path checkpoint = ActivityWatcher.DEFAULT_CHECKPOINT;
+        Duration interval = Duration.ZERO;
+        Path storeDirectory = null;
+        boolean compact = false;
+        String history = null;
+        GitHubEvent.Type type = null;
+        Instant from = null;
+        Instant to = null;
+        boolean timeline = false;
+        long limit = -1;
+        boolean serve = false;
+        int port = ActivityProxy.DEFAULT_PORT;
+        long proxyCacheSize = ActivityProxy.DEFAULT_MAX_BYTES;
+        String apiUrl = System.getenv(GitHubActivityFetcher.API_URL_VARIABLE);
+        if (apiUrl == null || apiUrl.isEmpty()) {
+            apiUrl = GitHubActivityFetcher.GITHUB_API_URL;
+        }
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--no-cache":
+                        useCache = false;
+                        break;
+                    case "--cache-dir":
+                        cacheDirectory = Paths.get(args[++i]);
+                        break;
+                    case "--cache-ttl":
+                        cacheTtl = Duration.ofSeconds(Long.parseLong(args[++i]));
+                        break;
+                    case "--cache-size":
+                        cacheSize = Long.parseLong(args[++i]) * 1024 * 1024;
+                        break;
+                    case "--cache-stats":
+                        cacheStats = true;
+                        break;
+                    case "--store":
+                        storeDirectory = EventStore.DEFAULT_DIRECTORY;
+                        break;
+                    case "--store-dir":
+                        storeDirectory = Paths.get(args[++i]);
+                        break;
+                    case "--compact":
+                        compact = true;
+                        break;
+                    case "--history":
+                        history = args[++i];
+                        break;
+                    case "--type":
+                        type = GitHubEvent.Type.fromApiName(args[++i]);
+                        if (type == GitHubEvent.Type.OTHER) {
+                            throw new IllegalArgumentException("Unknown event type: " + args[i]);
+                        }
+                        break;
+                    case "--from":
+                        from = parseTime(args[++i], false);
+                        break;
+                    case "--to":
+                        to = parseTime(args[++i], true);
+                        break;
+                    case "--api-url":
+                        apiUrl = args[++i];
+                        break;
+                    case "--timeline":
+                        timeline = true;
+                        break;
+                    case "--limit":
+                        limit = Long.parseLong(args[++i]);
+                        if (limit < 0) {
+                            throw new IllegalArgumentException("Negative limit: " + limit);
+                        }
+                        break;
+                    case "--serve":
+                        serve = true;
+                        break;
+                    case "--metrics":
+                        if (!Metrics.isEnabled()) {
+                            Metrics.enable();
+                            Runtime.getRuntime().addShutdownHook(new Thread(() -> Metrics.dump(System.err)));
+                        }
+                        break;
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--proxy-cache":
+                        proxyCacheSize = Long.parseLong(args[++i]) * 1024 * 1024;
+                        break;
+                    case "--watch":
+                        watch = true;
+                        break;
+                    case "--checkpoint":
+                        checkpoint = Paths.get(args[++i]);
+                        break;
+                    case "--interval":
+                        interval = Duration.ofSeconds(Long.parseLong(args[++i]));
+                        break;
+                    case "--concurrency":
+                        concurrency = Integer.parseInt(args[++i]);
+                        break;
+                    case "--rate":
+                        rate = Double.parseDouble(args[++i]);
+                        break;
+                    case "--order":
+                        String order = args[++i];
+                        if (!order.equals("input") && !order.equals("completion")) {
+                            throw new IllegalArgumentException("Unknown order: " + order);
+                        }
+                        inputOrder = order.equals("input");
+                        break;
+                    case "--file":
+                        for (String line : Files.readAllLines(Paths.get(args[++i]), StandardCharsets.UTF_8)) {
+                            String[] fields = line.trim().split("\\s+");
+                            if (!fields[0].isEmpty()) {
+                                usernames.add(fields[0]);
+                                if (fields.length > 1) {
+                                    priorities.put(fields[0], Integer.parseInt(fields[1]));
+                                }
+                            }
+                        }
+                        break;
+                    default:
+                        usernames.add(args[i]);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading usernames: " + e.getMessage());
+            return;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeParseException e) {
+            System.err.println(USAGE);
+            return;
+        }
+        if (serve) {
+            serve(GitHubActivityFetcher.eventsUrl(apiUrl), concurrency, rate, port, proxyCacheSize, cacheTtl);
+            return;
+        }
+        usernames.sort(Comparator.comparingInt((String username) -> priorities.getOrDefault(username, 0)).reversed());
+
+        EventStore store = null;
+        if (storeDirectory != null || history != null || compact) {
+            try {
+                store = new EventStore(storeDirectory != null ? storeDirectory : EventStore.DEFAULT_DIRECTORY, EventStore.DEFAULT_SEGMENT_BYTES);
+            } catch (IOException e) {
+                System.err.println("Error opening event store: " + e.getMessage());
+                return;
+            }
+        }
+        try {
+            if (history != null || compact) {
+                history(store, compact, history, type, from, to);
+            } else if (watch || timeline) {
+                if (usernames.isEmpty()) {
+                    System.err.println(USAGE);
+                    return;
+                }
+                if (timeline) {
+                    timeline(GitHubActivityFetcher.eventsUrl(apiUrl), usernames, concurrency, rate, limit,
+                            useCache ? cacheDirectory : null, cacheTtl, cacheSize, store);
+                    return;
+                }
+                watch(GitHubActivityFetcher.eventsUrl(apiUrl), usernames, concurrency, rate, interval, checkpoint, store);
+            } else {
+                fetch(GitHubActivityFetcher.eventsUrl(apiUrl), usernames, concurrency, rate, inputOrder,
+                        useCache ? cacheDirectory : null, cacheTtl, cacheSize, cacheStats, store);
+            }
+        } finally {
+            if (store != null) {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing event store: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetches the users, or asks for one, and prints a summary of the activity of each.
+     */
+    private static void fetch(String apiUrl, List<String> usernames, int concurrency, double rate, boolean inputOrder,
+                              Path cacheDirectory, Duration cacheTtl, long cacheSize, boolean cacheStats, EventStore store)
+    {
+
+        ResponseCache cache = null;
+        if (cacheDirectory != null) {
+            try {
+                cache = new ResponseCache(cacheDirectory, cacheTtl, cacheSize);
+            } catch (IOException e) {
+                System.err.println("Response cache disabled: " + e.getMessage());
+            }
+        }
+        RequestScheduler scheduler = new RequestScheduler(Math.max(concurrency, 1) * 2, rate,
+                RequestScheduler.DEFAULT_MAX_ATTEMPTS, RequestScheduler.DEFAULT_BASE_BACKOFF);
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher(apiUrl, cache, scheduler);
+
+        if (usernames.isEmpty()) {
+            Scanner scanner = new Scanner(System.in);
+            System.out.print("Enter GitHub username: ");
+            String username = scanner.nextLine();
+
+            try {
+                ActivitySummary summary = new ActivitySummary();
+                fetcher.fetchEvents(username, event -> {
+                    summary.add(event);
+                    store(store, event);
+                });
+                System.out.println("Recent activity for user: " + username);
+                System.out.print(summary);
+            } catch (IOException | InterruptedException e) {
+                System.err.println("Error fetching activity: " + e.getMessage());
+            } catch (UncheckedIOException e) {
+                System.err.println("Error storing events: " + e.getCause().getMessage());
+            }
+            printCacheStats(cache, cacheStats);
+            return;
+        }
 
-        String apiUrl = String.format(GITHUB_API_URL, username);
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        try {
+            Collector<GitHubEvent, ?, ActivitySummary> collector = store == null ? ActivitySummary.collector()
+                    : Collector.of(ActivitySummary::new, (ActivitySummary summary, GitHubEvent event) -> {
+                        summary.add(event);
+                        store(store, event);
+                    }, ActivitySummary::merge);
+            fetcher.fetchAll(usernames, concurrency, inputOrder, collector, result -> {
+                if (result.getError() != null) {
+                    failed.incrementAndGet();
+                    System.err.println("Error fetching activity for " + result.getUsername() + ": " + result.getError().getMessage());
+                } else {
+                    System.out.println("Recent activity for user: " + result.getUsername());
+                    System.out.print(result.getEvents());
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted");
+            return;
+        } catch (UncheckedIOException e) {
+            System.err.println("Error storing events: " + e.getCause().getMessage());
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Fetched %d users in %.2f s (%.1f users/s), %d failed; %s%n",
+                usernames.size(), seconds, usernames.size() / seconds, failed.get(), scheduler.stats());
+        printCacheStats(cache, cacheStats);
+    }
 
+    /**
+     * Prints the new events of the users as they show up, until interrupted. Polls only ask
+     * whether anything changed, so they bypass the response cache.
+     */
+    private static void watch(String apiUrl, List<String> usernames, int concurrency, double rate, Duration interval, Path checkpoint,
+                              EventStore store)
+    {
+        RequestScheduler scheduler = new RequestScheduler(Math.max(concurrency, 1) * 2, rate,
+                RequestScheduler.DEFAULT_MAX_ATTEMPTS, RequestScheduler.DEFAULT_BASE_BACKOFF);
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher(apiUrl, null, scheduler);
+        ActivityWatcher watcher;
         try {
-            String response = fetchGitHubActivity(apiUrl);
-            System.out.println("Recent activity for user: " + username);
-            System.out.println(response);
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Error fetching activity: " + e.getMessage());
+            watcher = new ActivityWatcher(fetcher, usernames, concurrency, interval, checkpoint);
+        } catch (IOException e) {
+            System.err.println("Error reading checkpoint: " + e.getMessage());
+            return;
+        }
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            main.interrupt();
+            try {
+                main.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        System.err.println("Watching " + usernames.size() + " users");
+        try {
+            watcher.watch(
+                    (username, event) -> {
+                        System.out.println(describe(username, event));
+                        store(store, event);
+                    },
+                    (username, error) -> System.err.println("Error polling " + username + ": " + error.getMessage()));
+        } catch (IOException e) {
+            System.err.println("Error writing checkpoint: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            System.err.println("Error storing events: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            System.err.println("Stopped watching; " + scheduler.stats());
+        } finally {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                System.err.println("Error writing checkpoint: " + e.getMessage());
+            }
         }
     }
 
-    private static String fetchGitHubActivity(String apiUrl) throws IOException, InterruptedException {
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiUrl))
-                .header("Accept", "application/vnd.github.v3+json")
-                .build();
+    /**
+     * Prints the events of the users merged into one timeline, newest first, up to a limit.
+     */
+    private static void timeline(String apiUrl, List<String> usernames, int concurrency, double rate, long limit,
+                                 Path cacheDirectory, Duration cacheTtl, long cacheSize, EventStore store)
+    {
+        ResponseCache cache = null;
+        if (cacheDirectory != null) {
+            try {
+                cache = new ResponseCache(cacheDirectory, cacheTtl, cacheSize);
+            } catch (IOException e) {
+                System.err.println("Response cache disabled: " + e.getMessage());
+            }
+        }
+        RequestScheduler scheduler = new RequestScheduler(Math.max(concurrency, 1) * 2, rate,
+                RequestScheduler.DEFAULT_MAX_ATTEMPTS, RequestScheduler.DEFAULT_BASE_BACKOFF);
+        ActivityTimeline timeline = new ActivityTimeline(new GitHubActivityFetcher(apiUrl, cache, scheduler), usernames, concurrency);
+        try {
+            long events = timeline.merge(limit,
+                    (username, event) -> {
+                        System.out.println(describe(username, event));
+                        store(store, event);
+                    },
+                    (username, error) -> System.err.println("Error fetching activity for " + username + ": " + error.getMessage()));
+            System.err.printf("%d events of %d users from %d pages; %s%n", events, usernames.size(), timeline.getPages(), scheduler.stats());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted");
+        } catch (UncheckedIOException e) {
+            System.err.println("Error storing events: " + e.getCause().getMessage());
+        }
+    }
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Serves the activity of users over HTTP until interrupted, then prints how much the
+     * proxy saved. The proxy keeps its own cache, so requests bypass the response cache.
+     */
+    private static void serve(String apiUrl, int concurrency, double rate, int port, long cacheSize, Duration cacheTtl)
+    {
+        RequestScheduler scheduler = new RequestScheduler(Math.max(concurrency, 1) * 2, rate,
+                RequestScheduler.DEFAULT_MAX_ATTEMPTS, RequestScheduler.DEFAULT_BASE_BACKOFF);
+        ActivityProxy proxy = new ActivityProxy(new GitHubActivityFetcher(apiUrl, null, scheduler), cacheSize, cacheTtl);
+        try {
+            proxy.start(port);
+        } catch (IOException e) {
+            System.err.println("Error starting proxy: " + e.getMessage());
+            proxy.close();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            proxy.close();
+            System.err.println(proxy.stats());
+        }));
+        System.err.println("Serving activity at " + proxy.getUrl() + "/users/{username}/events, /users/{username}/summary and /stats");
+    }
 
-        if (response.statusCode() != 200) {
-            throw new IOException("Failed to fetch data: " + response.statusCode());
+    /**
+     * Compacts the event store if asked to, and prints the stored events of a user.
+     */
+    private static void history(EventStore store, boolean compact, String username, GitHubEvent.Type type, Instant from, Instant to)
+    {
+        try {
+            if (compact) {
+                store.compact();
+                System.err.println("Compacted " + store);
+            }
+            if (username != null) {
+                int events = store.query(username, from, to, type, event -> System.out.println(describe(username, event)));
+                System.err.println(events + " stored events of " + username);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading event store: " + e.getMessage());
         }
+    }
+
+    private static String describe(String username, GitHubEvent event)
+    {
+        return (event.getCreatedAt() != null ? event.getCreatedAt() + " " : "") + username + ": " + ActivitySummary.describe(event);
+    }
 
-        return response.body();
+    private static void store(EventStore store, GitHubEvent event)
+    {
+        if (store != null) {
+            try {
+                store.add(event);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Parses a date or an instant such as {@code 2025-03-01T12:00:00Z}. A date is taken as the
+     * start of that day in UTC, or, as the exclusive end of a range, the start of the next day,
+     * so that {@code --to 2025-03-31} takes in the whole of that day.
+     */
+    static Instant parseTime(String time, boolean end)
+    {
+        if (time.length() == 10) {
+            LocalDate date = LocalDate.parse(time);
+            return (end ? date.plusDays(1) : date).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+        return Instant.parse(time);
+    }
+
+    private static void printCacheStats(ResponseCache cache, boolean requested)
+    {
+        if (requested && cache != null) {
+            System.err.println(cache.stats());
+        }
     }
 }
@@ -0,0 +1,188 @@
+package com.azvtech;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process latency histograms and counters of the hot paths, dumped with {@code --metrics}.
+ *
+ * Nothing is measured until {@link #enable} is called: {@link #start} then returns 0 without
+ * reading the clock, and {@link #record} and {@link #count} return right away, so the cost of
+ * the instrumentation left in place is a read of one volatile field. For deeper profiling,
+ * the same paths emit flight recorder events, such as {@link GitHubFetchEvent}.
+ *
+ * Latencies are counted in log-linear buckets: 16 per power of two, so every percentile is
+ * within about 6% of the true value, over any range, in a fixed 8 KB per histogram that
+ * threads update without locking.
+ */
+public final class Metrics
+{
+    private static final Map<String, Histogram> timers = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static volatile boolean enabled;
+
+    private Metrics()
+    {
+    }
+
+    /**
+     * Starts measuring.
+     */
+    public static void enable()
+    {
+        enabled = true;
+    }
+
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Returns the time to pass to {@link #record} once the measured operation is done, or 0
+     * when nothing is measured.
+     */
+    public static long start()
+    {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the latency of an operation started at a time returned by {@link #start}.
+     */
+    public static void record(String name, long start)
+    {
+        if (start != 0 && enabled) {
+            timers.computeIfAbsent(name, key -> new Histogram()).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Adds to a counter.
+     */
+    public static void count(String name, long amount)
+    {
+        if (enabled) {
+            counters.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+        }
+    }
+
+    /**
+     * Returns the histogram of the latencies recorded under a name, or {@code null} if there
+     * are none.
+     */
+    static Histogram timer(String name)
+    {
+        return timers.get(name);
+    }
+
+    /**
+     * Prints the count and percentiles of every histogram, then every counter, by name.
+     */
+    public static void dump(PrintStream out)
+    {
+        out.println("metrics:");
+        new TreeMap<>(timers).forEach((name, histogram) -> out.printf(
+                "  %-24s count %8d  p50 %9.3f ms  p90 %9.3f ms  p99 %9.3f ms  max %9.3f ms%n",
+                name, histogram.count(), histogram.percentile(0.50) / 1e6, histogram.percentile(0.90) / 1e6,
+                histogram.percentile(0.99) / 1e6, histogram.max() / 1e6));
+        new TreeMap<>(counters).forEach((name, counter) -> out.printf("  %-24s %14d%n", name, counter.sum()));
+    }
+
+    /**
+     * Stops measuring and forgets everything recorded so far.
+     */
+    static void reset()
+    {
+        enabled = false;
+        timers.clear();
+        counters.clear();
+    }
+
+    /**
+     * Counts of latencies in nanoseconds, by bucket.
+     */
+    static final class Histogram
+    {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private volatile long max;
+
+        void record(long nanos)
+        {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(bucket(value));
+            total.increment();
+            while (value > max) {
+                synchronized (this) {
+                    if (value > max) {
+                        max = value;
+                    }
+                }
+            }
+        }
+
+        long count()
+        {
+            return total.sum();
+        }
+
+        long max()
+        {
+            return max;
+        }
+
+        /**
+         * Returns the latency below which the given fraction of the recorded ones fall, as
+         * the upper bound of its bucket, and at most the largest one recorded.
+         */
+        long percentile(double fraction)
+        {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * Returns the bucket of a value: values below 16 have one each, and every power of two
+         * above is split into 16 buckets of equal width.
+         */
+        static int bucket(long value)
+        {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long upperBound(int bucket)
+        {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            long subBucket = bucket % SUB_BUCKETS;
+            long width = 1L << (exponent - SUB_BUCKET_BITS);
+            return (1L << exponent) + (subBucket + 1) * width - 1;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.azvtech;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Paces requests to the GitHub API so a batch gets as much done as its rate limit allows.
+ *
+ * Requests wait in a queue ordered by rank, lowest first, so the users at the front of a
+ * batch, and the later pages of users already started, go ahead of users still waiting.
+ * A request is sent when all of these allow it:
+ * <ul>
+ *   <li>a concurrency limit, which grows by one per round of successful requests and halves
+ *       once per round in which the API throttles or fails (additive increase,
+ *       multiplicative decrease);</li>
+ *   <li>a token bucket, refilled at the configured rate, and at no more than the remaining
+ *       quota spread over the time until it resets once the queue would exhaust it;</li>
+ *   <li>a pause until the quota resets when {@code X-RateLimit-Remaining} reaches 0, or for
+ *       as long as a {@code Retry-After} header asks.</li>
+ * </ul>
+ * Throttled (429, or 403 with the quota exhausted or a {@code Retry-After}) and failed (5xx
+ * or I/O error) requests are retried after a jittered exponential backoff.
+ */
+public class RequestScheduler
+{
+    /** The default bound on requests in flight. */
+    public static final int DEFAULT_MAX_CONCURRENCY = 64;
+
+    /** The default number of attempts of a request before its last response is returned. */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /** The default backoff before the first retry; it doubles with every further retry. */
+    public static final Duration DEFAULT_BASE_BACKOFF = Duration.ofMillis(500);
+
+    private static final long MAX_BACKOFF_NANOS = Duration.ofMinutes(1).toNanos();
+
+    private final int maxConcurrency;
+    private final double requestsPerSecond;
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+
+    private final Object lock = new Object();
+    private final PriorityQueue<Request> ready = new PriorityQueue<>(
+            Comparator.comparingLong((Request request) -> request.rank).thenComparingLong(request -> request.sequence));
+    private final PriorityQueue<Request> delayed = new PriorityQueue<>(Comparator.comparingLong(request -> request.notBefore));
+    private Thread dispatcher;
+    private long sequence;
+
+    private double limit;
+    private long decreasedAt = System.nanoTime();
+    private int inFlight;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private long pausedUntil = System.nanoTime();
+    private long remaining = -1;
+    private long resetEpochMillis;
+
+    private long sent;
+    private long retried;
+    private long throttled;
+
+    /**
+     * Creates a scheduler with the default limits and no pacing beyond the rate limit.
+     */
+    public RequestScheduler()
+    {
+        this(DEFAULT_MAX_CONCURRENCY, 0, DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF);
+    }
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param maxConcurrency    The bound on requests in flight; the adaptive limit starts here.
+     * @param requestsPerSecond The most requests sent per second, or 0 to send as fast as the
+     *                          concurrency limit and the rate limit allow.
+     * @param maxAttempts       How often a request is sent before its last response is returned.
+     * @param baseBackoff       The backoff before the first retry.
+     */
+    public RequestScheduler(int maxConcurrency, double requestsPerSecond, int maxAttempts, Duration baseBackoff)
+    {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.requestsPerSecond = requestsPerSecond;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.limit = this.maxConcurrency;
+        this.tokens = this.maxConcurrency;
+    }
+
+    /**
+     * Queues a request.
+     *
+     * @param rank The place of the request in the queue; lower ranks are sent first, and
+     *             equal ranks in the order they were queued.
+     * @param send Sends the request; called again for every retry.
+     * @return The response that was not retried: a success, a client error, or the last
+     *         attempt. Bodies of retried responses are closed.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> submit(long rank, Supplier<CompletableFuture<HttpResponse<InputStream>>> send)
+    {
+        Request request = new Request(rank, send);
+        synchronized (lock) {
+            request.sequence = sequence++;
+            ready.add(request);
+            if (dispatcher == null) {
+                dispatcher = new Thread(this::dispatch, "github-scheduler");
+                dispatcher.setDaemon(true);
+                dispatcher.start();
+            }
+            lock.notifyAll();
+        }
+        return request.result;
+    }
+
+    /**
+     * Returns the counters of the scheduler and its current limits.
+     */
+    public Stats stats()
+    {
+        synchronized (lock) {
+            return new Stats(sent, retried, throttled, (int) limit, remaining);
+        }
+    }
+
+    private void dispatch()
+    {
+        while (true) {
+            Request request;
+            synchronized (lock) {
+                try {
+                    request = next();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                inFlight++;
+                sent++;
+                request.sentAt = System.nanoTime();
+            }
+            request.attempts++;
+            CompletableFuture<HttpResponse<InputStream>> response;
+            try {
+                response = request.send.get();
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            response.whenComplete((each, error) -> completed(request, each, error));
+        }
+    }
+
+    /**
+     * Waits until a request may be sent and takes it from the queue, holding the lock.
+     */
+    private Request next() throws InterruptedException
+    {
+        while (true) {
+            long now = System.nanoTime();
+            while (!delayed.isEmpty() && delayed.peek().notBefore <= now) {
+                ready.add(delayed.poll());
+            }
+            long wait = Long.MAX_VALUE;
+            if (!delayed.isEmpty()) {
+                wait = delayed.peek().notBefore - now;
+            }
+            if (!ready.isEmpty() && inFlight < (int) limit) {
+                if (now < pausedUntil) {
+                    wait = Math.min(wait, pausedUntil - now);
+                } else {
+                    double rate = rate();
+                    if (rate == Double.POSITIVE_INFINITY) {
+                        return ready.poll();
+                    }
+                    tokens = Math.min(maxConcurrency, tokens + (now - refilledAt) / 1e9 * rate);
+                    refilledAt = now;
+                    if (tokens >= 1) {
+                        tokens--;
+                        return ready.poll();
+                    }
+                    wait = Math.min(wait, (long) Math.ceil((1 - tokens) / rate * 1e9));
+                }
+            }
+            if (wait == Long.MAX_VALUE) {
+                lock.wait();
+            } else {
+                lock.wait(Math.max(1, wait / 1_000_000), 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the pace to send at, in requests per second.
+     */
+    private double rate()
+    {
+        double rate = requestsPerSecond > 0 ? requestsPerSecond : Double.POSITIVE_INFINITY;
+        long waiting = ready.size() + delayed.size();
+        if (remaining >= 0 && remaining < waiting) {
+            // Spread what is left of the quota over the time until it resets.
+            double seconds = Math.max(1, (resetEpochMillis - System.currentTimeMillis()) / 1000.0);
+            rate = Math.min(rate, Math.max(remaining, 1) / seconds);
+        }
+        return rate;
+    }
+
+    private void completed(Request request, HttpResponse<InputStream> response, Throwable error)
+    {
+        boolean retry;
+        long delay = 0;
+        synchronized (lock) {
+            inFlight--;
+            boolean overloaded;
+            if (response != null) {
+                int status = response.statusCode();
+                OptionalLong retryAfter = observe(response.headers());
+                boolean limited = status == 429 || (status == 403 && (remaining == 0 || retryAfter.isPresent()));
+                overloaded = limited || status >= 500;
+                if (limited) {
+                    throttled++;
+                    if (!retryAfter.isPresent() && remaining != 0) {
+                        delay = backoff(request.attempts);
+                    }
+                } else if (status >= 500) {
+                    delay = backoff(request.attempts);
+                }
+            } else {
+                overloaded = true;
+                delay = backoff(request.attempts);
+            }
+            if (overloaded) {
+                // Halve once per round: requests sent before the last decrease saw the old limit.
+                if (request.sentAt > decreasedAt) {
+                    limit = Math.max(1, limit / 2);
+                    decreasedAt = System.nanoTime();
+                }
+            } else {
+                limit = Math.min(maxConcurrency, limit + 1 / limit);
+            }
+            retry = overloaded && request.attempts < maxAttempts;
+            if (retry) {
+                retried++;
+                request.notBefore = System.nanoTime() + delay;
+                delayed.add(request);
+            }
+            lock.notifyAll();
+        }
+
+        if (retry) {
+            if (response != null) {
+                discard(response);
+            }
+        } else if (response != null) {
+            request.result.complete(response);
+        } else {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            request.result.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Takes the rate limit and any pause asked for from response headers.
+     *
+     * @return The {@code Retry-After} delay in seconds, if the response has one.
+     */
+    private OptionalLong observe(HttpHeaders headers)
+    {
+        long now = System.nanoTime();
+        OptionalLong reset = headers.firstValueAsLong("X-RateLimit-Reset");
+        OptionalLong left = headers.firstValueAsLong("X-RateLimit-Remaining");
+        if (left.isPresent()) {
+            remaining = left.getAsLong();
+            resetEpochMillis = reset.isPresent() ? reset.getAsLong() * 1000 : resetEpochMillis;
+            if (remaining == 0 && reset.isPresent()) {
+                long untilReset = Math.max(0, resetEpochMillis - System.currentTimeMillis());
+                pausedUntil = Math.max(pausedUntil, now + untilReset * 1_000_000);
+            }
+        }
+        OptionalLong retryAfter = OptionalLong.empty();
+        try {
+            retryAfter = headers.firstValueAsLong("Retry-After");
+        } catch (NumberFormatException e) {
+            // An HTTP date instead of seconds; the backoff applies instead.
+        }
+        if (retryAfter.isPresent()) {
+            pausedUntil = Math.max(pausedUntil, now + retryAfter.getAsLong() * 1_000_000_000L);
+        }
+        return retryAfter;
+    }
+
+    /**
+     * Returns a random backoff between 0 and the base doubled for every earlier attempt.
+     */
+    private long backoff(int attempts)
+    {
+        long ceiling = baseBackoffNanos << Math.min(attempts - 1, 30);
+        return ThreadLocalRandom.current().nextLong(Math.max(1, Math.min(ceiling, MAX_BACKOFF_NANOS)));
+    }
+
+    private static void discard(HttpResponse<InputStream> response)
+    {
+        try {
+            response.body().close();
+        } catch (IOException e) {
+            // The connection is dropped instead of reused.
+        }
+    }
+
+    /**
+     * A queued request.
+     */
+    private static final class Request
+    {
+        final long rank;
+        final Supplier<CompletableFuture<HttpResponse<InputStream>>> send;
+        final CompletableFuture<HttpResponse<InputStream>> result = new CompletableFuture<>();
+        long sequence;
+        long sentAt;
+        long notBefore;
+        int attempts;
+
+        Request(long rank, Supplier<CompletableFuture<HttpResponse<InputStream>>> send)
+        {
+            this.rank = rank;
+            this.send = send;
+        }
+    }
+
+    /**
+     * Counters of a scheduler.
+     */
+    public static final class Stats
+    {
+        private final long sent;
+        private final long retried;
+        private final long throttled;
+        private final int limit;
+        private final long remaining;
+
+        Stats(long sent, long retried, long throttled, int limit, long remaining)
+        {
+            this.sent = sent;
+            this.retried = retried;
+            this.throttled = throttled;
+            this.limit = limit;
+            this.remaining = remaining;
+        }
+
+        /** Returns how many requests were sent, retries included. */
+        public long getSent()
+        {
+            return sent;
+        }
+
+        public long getRetried()
+        {
+            return retried;
+        }
+
+        /** Returns how many responses were 429, or 403 because of the rate limit. */
+        public long getThrottled()
+        {
+            return throttled;
+        }
+
+        /** Returns the current bound on requests in flight. */
+        public int getLimit()
+        {
+            return limit;
+        }
+
+        /** Returns the last {@code X-RateLimit-Remaining} seen, or -1 if none was. */
+        public long getRemaining()
+        {
+            return remaining;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("requests: %d sent, %d retried, %d throttled, concurrency %d, quota remaining %s",
+                    sent, retried, throttled, limit, remaining >= 0 ? String.valueOf(remaining) : "unknown");
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.azvtech;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A persistent cache of API responses, keyed by URL, for conditional requests.
+ *
+ * Every response is kept in its own file together with its {@code ETag} and
+ * {@code Last-Modified} validators and the link to the next page, if any. A response
+ * younger than the time to live is served without a request at all; an older one is
+ * revalidated with {@code If-None-Match} and {@code If-Modified-Since}, and served again
+ * if the server answers 304 Not Modified.
+ *
+ * The cache is bounded in bytes. When it grows past the bound, the least recently used
+ * responses are evicted; recency survives restarts as the modification time of the files.
+ * All methods are thread-safe. Only the index in memory is locked; files are read and
+ * written outside the lock, each written to a temporary file that is then moved into place,
+ * so concurrent fetches do not wait on each other's disk I/O and never read a partial file.
+ */
+public class ResponseCache
+{
+    /** The default cache directory, under the user's home directory. */
+    public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("user.home"), ".github-user-activity", "cache");
+
+    /** The default time to live; GitHub asks clients not to poll events more than once a minute. */
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(60);
+
+    /** The default bound on the size of the cached bodies. */
+    public static final long DEFAULT_MAX_BYTES = 50L * 1024 * 1024;
+
+    private static final int MAGIC = 0x47485243; // "GHRC"
+    private static final byte VERSION = 2;
+    private static final String SUFFIX = ".response";
+
+    private final Path directory;
+    private final long ttlMillis;
+    private final long maxBytes;
+    /** The entries without their bodies, least recently used first. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private long hits;
+    private long revalidations;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Opens a cache directory, indexing the responses already in it.
+     *
+     * @param directory The directory holding the cached responses; created if needed.
+     * @param ttl       How long a response is served without revalidating it.
+     * @param maxBytes  The bound on the total size of the cached bodies.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public ResponseCache(Path directory, Duration ttl, long maxBytes) throws IOException
+    {
+        this.directory = Files.createDirectories(directory);
+        this.ttlMillis = ttl.toMillis();
+        this.maxBytes = maxBytes;
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        // Least recently used first, so the access order of the index matches the files.
+        files.sort((a, b) -> Long.compare(lastUsed(a), lastUsed(b)));
+        for (Path file : files) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                Entry entry = readHeader(in);
+                if (entry != null && file.getFileName().toString().equals(keyOf(entry.url) + SUFFIX)) {
+                    entries.put(entry.url, entry);
+                    totalBytes += entry.size;
+                    continue;
+                }
+            } catch (IOException e) {
+                // Unreadable entries are dropped below, like entries of another format.
+            }
+            Files.deleteIfExists(file);
+        }
+        for (Path file : evict()) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Looks up the cached response of a URL.
+     *
+     * @param url The URL.
+     * @return The cached response with its body, or {@code null} if there is none.
+     */
+    public Response get(String url)
+    {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(url);
+        }
+        if (entry == null) {
+            return null;
+        }
+        Path file = fileOf(url);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            // The file may have been replaced since the index was read; its own header goes with its body.
+            Entry stored = readHeader(in);
+            if (stored == null || !stored.url.equals(url)) {
+                throw new IOException("Not a cached response of " + url);
+            }
+            byte[] body = new byte[stored.size];
+            in.readFully(body);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Response(stored, body, System.currentTimeMillis() - stored.storedAt < ttlMillis);
+        } catch (IOException e) {
+            remove(entry);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a response received with 200 OK, replacing any earlier one.
+     *
+     * @param url          The URL.
+     * @param etag         The {@code ETag} header, or {@code null}.
+     * @param lastModified The {@code Last-Modified} header, or {@code null}.
+     * @param next         The URL of the next page, or {@code null}.
+     * @param body         The body.
+     * @throws IOException If the response cannot be written.
+     */
+    public void put(String url, String etag, String lastModified, String next, byte[] body) throws IOException
+    {
+        Entry entry = new Entry(url, etag, lastModified, next, System.currentTimeMillis(), body.length);
+        write(entry, body);
+        List<Path> evicted;
+        synchronized (this) {
+            misses++;
+            Entry previous = entries.put(url, entry);
+            totalBytes += body.length - (previous != null ? previous.size : 0);
+            evicted = evict();
+        }
+        delete(evicted);
+    }
+
+    /**
+     * Records that a cached response was served because it was still fresh.
+     */
+    public synchronized void hit()
+    {
+        hits++;
+    }
+
+    /**
+     * Records that the server confirmed a cached response with 304 Not Modified, and
+     * restarts its time to live.
+     *
+     * @param response The cached response.
+     * @throws IOException If the response cannot be rewritten.
+     */
+    public void revalidated(Response response) throws IOException
+    {
+        Entry entry = response.entry;
+        synchronized (this) {
+            revalidations++;
+            if (!entries.containsKey(entry.url)) {
+                return;
+            }
+        }
+        Entry refreshed = new Entry(entry.url, entry.etag, entry.lastModified, entry.next, System.currentTimeMillis(), entry.size);
+        write(refreshed, response.body);
+        synchronized (this) {
+            Entry previous = entries.put(entry.url, refreshed);
+            totalBytes += refreshed.size - (previous != null ? previous.size : 0);
+        }
+    }
+
+    /**
+     * Returns the hit, revalidation, miss and eviction counts since the cache was opened.
+     */
+    public synchronized Stats stats()
+    {
+        return new Stats(hits, revalidations, misses, evictions, entries.size(), totalBytes);
+    }
+
+    /**
+     * Drops the least recently used entries from the index until the bound holds again;
+     * called with the lock held.
+     *
+     * @return The files of the dropped entries, to delete once the lock is released.
+     */
+    private List<Path> evict()
+    {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            totalBytes -= entry.size;
+            evictions++;
+            evicted.add(fileOf(entry.url));
+        }
+        return evicted;
+    }
+
+    /**
+     * Drops an entry whose file cannot be read, unless it was replaced in the meantime.
+     */
+    private void remove(Entry entry)
+    {
+        synchronized (this) {
+            if (!entries.remove(entry.url, entry)) {
+                return;
+            }
+            totalBytes -= entry.size;
+        }
+        delete(Collections.singletonList(fileOf(entry.url)));
+    }
+
+    private static void delete(List<Path> files)
+    {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Stays on disk until the next time the cache is opened.
+            }
+        }
+    }
+
+    private void write(Entry entry, byte[] body) throws IOException
+    {
+        Path file = fileOf(entry.url);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeUTF(entry.url);
+                out.writeUTF(entry.etag != null ? entry.etag : "");
+                out.writeUTF(entry.lastModified != null ? entry.lastModified : "");
+                out.writeUTF(entry.next != null ? entry.next : "");
+                out.writeLong(entry.storedAt);
+                out.writeInt(body.length);
+                out.write(body);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static Entry readHeader(DataInputStream in) throws IOException
+    {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            return null;
+        }
+        String url = in.readUTF();
+        String etag = in.readUTF();
+        String lastModified = in.readUTF();
+        String next = in.readUTF();
+        long storedAt = in.readLong();
+        int size = in.readInt();
+        return new Entry(url, etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null : lastModified,
+                next.isEmpty() ? null : next, storedAt, size);
+    }
+
+    private Path fileOf(String url)
+    {
+        return directory.resolve(keyOf(url) + SUFFIX);
+    }
+
+    private static long lastUsed(Path file)
+    {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String keyOf(String url)
+    {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                key.append(String.format("%02x", digest[i]));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * What the index keeps of a cached response.
+     */
+    private static final class Entry
+    {
+        final String url;
+        final String etag;
+        final String lastModified;
+        final String next;
+        final long storedAt;
+        final int size;
+
+        Entry(String url, String etag, String lastModified, String next, long storedAt, int size)
+        {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.next = next;
+            this.storedAt = storedAt;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A cached response.
+     */
+    public static final class Response
+    {
+        private final Entry entry;
+        private final byte[] body;
+        private final boolean fresh;
+
+        Response(Entry entry, byte[] body, boolean fresh)
+        {
+            this.entry = entry;
+            this.body = body;
+            this.fresh = fresh;
+        }
+
+        public byte[] getBody()
+        {
+            return body;
+        }
+
+        public String getEtag()
+        {
+            return entry.etag;
+        }
+
+        public String getLastModified()
+        {
+            return entry.lastModified;
+        }
+
+        /**
+         * Returns the URL of the next page, or {@code null} if this is the last one.
+         */
+        public String getNext()
+        {
+            return entry.next;
+        }
+
+        /**
+         * Returns whether the response is younger than the time to live, and so can be
+         * served without asking the server.
+         */
+        public boolean isFresh()
+        {
+            return fresh;
+        }
+    }
+
+    /**
+     * Counters of a cache.
+     */
+    public static final class Stats
+    {
+        private final long hits;
+        private final long revalidations;
+        private final long misses;
+        private final long evictions;
+        private final int entries;
+        private final long bytes;
+
+        Stats(long hits, long revalidations, long misses, long evictions, int entries, long bytes)
+        {
+            this.hits = hits;
+            this.revalidations = revalidations;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        /** Returns how many responses were served fresh, without a request. */
+        public long getHits()
+        {
+            return hits;
+        }
+
+        /** Returns how many responses were served after a 304 Not Modified. */
+        public long getRevalidations()
+        {
+            return revalidations;
+        }
+
+        /** Returns how many responses had to be downloaded. */
+        public long getMisses()
+        {
+            return misses;
+        }
+
+        public long getEvictions()
+        {
+            return evictions;
+        }
+
+        public int getEntries()
+        {
+            return entries;
+        }
+
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        /**
+         * Returns the share of lookups served from the cache, fresh or revalidated.
+         */
+        public double hitRatio()
+        {
+            long lookups = hits + revalidations + misses;
+            return lookups == 0 ? 0 : (double) (hits + revalidations) / lookups;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("cache: %d hits, %d revalidated, %d misses (%.0f%% served from cache), %d evicted, %d entries, %d bytes",
+                    hits, revalidations, misses, hitRatio() * 100, evictions, entries, bytes);
+        }
+    }
+}
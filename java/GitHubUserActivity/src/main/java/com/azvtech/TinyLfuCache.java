@@ -0,0 +1,267 @@
+package com.azvtech;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory cache bounded in weight, which admits new entries by how often their keys
+ * are asked for rather than by recency alone.
+ *
+ * New entries go to a small window, 1% of the weight, kept in least recently used order.
+ * An entry pushed out of the window is a candidate for the main region, and only takes
+ * the place of the least recently used entries there if its key has been asked for more
+ * often than each of them, as estimated by a count-min sketch of recent accesses. A burst of one-off keys
+ * therefore passes through the window without flushing the keys asked for again and again.
+ * The sketch keeps 4-bit counters that are halved every so often, so popularity fades.
+ *
+ * Entries also expire after a time to live. All methods are thread-safe.
+ *
+ * @param <K> The type of the keys.
+ * @param <V> The type of the values.
+ */
+public class TinyLfuCache<K, V>
+{
+    private static final int[] SEEDS = { 0x97cb3127, 0x9e3779b9, 0x7ed55d16, 0xc761c23c };
+
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<K, V>> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Entry<K, V>> main = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowWeight;
+    private long mainWeight;
+
+    /** The count-min sketch: one row of counters per seed, each counter in a byte. */
+    private final byte[][] sketch;
+    private final int sketchMask;
+    private final int resetAfter;
+    private int samples;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxWeight       The bound on the total weight of the entries.
+     * @param expectedEntries About how many entries fit, which sizes the frequency sketch.
+     * @param ttl             How long an entry is served after it was put.
+     */
+    public TinyLfuCache(long maxWeight, int expectedEntries, Duration ttl)
+    {
+        this.maxWeight = maxWeight;
+        this.windowMaxWeight = Math.max(1, maxWeight / 100);
+        this.ttlNanos = ttl.toNanos();
+        int width = Integer.highestOneBit(Math.max(64, expectedEntries - 1) * 2);
+        this.sketch = new byte[SEEDS.length][width];
+        this.sketchMask = width - 1;
+        this.resetAfter = 10 * width;
+    }
+
+    /**
+     * Returns the value of a key, or {@code null} if it is not cached or has expired, and
+     * counts the access towards the popularity of the key either way.
+     */
+    public synchronized V get(K key)
+    {
+        increment(key);
+        Entry<K, V> entry = window.get(key);
+        if (entry == null) {
+            entry = main.get(key);
+        }
+        if (entry != null && System.nanoTime() - entry.putAt > ttlNanos) {
+            remove(entry);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Caches a value, replacing any value of the same key. The entry may be evicted right
+     * away, or never admitted past the window, if its key is not asked for often enough.
+     *
+     * @param weight The weight of the value, such as its size in bytes.
+     */
+    public synchronized void put(K key, V value, long weight)
+    {
+        Entry<K, V> existing = window.get(key);
+        if (existing == null) {
+            existing = main.get(key);
+        }
+        if (existing != null) {
+            remove(existing);
+        }
+        if (weight > maxWeight - windowMaxWeight) {
+            rejections++;
+            return;
+        }
+        Entry<K, V> entry = new Entry<>(key, value, weight, System.nanoTime());
+        window.put(key, entry);
+        windowWeight += weight;
+        while (windowWeight > windowMaxWeight && !window.isEmpty()) {
+            Entry<K, V> candidate = eldest(window);
+            window.remove(candidate.key);
+            windowWeight -= candidate.weight;
+            admit(candidate);
+        }
+    }
+
+    /**
+     * Moves an entry out of the window into the main region, if it is asked for more often
+     * than every entry it would evict. The victims are picked, least recently used first,
+     * before anything is evicted, so either all of them make way or none does.
+     */
+    private void admit(Entry<K, V> candidate)
+    {
+        long excess = mainWeight + candidate.weight - (maxWeight - windowMaxWeight);
+        List<Entry<K, V>> victims = new ArrayList<>();
+        if (excess > 0) {
+            int candidateFrequency = frequency(candidate.key);
+            Iterator<Entry<K, V>> eldest = main.values().iterator();
+            while (excess > 0) {
+                Entry<K, V> victim = eldest.next();
+                if (candidateFrequency <= frequency(victim.key)) {
+                    rejections++;
+                    return;
+                }
+                victims.add(victim);
+                excess -= victim.weight;
+            }
+        }
+        for (Entry<K, V> victim : victims) {
+            main.remove(victim.key);
+            mainWeight -= victim.weight;
+            evictions++;
+        }
+        candidate.main = true;
+        main.put(candidate.key, candidate);
+        mainWeight += candidate.weight;
+    }
+
+    private void remove(Entry<K, V> entry)
+    {
+        if (entry.main) {
+            main.remove(entry.key);
+            mainWeight -= entry.weight;
+        } else {
+            window.remove(entry.key);
+            windowWeight -= entry.weight;
+        }
+    }
+
+    private static <K, V> Entry<K, V> eldest(LinkedHashMap<K, Entry<K, V>> map)
+    {
+        Iterator<Map.Entry<K, Entry<K, V>>> iterator = map.entrySet().iterator();
+        return iterator.next().getValue();
+    }
+
+    private void increment(Object key)
+    {
+        int hash = key.hashCode();
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = index(hash, i);
+            if (sketch[i][index] < 15) {
+                sketch[i][index]++;
+            }
+        }
+        if (++samples >= resetAfter) {
+            // Halve every counter, so that keys that were popular long ago fade out.
+            for (byte[] row : sketch) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            samples /= 2;
+        }
+    }
+
+    private int frequency(Object key)
+    {
+        int hash = key.hashCode();
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, sketch[i][index(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private int index(int hash, int row)
+    {
+        int mixed = hash * SEEDS[row];
+        return (mixed ^ (mixed >>> 16)) & sketchMask;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted from the main region to admit another.
+     */
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries turned away, for being asked for less often than the
+     * entries they would have evicted, or for being too heavy.
+     */
+    public synchronized long getRejections()
+    {
+        return rejections;
+    }
+
+    public synchronized int size()
+    {
+        return window.size() + main.size();
+    }
+
+    public synchronized long weight()
+    {
+        return windowWeight + mainWeight;
+    }
+
+    /**
+     * Returns the fraction of lookups that found a value.
+     */
+    public synchronized double hitRatio()
+    {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private static final class Entry<K, V>
+    {
+        final K key;
+        final V value;
+        final long weight;
+        final long putAt;
+        boolean main;
+
+        Entry(K key, V value, long weight, long putAt)
+        {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.putAt = putAt;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.azvtech;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for the events endpoint of the GitHub API, for tests and load runs.
+ *
+ * Every user has the same events, taken in turn from a recorded fixture, then numbered
+ * and timed a minute apart newest first, as the API orders them. They are served a page
+ * at a time with {@code Link} headers, gzip-compressed when asked to, and with an
+ * {@code ETag} per page that makes conditional requests answer 304. Responses can be
+ * delayed to simulate the latency of the real API, and a quota per window answers 403
+ * with the {@code X-RateLimit-*} headers once it is used up.
+ *
+ * Pages are rendered once and kept, so the stub costs little next to what it is measuring:
+ *
+ *   GitHubApiStub [--port N] [--fixture events.json] [--events N] [--latency ms] [--jitter ms]
+ *                 [--rate-limit N] [--rate-window seconds] [--poll-interval seconds]
+ */
+public class GitHubApiStub implements Closeable
+{
+    /** The recorded events served by default, on the classpath. */
+    public static final String DEFAULT_FIXTURE = "/events-page.json";
+
+    /** The default number of events per user; as many as the API keeps. */
+    public static final int DEFAULT_EVENTS = 300;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long FIRST_ID = 52_000_000_000L;
+    private static final Instant LATEST = Instant.parse("2025-10-06T10:00:00Z");
+
+    private final ArrayNode fixture;
+    private final Map<String, Page> pages = new ConcurrentHashMap<>();
+    private int events = DEFAULT_EVENTS;
+    private Duration latency = Duration.ZERO;
+    private Duration jitter = Duration.ZERO;
+    private int rateLimit;
+    private Duration rateWindow = Duration.ofHours(1);
+    private int pollInterval = 60;
+
+    private final Object quotaLock = new Object();
+    private long windowEnd;
+    private int used;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong limited = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Creates a stub serving the default fixture.
+     *
+     * @throws IOException If the fixture cannot be read.
+     */
+    public GitHubApiStub() throws IOException
+    {
+        this(GitHubApiStub.class.getResourceAsStream(DEFAULT_FIXTURE));
+    }
+
+    /**
+     * Creates a stub serving recorded events.
+     *
+     * @param fixture A JSON array of events as the API returns them; closed when read.
+     * @throws IOException If the fixture cannot be read or is not an array of events.
+     */
+    public GitHubApiStub(InputStream fixture) throws IOException
+    {
+        if (fixture == null) {
+            throw new IOException("Fixture not found: " + DEFAULT_FIXTURE);
+        }
+        try (InputStream in = fixture) {
+            JsonNode events = MAPPER.readTree(in);
+            if (!events.isArray() || events.size() == 0) {
+                throw new IOException("Expected an array of events");
+            }
+            this.fixture = (ArrayNode) events;
+        }
+    }
+
+    /**
+     * Sets how many events every user has.
+     */
+    public GitHubApiStub withEvents(int events)
+    {
+        this.events = events;
+        pages.clear();
+        return this;
+    }
+
+    /**
+     * Delays every response by a fixed latency plus a random jitter of up to the given amount.
+     */
+    public GitHubApiStub withLatency(Duration latency, Duration jitter)
+    {
+        this.latency = latency;
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * Allows only so many requests per window, answering 403 beyond that until the window
+     * resets. Zero, the default, allows any number.
+     */
+    public GitHubApiStub withRateLimit(int limit, Duration window)
+    {
+        this.rateLimit = limit;
+        this.rateWindow = window;
+        return this;
+    }
+
+    /**
+     * Sets the {@code X-Poll-Interval} sent with every response, in seconds.
+     */
+    public GitHubApiStub withPollInterval(int seconds)
+    {
+        this.pollInterval = seconds;
+        return this;
+    }
+
+    /**
+     * Starts serving on the loopback interface.
+     *
+     * @param port The port, or 0 for any free one.
+     * @return This stub.
+     * @throws IOException If the port cannot be bound.
+     */
+    public GitHubApiStub start(int port) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        // Responses sleep for their latency, so every request gets a thread of its own.
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "github-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/users/", this::handle);
+        server.start();
+        return this;
+    }
+
+    /**
+     * Returns the events URL of the stub, with {@code %s} where the username goes, as
+     * {@link GitHubActivityFetcher} takes it.
+     */
+    public String getEventsUrl()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/users/%s/events";
+    }
+
+    public long getRequests()
+    {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of pages served with a body.
+     */
+    public long getServed()
+    {
+        return served.get();
+    }
+
+    public long getNotModified()
+    {
+        return notModified.get();
+    }
+
+    /**
+     * Returns the number of requests answered 403 because the quota was used up.
+     */
+    public long getLimited()
+    {
+        return limited.get();
+    }
+
+    /**
+     * Returns the number of body bytes sent, as they went over the wire.
+     */
+    public long getBytes()
+    {
+        return bytes.get();
+    }
+
+    @Override
+    public void close()
+    {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("stub: %d requests, %d served, %d not modified, %d rate limited, %.1f MB sent",
+                getRequests(), getServed(), getNotModified(), getLimited(), getBytes() / 1e6);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try {
+            requests.incrementAndGet();
+            sleep();
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            if (path.length != 4 || !path[3].equals("events")) {
+                respond(exchange, 404, "{\"message\":\"Not Found\"}");
+                return;
+            }
+            if (!takeQuota(exchange)) {
+                limited.incrementAndGet();
+                respond(exchange, 403, "{\"message\":\"API rate limit exceeded\"}");
+                return;
+            }
+            String query = exchange.getRequestURI().getRawQuery();
+            int perPage = Math.min(Math.max(intParameter(query, "per_page", 30), 1), 100);
+            int number = Math.max(intParameter(query, "page", 1), 1);
+            Page page = pages.computeIfAbsent(perPage + "/" + number, key -> render(perPage, number));
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.getResponseHeaders().set("ETag", page.etag);
+            exchange.getResponseHeaders().set("X-Poll-Interval", String.valueOf(pollInterval));
+            int last = Math.max((events + perPage - 1) / perPage, 1);
+            if (number < last) {
+                String base = "http://127.0.0.1:" + server.getAddress().getPort() + exchange.getRequestURI().getPath();
+                exchange.getResponseHeaders().set("Link", "<" + base + "?per_page=" + perPage + "&page=" + (number + 1)
+                        + ">; rel=\"next\", <" + base + "?per_page=" + perPage + "&page=" + last + ">; rel=\"last\"");
+            }
+            if (page.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            byte[] body = page.plain;
+            if (encoding != null && encoding.contains("gzip")) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                body = page.gzip;
+            }
+            served.incrementAndGet();
+            send(exchange, 200, body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Counts a request against the quota and sets the rate limit headers.
+     *
+     * @return {@code false} if the quota of the current window is used up.
+     */
+    private boolean takeQuota(HttpExchange exchange)
+    {
+        if (rateLimit <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        int remaining;
+        boolean allowed;
+        long reset;
+        synchronized (quotaLock) {
+            if (now >= windowEnd) {
+                windowEnd = now + rateWindow.toMillis();
+                used = 0;
+            }
+            allowed = used < rateLimit;
+            if (allowed) {
+                used++;
+            }
+            remaining = rateLimit - used;
+            reset = (windowEnd + 999) / 1000;
+        }
+        exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(rateLimit));
+        exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(remaining));
+        exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(reset));
+        return allowed;
+    }
+
+    private void sleep()
+    {
+        long delay = latency.toMillis() + (jitter.isZero() ? 0 : ThreadLocalRandom.current().nextLong(jitter.toMillis() + 1));
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Renders a page of events, cycling through the fixture and numbering and timing them
+     * newest first.
+     */
+    private Page render(int perPage, int number)
+    {
+        ArrayNode page = MAPPER.createArrayNode();
+        for (int i = (number - 1) * perPage; i < Math.min(number * perPage, events); i++) {
+            ObjectNode event = ((ObjectNode) fixture.get(i % fixture.size())).deepCopy();
+            event.put("id", String.valueOf(FIRST_ID + events - i));
+            event.put("created_at", LATEST.minusSeconds(60L * i).toString());
+            page.add(event);
+        }
+        try {
+            byte[] plain = MAPPER.writeValueAsBytes(page);
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(gzip)) {
+                out.write(plain);
+            }
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(plain);
+            StringBuilder etag = new StringBuilder("\"");
+            for (int i = 0; i < 8; i++) {
+                etag.append(String.format("%02x", digest[i]));
+            }
+            return new Page(plain, gzip.toByteArray(), etag.append('"').toString());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String message) throws IOException
+    {
+        send(exchange, status, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException
+    {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        bytes.addAndGet(body.length);
+    }
+
+    private static int intParameter(String query, String name, int defaultValue)
+    {
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith(name + "=")) {
+                    try {
+                        return Integer.parseInt(parameter.substring(name.length() + 1));
+                    } catch (NumberFormatException e) {
+                        return defaultValue;
+                    }
+                }
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * A rendered page, plain and compressed, with its entity tag.
+     */
+    private static final class Page
+    {
+        final byte[] plain;
+        final byte[] gzip;
+        final String etag;
+
+        Page(byte[] plain, byte[] gzip, String etag)
+        {
+            this.plain = plain;
+            this.gzip = gzip;
+            this.etag = etag;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        int port = 8080;
+        try {
+            GitHubApiStub stub = null;
+            int events = DEFAULT_EVENTS;
+            Duration latency = Duration.ZERO;
+            Duration jitter = Duration.ZERO;
+            int rateLimit = 0;
+            Duration rateWindow = Duration.ofHours(1);
+            int pollInterval = 60;
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--fixture":
+                        stub = new GitHubApiStub(Files.newInputStream(Paths.get(args[++i])));
+                        break;
+                    case "--events":
+                        events = Integer.parseInt(args[++i]);
+                        break;
+                    case "--latency":
+                        latency = Duration.ofMillis(Long.parseLong(args[++i]));
+                        break;
+                    case "--jitter":
+                        jitter = Duration.ofMillis(Long.parseLong(args[++i]));
+                        break;
+                    case "--rate-limit":
+                        rateLimit = Integer.parseInt(args[++i]);
+                        break;
+                    case "--rate-window":
+                        rateWindow = Duration.ofSeconds(Long.parseLong(args[++i]));
+                        break;
+                    case "--poll-interval":
+                        pollInterval = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (stub == null) {
+                stub = new GitHubApiStub();
+            }
+            stub.withEvents(events).withLatency(latency, jitter).withRateLimit(rateLimit, rateWindow)
+                    .withPollInterval(pollInterval).start(port);
+            System.out.println("Serving " + events + " events per user at " + stub.getEventsUrl());
+        } catch (IOException e) {
+            System.err.println("Error starting stub: " + e.getMessage());
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Usage: GitHubApiStub [--port N] [--fixture events.json] [--events N] [--latency ms] [--jitter ms]"
+                    + " [--rate-limit N] [--rate-window seconds] [--poll-interval seconds]");
+        }
+    }
+}
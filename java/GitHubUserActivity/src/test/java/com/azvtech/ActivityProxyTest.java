@@ -0,0 +1,152 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests the activity proxy against a local stub of the events API.
+ */
+public class ActivityProxyTest
+    extends TestCase
+{
+    private GitHubApiStub stub;
+    private ActivityProxy proxy;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ActivityProxyTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ActivityProxyTest.class );
+    }
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        stub = new GitHubApiStub().withEvents(250).withLatency(Duration.ofMillis(100), Duration.ZERO).start(0);
+        proxy = new ActivityProxy(new GitHubActivityFetcher(stub.getEventsUrl()), ActivityProxy.DEFAULT_MAX_BYTES, Duration.ofMinutes(1))
+                .start(0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        proxy.close();
+        stub.close();
+    }
+
+    /**
+     * Concurrent requests for the same user share one upstream fetch of its pages, and a
+     * later request is answered from the cache.
+     */
+    public void testCoalescesAndCaches() throws Exception
+    {
+        ExecutorService clients = Executors.newFixedThreadPool(20);
+        CountDownLatch ready = new CountDownLatch(20);
+        List<Future<String>> responses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            responses.add(clients.submit(() -> {
+                ready.countDown();
+                ready.await();
+                return get("/users/octocat/events", 200);
+            }));
+        }
+        String events = responses.get(0).get();
+        for (Future<String> response : responses) {
+            assertEquals( events, response.get() );
+        }
+        clients.shutdown();
+
+        String summary = get("/users/octocat/summary", 200);
+        assertTrue( summary, summary.startsWith("- Pushed ") );
+        assertEquals( 3, stub.getServed() );
+
+        ActivityProxy.Stats stats = proxy.stats();
+        assertEquals( 21, stats.getRequests() );
+        assertEquals( 1, stats.getUpstream() );
+        assertTrue( stats.toString(), stats.getHits() + stats.getCoalesced() == 20 );
+        assertEquals( 20.0 / 21, stats.upstreamSaved(), 1e-9 );
+        String json = get("/stats", 200);
+        assertTrue( json, json.contains("\"upstream\":1,") );
+    }
+
+    /**
+     * The events served by the proxy are laid out like the API's, so the fetcher can read
+     * them back through it; unknown paths are not found.
+     */
+    public void testServesApiShapedEvents() throws Exception
+    {
+        List<GitHubEvent> direct = new ArrayList<>();
+        new GitHubActivityFetcher(stub.getEventsUrl()).fetchEvents("hubot", direct::add);
+        List<GitHubEvent> proxied = new ArrayList<>();
+        new GitHubActivityFetcher(GitHubActivityFetcher.eventsUrl(proxy.getUrl())).fetchEvents("hubot", proxied::add);
+
+        assertEquals( 250, proxied.size() );
+        for (int i = 0; i < direct.size(); i++) {
+            assertEquals( direct.get(i).getId(), proxied.get(i).getId() );
+            assertEquals( ActivitySummary.describe(direct.get(i)), ActivitySummary.describe(proxied.get(i)) );
+            assertEquals( direct.get(i).getCreatedAt(), proxied.get(i).getCreatedAt() );
+        }
+        get("/users/hubot/followers", 404);
+    }
+
+    /**
+     * The events are passed on as the API returned them, with every field, not only those
+     * the fetcher reads.
+     */
+    public void testServesEventsAsReceived() throws Exception
+    {
+        ObjectMapper mapper = new ObjectMapper();
+        ArrayNode upstream = mapper.createArrayNode();
+        for (int page = 1; page <= 3; page++) {
+            URL url = new URL(String.format(stub.getEventsUrl(), "hubot") + "?per_page=100&page=" + page);
+            upstream.addAll((ArrayNode) mapper.readTree(url));
+        }
+        JsonNode proxied = mapper.readTree(get("/users/hubot/events", 200));
+
+        assertEquals( 250, proxied.size() );
+        assertEquals( upstream, proxied );
+        assertTrue( proxied.get(0).has("payload") );
+        assertEquals( "[]", new String(ActivityProxy.join(List.of("[]".getBytes(), " [ ]\n".getBytes())), StandardCharsets.UTF_8) );
+    }
+
+    private String get(String path, int expectedStatus) throws Exception
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(proxy.getUrl() + path).openConnection();
+        try {
+            assertEquals( expectedStatus, connection.getResponseCode() );
+            if (expectedStatus != 200) {
+                return null;
+            }
+            return new String(connection.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for decoding events and summarizing them.
+ */
+public class ActivitySummaryTest
+    extends TestCase
+{
+    private static final String PAGE = "["
+            + "{\"id\":\"1\",\"type\":\"PushEvent\",\"actor\":{\"id\":1,\"login\":\"octocat\"},"
+            + "\"repo\":{\"id\":2,\"name\":\"octocat/Hello-World\"},\"payload\":{\"ref\":\"refs/heads/main\",\"size\":3,"
+            + "\"commits\":[{\"sha\":\"a\",\"message\":\"One\"},{\"sha\":\"b\",\"message\":\"Two\"}]},\"created_at\":\"2025-10-06T10:00:00Z\"},"
+            + "{\"type\":\"PushEvent\",\"repo\":{\"name\":\"octocat/Hello-World\"},\"payload\":{\"commits\":[{\"sha\":\"c\"},{\"sha\":\"d\"}]}},"
+            + "{\"type\":\"IssuesEvent\",\"repo\":{\"name\":\"kamranahmedse/developer-roadmap\"},"
+            + "\"payload\":{\"action\":\"opened\",\"issue\":{\"number\":7,\"labels\":[{\"name\":\"bug\"}],\"body\":\"Typo\"}}},"
+            + "{\"type\":\"WatchEvent\",\"repo\":{\"name\":\"kamranahmedse/developer-roadmap\"},\"payload\":{\"action\":\"started\"}},"
+            + "{\"type\":\"CreateEvent\",\"repo\":{\"name\":\"octocat/Spoon-Knife\"},\"payload\":{\"ref\":null,\"ref_type\":\"repository\"}},"
+            + "{\"type\":\"CreateEvent\",\"repo\":{\"name\":\"octocat/Hello-World\"},\"payload\":{\"ref\":\"cache\",\"ref_type\":\"branch\"}},"
+            + "{\"type\":\"SponsorshipEvent\",\"repo\":{\"name\":\"octocat/Hello-World\"},\"payload\":{}}"
+            + "]";
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ActivitySummaryTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ActivitySummaryTest.class );
+    }
+
+    /**
+     * Events are decoded with their type, actor, repository and payload details, counting
+     * the commits of a push by its size and falling back to its list of commits.
+     */
+    public void testDecodesEvents() throws Exception
+    {
+        List<GitHubEvent> events = new ArrayList<>();
+        assertEquals( 7, GitHubEvent.readAll(page(), events::add) );
+
+        GitHubEvent push = events.get(0);
+        assertEquals( 1, push.getId() );
+        assertEquals( GitHubEvent.Type.PUSH, push.getType() );
+        assertEquals( "octocat", push.getActor() );
+        assertEquals( "octocat/Hello-World", push.getRepo() );
+        assertEquals( "2025-10-06T10:00:00Z", push.getCreatedAt() );
+        assertEquals( 3, push.getCommits() );
+        assertEquals( 2, events.get(1).getCommits() );
+        assertEquals( "opened", events.get(2).getAction() );
+        assertEquals( "repository", events.get(4).getRefType() );
+        assertEquals( GitHubEvent.Type.OTHER, events.get(6).getType() );
+    }
+
+    /**
+     * Events are counted per repository, in the order repositories first appear, and
+     * summaries of different users merge into one.
+     */
+    public void testSummarizes() throws Exception
+    {
+        ActivitySummary summary = new ActivitySummary();
+        GitHubEvent.readAll(page(), summary::add);
+        assertEquals( Arrays.asList(
+                "Pushed 5 commits to octocat/Hello-World",
+                "Created 1 branch in octocat/Hello-World",
+                "1 other event in octocat/Hello-World",
+                "Opened 1 new issue in kamranahmedse/developer-roadmap",
+                "Starred kamranahmedse/developer-roadmap",
+                "Created repository octocat/Spoon-Knife"), summary.lines() );
+        assertEquals( 7, summary.getEvents() );
+        assertEquals( 3, summary.getRepositories() );
+        assertTrue( summary.toString().startsWith("- Pushed 5 commits to octocat/Hello-World") );
+
+        ActivitySummary other = new ActivitySummary();
+        other.add(new GitHubEvent(2, GitHubEvent.Type.PUSH, "hubot", "octocat/Hello-World", null, null, null, 1));
+        other.add(new GitHubEvent(3, GitHubEvent.Type.FORK, "hubot", "octocat/Linguist", null, null, null, 0));
+        summary.merge(other);
+        assertEquals( "Pushed 6 commits to octocat/Hello-World", summary.lines().get(0) );
+        assertEquals( "Forked octocat/Linguist", summary.lines().get(6) );
+        assertEquals( 4, summary.getRepositories() );
+    }
+
+    private static ByteArrayInputStream page()
+    {
+        return new ByteArrayInputStream(PAGE.getBytes(StandardCharsets.UTF_8));
+    }
+}
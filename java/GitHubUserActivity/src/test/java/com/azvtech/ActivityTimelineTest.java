@@ -0,0 +1,146 @@
+package com.azvtech;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests merging users into one timeline against a local stub of the events API.
+ */
+public class ActivityTimelineTest
+    extends TestCase
+{
+    /** How many events the stub serves per page. */
+    private static final int PAGE = 3;
+
+    private static final Instant NOW = Instant.parse("2025-10-06T10:00:00Z");
+
+    private HttpServer server;
+    /** The minutes before now of the events of every user, newest first. */
+    private final Map<String, List<Integer>> events = new HashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ActivityTimelineTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ActivityTimelineTest.class );
+    }
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        events.put("alice", Arrays.asList(0, 10, 20, 30, 40, 50, 60));
+        events.put("bob", Arrays.asList(5, 15, 70, 80));
+        events.put("carol", Arrays.asList());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        // Serves the events of a user PAGE at a time; unknown users are not found.
+        server.createContext("/timeline/", exchange -> {
+            String username = exchange.getRequestURI().getPath().split("/")[2];
+            String query = exchange.getRequestURI().getQuery();
+            int page = query.matches(".*\\bpage=\\d+.*") ? Integer.parseInt(query.replaceAll(".*\\bpage=(\\d+).*", "$1")) : 1;
+            requests.computeIfAbsent(username, name -> new AtomicInteger()).incrementAndGet();
+            List<Integer> minutes = events.get(username);
+            if (minutes == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            if (page * PAGE < minutes.size()) {
+                exchange.getResponseHeaders().set("Link", "<http://127.0.0.1:" + server.getAddress().getPort()
+                        + "/timeline/" + username + "?page=" + (page + 1) + ">; rel=\"next\"");
+            }
+            List<GitHubEvent> body = new ArrayList<>();
+            for (int i = (page - 1) * PAGE; i < Math.min(page * PAGE, minutes.size()); i++) {
+                body.add(new GitHubEvent(1000 - minutes.get(i), GitHubEvent.Type.WATCH, username, "octocat/Hello-World",
+                        NOW.minusSeconds(60L * minutes.get(i)).toString(), "started", null, 0));
+            }
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            GitHubEvent.writeAll(body, json);
+            exchange.sendResponseHeaders(200, json.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                json.writeTo(out);
+            }
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        server.stop(0);
+    }
+
+    /**
+     * Every event of every page of every user comes out once, newest first across users,
+     * and a user that cannot be read is reported and left out.
+     */
+    public void testMergesNewestFirst() throws Exception
+    {
+        List<String> merged = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        ActivityTimeline timeline = new ActivityTimeline(fetcher(), Arrays.asList("alice", "ghost", "bob", "carol"), 2);
+        long passed = timeline.merge(-1, (username, event) -> merged.add(username + " " + minutes(event)),
+                (username, error) -> failed.add(username));
+
+        assertEquals( Arrays.asList("alice 0", "bob 5", "alice 10", "bob 15", "alice 20", "alice 30", "alice 40",
+                "alice 50", "alice 60", "bob 70", "bob 80"), merged );
+        assertEquals( 11, passed );
+        assertEquals( Arrays.asList("ghost"), failed );
+        assertEquals( 3, requests.get("alice").get() );
+        assertEquals( 2, requests.get("bob").get() );
+        assertEquals( 6, timeline.getPages() );
+    }
+
+    /**
+     * Once the limit is reached, the pages the merge has not got close to are never
+     * requested.
+     */
+    public void testStopsFetchingAtLimit() throws Exception
+    {
+        List<String> merged = new ArrayList<>();
+        new ActivityTimeline(fetcher(), Arrays.asList("alice", "bob"), 1)
+                .merge(3, (username, event) -> merged.add(username + " " + minutes(event)), (username, error) -> fail());
+
+        assertEquals( Arrays.asList("alice 0", "bob 5", "alice 10"), merged );
+        assertEquals( 1, requests.get("alice").get() );
+        assertEquals( 1, requests.get("bob").get() );
+    }
+
+    private GitHubActivityFetcher fetcher()
+    {
+        return new GitHubActivityFetcher("http://127.0.0.1:" + server.getAddress().getPort() + "/timeline/%s");
+    }
+
+    private static long minutes(GitHubEvent event)
+    {
+        return (NOW.getEpochSecond() - Instant.parse(event.getCreatedAt()).getEpochSecond()) / 60;
+    }
+}
@@ -0,0 +1,174 @@
+package com.azvtech;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Tests watching users against a local stub of the events API.
+ */
+public class ActivityWatcherTest
+    extends TestCase
+{
+    /** How many events the stub serves per page. */
+    private static final int PAGE = 3;
+
+    private HttpServer server;
+    private Path checkpoint;
+    /** The ids of the events of every user, newest first. */
+    private final Map<String, List<Long>> events = new ConcurrentHashMap<>();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ActivityWatcherTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ActivityWatcherTest.class );
+    }
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        checkpoint = Files.createTempDirectory("watch").resolve("watch.checkpoint");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        // Serves the events of a user PAGE at a time, tagged with the id of the newest one.
+        server.createContext("/watch/", exchange -> {
+            String username = exchange.getRequestURI().getPath().split("/")[2];
+            String query = exchange.getRequestURI().getQuery();
+            int page = query.matches(".*\\bpage=\\d+.*") ? Integer.parseInt(query.replaceAll(".*\\bpage=(\\d+).*", "$1")) : 1;
+            List<Long> ids = new ArrayList<>(events.getOrDefault(username, new ArrayList<>()));
+            String etag = "\"" + (ids.isEmpty() ? 0 : ids.get(0)) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("X-Poll-Interval", "0");
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            if (page * PAGE < ids.size()) {
+                exchange.getResponseHeaders().set("Link", "<http://127.0.0.1:" + server.getAddress().getPort()
+                        + exchange.getRequestURI().getPath() + "?page=" + (page + 1) + ">; rel=\"next\"");
+            }
+            StringBuilder body = new StringBuilder("[");
+            for (int i = (page - 1) * PAGE; i < Math.min(page * PAGE, ids.size()); i++) {
+                body.append(body.length() > 1 ? "," : "").append("{\"id\":\"").append(ids.get(i))
+                        .append("\",\"type\":\"WatchEvent\",\"repo\":{\"name\":\"octocat/Repo").append(ids.get(i)).append("\"}}");
+            }
+            respond(exchange, body.append(']').toString());
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        server.stop(0);
+        Files.deleteIfExists(checkpoint);
+        Files.deleteIfExists(checkpoint.getParent());
+    }
+
+    /**
+     * The first poll only records what is there, unchanged users are answered 304, and
+     * new events are passed on oldest first, following pages until a seen one.
+     */
+    public void testPassesOnOnlyNewEvents() throws Exception
+    {
+        events.put("alice", ids(2, 1));
+        events.put("bob", ids(5, 4, 3));
+        Map<String, List<Long>> seen = new ConcurrentHashMap<>();
+        BiConsumer<String, GitHubEvent> record = (user, event) -> seen.computeIfAbsent(user, name -> new ArrayList<>()).add(event.getId());
+        try (ActivityWatcher watcher = newWatcher()) {
+            assertEquals( 0, watcher.pollDue(record, (user, error) -> fail(error.toString())) );
+            assertEquals( 0, watcher.pollDue(record, (user, error) -> fail(error.toString())) );
+            assertEquals( 2, notModified.get() );
+
+            events.put("alice", ids(3, 2, 1));
+            events.put("bob", ids(12, 11, 10, 9, 8, 7, 6, 5, 4, 3));
+            assertEquals( 8, watcher.pollDue(record, (user, error) -> fail(error.toString())) );
+        }
+        assertEquals( ids(3), seen.get("alice") );
+        assertEquals( ids(6, 7, 8, 9, 10, 11, 12), seen.get("bob") );
+    }
+
+    /**
+     * A restarted watcher picks up from the checkpoint: nothing is passed on twice, and an
+     * event that shows up late, behind newer ones, is passed on once.
+     */
+    public void testResumesFromCheckpoint() throws Exception
+    {
+        events.put("alice", ids(10, 8));
+        try (ActivityWatcher watcher = newWatcher()) {
+            watcher.pollDue((user, event) -> fail("primed"), (user, error) -> fail(error.toString()));
+        }
+        assertTrue( Files.exists(checkpoint) );
+
+        events.put("alice", ids(11, 10, 9, 8));
+        List<Long> seen = new ArrayList<>();
+        try (ActivityWatcher watcher = newWatcher()) {
+            watcher.pollDue((user, event) -> seen.add(event.getId()), (user, error) -> fail(error.toString()));
+        }
+        assertEquals( ids(9, 11), seen );
+
+        seen.clear();
+        events.put("alice", ids(12, 11, 10, 9, 8));
+        try (ActivityWatcher watcher = newWatcher()) {
+            watcher.pollDue((user, event) -> seen.add(event.getId()), (user, error) -> fail(error.toString()));
+        }
+        assertEquals( ids(12), seen );
+    }
+
+    private ActivityWatcher newWatcher() throws IOException
+    {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/watch/%s/events";
+        return new ActivityWatcher(new GitHubActivityFetcher(url, null), Arrays.asList("alice", "bob"), 4, Duration.ZERO, checkpoint);
+    }
+
+    private static List<Long> ids(long... ids)
+    {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException
+    {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the persistent event store.
+ */
+public class EventStoreTest
+    extends TestCase
+{
+    private static final Instant MARCH = Instant.parse("2025-03-01T00:00:00Z");
+    private static final Instant APRIL = Instant.parse("2025-04-01T00:00:00Z");
+
+    private Path directory;
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public EventStoreTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( EventStoreTest.class );
+    }
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        directory = Files.createTempDirectory("events");
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * Events already stored are skipped, and a query returns the events of one user, type
+     * and time range, oldest first, across segments.
+     */
+    public void testDeduplicatesAndQueries() throws Exception
+    {
+        try (EventStore store = new EventStore(directory, 256)) {
+            assertEquals( 6, addAll(store) );
+            assertEquals( 0, addAll(store) );
+            assertFalse( store.add(event(99, GitHubEvent.Type.PUSH, null, "2025-03-02T00:00:00Z")) );
+            assertEquals( 6, store.size() );
+            assertTrue( store.toString(), store.segments() > 1 );
+
+            assertEquals( Arrays.asList(2L, 4L), ids(store, "alice", MARCH, APRIL, GitHubEvent.Type.PUSH) );
+            assertEquals( Arrays.asList(2L, 3L, 4L), ids(store, "alice", MARCH, APRIL, null) );
+            assertEquals( Arrays.asList(1L, 2L, 3L, 4L, 5L), ids(store, "alice", null, null, null) );
+            assertEquals( Arrays.asList(), ids(store, "carol", null, null, null) );
+
+            List<GitHubEvent> events = new ArrayList<>();
+            store.query("bob", null, null, null, events::add);
+            assertEquals( "bob", events.get(0).getActor() );
+            assertEquals( "octocat/Hello-World", events.get(0).getRepo() );
+            assertEquals( "2025-03-15T08:30:00Z", events.get(0).getCreatedAt() );
+            assertEquals( 2, events.get(0).getCommits() );
+        }
+    }
+
+    /**
+     * A reopened store finds its events through the saved index, reads segments written
+     * after it, cuts off a record left half-written, and keeps every event when compacted.
+     */
+    public void testReopensAndCompacts() throws Exception
+    {
+        try (EventStore store = new EventStore(directory, 256)) {
+            addAll(store);
+        }
+        // Left open, as if the process had died, so its index is never written.
+        EventStore unclosed = new EventStore(directory, 256);
+        assertTrue( unclosed.add(event(7, GitHubEvent.Type.WATCH, "alice", "2025-03-20T00:00:00Z")) );
+        unclosed.flush();
+        Path last;
+        try (Stream<Path> files = Files.list(directory)) {
+            last = files.filter(file -> file.toString().endsWith(".segment")).max(Comparator.naturalOrder()).get();
+        }
+        Files.write(last, new byte[] { 0, 0, 1, 0, 42 }, StandardOpenOption.APPEND);
+
+        try (EventStore store = new EventStore(directory, 256)) {
+            assertEquals( 7, store.size() );
+            assertEquals( Arrays.asList(2L, 3L, 7L, 4L), ids(store, "alice", MARCH, APRIL, null) );
+            assertTrue( store.add(event(8, GitHubEvent.Type.FORK, "alice", "2025-03-21T00:00:00Z")) );
+
+            int segments = store.segments();
+            store.compact();
+            assertTrue( store.segments() <= segments );
+            assertEquals( Arrays.asList(2L, 3L, 7L, 8L, 4L), ids(store, "alice", MARCH, APRIL, null) );
+        }
+        try (EventStore store = new EventStore(directory, 256)) {
+            assertEquals( 8, store.size() );
+            assertEquals( Arrays.asList(6L), ids(store, "bob", null, null, null) );
+            assertEquals( Arrays.asList(2L, 3L, 7L, 8L, 4L), ids(store, "alice", MARCH, APRIL, null) );
+            assertEquals( Arrays.asList(2L, 4L), ids(store, "alice", MARCH, APRIL, GitHubEvent.Type.PUSH) );
+        }
+    }
+
+    /**
+     * Events indexed in a segment that has gone missing are dropped on open rather than
+     * failing the queries that reach them.
+     */
+    public void testDropsEventsOfMissingSegment() throws Exception
+    {
+        try (EventStore store = new EventStore(directory, 256)) {
+            addAll(store);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            Files.delete(files.filter(file -> file.toString().endsWith(".segment")).min(Comparator.naturalOrder()).get());
+        }
+
+        try (EventStore store = new EventStore(directory, 256)) {
+            List<Long> alice = ids(store, "alice", null, null, null);
+            List<Long> bob = ids(store, "bob", null, null, null);
+            assertTrue( store.toString(), store.size() < 6 );
+            assertEquals( store.size(), alice.size() + bob.size() );
+        }
+    }
+
+    private static int addAll(EventStore store) throws Exception
+    {
+        int added = 0;
+        // Newest first, as the API returns them.
+        for (GitHubEvent event : new GitHubEvent[] {
+                event(6, GitHubEvent.Type.PUSH, "bob", "2025-03-15T08:30:00Z"),
+                event(5, GitHubEvent.Type.PUSH, "alice", "2025-04-02T00:00:00Z"),
+                event(4, GitHubEvent.Type.PUSH, "alice", "2025-03-31T23:59:59Z"),
+                event(3, GitHubEvent.Type.ISSUES, "alice", "2025-03-10T00:00:00Z"),
+                event(2, GitHubEvent.Type.PUSH, "alice", "2025-03-01T00:00:00Z"),
+                event(1, GitHubEvent.Type.PUSH, "alice", "2025-02-28T23:59:59Z") }) {
+            if (store.add(event)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private static GitHubEvent event(long id, GitHubEvent.Type type, String actor, String createdAt)
+    {
+        return new GitHubEvent(id, type, actor, "octocat/Hello-World", createdAt, null, null, 2);
+    }
+
+    private static List<Long> ids(EventStore store, String user, Instant from, Instant to, GitHubEvent.Type type) throws Exception
+    {
+        List<Long> ids = new ArrayList<>();
+        store.query(user, from, to, type, event -> ids.add(event.getId()));
+        return ids;
+    }
+}
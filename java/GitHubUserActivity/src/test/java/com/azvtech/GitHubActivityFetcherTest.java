@@ -0,0 +1,239 @@
+package com.azvtech;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests GitHubActivityFetcher batches and paging against local stubs of the events endpoint.
+ */
+public class GitHubActivityFetcherTest
+    extends TestCase
+{
+    /** How long the stub takes to answer, standing in for the network round trip. */
+    private static final int LATENCY_MILLIS = 20;
+
+    /** How many pages, of how many events, the paged stub serves. */
+    private static final int PAGES = 4;
+    private static final int PAGE_EVENTS = 25;
+
+    /** Collects the actors of the events of a user. */
+    private static final Collector<GitHubEvent, ?, String> ACTORS =
+            Collectors.mapping(GitHubEvent::getActor, Collectors.joining());
+
+    private HttpServer server;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicInteger pageRequests = new AtomicInteger();
+    private final AtomicInteger gzipRequests = new AtomicInteger();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GitHubActivityFetcherTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GitHubActivityFetcherTest.class );
+    }
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/users/", exchange -> {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                String username = exchange.getRequestURI().getPath().split("/")[2];
+                // Later users answer faster, so completion order differs from input order.
+                Thread.sleep(username.startsWith("missing") ? 0 : LATENCY_MILLIS + (username.hashCode() & 7));
+                byte[] body = ("[{\"actor\":\"" + username + "\"}]").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(username.startsWith("missing") ? 404 : 200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.createContext("/paged/", exchange -> {
+            pageRequests.incrementAndGet();
+            String query = exchange.getRequestURI().getQuery();
+            int page = query.matches(".*\\bpage=\\d+.*") ? Integer.parseInt(query.replaceAll(".*\\bpage=(\\d+).*", "$1")) : 1;
+            StringBuilder events = new StringBuilder("[");
+            for (int i = 0; i < PAGE_EVENTS; i++) {
+                events.append(i > 0 ? "," : "").append("{\"type\":\"PushEvent\",\"created_at\":\"").append(page).append('-').append(i)
+                        .append("\",\"payload\":{\"size\":").append(i).append("}}");
+            }
+            byte[] body = events.append("]").toString().getBytes(StandardCharsets.UTF_8);
+            if (page < PAGES) {
+                String next = "http://127.0.0.1:" + server.getAddress().getPort() + "/paged/events?per_page=" + PAGE_EVENTS + "&page=" + (page + 1);
+                exchange.getResponseHeaders().set("Link", "<" + next + ">; rel=\"next\", <" + next + ">; rel=\"last\"");
+            }
+            String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (encoding != null && encoding.contains("gzip")) {
+                gzipRequests.incrementAndGet();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                    out.write(body);
+                }
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        server.stop(0);
+    }
+
+    /**
+     * Results come back in input order when asked for, every user exactly once in completion
+     * order, failures are reported per user, and no more requests are in flight than allowed.
+     */
+    public void testOrdersAndConcurrencyCap() throws Exception
+    {
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher(stubUrl());
+        List<String> usernames = usernames(60);
+        usernames.add(7, "missing-user");
+
+        List<String> inOrder = new ArrayList<>();
+        fetcher.fetchAll(usernames, 8, true, ACTORS, result -> inOrder.add(result.getUsername()));
+        assertEquals( usernames, inOrder );
+        assertTrue( peakInFlight.get() <= 8 );
+
+        List<GitHubActivityFetcher.Result<String>> completed = Collections.synchronizedList(new ArrayList<>());
+        fetcher.fetchAll(usernames, 8, false, ACTORS, completed::add);
+        List<String> names = new ArrayList<>();
+        for (GitHubActivityFetcher.Result<String> result : completed) {
+            names.add(result.getUsername());
+            if (result.getUsername().equals("missing-user")) {
+                assertNotNull( result.getError() );
+            } else {
+                assertEquals( result.getUsername(), result.getEvents() );
+            }
+        }
+        assertEquals( usernames.size(), names.size() );
+        assertEquals( new HashSet<>(usernames), new HashSet<>(names) );
+    }
+
+    /**
+     * A batch keeps as many requests in flight as it is allowed, rather than one at a time.
+     */
+    public void testRequestsRunConcurrently() throws Exception
+    {
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher(stubUrl());
+        fetcher.fetchAll(usernames(100), 16, false, ACTORS, result -> assertNull( result.getError() ));
+        assertTrue( "peak " + peakInFlight.get(), peakInFlight.get() > 4 );
+    }
+
+    /**
+     * A collector that fails for one user, in completion order, is surfaced as the error of
+     * the batch, and the consumer never receives a missing result for that user.
+     */
+    public void testCollectorFailureIsThrownNotPassedOn() throws Exception
+    {
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher(stubUrl());
+        Collector<GitHubEvent, ?, String> failing = Collectors.mapping(event -> {
+            if (event.getActor().equals("user3")) {
+                throw new UncheckedIOException(new IOException("disk full"));
+            }
+            return event.getActor();
+        }, Collectors.joining());
+
+        List<GitHubActivityFetcher.Result<String>> completed = Collections.synchronizedList(new ArrayList<>());
+        try {
+            fetcher.fetchAll(usernames(20), 4, false, failing, completed::add);
+            fail( "the failure of the collector must be thrown" );
+        } catch (UncheckedIOException e) {
+            assertEquals( "disk full", e.getCause().getMessage() );
+        }
+        for (GitHubActivityFetcher.Result<String> result : completed) {
+            assertNotNull( result );
+            assertFalse( result.getUsername().equals("user3") );
+        }
+    }
+
+    /**
+     * Every page is fetched by following the Link headers and decompressed from gzip, and
+     * the next page is requested while the events of the current one are still handled.
+     */
+    public void testFollowsPagesWithPrefetch() throws Exception
+    {
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher("http://127.0.0.1:" + server.getAddress().getPort() + "/paged/events");
+        List<String> ids = new ArrayList<>();
+        List<Integer> requestedWhileHandling = new ArrayList<>();
+        int events = fetcher.fetchEvents("octocat", event -> {
+            ids.add(event.getCreatedAt());
+            if (event.getCommits() == 0) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                requestedWhileHandling.add(pageRequests.get());
+            }
+        });
+
+        assertEquals( PAGES * PAGE_EVENTS, events );
+        assertEquals( PAGES * PAGE_EVENTS, ids.size() );
+        assertEquals( "1-0", ids.get(0) );
+        assertEquals( PAGES + "-" + (PAGE_EVENTS - 1), ids.get(ids.size() - 1) );
+        assertEquals( PAGES, pageRequests.get() );
+        assertEquals( PAGES, gzipRequests.get() );
+        for (int page = 1; page < PAGES; page++) {
+            assertEquals( page + 1, (int) requestedWhileHandling.get(page - 1) );
+        }
+        assertEquals( "http://x/events?page=3", GitHubActivityFetcher.nextLink("<http://x/events?page=3>; rel=\"next\", <http://x/events?page=9>; rel=\"last\"") );
+        assertNull( GitHubActivityFetcher.nextLink("<http://x/events?page=1>; rel=\"prev\"") );
+    }
+
+    private String stubUrl()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/users/%s/events";
+    }
+
+    private static List<String> usernames(int count)
+    {
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            usernames.add("user" + i);
+        }
+        return usernames;
+    }
+}
@@ -4,12 +4,26 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
 /**
  * Unit test for simple GitHubUserActivity.
  */
 public class GitHubUserActivityTest
     extends TestCase
 {
+    private GitHubApiStub stub;
+    private Path cacheDirectory;
+
     /**
      * Create the test case
      *
@@ -28,6 +42,22 @@ public class GitHubUserActivityTest
         return new TestSuite( GitHubUserActivityTest.class );
     }
 
+    @Override
+    protected void setUp() throws Exception
+    {
+        stub = new GitHubApiStub().withEvents(250).start(0);
+        cacheDirectory = Files.createTempDirectory("cli-cache");
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        stub.close();
+        try (Stream<Path> files = Files.walk(cacheDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
     /**
      * Rigourous Test :-)
      */
@@ -35,4 +65,75 @@ public class GitHubUserActivityTest
     {
         assertTrue( true );
     }
+
+    /**
+     * A batch against the stub prints a summary for every user, from every page of their
+     * events, downloaded gzip-compressed.
+     */
+    public void testPrintsSummariesFromStub() throws Exception
+    {
+        String output = run("--no-cache", "--order", "input", "--api-url", stub.getEventsUrl(), "octocat", "hubot");
+
+        assertTrue( output, output.startsWith("Recent activity for user: octocat") );
+        assertTrue( output, output.contains("Recent activity for user: hubot") );
+        assertTrue( output, output.contains("- Pushed ") );
+        assertEquals( 6, stub.getServed() );
+        assertTrue( stub.toString(), stub.getBytes() < 6 * 60_000 );
+    }
+
+    /**
+     * With the response cache, a second run revalidates every page and gets 304 for each.
+     */
+    public void testRevalidatesAgainstStub() throws Exception
+    {
+        String root = stub.getEventsUrl().replace("/users/%s/events", "");
+        String first = run("--cache-dir", cacheDirectory.toString(), "--cache-ttl", "0", "--api-url", root, "octocat");
+        String second = run("--cache-dir", cacheDirectory.toString(), "--cache-ttl", "0", "--api-url", root, "octocat");
+
+        assertEquals( first, second );
+        assertEquals( 6, stub.getRequests() );
+        assertEquals( 3, stub.getNotModified() );
+    }
+
+    /**
+     * Past the quota of the stub, requests wait for it to reset rather than fail.
+     */
+    public void testWaitsForStubQuota() throws Exception
+    {
+        stub.withRateLimit(4, Duration.ofSeconds(1));
+        String output = run("--no-cache", "--concurrency", "1", "--api-url", stub.getEventsUrl(), "octocat", "hubot");
+
+        assertTrue( output, output.contains("Recent activity for user: hubot") );
+        assertEquals( 6, stub.getServed() );
+    }
+
+    /**
+     * A date given as the exclusive end of a range takes in the whole day, an instant does not
+     * move.
+     */
+    public void testParsesTimeRange()
+    {
+        assertEquals( Instant.parse("2025-03-01T00:00:00Z"), GitHubUserActivity.parseTime("2025-03-01", false) );
+        assertEquals( Instant.parse("2025-04-01T00:00:00Z"), GitHubUserActivity.parseTime("2025-03-31", true) );
+        assertEquals( Instant.parse("2025-03-31T12:00:00Z"), GitHubUserActivity.parseTime("2025-03-31T12:00:00Z", true) );
+    }
+
+    /**
+     * Runs the command line and returns what it printed to standard output.
+     */
+    private static String run(String... args) throws IOException
+    {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        try (PrintStream capture = new PrintStream(printed, true, "UTF-8")) {
+            System.setOut(capture);
+            System.setErr(new PrintStream(new ByteArrayOutputStream(), true, "UTF-8"));
+            GitHubUserActivity.main(args);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return new String(printed.toByteArray(), StandardCharsets.UTF_8);
+    }
 }
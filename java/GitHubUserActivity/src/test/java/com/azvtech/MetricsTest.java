@@ -0,0 +1,93 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for the latency histograms and counters.
+ */
+public class MetricsTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public MetricsTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( MetricsTest.class );
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        Metrics.reset();
+    }
+
+    /**
+     * Percentiles are within the width of a bucket of the exact ones, from nanoseconds to
+     * minutes.
+     */
+    public void testPercentilesWithinBucketWidth()
+    {
+        Metrics.Histogram histogram = new Metrics.Histogram();
+        long[] values = new long[100_000];
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * Math.log(60e9));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals( values.length, histogram.count() );
+        assertEquals( values[values.length - 1], histogram.max() );
+        for (double fraction : new double[] { 0.5, 0.9, 0.99, 0.999 }) {
+            long exact = values[(int) Math.ceil(fraction * values.length) - 1];
+            long estimate = histogram.percentile(fraction);
+            assertTrue( fraction + ": " + estimate + " vs " + exact, estimate >= exact && estimate <= exact * 1.0625 + 1 );
+        }
+        for (long value : new long[] { 0, 15, 16, 17, 1000, Long.MAX_VALUE }) {
+            assertTrue( value + "", Metrics.Histogram.upperBound(Metrics.Histogram.bucket(value)) >= value );
+        }
+    }
+
+    /**
+     * Requests to the API are timed and counted by status and bytes once metrics are on,
+     * and not at all before.
+     */
+    public void testRecordsFetches() throws Exception
+    {
+        try (GitHubApiStub stub = new GitHubApiStub().withEvents(250).start(0)) {
+            GitHubActivityFetcher fetcher = new GitHubActivityFetcher(stub.getEventsUrl());
+            fetcher.fetchEvents("octocat", event -> { });
+            assertNull( Metrics.timer("fetch") );
+
+            Metrics.enable();
+            fetcher.fetchEvents("octocat", event -> { });
+            assertEquals( 3, Metrics.timer("fetch").count() );
+
+            ByteArrayOutputStream dump = new ByteArrayOutputStream();
+            Metrics.dump(new PrintStream(dump, true, "UTF-8"));
+            String printed = new String(dump.toByteArray(), StandardCharsets.UTF_8);
+            assertTrue( printed, printed.matches("(?s).*fetch +count +3 +p50 .*") );
+            assertTrue( printed, printed.matches("(?s).*fetch\\.status\\.200 +3\\b.*") );
+            assertTrue( printed, printed.matches("(?s).*fetch\\.bytes +" + stub.getBytes() / 2 + "\\b.*") );
+        }
+    }
+}
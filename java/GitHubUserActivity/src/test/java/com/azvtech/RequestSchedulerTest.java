@@ -0,0 +1,244 @@
+package com.azvtech;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the request scheduler against a local stub that throttles like the GitHub API.
+ */
+public class RequestSchedulerTest
+    extends TestCase
+{
+    /** How many requests the overloaded stub serves at once before answering 429. */
+    private static final int CAPACITY = 4;
+
+    /** How many requests the quota stub allows per second. */
+    private static final int QUOTA = 5;
+
+    private HttpServer server;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicInteger tooManyRequests = new AtomicInteger();
+    private final AtomicInteger unavailable = new AtomicInteger();
+    private final AtomicInteger served = new AtomicInteger();
+    private final AtomicInteger forbidden = new AtomicInteger();
+    private final Set<String> failedOnce = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger quotaWindow = new AtomicInteger();
+    private final AtomicInteger quotaUsed = new AtomicInteger();
+    private final List<String> arrivals = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public RequestSchedulerTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( RequestSchedulerTest.class );
+    }
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        // Answers 429 past its capacity, and 503 to the first request of every user.
+        server.createContext("/overloaded/", exchange -> {
+            try {
+                int current = inFlight.incrementAndGet();
+                peakInFlight.accumulateAndGet(current, Math::max);
+                if (current > CAPACITY) {
+                    tooManyRequests.incrementAndGet();
+                    respond(exchange, 429);
+                    return;
+                }
+                if (failedOnce.add(exchange.getRequestURI().getPath())) {
+                    unavailable.incrementAndGet();
+                    respond(exchange, 503);
+                    return;
+                }
+                Thread.sleep(20);
+                served.incrementAndGet();
+                respond(exchange, 200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        // Allows QUOTA requests per second, and answers 403 beyond that.
+        server.createContext("/quota/", exchange -> {
+            long now = System.currentTimeMillis();
+            int window = (int) (now / 1000);
+            synchronized (quotaUsed) {
+                if (quotaWindow.getAndSet(window) != window) {
+                    quotaUsed.set(0);
+                }
+                int used = quotaUsed.get() < QUOTA ? quotaUsed.incrementAndGet() : QUOTA + 1;
+                exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(QUOTA));
+                exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(Math.max(0, QUOTA - used)));
+                exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(window + 1));
+                if (used > QUOTA) {
+                    forbidden.incrementAndGet();
+                    respond(exchange, 403);
+                    return;
+                }
+            }
+            respond(exchange, 200);
+        });
+        // Records the order requests arrive in; "blocker" holds its request until released.
+        server.createContext("/ordered/", exchange -> {
+            String username = exchange.getRequestURI().getPath().split("/")[2];
+            arrivals.add(username);
+            try {
+                if (username.equals("blocker")) {
+                    unblock.await(5, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200);
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown()
+    {
+        server.stop(0);
+    }
+
+    /**
+     * Against a server that throttles past its capacity and fails the first request of
+     * every user, every request still succeeds, exactly the throttled and failed responses
+     * are retried, and the concurrency limit is lowered and never exceeded.
+     */
+    public void testRetriesAndAdaptsConcurrency() throws Exception
+    {
+        RequestScheduler scheduler = new RequestScheduler(32, 0, 8, Duration.ofMillis(10));
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher(stubUrl("overloaded"), null, scheduler);
+        AtomicInteger failed = new AtomicInteger();
+        fetcher.fetchAll(usernames(60), 32, false, ActivitySummary.collector(), result -> {
+            if (result.getError() != null) {
+                failed.incrementAndGet();
+            }
+        });
+
+        RequestScheduler.Stats stats = scheduler.stats();
+        assertEquals( stats.toString(), 0, failed.get() );
+        assertEquals( stats.toString(), 60, served.get() );
+        assertEquals( stats.toString(), 60, unavailable.get() );
+        assertEquals( stats.toString(), tooManyRequests.get(), stats.getThrottled() );
+        assertEquals( stats.toString(), tooManyRequests.get() + unavailable.get(), stats.getRetried() );
+        assertTrue( stats.toString(), peakInFlight.get() <= 32 );
+        // The 503s halve the limit at least once, and 60 successes add back less than 60 / 16.
+        assertTrue( stats.toString(), stats.getLimit() < 32 );
+    }
+
+    /**
+     * Once the quota is used up, requests wait for it to reset instead of being rejected.
+     */
+    public void testWaitsForQuotaReset() throws Exception
+    {
+        RequestScheduler scheduler = new RequestScheduler(4, 0, 3, Duration.ofMillis(10));
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher(stubUrl("quota"), null, scheduler);
+        long start = System.nanoTime();
+        AtomicInteger failed = new AtomicInteger();
+        fetcher.fetchAll(usernames(3 * QUOTA - 3), 1, true, ActivitySummary.collector(), result -> {
+            if (result.getError() != null) {
+                failed.incrementAndGet();
+            }
+        });
+
+        assertEquals( 0, failed.get() );
+        assertEquals( 0, forbidden.get() );
+        assertTrue( System.nanoTime() - start >= TimeUnit.SECONDS.toNanos(1) );
+        assertTrue( scheduler.stats().getRemaining() >= 0 );
+    }
+
+    /**
+     * Waiting requests are sent lowest rank first, whatever order they were queued in.
+     */
+    public void testSendsLowestRankFirst() throws Exception
+    {
+        RequestScheduler scheduler = new RequestScheduler(1, 0, 1, Duration.ofMillis(10));
+        HttpClient client = HttpClient.newHttpClient();
+        List<CompletableFuture<HttpResponse<InputStream>>> responses = new ArrayList<>();
+        responses.add(scheduler.submit(0, () -> send(client, "blocker")));
+        while (arrivals.isEmpty()) {
+            Thread.sleep(5);
+        }
+        for (int rank : new int[] { 5, 1, 3, 2 }) {
+            responses.add(scheduler.submit(rank, () -> send(client, "user" + rank)));
+        }
+        unblock.countDown();
+        for (CompletableFuture<HttpResponse<InputStream>> response : responses) {
+            assertEquals( 200, response.get(5, TimeUnit.SECONDS).statusCode() );
+            response.get().body().close();
+        }
+        assertEquals( "[blocker, user1, user2, user3, user5]", arrivals.toString() );
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> send(HttpClient client, String username)
+    {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(String.format(stubUrl("ordered"), username))).build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException
+    {
+        byte[] body = (status == 200 ? "[{\"type\":\"WatchEvent\",\"repo\":{\"name\":\"octocat/Hello-World\"}}]" : "{}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String stubUrl(String context)
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + context + "/%s/events";
+    }
+
+    private static List<String> usernames(int count)
+    {
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            usernames.add("user" + i);
+        }
+        return usernames;
+    }
+}
@@ -0,0 +1,197 @@
+package com.azvtech;
+
+import com.sun.net.httpserver.HttpServer;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Tests the response cache, on its own and in front of a local stub that supports
+ * conditional requests.
+ */
+public class ResponseCacheTest
+    extends TestCase
+{
+    private HttpServer server;
+    private Path directory;
+    private final AtomicInteger version = new AtomicInteger(1);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ResponseCacheTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ResponseCacheTest.class );
+    }
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        directory = Files.createTempDirectory("responses");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/users/", exchange -> {
+            requests.incrementAndGet();
+            String etag = "\"v" + version.get() + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Last-Modified", "Mon, 06 Oct 2025 10:00:0" + version.get() + " GMT");
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] body = ("[{\"type\":\"WatchEvent\",\"repo\":{\"name\":\"octocat/v" + version.get() + "\"}}]").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        server.stop(0);
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * A fresh response is served without a request, a stale one is revalidated with its
+     * ETag and served again on 304, also from a cache reopened on the same directory, and a
+     * changed response replaces it.
+     */
+    public void testConditionalRequests() throws Exception
+    {
+        ResponseCache cache = new ResponseCache(directory, Duration.ofHours(1), ResponseCache.DEFAULT_MAX_BYTES);
+        GitHubActivityFetcher fetcher = new GitHubActivityFetcher(stubUrl(), cache);
+        assertEquals( "octocat/v1", fetch(fetcher) );
+        assertEquals( "octocat/v1", fetch(fetcher) );
+        assertEquals( 1, requests.get() );
+        assertEquals( 1, cache.stats().getHits() );
+        assertEquals( 1, cache.stats().getMisses() );
+
+        ResponseCache reopened = new ResponseCache(directory, Duration.ZERO, ResponseCache.DEFAULT_MAX_BYTES);
+        fetcher = new GitHubActivityFetcher(stubUrl(), reopened);
+        assertEquals( "octocat/v1", fetch(fetcher) );
+        assertEquals( 2, requests.get() );
+        assertEquals( 1, notModified.get() );
+        assertEquals( 1, reopened.stats().getRevalidations() );
+
+        version.set(2);
+        assertEquals( "octocat/v2", fetch(fetcher) );
+        assertEquals( "octocat/v2", fetch(fetcher) );
+        assertEquals( 2, notModified.get() );
+        assertEquals( 2, reopened.stats().getRevalidations() );
+        assertEquals( 1, reopened.stats().getMisses() );
+        assertEquals( 2.0 / 3, reopened.stats().hitRatio(), 1e-9 );
+    }
+
+    /**
+     * Past its size bound the cache evicts the least recently used responses, and the
+     * bound holds again when the directory is reopened with a smaller one.
+     */
+    public void testEvictsLeastRecentlyUsed() throws Exception
+    {
+        ResponseCache cache = new ResponseCache(directory, Duration.ofHours(1), 250);
+        byte[] body = new byte[100];
+        cache.put("a", "\"a\"", null, null, body);
+        cache.put("b", "\"b\"", null, null, body);
+        assertNotNull( cache.get("a") );
+        cache.put("c", null, null, null, body);
+
+        assertNull( cache.get("b") );
+        assertEquals( "\"a\"", cache.get("a").getEtag() );
+        assertNotNull( cache.get("c") );
+        assertEquals( 1, cache.stats().getEvictions() );
+        assertEquals( 200, cache.stats().getBytes() );
+
+        assertEquals( 2, new ResponseCache(directory, Duration.ofHours(1), 250).stats().getEntries() );
+        ResponseCache smaller = new ResponseCache(directory, Duration.ofHours(1), 150);
+        assertEquals( 1, smaller.stats().getEntries() );
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals( 1, files.count() );
+        }
+    }
+
+    /**
+     * Responses put and read back from several threads at once, some of them for the same
+     * URLs, always come back whole and as one of the bodies put for their URL.
+     */
+    public void testConcurrentPutsAndGets() throws Exception
+    {
+        ResponseCache cache = new ResponseCache(directory, Duration.ofHours(1), 1L << 20);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            results.add(threads.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    String url = "page" + (i % 16);
+                    byte[] body = new byte[100 + thread];
+                    Arrays.fill(body, (byte) thread);
+                    cache.put(url, "\"" + thread + "\"", null, null, body);
+                    ResponseCache.Response response = cache.get(url);
+                    if (response != null) {
+                        byte[] read = response.getBody();
+                        int writer = read[0];
+                        assertEquals( 100 + writer, read.length );
+                        assertEquals( "\"" + writer + "\"", response.getEtag() );
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        threads.shutdown();
+
+        assertEquals( 16, cache.stats().getEntries() );
+        for (int i = 0; i < 16; i++) {
+            assertNotNull( cache.get("page" + i) );
+        }
+    }
+
+    private static String fetch(GitHubActivityFetcher fetcher) throws Exception
+    {
+        StringBuilder events = new StringBuilder();
+        fetcher.fetchEvents("octocat", event -> events.append(event.getRepo()));
+        return events.toString();
+    }
+
+    private String stubUrl()
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/users/%s/events";
+    }
+}
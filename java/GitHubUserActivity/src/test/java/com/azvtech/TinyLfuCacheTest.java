@@ -0,0 +1,119 @@
+package com.azvtech;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.time.Duration;
+
+/**
+ * Unit tests for the frequency-admitted in-memory cache.
+ */
+public class TinyLfuCacheTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TinyLfuCacheTest(String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TinyLfuCacheTest.class );
+    }
+
+    /**
+     * Keys asked for again and again stay cached through a scan of three times as many
+     * one-off keys, which a least recently used cache would have flushed them for.
+     */
+    public void testKeepsFrequentKeysThroughScan()
+    {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(100, 100, Duration.ofHours(1));
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 50; i++) {
+                lookup(cache, "hot" + i);
+            }
+        }
+        for (int i = 0; i < 300; i++) {
+            lookup(cache, "scan" + i);
+        }
+
+        int hits = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot" + i) != null) {
+                hits++;
+            }
+        }
+        assertTrue( "hits: " + hits, hits >= 45 );
+        assertTrue( cache.weight() <= 100 );
+        assertTrue( cache.getRejections() > 200 );
+    }
+
+    /**
+     * Entries stop being served once their time to live is up, and values too heavy for the
+     * cache are turned away.
+     */
+    public void testExpiresAndRejectsHeavyValues() throws Exception
+    {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(1000, 10, Duration.ofMillis(50));
+        cache.put("octocat", "events", 10);
+        assertEquals( "events", cache.get("octocat") );
+        Thread.sleep(100);
+        assertNull( cache.get("octocat") );
+        assertEquals( 0, cache.size() );
+
+        cache.put("hubot", "events", 1000);
+        assertNull( cache.get("hubot") );
+        assertEquals( 1, cache.getRejections() );
+        assertEquals( 1, cache.getHits() );
+        assertEquals( 2, cache.getMisses() );
+    }
+
+    /**
+     * A candidate that would have to evict an entry asked for more often than itself is
+     * turned away without evicting the less popular entries before that one.
+     */
+    public void testRejectedCandidateEvictsNothing()
+    {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(1000, 10, Duration.ofHours(1));
+        cache.put("rare", "events", 490);
+        cache.put("popular", "events", 490);
+        for (int i = 0; i < 10; i++) {
+            cache.get("popular");
+        }
+        for (int i = 0; i < 5; i++) {
+            cache.get("candidate");
+        }
+        cache.put("candidate", "events", 510);
+
+        assertEquals( 2, cache.size() );
+        assertEquals( "events", cache.get("rare") );
+        assertEquals( "events", cache.get("popular") );
+        assertNull( cache.get("candidate") );
+        assertEquals( 0, cache.getEvictions() );
+        assertEquals( 1, cache.getRejections() );
+
+        for (int i = 0; i < 20; i++) {
+            cache.get("candidate");
+        }
+        cache.put("candidate", "events", 510);
+        assertEquals( "events", cache.get("candidate") );
+        assertEquals( 1, cache.size() );
+        assertEquals( 2, cache.getEvictions() );
+    }
+
+    private static void lookup(TinyLfuCache<String, String> cache, String key)
+    {
+        if (cache.get(key) == null) {
+            cache.put(key, key, 1);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.fajdev.TaskTracker;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The TaskFileEvent class is a JDK Flight Recorder event for one load or save of the task file,
+ * with the number of tasks and the length of the file content. The latency also goes to the
+ * {@link Metrics} histogram named after the operation.
+ */
+@Name("com.fajdev.TaskTracker.TaskFile")
+@Label("Task File")
+@Category({"Roadmap.sh", "TaskTracker"})
+@Description("A load or save of the task file")
+@StackTrace(false)
+final class TaskFileEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("File")
+    String file;
+
+    @Label("Tasks")
+    int tasks;
+
+    @Label("Failed")
+    @Description("Whether the file could not be read, written or parsed")
+    boolean failed;
+
+    @Label("Length")
+    @Description("The length of the file content, in characters")
+    int length;
+
+    private final transient long start = Metrics.start();
+    private transient boolean failedIo;
+
+    TaskFileEvent(String operation, String file) {
+        this.operation = operation;
+        this.file = file;
+        begin();
+    }
+
+    // Marks the operation as failed and counts it under "<operation>.errors"; it still has to be finished
+    void fail() {
+        failedIo = true;
+        Metrics.count(operation + ".errors", 1);
+    }
+
+    // Ends the operation and records it, whether it succeeded or not
+    void finish(int tasks, int length) {
+        Metrics.record(operation, start);
+        end();
+        if (shouldCommit()) {
+            this.tasks = tasks;
+            this.length = length;
+            this.failed = failedIo;
+            commit();
+        }
+    }
+}
@@ -14,19 +14,47 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.UUID;
 import java.time.LocalDateTime;
 
 /**
  * The TaskTracker class provides a command-line tool for managing tasks. It allows users to add, update, delete,
  * and list tasks which are stored in a JSON file.
+ *
+ * Loading and saving the file are recorded as {@link TaskFileEvent}s for JDK Flight Recorder. With --metrics,
+ * their latency percentiles are printed on exit as well.
  */
 public class TaskTracker {
     private static final Logger logger = LoggerFactory.getLogger(TaskTracker.class);
     private static final String TASKS_FILE = "tasks.json";
     private static final LocalDateTime now = LocalDateTime.now();
+    private static String tasksFile = TASKS_FILE;
 
     public static void main(String[] args) {
+        String[] commandArgs = parseOptions(args);
+        if (commandArgs.length < args.length) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> Metrics.dump(System.err)));
+        }
+        run(commandArgs);
+    }
+
+    // Strips the --metrics option from the arguments, turning the metrics on if it was given
+    static String[] parseOptions(String[] args) {
+        if (!Arrays.asList(args).contains("--metrics")) {
+            return args;
+        }
+        Metrics.enable();
+        return Arrays.stream(args).filter(arg -> !arg.equals("--metrics")).toArray(String[]::new);
+    }
+
+    // Uses another tasks file instead of tasks.json in the working directory
+    static void setTasksFile(String file) {
+        tasksFile = file;
+    }
+
+    // Runs a command on the tasks file
+    static void run(String[] args) {
         if (args.length < 1) {
             System.out.println("Please provide a command (add, update, delete, list, etc.)");
             return;
@@ -154,30 +182,39 @@ public class TaskTracker {
 
     // Loads tasks from the JSON file
     private static JSONArray loadTasks() {
+        TaskFileEvent event = new TaskFileEvent("loadTasks", tasksFile);
         JSONArray tasks = new JSONArray();
+        String content = "";
         try {
-            File file = new File(TASKS_FILE);
-            Path path = Paths.get(TASKS_FILE);
+            File file = new File(tasksFile);
+            Path path = Paths.get(tasksFile);
             if (!file.exists()) {
                 Files.write(path, "[]".getBytes(), StandardOpenOption.CREATE);
             }
-            String content = new String(Files.readAllBytes(path));
+            content = new String(Files.readAllBytes(path));
             tasks = new JSONArray(content);
         } catch (IOException e) {
             logger.error("Error reading/writing tasks file: {}", e.getMessage());
+            event.fail();
         } catch (JSONException e) {
             logger.error("Error parsing JSON content: {}", e.getMessage());
+            event.fail();
         }
+        event.finish(tasks.length(), content.length());
         return tasks;
     }
 
     // Saves tasks to the JSON file
     private static void saveTasks(JSONArray tasks) {
-        try (FileWriter file = new FileWriter(TASKS_FILE)) {
-            file.write(tasks.toString());
+        TaskFileEvent event = new TaskFileEvent("saveTasks", tasksFile);
+        String content = tasks.toString();
+        try (FileWriter file = new FileWriter(tasksFile)) {
+            file.write(content);
             file.flush();
         } catch (IOException e) {
             System.out.println("Error saving tasks: " + e.getMessage());
+            event.fail();
         }
+        event.finish(tasks.length(), content.length());
     }
 }
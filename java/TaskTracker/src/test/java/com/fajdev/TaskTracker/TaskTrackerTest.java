@@ -15,6 +15,7 @@ import java.nio.file.Path;
 
 import java.lang.reflect.Field;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -197,4 +198,39 @@ public class TaskTrackerTest {
         TaskTracker.main(new String[]{"invalid"});
         assertEquals("Invalid command.", outputStreamCaptor.toString().trim());
     }
+
+    /**
+     * Tests the `--metrics` option of the `TaskTracker` class.
+     *
+     * This test verifies that the option is not taken for the command, and that loading and
+     * saving the task file are timed once it is given. The command is run without `main`, so
+     * no hook printing the metrics on exit is left behind, and on a task file of its own.
+     *
+     * Steps:
+     * 1. Strips the options from the `add` command with `--metrics` before it, and runs it on a temporary task file.
+     * 2. Asserts that the option was stripped and the task was added to that file.
+     * 3. Asserts that one load and one save of the task file were recorded.
+     *
+     * @throws Exception if any error occurs during the execution of the test
+     */
+    @Test
+    public void testMetricsOption() throws Exception {
+        System.setOut(new PrintStream(outputStreamCaptor));
+        Path tasksFile = Files.createTempFile("tasks", ".json");
+        Files.delete(tasksFile);
+        TaskTracker.setTasksFile(tasksFile.toString());
+        try {
+            String[] args = TaskTracker.parseOptions(new String[]{"--metrics", "add", "Measured Task"});
+            assertArrayEquals(new String[]{"add", "Measured Task"}, args);
+            TaskTracker.run(args);
+            assertTrue(outputStreamCaptor.toString().trim().startsWith("Task added"));
+            assertTrue(Files.readString(tasksFile).contains("Measured Task"));
+            assertEquals(1, Metrics.timer("loadTasks").count());
+            assertEquals(1, Metrics.timer("saveTasks").count());
+        } finally {
+            Metrics.reset();
+            TaskTracker.setTasksFile(getTaskFilePath().toString());
+            Files.deleteIfExists(tasksFile);
+        }
+    }
 }
\ No newline at end of file